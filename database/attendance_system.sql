@@ -31,10 +31,19 @@ CREATE DATABASE attendance_system
 -- Habilitar extensiones
 CREATE EXTENSION IF NOT EXISTS "uuid-ossp";
 CREATE EXTENSION IF NOT EXISTS "pgcrypto";
+CREATE EXTENSION IF NOT EXISTS "pg_trgm";
+CREATE EXTENSION IF NOT EXISTS "unaccent";
 
 -- Configurar esquema
 SET search_path TO public;
 
+-- unaccent() es STABLE (depende del diccionario configurado) y no sirve en un
+-- índice; esta versión fija el diccionario y se declara IMMUTABLE.
+CREATE OR REPLACE FUNCTION f_unaccent(TEXT)
+RETURNS TEXT AS $$
+    SELECT public.unaccent('public.unaccent'::regdictionary, $1)
+$$ LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT;
+
 -- ============================================
 -- TABLA: roles
 -- ============================================
@@ -242,10 +251,65 @@ CREATE TABLE IF NOT EXISTS reportes_generados (
     ruta_archivo VARCHAR(500),
     generado_por INTEGER REFERENCES usuarios_sistema(id_usuario_sistema),
     fecha_generacion TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    tamanio_kb INTEGER
+    tamanio_kb INTEGER,
+    filas INTEGER,
+    duracion_ms INTEGER
 );
 
+-- Instalaciones existentes
+ALTER TABLE reportes_generados ADD COLUMN IF NOT EXISTS filas INTEGER;
+ALTER TABLE reportes_generados ADD COLUMN IF NOT EXISTS duracion_ms INTEGER;
+
 COMMENT ON TABLE reportes_generados IS 'Historial de reportes generados';
+COMMENT ON COLUMN reportes_generados.duracion_ms IS 'Duración de la exportación en milisegundos';
+
+-- ============================================
+-- TABLA: reportes_cola
+-- ============================================
+CREATE TABLE IF NOT EXISTS reportes_cola (
+    id_trabajo SERIAL PRIMARY KEY,
+    tipo_reporte VARCHAR(50) NOT NULL,
+    formato VARCHAR(10) NOT NULL CHECK (formato IN ('PDF', 'XLSX', 'CSV')),
+    fecha_desde DATE NOT NULL,
+    fecha_hasta DATE NOT NULL,
+    departamento VARCHAR(100),
+    tipo_marcacion VARCHAR(20),
+    usuario TEXT,
+    parametros JSONB,
+    ruta_archivo VARCHAR(500) NOT NULL,
+    estacion VARCHAR(100),
+    estado VARCHAR(20) NOT NULL DEFAULT 'EN_COLA'
+        CHECK (estado IN ('EN_COLA', 'EJECUTANDO', 'COMPLETADO', 'CANCELADO', 'ERROR')),
+    filas INTEGER,
+    mensaje VARCHAR(500),
+    id_reporte INTEGER REFERENCES reportes_generados(id_reporte) ON DELETE SET NULL,
+    fecha_creacion TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    fecha_inicio TIMESTAMP,
+    fecha_fin TIMESTAMP
+);
+
+-- Instalaciones existentes
+ALTER TABLE reportes_cola ADD COLUMN IF NOT EXISTS estacion VARCHAR(100);
+
+CREATE INDEX IF NOT EXISTS idx_reportes_cola_pendientes ON reportes_cola(id_trabajo)
+    WHERE estado IN ('EN_COLA', 'EJECUTANDO');
+
+COMMENT ON TABLE reportes_cola IS 'Trabajos de exportación de reportes; los pendientes se retoman al iniciar';
+COMMENT ON COLUMN reportes_cola.estacion IS 'Equipo que encoló el trabajo; solo ese equipo lo retoma (ruta_archivo es local)';
+
+-- ============================================
+-- TABLA: importaciones_legado
+-- ============================================
+CREATE TABLE IF NOT EXISTS importaciones_legado (
+    clave VARCHAR(300) NOT NULL,
+    lote INTEGER NOT NULL,
+    filas INTEGER NOT NULL,
+    insertadas INTEGER NOT NULL,
+    fecha TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (clave, lote)
+);
+
+COMMENT ON TABLE importaciones_legado IS 'Lotes ya cargados por LegacyAttendanceImporter; permite retomar una importación';
 
 -- ============================================
 -- ÍNDICES PARA OPTIMIZACIÓN
@@ -260,10 +324,18 @@ CREATE INDEX IF NOT EXISTS idx_usuarios_dni ON usuarios(dni);
 CREATE INDEX IF NOT EXISTS idx_usuarios_fingerprint ON usuarios(fingerprint_id) WHERE fingerprint_id IS NOT NULL;
 CREATE INDEX IF NOT EXISTS idx_usuarios_activo ON usuarios(activo) WHERE activo = TRUE;
 CREATE INDEX IF NOT EXISTS idx_usuarios_email ON usuarios(email);
+-- Paginación por clave y búsqueda por texto del panel de usuarios (UserPageLoader)
+CREATE INDEX IF NOT EXISTS idx_usuarios_orden ON usuarios(apellidos, nombres, id_usuario);
+-- Instalaciones existentes: el índice anterior no quitaba las tildes
+DROP INDEX IF EXISTS idx_usuarios_busqueda;
+CREATE INDEX IF NOT EXISTS idx_usuarios_busqueda_sin_tildes ON usuarios
+    USING gin (f_unaccent(lower(dni || ' ' || nombres || ' ' || apellidos || ' ' || COALESCE(email, ''))) gin_trgm_ops);
 
 CREATE INDEX IF NOT EXISTS idx_logs_fecha ON logs_sistema(fecha_hora DESC);
 CREATE INDEX IF NOT EXISTS idx_logs_nivel ON logs_sistema(nivel);
 CREATE INDEX IF NOT EXISTS idx_logs_modulo ON logs_sistema(modulo);
+-- Recorrido por lotes de LogRetentionService (nivel, id_log > cursor ORDER BY id_log)
+CREATE INDEX IF NOT EXISTS idx_logs_nivel_id ON logs_sistema(nivel, id_log);
 
 CREATE INDEX IF NOT EXISTS idx_usuarios_sistema_username ON usuarios_sistema(username);
 CREATE INDEX IF NOT EXISTS idx_usuarios_sistema_token ON usuarios_sistema(token_sesion);
@@ -322,6 +394,71 @@ CREATE TRIGGER update_horarios_modtime
     FOR EACH ROW
     EXECUTE FUNCTION update_modified_column();
 
+-- ============================================
+-- NOTIFICACIONES DE CAMBIOS (LISTEN/NOTIFY)
+-- Canal: cambios_<tabla>
+-- Payload compacto: OP|ID[|extra...]  (OP = I, U, D)
+-- ============================================
+
+CREATE OR REPLACE FUNCTION notificar_cambio()
+RETURNS TRIGGER AS $$
+DECLARE
+    v_fila JSONB;
+    v_payload TEXT;
+    i INTEGER;
+BEGIN
+    -- Las cargas masivas silencian el aviso por fila y envían un único 'R'
+    IF current_setting('asistencia.silenciar_notify', TRUE) = 'on' THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP = 'DELETE' THEN
+        v_fila := to_jsonb(OLD);
+    ELSE
+        v_fila := to_jsonb(NEW);
+    END IF;
+
+    -- TG_ARGV[0] = columna ID, TG_ARGV[1..] = columnas adicionales
+    v_payload := LEFT(TG_OP, 1) || '|' || COALESCE(v_fila ->> TG_ARGV[0], '');
+    FOR i IN 1 .. TG_NARGS - 1 LOOP
+        v_payload := v_payload || '|' || COALESCE(v_fila ->> TG_ARGV[i], '');
+    END LOOP;
+
+    PERFORM pg_notify('cambios_' || TG_TABLE_NAME, v_payload);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS notify_asistencias ON asistencias;
+CREATE TRIGGER notify_asistencias
+    AFTER INSERT OR UPDATE OR DELETE ON asistencias
+    FOR EACH ROW
+    EXECUTE FUNCTION notificar_cambio('id_asistencia', 'id_usuario', 'fecha_hora');
+
+DROP TRIGGER IF EXISTS notify_usuarios ON usuarios;
+CREATE TRIGGER notify_usuarios
+    AFTER INSERT OR UPDATE OR DELETE ON usuarios
+    FOR EACH ROW
+    EXECUTE FUNCTION notificar_cambio('id_usuario', 'id_departamento');
+
+DROP TRIGGER IF EXISTS notify_departamentos ON departamentos;
+CREATE TRIGGER notify_departamentos
+    AFTER INSERT OR UPDATE OR DELETE ON departamentos
+    FOR EACH ROW
+    EXECUTE FUNCTION notificar_cambio('id_departamento');
+
+DROP TRIGGER IF EXISTS notify_configuracion ON configuracion;
+CREATE TRIGGER notify_configuracion
+    AFTER INSERT OR UPDATE OR DELETE ON configuracion
+    FOR EACH ROW
+    EXECUTE FUNCTION notificar_cambio('id_config', 'clave');
+
+DROP TRIGGER IF EXISTS notify_roles ON roles;
+CREATE TRIGGER notify_roles
+    AFTER INSERT OR UPDATE OR DELETE ON roles
+    FOR EACH ROW
+    EXECUTE FUNCTION notificar_cambio('id_rol');
+
 -- ============================================
 -- VISTAS ÚTILES
 -- ============================================
@@ -483,14 +620,16 @@ BEGIN
     FROM usuarios u
     LEFT JOIN departamentos d ON u.id_departamento = d.id_departamento
     LEFT JOIN asistencias a ON u.id_usuario = a.id_usuario
-        AND EXTRACT(MONTH FROM a.fecha_hora) = p_mes
-        AND EXTRACT(YEAR FROM a.fecha_hora) = p_anio
+        AND a.fecha_hora >= make_date(p_anio, p_mes, 1)
+        AND a.fecha_hora < make_date(p_anio, p_mes, 1) + INTERVAL '1 month'
     WHERE u.activo = TRUE
     GROUP BY u.dni, u.nombres, u.apellidos, d.nombre
     ORDER BY u.apellidos, u.nombres;
 END;
 $$ LANGUAGE plpgsql;
 
+-- Limpieza manual en una sola sentencia; la limpieza programada la hace
+-- LogRetentionService en lotes pequeños para no bloquear la tabla
 CREATE OR REPLACE FUNCTION sp_limpiar_logs_antiguos(
     p_dias_antiguedad INTEGER DEFAULT 90
 )
@@ -1,6 +1,16 @@
 package com.attendance;
 
+import com.attendance.config.ConfigService;
 import com.attendance.config.DatabaseConfig;
+import com.attendance.maintenance.MaintenanceScheduler;
+import com.attendance.monitoring.EdtWatchdog;
+import com.attendance.monitoring.FlightRecorderManager;
+import com.attendance.monitoring.MetricsRegistry;
+import com.attendance.monitoring.TelemetryServer;
+import com.attendance.report.ReportJobEngine;
+import com.attendance.service.ChangeEventBus;
+import com.attendance.service.ReferenceDataCache;
+import com.attendance.service.UserSearchService;
 import com.attendance.view.MainFrame;
 import com.formdev.flatlaf.FlatLightLaf;
 import org.slf4j.Logger;
@@ -34,6 +44,9 @@ public class Main {
                 // Mostrar splash screen
                 JWindow splash = showSplashScreen();
                 
+                // Grabación JFR continua (monitoring.jfr.enabled)
+                FlightRecorderManager.start();
+                
                 // Inicializar base de datos
                 logger.info("Inicializando conexión a base de datos...");
                 DatabaseConfig.initialize();
@@ -52,6 +65,31 @@ public class Main {
                 
                 logger.info("Conexión a base de datos: OK");
                 
+                // Métricas de latencia y pools
+                MetricsRegistry.registerPoolGauges();
+                MetricsRegistry.registerApplicationGauges();
+                MetricsRegistry.startPeriodicLog();
+                TelemetryServer.start();
+                EdtWatchdog.start();
+                
+                // Escuchar cambios de otros kioscos y administradores
+                ChangeEventBus.start();
+                
+                // Índice en memoria para buscar usuarios por nombre o DNI
+                UserSearchService.start();
+                
+                // Departamentos, roles y configuración en memoria para paneles y diálogos
+                ReferenceDataCache.start();
+                
+                // Propiedades + tabla configuracion, recargadas en caliente
+                ConfigService.start();
+                
+                // Exportaciones en segundo plano (retoma las pendientes)
+                ReportJobEngine.start();
+                
+                // Respaldo nocturno (system.enableAutoBackup / system.backupTime)
+                MaintenanceScheduler.start();
+                
                 // Pequeña pausa para mostrar el splash
                 Thread.sleep(1500);
                 splash.dispose();
@@ -174,6 +212,14 @@ public class Main {
     static {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             logger.info("Cerrando sistema...");
+            ChangeEventBus.stop();
+            ConfigService.stop();
+            ReportJobEngine.stop();
+            MaintenanceScheduler.stop();
+            TelemetryServer.stop();
+            EdtWatchdog.stop();
+            MetricsRegistry.shutdown();
+            FlightRecorderManager.stop();
             DatabaseConfig.close();
             logger.info("Sistema cerrado correctamente");
         }));
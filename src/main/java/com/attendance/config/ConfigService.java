@@ -0,0 +1,360 @@
+package com.attendance.config;
+
+import com.attendance.service.ChangeEventBus;
+import com.attendance.service.ReferenceDataCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Configuración en ejecución con valores tipados
+ * Une application.properties (empaquetado y externo) con la tabla
+ * configuracion, que tiene prioridad y se interpreta según tipo_dato. Cada
+ * recarga publica un mapa inmutable nuevo y actualiza los Setting
+ * registrados, así las rutas frecuentes leen un campo volatile ya convertido
+ * sin tocar la base ni parsear texto. Se recarga cuando cambia el archivo
+ * externo (WatchService) o la tabla (aviso de ChangeEventBus vía
+ * ReferenceDataCache).
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class ConfigService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigService.class);
+
+    /** Claves de la tabla configuracion equivalentes a una propiedad del archivo */
+    private static final Map<String, String> DB_ALIASES = Map.of(
+        "UMBRAL_CONFIDENCE", "sensor.confidenceThreshold",
+        "HABILITAR_BUZZER", "sensor.enableBuzzer",
+        "BACKUP_AUTOMATICO", "system.enableAutoBackup",
+        "MAX_INTENTOS_LOGIN", "security.maxLoginAttempts");
+
+    /** Los editores guardan en varios pasos; se espera antes de releer */
+    private static final long FILE_SETTLE_MS = 200;
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "config-reload");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final List<Setting<?>> settings = new CopyOnWriteArrayList<>();
+    private static final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private static volatile Map<String, Object> values;
+    private static volatile boolean running = false;
+    private static Thread watchThread;
+    private static Runnable cacheSubscriber;
+
+    private ConfigService() {
+    }
+
+    /**
+     * Carga la tabla e inicia la vigilancia del archivo externo (idempotente)
+     */
+    public static synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        cacheSubscriber = ReferenceDataCache.subscribe(() -> executor.execute(ConfigService::reload),
+            ChangeEventBus.CONFIGURACION);
+        executor.execute(ConfigService::reload);
+
+        watchThread = new Thread(ConfigService::watchLoop, "config-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    public static synchronized void stop() {
+        running = false;
+        ReferenceDataCache.unsubscribe(cacheSubscriber);
+        if (watchThread != null) {
+            watchThread.interrupt();
+            watchThread = null;
+        }
+    }
+
+    public static Setting<Integer> intSetting(String clave, int defecto) {
+        return register(new Setting<>(clave, defecto, Integer.class, v -> Integer.valueOf(v.trim())));
+    }
+
+    public static Setting<Long> longSetting(String clave, long defecto) {
+        return register(new Setting<>(clave, defecto, Long.class, v -> Long.valueOf(v.trim())));
+    }
+
+    public static Setting<Boolean> booleanSetting(String clave, boolean defecto) {
+        return register(new Setting<>(clave, defecto, Boolean.class, ConfigService::parseBoolean));
+    }
+
+    public static Setting<String> stringSetting(String clave, String defecto) {
+        return register(new Setting<>(clave, defecto, String.class, v -> v));
+    }
+
+    /**
+     * Valor actual como texto (null si no existe)
+     */
+    public static String getString(String clave) {
+        Object value = current().get(clave);
+        return value != null ? value.toString() : null;
+    }
+
+    public static String getString(String clave, String defecto) {
+        String value = getString(clave);
+        return value != null ? value : defecto;
+    }
+
+    public static int getInt(String clave, int defecto) {
+        Object value = current().get(clave);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        try {
+            return value != null ? Integer.parseInt(value.toString().trim()) : defecto;
+        } catch (NumberFormatException e) {
+            return defecto;
+        }
+    }
+
+    public static boolean getBoolean(String clave, boolean defecto) {
+        Object value = current().get(clave);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return value != null ? parseBoolean(value.toString()) : defecto;
+    }
+
+    /**
+     * Avisa cuando cambian las claves indicadas (todas si no se indica ninguna).
+     * El listener se invoca en el hilo de recarga, no en el EDT.
+     */
+    public static Listener subscribe(Listener listener, String... claves) {
+        subscriptions.add(new Subscription(listener, new HashSet<>(Arrays.asList(claves))));
+        return listener;
+    }
+
+    public static void unsubscribe(Listener listener) {
+        subscriptions.removeIf(s -> s.listener == listener);
+    }
+
+    private static synchronized <T> Setting<T> register(Setting<T> setting) {
+        setting.update(current());
+        settings.add(setting);
+        return setting;
+    }
+
+    private static Map<String, Object> current() {
+        Map<String, Object> snapshot = values;
+        if (snapshot == null) {
+            // Antes de start() solo se conoce el archivo
+            snapshot = merge(DatabaseConfig.getProperties(), Collections.emptyList());
+            values = snapshot;
+        }
+        return snapshot;
+    }
+
+    private static void reload() {
+        Map<String, Object> merged = merge(DatabaseConfig.getProperties(), ReferenceDataCache.getConfiguracion());
+        Map<String, Object> previous = current();
+
+        Set<String> changed = new HashSet<>();
+        for (String clave : merged.keySet()) {
+            if (!Objects.equals(merged.get(clave), previous.get(clave))) {
+                changed.add(clave);
+            }
+        }
+        for (String clave : previous.keySet()) {
+            if (!merged.containsKey(clave)) {
+                changed.add(clave);
+            }
+        }
+
+        synchronized (ConfigService.class) {
+            values = merged;
+            for (Setting<?> setting : settings) {
+                setting.update(merged);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        logger.info("Configuración recargada, claves cambiadas: {}", changed);
+
+        for (Subscription subscription : subscriptions) {
+            if (subscription.claves.isEmpty() || !Collections.disjoint(subscription.claves, changed)) {
+                try {
+                    subscription.listener.onChange(changed);
+                } catch (RuntimeException e) {
+                    logger.error("Error en suscriptor de configuración", e);
+                }
+            }
+        }
+    }
+
+    static Map<String, Object> merge(Properties file, List<ReferenceDataCache.ConfigEntry> table) {
+        Map<String, Object> merged = new HashMap<>();
+        for (String clave : file.stringPropertyNames()) {
+            merged.put(clave, file.getProperty(clave));
+        }
+        for (ReferenceDataCache.ConfigEntry entry : table) {
+            Object value = parseTyped(entry);
+            if (value == null) {
+                continue;
+            }
+            merged.put(entry.clave, value);
+            String alias = DB_ALIASES.get(entry.clave);
+            if (alias != null) {
+                merged.put(alias, value);
+            }
+        }
+        return Collections.unmodifiableMap(merged);
+    }
+
+    /**
+     * Valor de la tabla según tipo_dato; null (se ignora) si no se puede convertir
+     */
+    static Object parseTyped(ReferenceDataCache.ConfigEntry entry) {
+        if (entry.valor == null) {
+            return null;
+        }
+        String valor = entry.valor.trim();
+        try {
+            switch (entry.tipoDato != null ? entry.tipoDato : "STRING") {
+                case "INTEGER":
+                    return Integer.valueOf(valor);
+                case "BOOLEAN":
+                    return parseBoolean(valor);
+                case "DECIMAL":
+                    return new BigDecimal(valor);
+                default:
+                    // STRING y JSON se conservan como texto
+                    return entry.valor;
+            }
+        } catch (NumberFormatException e) {
+            logger.warn("Parámetro {} ignorado: '{}' no es {}", entry.clave, entry.valor, entry.tipoDato);
+            return null;
+        }
+    }
+
+    static Boolean parseBoolean(String value) {
+        String v = value.trim().toLowerCase();
+        return "true".equals(v) || "1".equals(v) || "si".equals(v) || "sí".equals(v);
+    }
+
+    private static void watchLoop() {
+        Path file = DatabaseConfig.getExternalFile().toAbsolutePath();
+        Path dir = file.getParent();
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            logger.info("Vigilando cambios en {}", file);
+
+            while (running) {
+                WatchKey key = watcher.take();
+                boolean relevant = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (file.getFileName().equals(event.context())) {
+                        relevant = true;
+                    }
+                }
+                key.reset();
+                if (relevant) {
+                    Thread.sleep(FILE_SETTLE_MS);
+                    executor.execute(ConfigService::reloadFile);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.warn("No se puede vigilar {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private static void reloadFile() {
+        try {
+            DatabaseConfig.reloadProperties();
+            reload();
+        } catch (IOException e) {
+            logger.error("Error al releer {}", DatabaseConfig.getExternalFile(), e);
+        }
+    }
+
+    /**
+     * Valor tipado de una clave; get() no parsea ni consulta la base
+     */
+    public static final class Setting<T> {
+        private final String clave;
+        private final T defecto;
+        private final Class<T> tipo;
+        private final Function<String, T> parser;
+        private volatile T value;
+
+        private Setting(String clave, T defecto, Class<T> tipo, Function<String, T> parser) {
+            this.clave = clave;
+            this.defecto = defecto;
+            this.tipo = tipo;
+            this.parser = parser;
+            this.value = defecto;
+        }
+
+        public T get() {
+            return value;
+        }
+
+        public String getClave() {
+            return clave;
+        }
+
+        private void update(Map<String, Object> values) {
+            Object raw = values.get(clave);
+            T nuevo = defecto;
+            if (tipo.isInstance(raw)) {
+                nuevo = tipo.cast(raw);
+            } else if (raw != null) {
+                try {
+                    nuevo = parser.apply(raw.toString());
+                } catch (RuntimeException e) {
+                    logger.warn("Valor inválido para {}: '{}', se usa {}", clave, raw, defecto);
+                }
+            }
+            value = nuevo;
+        }
+    }
+
+    public interface Listener {
+        void onChange(Set<String> claves);
+    }
+
+    private static class Subscription {
+        final Listener listener;
+        final Set<String> claves;
+
+        Subscription(Listener listener, Set<String> claves) {
+            this.listener = listener;
+            this.claves = claves;
+        }
+    }
+}
@@ -2,26 +2,60 @@ package com.attendance.config;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Properties;
 
 /**
  * Configuración de conexión a base de datos PostgreSQL con pooling HikariCP
+ * Mantiene un pool transaccional (marcaciones, CRUD) y un pool de reportes
+ * separado que puede apuntar a una réplica de solo lectura
  * 
  * @author Sistema Biométrico
- * @version 2.0 - Optimizado
+ * @version 2.1 - Pools separados
  */
 public class DatabaseConfig {
     
+    /**
+     * Pools de conexiones disponibles
+     */
+    public enum Pool {
+        /** Escrituras y consultas cortas de la operación diaria */
+        TRANSACCIONAL("AttendancePool", "db.pool"),
+        /** Consultas pesadas de reportes (réplica opcional, solo lectura) */
+        REPORTES("ReportPool", "db.report");
+        
+        private final String poolName;
+        private final String prefix;
+        
+        Pool(String poolName, String prefix) {
+            this.poolName = poolName;
+            this.prefix = prefix;
+        }
+        
+        public String getPoolName() {
+            return poolName;
+        }
+    }
+    
     private static final Logger logger = LoggerFactory.getLogger(DatabaseConfig.class);
-    private static HikariDataSource dataSource;
-    private static Properties properties;
+    private static final Map<Pool, HikariDataSource> dataSources = new EnumMap<>(Pool.class);
+    private static volatile Properties properties;
+    private static String jdbcUrl;
+    private static String dbUsername;
+    private static String dbPassword;
     
     // Valores por defecto
     private static final String DEFAULT_HOST = "localhost";
@@ -38,42 +72,29 @@ public class DatabaseConfig {
             // Cargar propiedades
             properties = loadProperties();
             
-            // Configurar HikariCP
-            HikariConfig config = new HikariConfig();
-            
             String host = properties.getProperty("db.host", DEFAULT_HOST);
             String port = properties.getProperty("db.port", DEFAULT_PORT);
             String dbName = properties.getProperty("db.name", DEFAULT_DB_NAME);
             String username = properties.getProperty("db.username", DEFAULT_USERNAME);
             String password = properties.getProperty("db.password", DEFAULT_PASSWORD);
             
-            String jdbcUrl = String.format("jdbc:postgresql://%s:%s/%s", host, port, dbName);
-            config.setJdbcUrl(jdbcUrl);
-            config.setUsername(username);
-            config.setPassword(password);
+            jdbcUrl = String.format("jdbc:postgresql://%s:%s/%s", host, port, dbName);
+            dbUsername = username;
+            dbPassword = password;
             
-            // Configuraciones del pool
-            config.setMaximumPoolSize(Integer.parseInt(properties.getProperty("db.pool.maxPoolSize", "10")));
-            config.setMinimumIdle(Integer.parseInt(properties.getProperty("db.pool.minIdle", "2")));
-            config.setConnectionTimeout(Long.parseLong(properties.getProperty("db.pool.connectionTimeout", "30000")));
-            config.setIdleTimeout(Long.parseLong(properties.getProperty("db.pool.idleTimeout", "600000")));
-            config.setMaxLifetime(Long.parseLong(properties.getProperty("db.pool.maxLifetime", "1800000")));
+            dataSources.put(Pool.TRANSACCIONAL, createPool(Pool.TRANSACCIONAL, jdbcUrl, username, password));
             
-            // Configuraciones adicionales
-            config.setConnectionTestQuery("SELECT 1");
-            config.setPoolName("AttendancePool");
-            config.addDataSourceProperty("cachePrepStmts", "true");
-            config.addDataSourceProperty("prepStmtCacheSize", "250");
-            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
-            
-            dataSource = new HikariDataSource(config);
-            
-            logger.info("═══════════════════════════════════════");
-            logger.info("  Pool de conexiones inicializado");
-            logger.info("  URL: {}", jdbcUrl);
-            logger.info("  Usuario: {}", username);
-            logger.info("  Pool size: {}", config.getMaximumPoolSize());
-            logger.info("═══════════════════════════════════════");
+            // Pool de reportes: por defecto el mismo servidor, o una réplica si se configura db.report.host
+            if (Boolean.parseBoolean(properties.getProperty("db.report.enabled", "true"))) {
+                String reportHost = properties.getProperty("db.report.host", host);
+                String reportPort = properties.getProperty("db.report.port", port);
+                String reportUrl = String.format("jdbc:postgresql://%s:%s/%s", reportHost, reportPort, dbName);
+                dataSources.put(Pool.REPORTES, createPool(Pool.REPORTES, reportUrl,
+                    properties.getProperty("db.report.username", username),
+                    properties.getProperty("db.report.password", password)));
+            } else {
+                logger.info("Pool de reportes deshabilitado, los reportes usarán el pool transaccional");
+            }
             
         } catch (Exception e) {
             logger.error("Error crítico al inicializar base de datos", e);
@@ -82,22 +103,104 @@ public class DatabaseConfig {
     }
     
     /**
-     * Obtiene una conexión del pool
+     * Crea un pool HikariCP leyendo las propiedades con el prefijo del pool
+     */
+    private static HikariDataSource createPool(Pool pool, String url, String username, String password) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        
+        // Configuraciones del pool
+        String prefix = pool.prefix;
+        boolean reportes = pool == Pool.REPORTES;
+        config.setMaximumPoolSize(Integer.parseInt(properties.getProperty(prefix + ".maxPoolSize", reportes ? "4" : "10")));
+        config.setMinimumIdle(Integer.parseInt(properties.getProperty(prefix + ".minIdle", reportes ? "0" : "2")));
+        config.setConnectionTimeout(Long.parseLong(properties.getProperty(prefix + ".connectionTimeout", reportes ? "60000" : "30000")));
+        config.setIdleTimeout(Long.parseLong(properties.getProperty(prefix + ".idleTimeout", "600000")));
+        config.setMaxLifetime(Long.parseLong(properties.getProperty(prefix + ".maxLifetime", "1800000")));
+        config.setReadOnly(reportes);
+        
+        // Límite de duración de sentencias aplicado por el servidor
+        long statementTimeout = Long.parseLong(properties.getProperty(prefix + ".statementTimeout", reportes ? "300000" : "10000"));
+        if (statementTimeout > 0) {
+            config.addDataSourceProperty("options", "-c statement_timeout=" + statementTimeout);
+        }
+        
+        // Configuraciones adicionales
+        config.setConnectionTestQuery("SELECT 1");
+        config.setPoolName(pool.poolName);
+        config.setRegisterMbeans(true);
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", "250");
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        
+        HikariDataSource ds = new HikariDataSource(config);
+        
+        logger.info("═══════════════════════════════════════");
+        logger.info("  Pool de conexiones inicializado: {}", pool.poolName);
+        logger.info("  URL: {}", url);
+        logger.info("  Usuario: {}", username);
+        logger.info("  Pool size: {}", config.getMaximumPoolSize());
+        logger.info("  Statement timeout: {} ms", statementTimeout);
+        logger.info("═══════════════════════════════════════");
+        
+        return ds;
+    }
+    
+    /**
+     * Obtiene una conexión del pool transaccional
      */
     public static Connection getConnection() throws SQLException {
-        if (dataSource == null) {
+        return getConnection(Pool.TRANSACCIONAL);
+    }
+    
+    /**
+     * Obtiene una conexión del pool indicado
+     */
+    public static Connection getConnection(Pool pool) throws SQLException {
+        HikariDataSource ds = getDataSource(pool);
+        if (ds == null) {
+            throw new SQLException("DataSource no inicializado. Llamar a initialize() primero.");
+        }
+        return ds.getConnection();
+    }
+    
+    /**
+     * Devuelve el DataSource del pool (el transaccional si el de reportes está deshabilitado)
+     */
+    private static HikariDataSource getDataSource(Pool pool) {
+        HikariDataSource ds = dataSources.get(pool);
+        return ds != null ? ds : dataSources.get(Pool.TRANSACCIONAL);
+    }
+    
+    /**
+     * Indica si el pool tiene DataSource propio (false si usa el transaccional)
+     */
+    public static boolean isPoolEnabled(Pool pool) {
+        return dataSources.containsKey(pool);
+    }
+    
+    /**
+     * Abre una conexión dedicada fuera del pool (p. ej. para LISTEN).
+     * El llamador es responsable de cerrarla.
+     */
+    public static Connection createDedicatedConnection() throws SQLException {
+        if (jdbcUrl == null) {
             throw new SQLException("DataSource no inicializado. Llamar a initialize() primero.");
         }
-        return dataSource.getConnection();
+        return DriverManager.getConnection(jdbcUrl, dbUsername, dbPassword);
     }
     
     /**
-     * Cierra el pool de conexiones
+     * Cierra los pools de conexiones
      */
     public static void close() {
-        if (dataSource != null && !dataSource.isClosed()) {
-            dataSource.close();
-            logger.info("Pool de conexiones cerrado correctamente");
+        for (HikariDataSource ds : dataSources.values()) {
+            if (!ds.isClosed()) {
+                ds.close();
+                logger.info("Pool de conexiones {} cerrado correctamente", ds.getPoolName());
+            }
         }
     }
     
@@ -141,9 +244,43 @@ public class DatabaseConfig {
             setDefaultProperties(props);
         }
         
+        // Un application.properties junto a la aplicación reemplaza claves del empaquetado
+        Path external = getExternalFile();
+        if (Files.isRegularFile(external)) {
+            try (InputStream input = Files.newInputStream(external)) {
+                props.load(input);
+                logger.info("✓ Propiedades cargadas desde {}", external.toAbsolutePath());
+            }
+        }
+        
         return props;
     }
     
+    /**
+     * Archivo de propiedades externo (-Dconfig.file), vigilado por ConfigService
+     */
+    static Path getExternalFile() {
+        return Paths.get(System.getProperty("config.file", "application.properties"));
+    }
+    
+    /**
+     * Vuelve a leer las propiedades; los pools ya creados no cambian
+     */
+    static void reloadProperties() throws IOException {
+        properties = loadProperties();
+    }
+    
+    /**
+     * Propiedades actuales (se cargan si todavía no se leyeron)
+     */
+    static Properties getProperties() {
+        if (properties == null) {
+            getProperty("db.host");
+        }
+        Properties current = properties;
+        return current != null ? current : new Properties();
+    }
+    
     /**
      * Establece propiedades por defecto
      */
@@ -161,11 +298,72 @@ public class DatabaseConfig {
         props.setProperty("db.pool.connectionTimeout", "30000");
         props.setProperty("db.pool.idleTimeout", "600000");
         props.setProperty("db.pool.maxLifetime", "1800000");
+        props.setProperty("db.pool.statementTimeout", "10000");
+        
+        // Pool de reportes
+        props.setProperty("db.report.enabled", "true");
+        props.setProperty("db.report.maxPoolSize", "4");
+        props.setProperty("db.report.minIdle", "0");
+        props.setProperty("db.report.connectionTimeout", "60000");
+        props.setProperty("db.report.statementTimeout", "300000");
+        
+        // Notificaciones de cambios
+        props.setProperty("db.notify.enabled", "true");
+        props.setProperty("db.notify.reconnectDelay", "5000");
+        
+        // Métricas
+        props.setProperty("metrics.log.intervalSeconds", "0");
+        props.setProperty("metrics.http.enabled", "false");
+        props.setProperty("metrics.http.bindAddress", "127.0.0.1");
+        props.setProperty("metrics.http.port", "9464");
+        props.setProperty("monitoring.jfr.enabled", "false");
+        props.setProperty("monitoring.jfr.maxAgeMinutes", "30");
+        props.setProperty("monitoring.jfr.maxSizeMB", "64");
+        props.setProperty("monitoring.jfr.dumpDir", "logs/jfr");
+        props.setProperty("monitoring.edt.enabled", "true");
+        props.setProperty("monitoring.edt.probeIntervalMs", "200");
+        props.setProperty("monitoring.edt.stallThresholdMs", "500");
+        
+        // Reportes
+        props.setProperty("reports.csv.gzip", "false");
+        props.setProperty("reports.jobs.maxConcurrent", "2");
+        props.setProperty("reports.jobs.queueCapacity", "20");
+        props.setProperty("reports.jobs.station", "");
+        props.setProperty("reports.cache.enabled", "true");
+        props.setProperty("reports.cache.maxMB", "64");
+        props.setProperty("reports.table.inMemoryRows", "20000");
+        props.setProperty("reports.heatmap.days", "90");
+        props.setProperty("cache.reference.ttlSeconds", "300");
+        
+        // Jornadas
+        props.setProperty("sessions.maxHours", "16");
+        props.setProperty("sessions.duplicateMinutes", "2");
+        props.setProperty("sessions.defaultWorkdayMinutes", "480");
+        props.setProperty("sessions.usersPerTask", "64");
         
         // Arduino - BAUDRATE CORRECTO
         props.setProperty("arduino.baudRate", "57600");
         props.setProperty("arduino.timeout", "20000");
         
+        // Respaldo
+        props.setProperty("backup.dir", "backups");
+        props.setProperty("backup.chunkRows", "100000");
+        props.setProperty("backup.restoreParallelism", "2");
+        props.setProperty("backup.overlapIds", "10000");
+        props.setProperty("backup.overlapMinutes", "60");
+        
+        // Retención de logs
+        props.setProperty("logs.retention.enabled", "true");
+        props.setProperty("logs.retention.time", "03:00");
+        props.setProperty("logs.retention.policies", "DEBUG:30,INFO:90,INFO/ASISTENCIA:30,WARNING:365");
+        props.setProperty("logs.retention.batchSize", "5000");
+        props.setProperty("logs.retention.pauseMillis", "200");
+        props.setProperty("logs.retention.maxMinutes", "30");
+        
+        // Importación de marcaciones legadas
+        props.setProperty("import.legacy.batchRows", "100000");
+        props.setProperty("import.legacy.parallelism", "4");
+        
         // Sensor
         props.setProperty("sensor.confidenceThreshold", "50");
         props.setProperty("sensor.enableBuzzer", "true");
@@ -195,20 +393,37 @@ public class DatabaseConfig {
     }
     
     /**
-     * Obtiene estadísticas del pool de conexiones
+     * Obtiene estadísticas del pool transaccional
      */
     public static String getPoolStats() {
-        if (dataSource == null) {
+        return getPoolStats(Pool.TRANSACCIONAL);
+    }
+    
+    /**
+     * Obtiene estadísticas del pool de conexiones indicado
+     */
+    public static String getPoolStats(Pool pool) {
+        HikariDataSource ds = getDataSource(pool);
+        if (ds == null) {
             return "Pool no inicializado";
         }
         
+        HikariPoolMXBean mxBean = ds.getHikariPoolMXBean();
         return String.format(
             "Pool: %s | Activas: %d | Inactivas: %d | Total: %d | Esperando: %d",
-            dataSource.getPoolName(),
-            dataSource.getHikariPoolMXBean().getActiveConnections(),
-            dataSource.getHikariPoolMXBean().getIdleConnections(),
-            dataSource.getHikariPoolMXBean().getTotalConnections(),
-            dataSource.getHikariPoolMXBean().getThreadsAwaitingConnection()
+            ds.getPoolName(),
+            mxBean.getActiveConnections(),
+            mxBean.getIdleConnections(),
+            mxBean.getTotalConnections(),
+            mxBean.getThreadsAwaitingConnection()
         );
     }
+    
+    /**
+     * Obtiene el MXBean de Hikari del pool (null si no está inicializado)
+     */
+    public static HikariPoolMXBean getPoolMXBean(Pool pool) {
+        HikariDataSource ds = getDataSource(pool);
+        return ds != null ? ds.getHikariPoolMXBean() : null;
+    }
 }
@@ -0,0 +1,115 @@
+package com.attendance.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector CSV (RFC 4180) en streaming
+ * Acepta comillas con saltos de línea dentro, BOM de UTF-8 y separador
+ * ',' o ';' (Excel en español guarda con ';'), detectado en la cabecera.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class CsvRowReader implements RowReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Override
+    public void read(Path file, RowHandler handler) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                Files.newBufferedReader(file, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            reader.mark(1);
+            if (reader.read() != '\uFEFF') {
+                reader.reset();
+            }
+            char separator = detectSeparator(reader);
+
+            List<String> valores = new ArrayList<>();
+            StringBuilder campo = new StringBuilder();
+            boolean entreComillas = false;
+            boolean filaVacia = true;
+            int numero = 1;
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (entreComillas) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            campo.append('"');
+                        } else {
+                            reader.reset();
+                            entreComillas = false;
+                        }
+                    } else {
+                        campo.append((char) c);
+                    }
+                } else if (c == '"') {
+                    entreComillas = true;
+                    filaVacia = false;
+                } else if (c == separator) {
+                    valores.add(campo.toString());
+                    campo.setLength(0);
+                    filaVacia = false;
+                } else if (c == '\n' || c == '\r') {
+                    if (c == '\r') {
+                        reader.mark(1);
+                        if (reader.read() != '\n') {
+                            reader.reset();
+                        }
+                    }
+                    if (!filaVacia || campo.length() > 0) {
+                        valores.add(campo.toString());
+                        handler.row(numero, valores);
+                        valores = new ArrayList<>();
+                    }
+                    campo.setLength(0);
+                    filaVacia = true;
+                    numero++;
+                } else {
+                    campo.append((char) c);
+                    filaVacia = false;
+                }
+            }
+            if (entreComillas) {
+                throw new IOException("Comillas sin cerrar en la fila " + numero);
+            }
+            if (!filaVacia || campo.length() > 0) {
+                valores.add(campo.toString());
+                handler.row(numero, valores);
+            }
+        }
+    }
+
+    /**
+     * Cuenta ',' y ';' fuera de comillas en la primera línea
+     */
+    private static char detectSeparator(BufferedReader reader) throws IOException {
+        reader.mark(BUFFER_SIZE);
+        int comas = 0;
+        int puntoYComa = 0;
+        boolean entreComillas = false;
+        int leidos = 0;
+        int c;
+        while ((c = reader.read()) != -1 && ++leidos < BUFFER_SIZE) {
+            if (c == '"') {
+                entreComillas = !entreComillas;
+            } else if (!entreComillas) {
+                if (c == '\n' || c == '\r') {
+                    break;
+                } else if (c == ',') {
+                    comas++;
+                } else if (c == ';') {
+                    puntoYComa++;
+                }
+            }
+        }
+        reader.reset();
+        return puntoYComa > comas ? ';' : ',';
+    }
+}
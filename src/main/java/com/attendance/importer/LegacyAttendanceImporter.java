@@ -0,0 +1,539 @@
+package com.attendance.importer;
+
+import com.attendance.config.DatabaseConfig;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Importa marcaciones históricas de otro reloj (CSV con DNI y fecha/hora)
+ * Uso: LegacyAttendanceImporter archivo.csv [hilos] [filasPorLote]
+ *
+ * El archivo se lee una sola vez; el DNI se resuelve con un índice en memoria
+ * y las filas se agrupan en lotes que se cargan en paralelo, cada uno en su
+ * propia transacción: COPY a una tabla temporal y un INSERT ... SELECT que
+ * descarta las marcaciones que ya existen. Cada lote confirmado queda en
+ * importaciones_legado, así una ejecución interrumpida se retoma donde quedó.
+ *
+ * Sin columna de tipo, las marcaciones de cada usuario y día se alternan
+ * ENTRADA/SALIDA contando también las que ya están en asistencias. Cada lote
+ * bloquea los días que carga (pg_advisory_xact_lock), así dos lotes con el
+ * mismo día no se cruzan ni insertan dos veces la misma marcación: con el
+ * archivo ordenado por fecha el corte espera a que cambie el día y los lotes
+ * no comparten días; si no está ordenado, los lotes que comparten días se
+ * cargan de a uno.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class LegacyAttendanceImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LegacyAttendanceImporter.class);
+
+    private static final String STAGING = "asistencias_legado";
+    private static final String REGISTRADO_POR = "importacion-legado";
+    private static final int MAX_LOGGED_REJECTS = 20;
+
+    private static final DateTimeFormatter FECHA_ISO = new DateTimeFormatterBuilder()
+        .appendPattern("uuuu-MM-dd")
+        .optionalStart().appendLiteral('T').optionalEnd()
+        .optionalStart().appendLiteral(' ').optionalEnd()
+        .appendPattern("HH:mm")
+        .optionalStart().appendPattern(":ss").optionalEnd()
+        .optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true).optionalEnd()
+        .toFormatter();
+    private static final DateTimeFormatter FECHA_LATINA = DateTimeFormatter.ofPattern("d/M/uuuu H:mm[:ss]");
+
+    private LegacyAttendanceImporter() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Uso: LegacyAttendanceImporter archivo.csv [hilos] [filasPorLote]");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[0]);
+        int parallelism = args.length >= 2 ? Integer.parseInt(args[1])
+            : Integer.parseInt(DatabaseConfig.getProperty("import.legacy.parallelism", "4"));
+        int batchRows = args.length >= 3 ? Integer.parseInt(args[2])
+            : Integer.parseInt(DatabaseConfig.getProperty("import.legacy.batchRows", "100000"));
+
+        DatabaseConfig.initialize();
+        try {
+            Result result = importFile(file, parallelism, batchRows);
+            System.out.printf("Filas leídas: %,d%nInsertadas: %,d%nYa existentes: %,d%nRechazadas: %,d%n" +
+                    "Lotes retomados (ya cargados): %,d%nTiempo: %,d ms (%,.0f filas/s)%n",
+                result.filasLeidas, result.insertadas, result.duplicadas, result.rechazadas,
+                result.lotesOmitidos, result.millis, result.filasLeidas * 1000.0 / Math.max(1, result.millis));
+        } catch (Exception e) {
+            logger.error("Importación interrumpida; vuelva a ejecutarla para continuar", e);
+            System.exit(1);
+        } finally {
+            DatabaseConfig.close();
+        }
+    }
+
+    /**
+     * Importa el archivo; los lotes ya registrados en importaciones_legado se saltan
+     */
+    public static Result importFile(Path file, int parallelism, int batchRows)
+            throws IOException, SQLException, InterruptedException {
+        long start = System.currentTimeMillis();
+        // Mismo archivo y mismo tamaño de lote = mismos cortes, condición para retomar
+        String clave = file.getFileName() + ":" + Files.size(file) + ":" + batchRows;
+
+        Map<String, Integer> dnis;
+        Set<Integer> cargados;
+        try (Connection conn = DatabaseConfig.createDedicatedConnection()) {
+            dnis = loadDniIndex(conn);
+            cargados = loadCompletedBatches(conn, clave);
+        }
+        if (!cargados.isEmpty()) {
+            logger.info("Retomando importación de {}: {} lotes ya cargados", file.getFileName(), cargados.size());
+        }
+
+        BlockingQueue<Connection> connections = new ArrayBlockingQueue<>(parallelism);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "legacy-import");
+            t.setDaemon(true);
+            return t;
+        });
+        // Como máximo dos lotes en espera por hilo: la memoria no crece con el archivo
+        Semaphore pendientes = new Semaphore(parallelism * 2);
+        AtomicReference<Exception> error = new AtomicReference<>();
+        AtomicLong insertadas = new AtomicLong();
+        AtomicLong enviadas = new AtomicLong();
+        Path rechazos = file.resolveSibling(file.getFileName() + ".rechazados.csv");
+
+        Parser parser;
+        try (Writer rejectWriter = Files.newBufferedWriter(rechazos, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < parallelism; i++) {
+                Connection conn = DatabaseConfig.createDedicatedConnection();
+                conn.setAutoCommit(false);
+                connections.add(conn);
+            }
+
+            parser = new Parser(dnis, batchRows, rejectWriter, batch -> {
+                if (error.get() != null) {
+                    throw new IOException("Importación cancelada por un error en otro lote", error.get());
+                }
+                if (cargados.contains(batch.numero)) {
+                    return false;
+                }
+                pendientes.acquireUninterruptibly();
+                executor.execute(() -> {
+                    Connection conn = connections.poll();
+                    try {
+                        if (error.get() == null) {
+                            int filas = loadBatch(conn, clave, batch);
+                            insertadas.addAndGet(filas);
+                            long total = enviadas.addAndGet(batch.aceptadas);
+                            long elapsed = Math.max(1, System.currentTimeMillis() - start);
+                            logger.info("Lote {}: {} filas, {} nuevas ({} filas/s acumulado)",
+                                batch.numero, batch.aceptadas, filas, total * 1000 / elapsed);
+                        }
+                    } catch (SQLException | IOException e) {
+                        error.compareAndSet(null, e);
+                        logger.error("Error en el lote {}", batch.numero, e);
+                    } finally {
+                        connections.add(conn);
+                        pendientes.release();
+                    }
+                });
+                return true;
+            });
+            new CsvRowReader().read(file, parser::accept);
+            parser.flush();
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            for (Connection conn : connections) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    logger.warn("Error al cerrar conexión de importación", e);
+                }
+            }
+        }
+
+        if (error.get() != null) {
+            Exception e = error.get();
+            if (e instanceof SQLException) {
+                throw (SQLException) e;
+            }
+            throw (IOException) e;
+        }
+
+        if (insertadas.get() > 0) {
+            // Las marcaciones se cargaron sin aviso por fila; los paneles recargan una vez
+            try (Connection conn = DatabaseConfig.createDedicatedConnection()) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SELECT pg_notify('cambios_asistencias', 'R|0')");
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "INSERT INTO logs_sistema (nivel, modulo, mensaje, usuario) VALUES ('INFO', 'ASISTENCIA', ?, ?)")) {
+                    pstmt.setString(1, "Importación legada de " + file.getFileName() + ": " +
+                        insertadas.get() + " marcaciones");
+                    pstmt.setString(2, REGISTRADO_POR);
+                    pstmt.executeUpdate();
+                }
+            }
+        }
+
+        Result result = new Result(parser.filas, insertadas.get(), enviadas.get() - insertadas.get(),
+            parser.rechazadas, parser.omitidos, System.currentTimeMillis() - start);
+        logger.info("Importación de {} terminada: {} filas, {} nuevas, {} ya existentes, {} rechazadas (ver {}), {} ms",
+            file.getFileName(), result.filasLeidas, result.insertadas, result.duplicadas, result.rechazadas,
+            rechazos.getFileName(), result.millis);
+        return result;
+    }
+
+    /**
+     * Carga un lote en una transacción: COPY, bloqueo de sus días, deduplicación e insert, y registro del lote
+     */
+    private static int loadBatch(Connection conn, String clave, Batch batch) throws SQLException, IOException {
+        try {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SELECT set_config('asistencia.silenciar_notify', 'on', true)");
+                stmt.execute("CREATE TEMP TABLE " + STAGING + " (id_usuario INTEGER, fecha_hora TIMESTAMP, " +
+                             "tipo_marcacion VARCHAR(20)) ON COMMIT DROP");
+            }
+            CopyManager copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+            copyManager.copyIn("COPY " + STAGING + " FROM STDIN WITH (FORMAT csv)",
+                new ByteArrayInputStream(batch.csv.toString().getBytes(StandardCharsets.UTF_8)));
+
+            try (Statement stmt = conn.createStatement()) {
+                // Sin estadísticas el planificador no elige el anti-join por hash
+                stmt.execute("ANALYZE " + STAGING);
+                // Un lote a la vez por día, en orden para no provocar bloqueos mutuos; se liberan al confirmar.
+                // El INSERT siguiente toma su instantánea después y ve lo que confirmaron los otros lotes,
+                // así el NOT EXISTS basta para no duplicar marcaciones.
+                stmt.execute("SELECT pg_advisory_xact_lock(hashtext('" + STAGING + "'), dia) " +
+                             "FROM (SELECT DISTINCT fecha_hora::date - DATE '2000-01-01' AS dia " +
+                             "      FROM " + STAGING + " ORDER BY dia) d");
+            }
+
+            int insertadas;
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "WITH nuevas AS (" +
+                    "    SELECT DISTINCT ON (id_usuario, fecha_hora) id_usuario, fecha_hora, tipo_marcacion " +
+                    "    FROM " + STAGING + " ORDER BY id_usuario, fecha_hora" +
+                    "), dias AS (" +
+                    "    SELECT DISTINCT id_usuario, fecha_hora::date AS dia FROM nuevas" +
+                    "), existentes AS (" +
+                    "    SELECT a.id_usuario, a.fecha_hora FROM asistencias a " +
+                    "    JOIN dias d ON a.id_usuario = d.id_usuario " +
+                    "     AND a.fecha_hora >= d.dia AND a.fecha_hora < d.dia + 1" +
+                    "), numeradas AS (" +
+                    // La alternancia cuenta las marcaciones del día que ya estaban cargadas
+                    "    SELECT id_usuario, fecha_hora, tipo_marcacion, nueva, " +
+                    "           ROW_NUMBER() OVER (PARTITION BY id_usuario, fecha_hora::date ORDER BY fecha_hora) AS posicion " +
+                    "    FROM (SELECT n.id_usuario, n.fecha_hora, n.tipo_marcacion, TRUE AS nueva FROM nuevas n " +
+                    "          WHERE NOT EXISTS (SELECT 1 FROM existentes e " +
+                    "                            WHERE e.id_usuario = n.id_usuario AND e.fecha_hora = n.fecha_hora) " +
+                    "          UNION ALL " +
+                    "          SELECT id_usuario, fecha_hora, NULL, FALSE FROM existentes) t" +
+                    ") " +
+                    "INSERT INTO asistencias (id_usuario, fecha_hora, tipo_marcacion, metodo, dispositivo, registrado_por) " +
+                    "SELECT id_usuario, fecha_hora, " +
+                    "       COALESCE(tipo_marcacion, CASE WHEN posicion % 2 = 1 THEN 'ENTRADA' ELSE 'SALIDA' END), " +
+                    "       'MANUAL', 'RELOJ_LEGADO', ? " +
+                    "FROM numeradas WHERE nueva")) {
+                pstmt.setString(1, REGISTRADO_POR);
+                insertadas = pstmt.executeUpdate();
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO importaciones_legado (clave, lote, filas, insertadas) VALUES (?, ?, ?, ?)")) {
+                pstmt.setString(1, clave);
+                pstmt.setInt(2, batch.numero);
+                pstmt.setInt(3, batch.aceptadas);
+                pstmt.setInt(4, insertadas);
+                pstmt.executeUpdate();
+            }
+            conn.commit();
+            return insertadas;
+        } catch (SQLException | IOException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * DNI normalizado (sin puntos, guiones ni espacios) → id_usuario
+     */
+    private static Map<String, Integer> loadDniIndex(Connection conn) throws SQLException {
+        Map<String, Integer> index = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT dni, id_usuario FROM usuarios")) {
+            while (rs.next()) {
+                index.put(normalizeDni(rs.getString(1)), rs.getInt(2));
+            }
+        }
+        logger.info("Índice de DNI cargado: {} usuarios", index.size());
+        return index;
+    }
+
+    private static Set<Integer> loadCompletedBatches(Connection conn, String clave) throws SQLException {
+        Set<Integer> lotes = new HashSet<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT lote FROM importaciones_legado WHERE clave = ?")) {
+            pstmt.setString(1, clave);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    lotes.add(rs.getInt(1));
+                }
+            }
+        }
+        return lotes;
+    }
+
+    static String normalizeDni(String dni) {
+        return dni.replaceAll("[.\\-\\s]", "").toUpperCase(Locale.ROOT);
+    }
+
+    static LocalDateTime parseFechaHora(String value) {
+        String trimmed = value.trim();
+        return trimmed.length() > 4 && trimmed.charAt(4) == '-'
+            ? LocalDateTime.parse(trimmed, FECHA_ISO)
+            : LocalDateTime.parse(trimmed, FECHA_LATINA);
+    }
+
+    static String parseTipo(String value) {
+        switch (value.trim().toUpperCase(Locale.ROOT)) {
+            case "ENTRADA":
+            case "E":
+            case "IN":
+            case "I":
+            case "0":
+                return "ENTRADA";
+            case "SALIDA":
+            case "S":
+            case "OUT":
+            case "O":
+            case "1":
+                return "SALIDA";
+            case "ENTRADA_BREAK":
+                return "ENTRADA_BREAK";
+            case "SALIDA_BREAK":
+                return "SALIDA_BREAK";
+            default:
+                throw new IllegalArgumentException("Tipo de marcación desconocido: " + value);
+        }
+    }
+
+    interface BatchSink {
+        /**
+         * @return false si el lote ya estaba cargado y se omitió
+         */
+        boolean submit(Batch batch) throws IOException;
+    }
+
+    /**
+     * Filas de un lote en CSV listo para COPY (id_usuario,fecha_hora,tipo)
+     */
+    static class Batch {
+        final int numero;
+        final StringBuilder csv = new StringBuilder();
+        /** Filas de datos del archivo en el lote, aceptadas o no: define los cortes */
+        int filas;
+        int aceptadas;
+
+        Batch(int numero) {
+            this.numero = numero;
+        }
+    }
+
+    /**
+     * Convierte filas del archivo en lotes; corre en el hilo lector
+     */
+    static class Parser {
+        private final Map<String, Integer> dnis;
+        private final int batchRows;
+        private final Writer rejectWriter;
+        private final BatchSink sink;
+
+        private int colDni = 0;
+        private int colFecha = 1;
+        private int colHora = -1;
+        private int colTipo = -1;
+        private boolean first = true;
+
+        private Batch batch = new Batch(0);
+        private LocalDate ultimoDia;
+        private long filas;
+        private long rechazadas;
+        private int omitidos;
+
+        Parser(Map<String, Integer> dnis, int batchRows, Writer rejectWriter, BatchSink sink) {
+            this.dnis = dnis;
+            this.batchRows = batchRows;
+            this.rejectWriter = rejectWriter;
+            this.sink = sink;
+        }
+
+        void accept(int numero, List<String> valores) throws IOException {
+            if (first) {
+                first = false;
+                if (readHeader(valores)) {
+                    return;
+                }
+            }
+            filas++;
+
+            LocalDateTime fechaHora;
+            Integer idUsuario;
+            String tipo;
+            try {
+                String dni = get(valores, colDni);
+                idUsuario = dnis.get(normalizeDni(dni));
+                if (idUsuario == null) {
+                    throw new IllegalArgumentException("DNI sin usuario: " + dni);
+                }
+                String fecha = get(valores, colFecha);
+                fechaHora = parseFechaHora(colHora >= 0 ? fecha + " " + get(valores, colHora) : fecha);
+                String tipoValor = colTipo >= 0 && colTipo < valores.size() ? valores.get(colTipo).trim() : "";
+                tipo = tipoValor.isEmpty() ? null : parseTipo(tipoValor);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                reject(numero, valores, e.getMessage());
+                batch.filas++;
+                return;
+            }
+
+            // El corte se hace al cambiar de día para no partir la jornada de un usuario
+            LocalDate dia = fechaHora.toLocalDate();
+            if (batch.filas >= batchRows && !dia.equals(ultimoDia)) {
+                flush();
+                batch = new Batch(batch.numero + 1);
+            }
+            ultimoDia = dia;
+            batch.filas++;
+            batch.aceptadas++;
+            batch.csv.append(idUsuario).append(',').append(fechaHora).append(',');
+            if (tipo != null) {
+                batch.csv.append(tipo);
+            }
+            batch.csv.append('\n');
+        }
+
+        void flush() throws IOException {
+            if (batch.filas > 0 && !sink.submit(batch)) {
+                omitidos++;
+            }
+        }
+
+        /**
+         * @return true si la primera fila es una cabecera
+         */
+        private boolean readHeader(List<String> valores) {
+            if (valores.size() >= 2) {
+                try {
+                    parseFechaHora(valores.get(1));
+                    // Sin cabecera: dni, fecha_hora[, tipo]
+                    colTipo = valores.size() >= 3 ? 2 : -1;
+                    return false;
+                } catch (DateTimeParseException e) {
+                    // Es una cabecera
+                }
+            }
+            colDni = colFecha = -1;
+            for (int i = 0; i < valores.size(); i++) {
+                switch (UserImportService.normalizeHeader(valores.get(i))) {
+                    case "dni":
+                    case "cin":
+                    case "ci":
+                    case "cedula":
+                        colDni = i;
+                        break;
+                    case "fechahora":
+                    case "fecha":
+                    case "timestamp":
+                    case "marcacion":
+                        colFecha = i;
+                        break;
+                    case "hora":
+                        colHora = i;
+                        break;
+                    case "tipo":
+                    case "tipomarcacion":
+                        colTipo = i;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (colDni < 0 || colFecha < 0) {
+                throw new IllegalArgumentException("La cabecera debe tener columnas dni y fecha_hora: " + valores);
+            }
+            return true;
+        }
+
+        private static String get(List<String> valores, int columna) {
+            String value = columna < valores.size() ? valores.get(columna).trim() : "";
+            if (value.isEmpty()) {
+                throw new IllegalArgumentException("Falta la columna " + (columna + 1));
+            }
+            return value;
+        }
+
+        private void reject(int numero, List<String> valores, String motivo) throws IOException {
+            rechazadas++;
+            if (rechazadas <= MAX_LOGGED_REJECTS) {
+                logger.warn("Fila {} rechazada: {}", numero, motivo);
+            }
+            rejectWriter.write(numero + ";" + motivo.replace(';', ',') + ";" + String.join(";", valores) + "\n");
+        }
+    }
+
+    public static class Result {
+        public final long filasLeidas;
+        public final long insertadas;
+        /** Aceptadas que ya estaban en asistencias (o repetidas en el lote) */
+        public final long duplicadas;
+        public final long rechazadas;
+        public final int lotesOmitidos;
+        public final long millis;
+
+        Result(long filasLeidas, long insertadas, long duplicadas, long rechazadas, int lotesOmitidos, long millis) {
+            this.filasLeidas = filasLeidas;
+            this.insertadas = insertadas;
+            this.duplicadas = duplicadas;
+            this.rechazadas = rechazadas;
+            this.lotesOmitidos = lotesOmitidos;
+            this.millis = millis;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.attendance.importer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Lectura fila por fila de un archivo tabular (CSV o XLSX) sin cargarlo completo en memoria
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public interface RowReader {
+
+    /**
+     * Recorre el archivo entregando cada fila (incluida la cabecera) al handler
+     */
+    void read(Path file, RowHandler handler) throws IOException;
+
+    /**
+     * Elige el lector según la extensión del archivo
+     */
+    static RowReader forFile(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".xlsx")) {
+            return new XlsxRowReader();
+        }
+        if (name.endsWith(".csv") || name.endsWith(".txt")) {
+            return new CsvRowReader();
+        }
+        throw new IOException("Formato no soportado (use CSV o XLSX): " + file.getFileName());
+    }
+
+    interface RowHandler {
+        /**
+         * @param numero número de fila en el archivo, empezando en 1
+         * @param valores celdas de la fila; las vacías llegan como ""
+         */
+        void row(int numero, List<String> valores) throws IOException;
+    }
+}
@@ -0,0 +1,470 @@
+package com.attendance.importer;
+
+import com.attendance.config.DatabaseConfig;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Importación masiva de usuarios desde CSV o XLSX
+ * El archivo se lee en streaming; cada fila se valida en memoria (DNI y
+ * email únicos, departamento y rol existentes) y las válidas se envían por
+ * COPY a una tabla temporal. Después dos sentencias actualizan los DNI que ya
+ * existen e insertan los nuevos, todo en una transacción.
+ *
+ * Columnas reconocidas en la cabecera (sin importar mayúsculas ni tildes):
+ * dni, nombres, apellidos, email, telefono, departamento, rol, direccion,
+ * fecha_nacimiento, genero, activo, observaciones. Las celdas vacías no
+ * borran los datos de un usuario existente.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class UserImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserImportService.class);
+
+    private static final String STAGING = "usuarios_importacion";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final Pattern EMAIL = Pattern.compile("^[A-Za-z0-9+_.-]+@(.+)$");
+    private static final Pattern DNI = Pattern.compile("^[A-Za-z0-9.-]+$");
+    private static final DateTimeFormatter FECHA_LATINA = DateTimeFormatter.ofPattern("d/M/yyyy");
+
+    enum Columna {
+        DNI(true, 20, "dni", "cin", "ci", "cedula"),
+        NOMBRES(true, 100, "nombres", "nombre"),
+        APELLIDOS(true, 100, "apellidos", "apellido"),
+        EMAIL(false, 150, "email", "correo", "correoelectronico"),
+        TELEFONO(false, 20, "telefono", "celular"),
+        DEPARTAMENTO(false, 0, "departamento"),
+        ROL(false, 0, "rol"),
+        DIRECCION(false, 0, "direccion"),
+        FECHA_NACIMIENTO(false, 0, "fechanacimiento", "fechadenacimiento", "nacimiento"),
+        GENERO(false, 0, "genero", "sexo"),
+        ACTIVO(false, 0, "activo"),
+        OBSERVACIONES(false, 0, "observaciones");
+
+        final boolean obligatoria;
+        /** Largo máximo en la tabla; 0 = sin límite o validado aparte */
+        final int largo;
+        final String[] nombres;
+
+        Columna(boolean obligatoria, int largo, String... nombres) {
+            this.obligatoria = obligatoria;
+            this.largo = largo;
+            this.nombres = nombres;
+        }
+    }
+
+    private UserImportService() {
+    }
+
+    /**
+     * Importa el archivo; las filas con errores se omiten y se informan en el resultado
+     *
+     * @param usuarioRegistro se guarda en usuarios.usuario_registro de los nuevos
+     */
+    public static Result importFile(Path file, String usuarioRegistro) throws IOException, SQLException {
+        long start = System.currentTimeMillis();
+        RowReader reader = RowReader.forFile(file);
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SET LOCAL statement_timeout = 0");
+                    // Un solo aviso de recarga al final en lugar de uno por usuario
+                    stmt.execute("SELECT set_config('asistencia.silenciar_notify', 'on', true)");
+                    stmt.execute("CREATE TEMP TABLE " + STAGING + " (" +
+                        "dni VARCHAR(20), nombres VARCHAR(100), apellidos VARCHAR(100), " +
+                        "email VARCHAR(150), telefono VARCHAR(20), id_rol INTEGER, id_departamento INTEGER, " +
+                        "direccion TEXT, fecha_nacimiento DATE, genero VARCHAR(10), activo BOOLEAN, " +
+                        "observaciones TEXT) ON COMMIT DROP");
+                }
+
+                // Las búsquedas se cargan antes de abrir el COPY, que ocupa la conexión
+                Validator validator = new Validator(
+                    loadNames(conn, "SELECT id_departamento, nombre FROM departamentos"),
+                    loadNames(conn, "SELECT id_rol, nombre FROM roles"),
+                    loadEmails(conn));
+
+                PGCopyOutputStream copy = new PGCopyOutputStream(conn.unwrap(PGConnection.class),
+                    "COPY " + STAGING + " FROM STDIN WITH (FORMAT csv)", COPY_BUFFER_SIZE);
+                try {
+                    Writer out = new BufferedWriter(new OutputStreamWriter(copy, StandardCharsets.UTF_8));
+                    reader.read(file, (numero, valores) -> validator.accept(numero, valores, out));
+                    out.flush();
+                    copy.close();
+                } catch (IOException | RuntimeException e) {
+                    if (copy.isActive()) {
+                        copy.cancelCopy();
+                    }
+                    throw e;
+                }
+                if (!validator.headerRead) {
+                    throw new IOException("El archivo está vacío");
+                }
+
+                int actualizados;
+                int insertados;
+                try (Statement stmt = conn.createStatement()) {
+                    actualizados = stmt.executeUpdate(
+                        "UPDATE usuarios u SET nombres = s.nombres, apellidos = s.apellidos, " +
+                        "email = COALESCE(s.email, u.email), telefono = COALESCE(s.telefono, u.telefono), " +
+                        "id_rol = COALESCE(s.id_rol, u.id_rol), " +
+                        "id_departamento = COALESCE(s.id_departamento, u.id_departamento), " +
+                        "direccion = COALESCE(s.direccion, u.direccion), " +
+                        "fecha_nacimiento = COALESCE(s.fecha_nacimiento, u.fecha_nacimiento), " +
+                        "genero = COALESCE(s.genero, u.genero), activo = COALESCE(s.activo, u.activo), " +
+                        "observaciones = COALESCE(s.observaciones, u.observaciones) " +
+                        "FROM " + STAGING + " s WHERE u.dni = s.dni");
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "INSERT INTO usuarios (dni, nombres, apellidos, email, telefono, id_rol, id_departamento, " +
+                        "direccion, fecha_nacimiento, genero, activo, observaciones, usuario_registro) " +
+                        "SELECT dni, nombres, apellidos, email, telefono, id_rol, id_departamento, direccion, " +
+                        "fecha_nacimiento, genero, COALESCE(activo, TRUE), observaciones, ? " +
+                        "FROM " + STAGING + " s WHERE NOT EXISTS (SELECT 1 FROM usuarios u WHERE u.dni = s.dni) " +
+                        "ON CONFLICT (dni) DO NOTHING")) {
+                    pstmt.setString(1, usuarioRegistro);
+                    insertados = pstmt.executeUpdate();
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "INSERT INTO logs_sistema (nivel, modulo, mensaje, usuario) VALUES ('INFO', 'USUARIOS', ?, ?)")) {
+                    pstmt.setString(1, String.format("Importación de %s: %d nuevos, %d actualizados, %d filas con errores",
+                        file.getFileName(), insertados, actualizados, validator.errores.size()));
+                    pstmt.setString(2, usuarioRegistro);
+                    pstmt.executeUpdate();
+                }
+                conn.commit();
+
+                if (insertados + actualizados > 0) {
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute("SELECT pg_notify('cambios_usuarios', 'R|0')");
+                    }
+                    conn.commit();
+                }
+
+                Result result = new Result(validator.filas, insertados, actualizados, validator.errores,
+                    System.currentTimeMillis() - start);
+                logger.info("Importación de {}: {} filas, {} nuevos, {} actualizados, {} errores en {} ms",
+                    file.getFileName(), result.filasLeidas, insertados, actualizados, result.errores.size(), result.millis);
+                return result;
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static Map<String, Integer> loadNames(Connection conn, String sql) throws SQLException {
+        Map<String, Integer> ids = new HashMap<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                ids.put(normalizeName(rs.getString(2)), rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Email en minúsculas → DNI de su propietario actual
+     */
+    private static Map<String, String> loadEmails(Connection conn) throws SQLException {
+        Map<String, String> emails = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT email, dni FROM usuarios WHERE email IS NOT NULL")) {
+            while (rs.next()) {
+                emails.put(rs.getString(1).toLowerCase(Locale.ROOT), rs.getString(2));
+            }
+        }
+        return emails;
+    }
+
+    /**
+     * Minúsculas, sin tildes y solo letras y dígitos: "Fecha de Nacimiento" → "fechadenacimiento"
+     */
+    static String normalizeHeader(String value) {
+        String sinTildes = Normalizer.normalize(value, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return sinTildes.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+    }
+
+    private static String normalizeName(String value) {
+        return Normalizer.normalize(value.trim(), Normalizer.Form.NFD).replaceAll("\\p{M}", "")
+            .toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Valida cada fila y escribe las válidas en el COPY
+     */
+    static class Validator {
+        private final Map<String, Integer> departamentos;
+        private final Map<String, Integer> roles;
+        private final Map<String, String> emails;
+        private final Set<String> dnis = new HashSet<>();
+        final List<RowError> errores = new ArrayList<>();
+        private final int[] posiciones = new int[Columna.values().length];
+        private boolean headerRead = false;
+        int filas = 0;
+
+        Validator(Map<String, Integer> departamentos, Map<String, Integer> roles, Map<String, String> emails) {
+            this.departamentos = departamentos;
+            this.roles = roles;
+            this.emails = emails;
+        }
+
+        void accept(int numero, List<String> valores, Writer out) throws IOException {
+            if (!headerRead) {
+                readHeader(valores);
+                headerRead = true;
+                return;
+            }
+            if (isBlank(valores)) {
+                return;
+            }
+            filas++;
+            try {
+                writeRow(validate(valores), out);
+            } catch (IllegalArgumentException e) {
+                errores.add(new RowError(numero, e.getMessage()));
+            }
+        }
+
+        private void readHeader(List<String> valores) throws IOException {
+            Arrays.fill(posiciones, -1);
+            for (int i = 0; i < valores.size(); i++) {
+                String header = normalizeHeader(valores.get(i));
+                for (Columna columna : Columna.values()) {
+                    for (String nombre : columna.nombres) {
+                        if (nombre.equals(header) && posiciones[columna.ordinal()] < 0) {
+                            posiciones[columna.ordinal()] = i;
+                        }
+                    }
+                }
+            }
+            for (Columna columna : Columna.values()) {
+                if (columna.obligatoria && posiciones[columna.ordinal()] < 0) {
+                    throw new IOException("Falta la columna obligatoria '" + columna.nombres[0] + "' en la cabecera");
+                }
+            }
+        }
+
+        private String get(List<String> valores, Columna columna) {
+            int posicion = posiciones[columna.ordinal()];
+            if (posicion < 0 || posicion >= valores.size()) {
+                return null;
+            }
+            String value = valores.get(posicion).trim();
+            if (value.isEmpty()) {
+                return null;
+            }
+            if (columna.largo > 0 && value.length() > columna.largo) {
+                throw new IllegalArgumentException(columna.nombres[0] + " supera " + columna.largo + " caracteres");
+            }
+            return value;
+        }
+
+        private String required(List<String> valores, Columna columna) {
+            String value = get(valores, columna);
+            if (value == null) {
+                throw new IllegalArgumentException(columna.nombres[0] + " es obligatorio");
+            }
+            return value;
+        }
+
+        private Object[] validate(List<String> valores) {
+            String dni = required(valores, Columna.DNI);
+            if (!DNI.matcher(dni).matches()) {
+                throw new IllegalArgumentException("DNI inválido: " + dni);
+            }
+            String nombres = required(valores, Columna.NOMBRES);
+            String apellidos = required(valores, Columna.APELLIDOS);
+
+            String email = get(valores, Columna.EMAIL);
+            if (email != null) {
+                if (!EMAIL.matcher(email).matches()) {
+                    throw new IllegalArgumentException("Email inválido: " + email);
+                }
+                String propietario = emails.get(email.toLowerCase(Locale.ROOT));
+                if (propietario != null && !propietario.equals(dni)) {
+                    throw new IllegalArgumentException("El email " + email + " ya pertenece al DNI " + propietario);
+                }
+            }
+
+            Integer idDepartamento = lookup(departamentos, get(valores, Columna.DEPARTAMENTO), "Departamento");
+            Integer idRol = lookup(roles, get(valores, Columna.ROL), "Rol");
+            LocalDate fechaNacimiento = parseDate(get(valores, Columna.FECHA_NACIMIENTO));
+            String genero = parseGenero(get(valores, Columna.GENERO));
+            Boolean activo = parseBoolean(get(valores, Columna.ACTIVO));
+
+            // Se registran recién cuando la fila es válida
+            if (!dnis.add(dni)) {
+                throw new IllegalArgumentException("DNI repetido en el archivo: " + dni);
+            }
+            if (email != null) {
+                emails.put(email.toLowerCase(Locale.ROOT), dni);
+            }
+
+            return new Object[] {dni, nombres, apellidos, email, get(valores, Columna.TELEFONO), idRol,
+                idDepartamento, get(valores, Columna.DIRECCION), fechaNacimiento, genero, activo,
+                get(valores, Columna.OBSERVACIONES)};
+        }
+
+        private static Integer lookup(Map<String, Integer> ids, String nombre, String tipo) {
+            if (nombre == null) {
+                return null;
+            }
+            Integer id = ids.get(normalizeName(nombre));
+            if (id == null) {
+                throw new IllegalArgumentException(tipo + " no encontrado: " + nombre);
+            }
+            return id;
+        }
+
+        private static LocalDate parseDate(String value) {
+            if (value == null) {
+                return null;
+            }
+            LocalDate fecha;
+            try {
+                fecha = value.contains("/") ? LocalDate.parse(value, FECHA_LATINA) : LocalDate.parse(value);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Fecha de nacimiento inválida (use AAAA-MM-DD): " + value);
+            }
+            if (fecha.isAfter(LocalDate.now())) {
+                throw new IllegalArgumentException("La fecha de nacimiento no puede ser futura");
+            }
+            return fecha;
+        }
+
+        private static String parseGenero(String value) {
+            if (value == null) {
+                return null;
+            }
+            switch (value.toUpperCase(Locale.ROOT)) {
+                case "M":
+                case "MASCULINO":
+                    return "M";
+                case "F":
+                case "FEMENINO":
+                    return "F";
+                case "OTRO":
+                    return "Otro";
+                default:
+                    throw new IllegalArgumentException("Género inválido (M, F u Otro): " + value);
+            }
+        }
+
+        private static Boolean parseBoolean(String value) {
+            if (value == null) {
+                return null;
+            }
+            switch (normalizeName(value)) {
+                case "si":
+                case "s":
+                case "true":
+                case "1":
+                case "activo":
+                    return Boolean.TRUE;
+                case "no":
+                case "n":
+                case "false":
+                case "0":
+                case "inactivo":
+                    return Boolean.FALSE;
+                default:
+                    throw new IllegalArgumentException("Valor de activo inválido (SI/NO): " + value);
+            }
+        }
+
+        private static boolean isBlank(List<String> valores) {
+            for (String value : valores) {
+                if (!value.trim().isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Fila CSV para COPY: null sin comillas, textos siempre entre comillas
+         */
+        private static void writeRow(Object[] values, Writer out) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                Object value = values[i];
+                if (value instanceof String) {
+                    out.write('"');
+                    out.write(((String) value).replace("\"", "\"\""));
+                    out.write('"');
+                } else if (value != null) {
+                    out.write(value.toString());
+                }
+            }
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Fila rechazada y el motivo
+     */
+    public static class RowError {
+        public final int fila;
+        public final String mensaje;
+
+        RowError(int fila, String mensaje) {
+            this.fila = fila;
+            this.mensaje = mensaje;
+        }
+
+        @Override
+        public String toString() {
+            return "Fila " + fila + ": " + mensaje;
+        }
+    }
+
+    public static class Result {
+        public final int filasLeidas;
+        public final int insertados;
+        public final int actualizados;
+        public final List<RowError> errores;
+        public final long millis;
+
+        Result(int filasLeidas, int insertados, int actualizados, List<RowError> errores, long millis) {
+            this.filasLeidas = filasLeidas;
+            this.insertados = insertados;
+            this.actualizados = actualizados;
+            this.errores = Collections.unmodifiableList(errores);
+            this.millis = millis;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.attendance.maintenance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Manifiesto de un respaldo (manifest.properties dentro de la carpeta del respaldo)
+ * Lista los archivos de cada tabla con filas, tamaño y SHA-256, y las
+ * marcas de agua hasta las que llega el respaldo.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class BackupManifest {
+
+    public static final String FILE_NAME = "manifest.properties";
+    private static final int VERSION = 1;
+
+    private final LocalDateTime fecha;
+    private final Map<String, Watermark> watermarks = new LinkedHashMap<>();
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    public BackupManifest(LocalDateTime fecha) {
+        this.fecha = fecha;
+    }
+
+    public LocalDateTime getFecha() {
+        return fecha;
+    }
+
+    public void setWatermark(String tabla, Watermark watermark) {
+        watermarks.put(tabla, watermark);
+    }
+
+    public Watermark getWatermark(String tabla) {
+        return watermarks.get(tabla);
+    }
+
+    public void addChunk(Chunk chunk) {
+        chunks.add(chunk);
+    }
+
+    public List<Chunk> getChunks() {
+        return Collections.unmodifiableList(chunks);
+    }
+
+    /**
+     * Archivos de la tabla en el orden en que se generaron
+     */
+    public List<Chunk> getChunks(String tabla) {
+        List<Chunk> result = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            if (chunk.tabla.equals(tabla)) {
+                result.add(chunk);
+            }
+        }
+        return result;
+    }
+
+    public long getTotalFilas() {
+        long total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.filas;
+        }
+        return total;
+    }
+
+    public long getTotalBytes() {
+        long total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.bytes;
+        }
+        return total;
+    }
+
+    /**
+     * Escribe el manifiesto; se escribe al final, su presencia indica un respaldo completo
+     */
+    public void store(Path directory) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("version", String.valueOf(VERSION));
+        props.setProperty("fecha", fecha.toString());
+        for (Map.Entry<String, Watermark> entry : watermarks.entrySet()) {
+            props.setProperty("tabla." + entry.getKey() + ".ultimoId", String.valueOf(entry.getValue().ultimoId));
+            if (entry.getValue().ultimaModificacion != null) {
+                props.setProperty("tabla." + entry.getKey() + ".ultimaModificacion",
+                    entry.getValue().ultimaModificacion.toString());
+            }
+        }
+        props.setProperty("chunks", String.valueOf(chunks.size()));
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            String prefix = "chunk." + i + ".";
+            props.setProperty(prefix + "tabla", chunk.tabla);
+            props.setProperty(prefix + "archivo", chunk.archivo);
+            props.setProperty(prefix + "filas", String.valueOf(chunk.filas));
+            props.setProperty(prefix + "bytes", String.valueOf(chunk.bytes));
+            props.setProperty(prefix + "sha256", chunk.sha256);
+        }
+
+        Path temp = Files.createTempFile(directory, ".manifest-", ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            props.store(out, "Respaldo incremental del sistema de asistencia");
+        }
+        Files.move(temp, directory.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static BackupManifest load(Path directory) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(directory.resolve(FILE_NAME))) {
+            props.load(in);
+        }
+        if (Integer.parseInt(props.getProperty("version", "0")) != VERSION) {
+            throw new IOException("Versión de manifiesto no soportada en " + directory);
+        }
+
+        BackupManifest manifest = new BackupManifest(LocalDateTime.parse(props.getProperty("fecha")));
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith("tabla.") && key.endsWith(".ultimoId")) {
+                String tabla = key.substring("tabla.".length(), key.length() - ".ultimoId".length());
+                String modificacion = props.getProperty("tabla." + tabla + ".ultimaModificacion");
+                manifest.setWatermark(tabla, new Watermark(Long.parseLong(props.getProperty(key)),
+                    modificacion != null ? LocalDateTime.parse(modificacion) : null));
+            }
+        }
+        int count = Integer.parseInt(props.getProperty("chunks", "0"));
+        for (int i = 0; i < count; i++) {
+            String prefix = "chunk." + i + ".";
+            manifest.addChunk(new Chunk(props.getProperty(prefix + "tabla"), props.getProperty(prefix + "archivo"),
+                Long.parseLong(props.getProperty(prefix + "filas")), Long.parseLong(props.getProperty(prefix + "bytes")),
+                props.getProperty(prefix + "sha256")));
+        }
+        return manifest;
+    }
+
+    /**
+     * Hasta dónde llega el respaldo de una tabla
+     */
+    public static class Watermark {
+        public final long ultimoId;
+        /** Solo para tablas con fecha_modificacion */
+        public final LocalDateTime ultimaModificacion;
+
+        public Watermark(long ultimoId, LocalDateTime ultimaModificacion) {
+            this.ultimoId = ultimoId;
+            this.ultimaModificacion = ultimaModificacion;
+        }
+    }
+
+    /**
+     * Archivo CSV comprimido con una parte de una tabla
+     */
+    public static class Chunk {
+        public final String tabla;
+        public final String archivo;
+        public final long filas;
+        public final long bytes;
+        public final String sha256;
+
+        public Chunk(String tabla, String archivo, long filas, long bytes, String sha256) {
+            this.tabla = tabla;
+            this.archivo = archivo;
+            this.filas = filas;
+            this.bytes = bytes;
+            this.sha256 = sha256;
+        }
+    }
+}
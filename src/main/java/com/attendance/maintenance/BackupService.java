@@ -0,0 +1,494 @@
+package com.attendance.maintenance;
+
+import com.attendance.config.DatabaseConfig;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Respaldo incremental de asistencias, usuarios y logs_sistema
+ * Cada respaldo es una carpeta con archivos CSV comprimidos (COPY ... TO
+ * STDOUT), de a lo sumo backup.chunkRows ids cada uno, y un manifiesto con
+ * SHA-256 por archivo y la marca de agua (último id y, en usuarios, última
+ * fecha_modificacion) de cada tabla. El siguiente respaldo parte de esas
+ * marcas, así que solo se transfiere lo nuevo. Las filas borradas no se
+ * registran.
+ *
+ * Un id (o una fecha_modificacion) menor que la marca puede confirmarse
+ * después de tomada la instantánea si su transacción seguía abierta; por eso
+ * cada respaldo vuelve a leer backup.overlapIds ids y backup.overlapMinutes
+ * minutos por debajo de la marca anterior. La restauración inserta o
+ * actualiza por clave, así que las filas repetidas no hacen daño.
+ *
+ * Uso: BackupService verificar|restaurar [carpeta]
+ * (sin carpeta, restaurar aplica todos los respaldos de backup.dir en orden)
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class BackupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackupService.class);
+
+    private static final String DIRECTORY_PREFIX = "respaldo-";
+    private static final DateTimeFormatter DIRECTORY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Tablas respaldadas; el orden de las olas respeta las claves foráneas al restaurar
+     */
+    private static final Table USUARIOS = new Table("usuarios", "id_usuario", "fecha_modificacion");
+    private static final Table ASISTENCIAS = new Table("asistencias", "id_asistencia", null);
+    private static final Table LOGS = new Table("logs_sistema", "id_log", null);
+    private static final List<List<Table>> RESTORE_WAVES = Arrays.asList(
+        Collections.singletonList(USUARIOS),
+        Arrays.asList(ASISTENCIAS, LOGS));
+
+    private BackupService() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || !(args[0].equals("verificar") || args[0].equals("restaurar"))) {
+            System.err.println("Uso: BackupService verificar|restaurar [carpeta]");
+            System.exit(2);
+        }
+        boolean restaurar = args[0].equals("restaurar");
+        try {
+            if (!restaurar) {
+                Path directory = args.length >= 2 ? Paths.get(args[1]) : latestDirectory(getBackupRoot());
+                if (directory == null) {
+                    System.err.println("No hay respaldos en " + getBackupRoot());
+                    System.exit(1);
+                }
+                verify(directory);
+                System.out.println("Respaldo " + directory + ": OK");
+                return;
+            }
+            DatabaseConfig.initialize();
+            if (args.length >= 2) {
+                restore(Paths.get(args[1]));
+            } else {
+                restoreAll(getBackupRoot());
+            }
+        } catch (Exception e) {
+            logger.error("Error en {} del respaldo", restaurar ? "la restauración" : "la verificación", e);
+            System.exit(1);
+        } finally {
+            if (restaurar) {
+                DatabaseConfig.close();
+            }
+        }
+    }
+
+    public static Path getBackupRoot() {
+        return Paths.get(DatabaseConfig.getProperty("backup.dir", "backups")).toAbsolutePath();
+    }
+
+    /**
+     * Respalda lo agregado o modificado desde el último respaldo completo
+     */
+    public static synchronized BackupManifest runIncremental() throws SQLException, IOException {
+        long start = System.currentTimeMillis();
+        Path root = getBackupRoot();
+        Files.createDirectories(root);
+        BackupManifest previous = latestManifest(root);
+        long chunkRows = Long.parseLong(DatabaseConfig.getProperty("backup.chunkRows", "100000"));
+        Overlap overlap = new Overlap(
+            Long.parseLong(DatabaseConfig.getProperty("backup.overlapIds", "10000")),
+            Duration.ofMinutes(Long.parseLong(DatabaseConfig.getProperty("backup.overlapMinutes", "60"))));
+
+        LocalDateTime fecha = LocalDateTime.now();
+        Path directory = root.resolve(DIRECTORY_PREFIX + fecha.format(DIRECTORY_FORMAT));
+        Files.createDirectories(directory);
+
+        BackupManifest manifest = new BackupManifest(fecha);
+        boolean completed = false;
+        try (Connection conn = DatabaseConfig.getConnection(DatabaseConfig.Pool.REPORTES)) {
+            // Una sola instantánea para que las marcas de agua de todas las tablas sean coherentes
+            conn.setAutoCommit(false);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SET LOCAL statement_timeout = 0");
+                }
+                CopyManager copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+                for (List<Table> wave : RESTORE_WAVES) {
+                    for (Table table : wave) {
+                        backupTable(conn, copyManager, table, previous, overlap, chunkRows, directory, manifest);
+                    }
+                }
+            } finally {
+                conn.rollback();
+            }
+            manifest.store(directory);
+            completed = true;
+        } finally {
+            if (!completed) {
+                deleteDirectory(directory);
+            }
+        }
+
+        logger.info("Respaldo incremental en {}: {} filas, {} archivos, {} KB en {} ms",
+            directory.getFileName(), manifest.getTotalFilas(), manifest.getChunks().size(),
+            manifest.getTotalBytes() / 1024, System.currentTimeMillis() - start);
+        return manifest;
+    }
+
+    private static void backupTable(Connection conn, CopyManager copyManager, Table table, BackupManifest previous,
+                                    Overlap overlap, long chunkRows, Path directory, BackupManifest manifest)
+            throws SQLException, IOException {
+
+        BackupManifest.Watermark desde = previous != null ? previous.getWatermark(table.nombre) : null;
+        long desdeId = desde != null ? desde.ultimoId : 0;
+        // Se relee una franja bajo la marca por si había transacciones abiertas en el respaldo anterior
+        long inicioId = overlap.fromId(desdeId);
+
+        // Marca de agua nueva, dentro de la misma instantánea que los COPY
+        long hastaId;
+        LocalDateTime hastaModificacion = null;
+        String sql = "SELECT COALESCE(MAX(" + table.clave + "), 0)" +
+                     (table.modificacion != null ? ", MAX(" + table.modificacion + ")" : "") +
+                     " FROM " + table.nombre;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            hastaId = rs.getLong(1);
+            if (table.modificacion != null && rs.getTimestamp(2) != null) {
+                hastaModificacion = rs.getTimestamp(2).toLocalDateTime();
+            }
+        }
+
+        int numero = 1;
+        for (long from = inicioId; from < hastaId; from += chunkRows) {
+            String where = table.clave + " > " + from + " AND " + table.clave + " <= " + Math.min(hastaId, from + chunkRows);
+            writeChunk(copyManager, table, where, numero++, directory, manifest);
+        }
+
+        // Filas ya respaldadas que se modificaron después
+        LocalDateTime desdeModificacion = desde != null ? overlap.since(desde.ultimaModificacion) : null;
+        if (desdeModificacion != null && hastaModificacion != null && hastaModificacion.isAfter(desdeModificacion)) {
+            String where = table.clave + " <= " + inicioId +
+                           " AND " + table.modificacion + " > " + timestampLiteral(desdeModificacion) +
+                           " AND " + table.modificacion + " <= " + timestampLiteral(hastaModificacion);
+            writeChunk(copyManager, table, where, numero, directory, manifest);
+        }
+
+        if (hastaModificacion == null && desde != null) {
+            hastaModificacion = desde.ultimaModificacion;
+        }
+        manifest.setWatermark(table.nombre, new BackupManifest.Watermark(Math.max(desdeId, hastaId), hastaModificacion));
+    }
+
+    private static void writeChunk(CopyManager copyManager, Table table, String where, int numero,
+                                   Path directory, BackupManifest manifest) throws SQLException, IOException {
+        String archivo = String.format("%s-%04d.csv.gz", table.nombre, numero);
+        Path file = directory.resolve(archivo);
+        String copySql = "COPY (SELECT * FROM " + table.nombre + " WHERE " + where +
+                         " ORDER BY " + table.clave + ") TO STDOUT WITH (FORMAT csv, HEADER true, ENCODING 'UTF8')";
+
+        // El hash se calcula sobre los bytes comprimidos, tal como quedan en disco
+        MessageDigest digest = sha256();
+        long filas;
+        try (GZIPOutputStream out = new GZIPOutputStream(new DigestOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)), digest), GZIP_BUFFER_SIZE)) {
+            filas = copyManager.copyOut(copySql, out);
+        }
+
+        if (filas == 0) {
+            Files.delete(file);
+            return;
+        }
+        manifest.addChunk(new BackupManifest.Chunk(table.nombre, archivo, filas, Files.size(file), hex(digest.digest())));
+    }
+
+    /**
+     * Verifica que los archivos del respaldo estén completos y sin alteraciones
+     */
+    public static void verify(Path directory) throws IOException {
+        verify(directory, BackupManifest.load(directory));
+    }
+
+    private static void verify(Path directory, BackupManifest manifest) throws IOException {
+        byte[] buffer = new byte[GZIP_BUFFER_SIZE];
+        for (BackupManifest.Chunk chunk : manifest.getChunks()) {
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(Files.newInputStream(directory.resolve(chunk.archivo)), digest)) {
+                while (in.read(buffer) != -1) {
+                    // Solo se recorre para calcular el hash
+                }
+            }
+            if (!hex(digest.digest()).equals(chunk.sha256)) {
+                throw new IOException("Checksum inválido en " + directory.resolve(chunk.archivo));
+            }
+        }
+    }
+
+    /**
+     * Restaura todos los respaldos de la carpeta en orden cronológico
+     */
+    public static void restoreAll(Path root) throws SQLException, IOException {
+        for (Path directory : backupDirectories(root)) {
+            restore(directory);
+        }
+    }
+
+    /**
+     * Restaura un respaldo sobre la base actual (inserta o actualiza por clave).
+     * Las tablas sin dependencias entre sí se cargan en paralelo.
+     */
+    public static void restore(Path directory) throws SQLException, IOException {
+        long start = System.currentTimeMillis();
+        BackupManifest manifest = BackupManifest.load(directory);
+        verify(directory, manifest);
+
+        int parallelism = Integer.parseInt(DatabaseConfig.getProperty("backup.restoreParallelism", "2"));
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread t = new Thread(r, "backup-restore-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            for (List<Table> wave : RESTORE_WAVES) {
+                List<Callable<Long>> tasks = new ArrayList<>();
+                for (Table table : wave) {
+                    List<BackupManifest.Chunk> chunks = manifest.getChunks(table.nombre);
+                    if (!chunks.isEmpty()) {
+                        tasks.add(() -> restoreTable(table, directory, chunks));
+                    }
+                }
+                for (Future<Long> future : executor.invokeAll(tasks)) {
+                    future.get();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Restauración interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new SQLException("Error al restaurar " + directory, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.info("Respaldo {} restaurado: {} filas en {} ms",
+            directory.getFileName(), manifest.getTotalFilas(), System.currentTimeMillis() - start);
+    }
+
+    private static long restoreTable(Table table, Path directory, List<BackupManifest.Chunk> chunks)
+            throws SQLException, IOException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<String> columns = columns(conn, table.nombre);
+                String staging = "restaurar_" + table.nombre;
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SET LOCAL statement_timeout = 0");
+                    // Sin un aviso por fila; al final se envía una recarga
+                    stmt.execute("SELECT set_config('asistencia.silenciar_notify', 'on', true)");
+                    stmt.execute("CREATE TEMP TABLE " + staging + " (LIKE " + table.nombre +
+                                 " INCLUDING DEFAULTS) ON COMMIT DROP");
+                }
+
+                CopyManager copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+                long filas = 0;
+                for (BackupManifest.Chunk chunk : chunks) {
+                    try (InputStream in = new GZIPInputStream(new BufferedInputStream(
+                            Files.newInputStream(directory.resolve(chunk.archivo))), GZIP_BUFFER_SIZE)) {
+                        filas += copyManager.copyIn("COPY " + staging + " FROM STDIN WITH (FORMAT csv, HEADER true)", in);
+                    }
+                }
+
+                StringBuilder updates = new StringBuilder();
+                for (String column : columns) {
+                    if (!column.equals(table.clave)) {
+                        updates.append(updates.length() > 0 ? ", " : "").append(column).append(" = EXCLUDED.").append(column);
+                    }
+                }
+                String columnList = String.join(", ", columns);
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("INSERT INTO " + table.nombre + " (" + columnList + ") " +
+                        "SELECT " + columnList + " FROM " + staging + " " +
+                        "ON CONFLICT (" + table.clave + ") DO UPDATE SET " + updates);
+                    // La secuencia debe quedar por encima de los ids restaurados
+                    stmt.execute("SELECT setval(pg_get_serial_sequence('" + table.nombre + "', '" + table.clave + "'), " +
+                        "GREATEST((SELECT MAX(" + table.clave + ") FROM " + table.nombre + "), 1))");
+                }
+                conn.commit();
+
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SELECT pg_notify('cambios_" + table.nombre + "', 'R|0')");
+                }
+                conn.commit();
+                logger.info("Tabla {} restaurada: {} filas", table.nombre, filas);
+                return filas;
+            } catch (SQLException | IOException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static List<String> columns(Connection conn, String tabla) throws SQLException {
+        List<String> columns = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT column_name FROM information_schema.columns " +
+                "WHERE table_schema = current_schema() AND table_name = ? ORDER BY ordinal_position")) {
+            pstmt.setString(1, tabla);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(rs.getString(1));
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Último respaldo completo (con manifiesto); null si no hay ninguno
+     */
+    public static BackupManifest latestManifest(Path root) throws IOException {
+        List<Path> directories = backupDirectories(root);
+        return directories.isEmpty() ? null : BackupManifest.load(directories.get(directories.size() - 1));
+    }
+
+    private static Path latestDirectory(Path root) throws IOException {
+        List<Path> directories = backupDirectories(root);
+        return directories.isEmpty() ? null : directories.get(directories.size() - 1);
+    }
+
+    /**
+     * Carpetas de respaldo completas, de la más vieja a la más nueva
+     */
+    private static List<Path> backupDirectories(Path root) throws IOException {
+        List<Path> directories = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return directories;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, DIRECTORY_PREFIX + "*")) {
+            for (Path directory : stream) {
+                if (Files.isRegularFile(directory.resolve(BackupManifest.FILE_NAME))) {
+                    directories.add(directory);
+                }
+            }
+        }
+        directories.sort(Comparator.comparing(path -> path.getFileName().toString()));
+        return directories;
+    }
+
+    private static void deleteDirectory(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    logger.warn("No se pudo eliminar {}: {}", path, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("No se pudo limpiar el respaldo incompleto {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static String timestampLiteral(LocalDateTime value) {
+        return "TIMESTAMP '" + Timestamp.valueOf(value) + "'";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Franja bajo la marca de agua anterior que se vuelve a respaldar
+     */
+    static class Overlap {
+        final long ids;
+        final Duration tiempo;
+
+        Overlap(long ids, Duration tiempo) {
+            this.ids = Math.max(0, ids);
+            this.tiempo = tiempo.isNegative() ? Duration.ZERO : tiempo;
+        }
+
+        /**
+         * Id a partir del cual (exclusivo) se copian filas nuevas
+         */
+        long fromId(long ultimoId) {
+            return Math.max(0, ultimoId - ids);
+        }
+
+        /**
+         * Fecha de modificación a partir de la cual (exclusiva) se copian filas modificadas; null si no hay marca
+         */
+        LocalDateTime since(LocalDateTime ultimaModificacion) {
+            return ultimaModificacion != null ? ultimaModificacion.minus(tiempo) : null;
+        }
+    }
+
+    private static class Table {
+        final String nombre;
+        final String clave;
+        /** Columna de última modificación, null si las filas no se actualizan */
+        final String modificacion;
+
+        Table(String nombre, String clave, String modificacion) {
+            this.nombre = nombre;
+            this.clave = clave;
+            this.modificacion = modificacion;
+        }
+    }
+}
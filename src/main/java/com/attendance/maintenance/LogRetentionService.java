@@ -0,0 +1,291 @@
+package com.attendance.maintenance;
+
+import com.attendance.config.DatabaseConfig;
+import com.attendance.monitoring.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retención de logs_sistema por nivel y módulo
+ * Borra en lotes pequeños recorriendo id_log en orden (keyset), con una pausa
+ * entre lotes: cada lote es una transacción corta que no bloquea a las
+ * marcaciones y deja que autovacuum recupere el espacio a medida que avanza.
+ *
+ * Políticas en logs.retention.policies: "NIVEL[/MODULO]:dias" separadas por
+ * coma. La política de un módulo tiene prioridad sobre la de su nivel; los
+ * niveles sin política (o con 0 días) se conservan.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class LogRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogRetentionService.class);
+
+    public static final String LOGS_PURGED_TOTAL = "logs_purged_total";
+    public static final String LOGS_RETENTION_BATCH = "logs_retention_batch";
+    public static final String LOGS_RETENTION_RUN = "logs_retention_run";
+
+    private static final String DEFAULT_POLICIES = "DEBUG:30,INFO:90,INFO/ASISTENCIA:30,WARNING:365";
+    /** Los del CHECK de logs_sistema.nivel */
+    private static final List<String> NIVELES = Arrays.asList("DEBUG", "INFO", "WARNING", "ERROR", "CRITICAL");
+
+    static {
+        MetricsRegistry.counter(LOGS_PURGED_TOTAL, "Registros de logs_sistema eliminados por retención");
+        MetricsRegistry.timer(LOGS_RETENTION_BATCH, "Duración de cada lote de borrado de logs_sistema");
+        MetricsRegistry.timer(LOGS_RETENTION_RUN, "Duración de una limpieza completa de logs_sistema");
+    }
+
+    private LogRetentionService() {
+    }
+
+    /**
+     * Aplica todas las políticas configuradas
+     */
+    public static Result run() throws SQLException {
+        List<Policy> policies = parsePolicies(
+            DatabaseConfig.getProperty("logs.retention.policies", DEFAULT_POLICIES));
+        int batchSize = Integer.parseInt(DatabaseConfig.getProperty("logs.retention.batchSize", "5000"));
+        long pauseMillis = Long.parseLong(DatabaseConfig.getProperty("logs.retention.pauseMillis", "200"));
+        long maxMillis = TimeUnit.MINUTES.toMillis(
+            Long.parseLong(DatabaseConfig.getProperty("logs.retention.maxMinutes", "30")));
+        return run(policies, batchSize, pauseMillis, maxMillis);
+    }
+
+    public static Result run(List<Policy> policies, int batchSize, long pauseMillis, long maxMillis)
+            throws SQLException {
+        long start = System.nanoTime();
+        long deadline = System.currentTimeMillis() + maxMillis;
+        long filas = 0;
+        int lotes = 0;
+        boolean completo = true;
+
+        // Conexión propia: no ocupa el pool de las marcaciones durante la limpieza
+        try (Connection conn = DatabaseConfig.createDedicatedConnection()) {
+            conn.setAutoCommit(true);
+            try (Statement stmt = conn.createStatement()) {
+                // Un lote que espera un bloqueo se cancela en lugar de hacer esperar a otros
+                stmt.execute("SET lock_timeout = '2s'");
+                stmt.execute("SET statement_timeout = '60s'");
+            }
+
+            for (Policy policy : policies) {
+                if (policy.dias <= 0) {
+                    continue;
+                }
+                List<String> excluidos = policy.modulo == null ? modulosConPolitica(policies, policy.nivel)
+                    : Collections.emptyList();
+                Long hasta = ultimoIdAntiguo(conn, policy.dias);
+                if (hasta == null) {
+                    continue;
+                }
+
+                long cursor = 0;
+                long filasPolitica = 0;
+                while (true) {
+                    if (System.currentTimeMillis() > deadline) {
+                        completo = false;
+                        break;
+                    }
+                    long batchStart = System.nanoTime();
+                    long[] lote = deleteBatch(conn, policy, excluidos, cursor, hasta, batchSize);
+                    MetricsRegistry.recordSince(LOGS_RETENTION_BATCH, batchStart);
+                    if (lote[0] == 0) {
+                        break;
+                    }
+                    lotes++;
+                    filasPolitica += lote[0];
+                    MetricsRegistry.counter(LOGS_PURGED_TOTAL).add(lote[0]);
+                    cursor = lote[1];
+                    if (lote[0] < batchSize) {
+                        break;
+                    }
+                    if (!pause(pauseMillis)) {
+                        completo = false;
+                        break;
+                    }
+                }
+                filas += filasPolitica;
+                if (filasPolitica > 0) {
+                    logger.info("Retención {}: {} registros eliminados", policy, filasPolitica);
+                }
+                if (!completo) {
+                    break;
+                }
+            }
+
+            if (filas > 0) {
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "INSERT INTO logs_sistema (nivel, modulo, mensaje) VALUES ('INFO', 'MANTENIMIENTO', ?)")) {
+                    pstmt.setString(1, "Logs eliminados: " + filas + " registros" + (completo ? "" : " (parcial)"));
+                    pstmt.executeUpdate();
+                }
+            }
+        }
+
+        MetricsRegistry.recordSince(LOGS_RETENTION_RUN, start);
+        Result result = new Result(filas, lotes, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), completo);
+        logger.info("Limpieza de logs: {} registros en {} lotes, {} ms{}", result.filasEliminadas, result.lotes,
+            result.millis, completo ? "" : " (tiempo agotado, continúa en la próxima ejecución)");
+        return result;
+    }
+
+    /**
+     * Id del registro más reciente anterior al corte (por idx_logs_fecha); acota el recorrido
+     */
+    private static Long ultimoIdAntiguo(Connection conn, int dias) throws SQLException {
+        String sql = "SELECT id_log FROM logs_sistema " +
+                     "WHERE fecha_hora < CURRENT_TIMESTAMP - make_interval(days => ?) " +
+                     "ORDER BY fecha_hora DESC LIMIT 1";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, dias);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Borra un lote; devuelve {filas borradas, último id_log borrado}
+     */
+    private static long[] deleteBatch(Connection conn, Policy policy, List<String> excluidos,
+                                      long cursor, long hasta, int batchSize) throws SQLException {
+        StringBuilder sql = new StringBuilder(
+            "WITH lote AS (" +
+            "    SELECT id_log FROM logs_sistema" +
+            "    WHERE nivel = ? AND id_log > ? AND id_log <= ?" +
+            "    AND fecha_hora < CURRENT_TIMESTAMP - make_interval(days => ?)");
+        if (policy.modulo != null) {
+            sql.append(" AND modulo = ?");
+        } else if (!excluidos.isEmpty()) {
+            sql.append(" AND (modulo IS NULL OR modulo <> ALL(?))");
+        }
+        sql.append(
+            "    ORDER BY id_log LIMIT ?" +
+            "), borrados AS (" +
+            "    DELETE FROM logs_sistema l USING lote WHERE l.id_log = lote.id_log RETURNING l.id_log" +
+            ") SELECT COUNT(*), COALESCE(MAX(id_log), 0) FROM borrados");
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int i = 1;
+            pstmt.setString(i++, policy.nivel);
+            pstmt.setLong(i++, cursor);
+            pstmt.setLong(i++, hasta);
+            pstmt.setInt(i++, policy.dias);
+            if (policy.modulo != null) {
+                pstmt.setString(i++, policy.modulo);
+            } else if (!excluidos.isEmpty()) {
+                Array array = conn.createArrayOf("varchar", excluidos.toArray());
+                pstmt.setArray(i++, array);
+            }
+            pstmt.setInt(i, batchSize);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return new long[] {rs.getLong(1), rs.getLong(2)};
+            }
+        }
+    }
+
+    private static List<String> modulosConPolitica(List<Policy> policies, String nivel) {
+        List<String> modulos = new ArrayList<>();
+        for (Policy policy : policies) {
+            if (policy.modulo != null && policy.nivel.equals(nivel)) {
+                modulos.add(policy.modulo);
+            }
+        }
+        return modulos;
+    }
+
+    private static boolean pause(long millis) {
+        if (millis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Interpreta "NIVEL[/MODULO]:dias,..."; las entradas inválidas se ignoran con una advertencia
+     */
+    public static List<Policy> parsePolicies(String value) {
+        List<Policy> policies = new ArrayList<>();
+        for (String entry : value.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int colon = trimmed.lastIndexOf(':');
+            try {
+                if (colon < 0) {
+                    throw new IllegalArgumentException("falta ':dias'");
+                }
+                String clave = trimmed.substring(0, colon).trim();
+                int dias = Integer.parseInt(trimmed.substring(colon + 1).trim());
+                int slash = clave.indexOf('/');
+                String nivel = (slash < 0 ? clave : clave.substring(0, slash)).trim().toUpperCase(Locale.ROOT);
+                String modulo = slash < 0 ? null : clave.substring(slash + 1).trim();
+                if (!NIVELES.contains(nivel)) {
+                    throw new IllegalArgumentException("nivel desconocido " + nivel);
+                }
+                policies.add(new Policy(nivel, modulo == null || modulo.isEmpty() ? null : modulo, dias));
+            } catch (IllegalArgumentException e) {
+                logger.warn("Política de retención inválida '{}': {}", trimmed, e.getMessage());
+            }
+        }
+        return policies;
+    }
+
+    /**
+     * Días que se conservan los logs de un nivel (y opcionalmente de un módulo)
+     */
+    public static class Policy {
+        public final String nivel;
+        /** null aplica a todos los módulos del nivel sin política propia */
+        public final String modulo;
+        public final int dias;
+
+        public Policy(String nivel, String modulo, int dias) {
+            this.nivel = nivel;
+            this.modulo = modulo;
+            this.dias = dias;
+        }
+
+        @Override
+        public String toString() {
+            return (modulo != null ? nivel + "/" + modulo : nivel) + ":" + dias;
+        }
+    }
+
+    public static class Result {
+        public final long filasEliminadas;
+        public final int lotes;
+        public final long millis;
+        /** false si se agotó logs.retention.maxMinutes antes de terminar */
+        public final boolean completo;
+
+        Result(long filasEliminadas, int lotes, long millis, boolean completo) {
+            this.filasEliminadas = filasEliminadas;
+            this.lotes = lotes;
+            this.millis = millis;
+            this.completo = completo;
+        }
+    }
+}
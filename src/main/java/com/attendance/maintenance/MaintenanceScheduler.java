@@ -0,0 +1,122 @@
+package com.attendance.maintenance;
+
+import com.attendance.config.ConfigService;
+import com.attendance.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tareas de mantenimiento diarias (respaldo nocturno, limpieza de logs)
+ * Un solo hilo: las tareas nunca se superponen. Cada ejecución programa la
+ * siguiente a la hora configurada, así los cambios de horario no la corren.
+ * El respaldo se programa siempre y consulta system.enableAutoBackup (o
+ * BACKUP_AUTOMATICO en la tabla configuracion) al momento de correr.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class MaintenanceScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(MaintenanceScheduler.class);
+
+    private static final ConfigService.Setting<Boolean> AUTO_BACKUP =
+        ConfigService.booleanSetting("system.enableAutoBackup", false);
+
+    private static ScheduledExecutorService scheduler;
+
+    private MaintenanceScheduler() {
+    }
+
+    /**
+     * Programa las tareas habilitadas en la configuración (idempotente)
+     */
+    public static synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "maintenance");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+
+        scheduleDaily("Respaldo incremental", parseTime("system.backupTime", "02:00"), () -> {
+            if (AUTO_BACKUP.get()) {
+                BackupService.runIncremental();
+            } else {
+                logger.info("Respaldo automático deshabilitado (system.enableAutoBackup / BACKUP_AUTOMATICO)");
+            }
+        });
+
+        if (Boolean.parseBoolean(DatabaseConfig.getProperty("logs.retention.enabled", "true"))) {
+            scheduleDaily("Limpieza de logs", parseTime("logs.retention.time", "03:00"),
+                LogRetentionService::run);
+        }
+    }
+
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Ejecuta la tarea todos los días a la hora indicada
+     */
+    public static synchronized void scheduleDaily(String nombre, LocalTime hora, Task tarea) {
+        if (scheduler == null) {
+            throw new IllegalStateException("El planificador de mantenimiento no está iniciado");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(hora);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        long delay = Duration.between(now, next).toMillis();
+        scheduler.schedule(() -> runAndReschedule(nombre, hora, tarea), delay, TimeUnit.MILLISECONDS);
+        logger.info("{}: próxima ejecución {}", nombre, next);
+    }
+
+    private static void runAndReschedule(String nombre, LocalTime hora, Task tarea) {
+        long start = System.currentTimeMillis();
+        try {
+            logger.info("{}: iniciando", nombre);
+            tarea.run();
+            logger.info("{}: terminado en {} ms", nombre, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("{}: error", nombre, e);
+        }
+        synchronized (MaintenanceScheduler.class) {
+            if (scheduler != null) {
+                scheduleDaily(nombre, hora, tarea);
+            }
+        }
+    }
+
+    static LocalTime parseTime(String key, String defaultValue) {
+        String value = DatabaseConfig.getProperty(key, defaultValue).trim();
+        try {
+            return LocalTime.parse(value);
+        } catch (DateTimeParseException e) {
+            logger.warn("Hora inválida en {}: '{}', se usa {}", key, value, defaultValue);
+            return LocalTime.parse(defaultValue);
+        }
+    }
+
+    /**
+     * Tarea de mantenimiento; los errores se registran y no cancelan las siguientes ejecuciones
+     */
+    public interface Task {
+        void run() throws Exception;
+    }
+}
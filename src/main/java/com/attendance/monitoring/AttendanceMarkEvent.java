@@ -0,0 +1,38 @@
+package com.attendance.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR de la persistencia de una marcación
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+@Name("com.attendance.AttendanceMark")
+@Label("Registro de asistencia")
+@Category({"Asistencia", "Base de datos"})
+@Description("Transacción que busca al usuario e inserta la asistencia")
+public class AttendanceMarkEvent extends Event {
+
+    @Label("Fingerprint ID")
+    public int fingerprintId;
+
+    @Label("ID usuario")
+    public int userId;
+
+    @Label("Tipo de marcación")
+    public String markType;
+
+    @Label("ID asistencia")
+    public int attendanceId;
+
+    @Label("Exitosa")
+    public boolean success;
+
+    @Label("Error")
+    public String error;
+}
@@ -0,0 +1,246 @@
+package com.attendance.monitoring;
+
+import com.attendance.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Vigilante de bloqueos del Event Dispatch Thread
+ * Encola periódicamente una sonda en el EDT y mide cuánto tarda en ejecutarse.
+ * Si el EDT supera el umbral, captura su pila, identifica el panel
+ * responsable y publica el bloqueo como métrica.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class EdtWatchdog {
+
+    private static final Logger logger = LoggerFactory.getLogger(EdtWatchdog.class);
+
+    public static final String EDT_PROBE_LATENCY = "edt_probe_latency";
+    public static final String EDT_STALL_DURATION = "edt_stall_duration";
+    public static final String EDT_STALLS_TOTAL = "edt_stalls_total";
+
+    private static final String VIEW_PACKAGE = "com.attendance.view.";
+    private static final String EDT_THREAD_PREFIX = "AWT-EventQueue";
+    private static final int MAX_RECENT_STALLS = 20;
+    private static final int MAX_STACK_DEPTH = 40;
+
+    private static final Map<String, LongAdder> stallsByView = new ConcurrentHashMap<>();
+    private static final Deque<StallReport> recentStalls = new ArrayDeque<>();
+
+    private static volatile boolean running = false;
+    private static volatile Thread edtThread;
+    private static Thread watchdogThread;
+
+    private EdtWatchdog() {
+    }
+
+    /**
+     * Inicia el vigilante si monitoring.edt.enabled=true (por defecto)
+     */
+    public static synchronized void start() {
+        if (running) {
+            return;
+        }
+        if (!Boolean.parseBoolean(DatabaseConfig.getProperty("monitoring.edt.enabled", "true"))) {
+            return;
+        }
+
+        long probeIntervalMs = Long.parseLong(DatabaseConfig.getProperty("monitoring.edt.probeIntervalMs", "200"));
+        long stallThresholdMs = Long.parseLong(DatabaseConfig.getProperty("monitoring.edt.stallThresholdMs", "500"));
+
+        MetricsRegistry.timer(EDT_PROBE_LATENCY, "Latencia de una sonda encolada en el EDT");
+        MetricsRegistry.timer(EDT_STALL_DURATION, "Duración de los bloqueos del EDT sobre el umbral");
+        MetricsRegistry.counter(EDT_STALLS_TOTAL, "Bloqueos del EDT sobre el umbral");
+
+        running = true;
+        watchdogThread = new Thread(() -> watchLoop(probeIntervalMs, stallThresholdMs), "edt-watchdog");
+        watchdogThread.setDaemon(true);
+        watchdogThread.start();
+        logger.info("Vigilante del EDT iniciado (sonda cada {} ms, umbral {} ms)", probeIntervalMs, stallThresholdMs);
+    }
+
+    /**
+     * Detiene el vigilante
+     */
+    public static synchronized void stop() {
+        running = false;
+        if (watchdogThread != null) {
+            watchdogThread.interrupt();
+            watchdogThread = null;
+        }
+    }
+
+    /**
+     * Bloqueos acumulados por panel (clase del paquete view en la pila del EDT)
+     */
+    public static Map<String, Long> getStallsByView() {
+        Map<String, Long> result = new TreeMap<>();
+        stallsByView.forEach((view, adder) -> result.put(view, adder.sum()));
+        return result;
+    }
+
+    /**
+     * Últimos bloqueos detectados, del más reciente al más antiguo
+     */
+    public static List<StallReport> getRecentStalls() {
+        synchronized (recentStalls) {
+            return new ArrayList<>(recentStalls);
+        }
+    }
+
+    private static void watchLoop(long probeIntervalMs, long stallThresholdMs) {
+        Probe probe = new Probe();
+        LatencyHistogram probeLatency = MetricsRegistry.timer(EDT_PROBE_LATENCY);
+        LatencyHistogram stallDuration = MetricsRegistry.timer(EDT_STALL_DURATION);
+        long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(stallThresholdMs);
+        long pollMs = Math.max(10, Math.min(50, stallThresholdMs / 4));
+
+        try {
+            while (running) {
+                probe.arm();
+                SwingUtilities.invokeLater(probe);
+
+                StackTraceElement[] stallStack = null;
+                while (!probe.done && running) {
+                    Thread.sleep(pollMs);
+                    long elapsed = System.nanoTime() - probe.postedAt;
+                    if (stallStack == null && elapsed > thresholdNanos) {
+                        // Capturar mientras el EDT sigue bloqueado
+                        stallStack = captureEdtStack();
+                    }
+                }
+                if (!running) {
+                    break;
+                }
+
+                long latencyNanos = probe.ranAt - probe.postedAt;
+                probeLatency.recordNanos(latencyNanos);
+
+                if (stallStack != null) {
+                    stallDuration.recordNanos(latencyNanos);
+                    registerStall(TimeUnit.NANOSECONDS.toMillis(latencyNanos), stallStack);
+                }
+
+                Thread.sleep(probeIntervalMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Vigilante del EDT detenido");
+    }
+
+    private static void registerStall(long durationMs, StackTraceElement[] stack) {
+        String view = findView(stack);
+        MetricsRegistry.increment(EDT_STALLS_TOTAL);
+        stallsByView.computeIfAbsent(view, v -> MetricsRegistry.counter(
+            "edt_stalls_" + v.toLowerCase() + "_total", "Bloqueos del EDT atribuidos a " + v)).increment();
+
+        StallReport report = new StallReport(LocalDateTime.now(), durationMs, view, stack);
+        synchronized (recentStalls) {
+            recentStalls.addFirst(report);
+            while (recentStalls.size() > MAX_RECENT_STALLS) {
+                recentStalls.removeLast();
+            }
+        }
+
+        logger.warn("EDT bloqueado {} ms en {}:\n{}", durationMs, view, report.formatStack());
+    }
+
+    /**
+     * Pila actual del EDT. En el primer bloqueo la sonda aún no ha corrido
+     * (o el EDT fue reemplazado tras una excepción), así que se busca el hilo
+     * por nombre en lugar de depender del que registró la sonda.
+     */
+    private static StackTraceElement[] captureEdtStack() {
+        Thread edt = edtThread;
+        if (edt != null && edt.isAlive()) {
+            return edt.getStackTrace();
+        }
+        for (Map.Entry<Thread, StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()) {
+            if (entry.getKey().getName().startsWith(EDT_THREAD_PREFIX)) {
+                edtThread = entry.getKey();
+                return entry.getValue();
+            }
+        }
+        return new StackTraceElement[0];
+    }
+
+    /**
+     * Primer marco de la pila que pertenece a un panel o diálogo
+     */
+    static String findView(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            String className = frame.getClassName();
+            if (className.startsWith(VIEW_PACKAGE)) {
+                String simple = className.substring(VIEW_PACKAGE.length());
+                int inner = simple.indexOf('$');
+                return inner > 0 ? simple.substring(0, inner) : simple;
+            }
+        }
+        return "Otro";
+    }
+
+    /**
+     * Sonda reutilizable que registra cuándo fue atendida por el EDT
+     */
+    private static class Probe implements Runnable {
+        volatile long postedAt;
+        volatile long ranAt;
+        volatile boolean done;
+
+        void arm() {
+            done = false;
+            postedAt = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            ranAt = System.nanoTime();
+            edtThread = Thread.currentThread();
+            done = true;
+        }
+    }
+
+    /**
+     * Bloqueo detectado con la pila del EDT capturada
+     */
+    public static class StallReport {
+        public final LocalDateTime fechaHora;
+        public final long durationMs;
+        public final String view;
+        public final StackTraceElement[] stack;
+
+        public StallReport(LocalDateTime fechaHora, long durationMs, String view, StackTraceElement[] stack) {
+            this.fechaHora = fechaHora;
+            this.durationMs = durationMs;
+            this.view = view;
+            this.stack = stack;
+        }
+
+        public String formatStack() {
+            StringBuilder sb = new StringBuilder();
+            int depth = Math.min(stack.length, MAX_STACK_DEPTH);
+            for (int i = 0; i < depth; i++) {
+                sb.append("\tat ").append(stack[i]).append('\n');
+            }
+            if (stack.length > depth) {
+                sb.append("\t... ").append(stack.length - depth).append(" más\n");
+            }
+            return sb.toString();
+        }
+    }
+}
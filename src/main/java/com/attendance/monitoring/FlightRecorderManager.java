@@ -0,0 +1,142 @@
+package com.attendance.monitoring;
+
+import com.attendance.config.DatabaseConfig;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Grabación continua de Java Flight Recorder en buffer circular
+ * Con monitoring.jfr.enabled=true se mantiene una grabación de baja
+ * sobrecarga (perfil "default") que se vuelca a disco cuando ocurre un error.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class FlightRecorderManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecorderManager.class);
+    private static final DateTimeFormatter FILE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+
+    private static Recording recording;
+    private static Path dumpDirectory;
+    private static long minDumpIntervalMs;
+    private static long lastDumpMillis;
+
+    private FlightRecorderManager() {
+    }
+
+    /**
+     * Inicia la grabación continua si está habilitada
+     */
+    public static synchronized void start() {
+        if (recording != null) {
+            return;
+        }
+        if (!Boolean.parseBoolean(DatabaseConfig.getProperty("monitoring.jfr.enabled", "false"))) {
+            return;
+        }
+        if (!FlightRecorder.isAvailable()) {
+            logger.warn("Java Flight Recorder no está disponible en esta JVM");
+            return;
+        }
+
+        try {
+            Configuration configuration = Configuration.getConfiguration(
+                DatabaseConfig.getProperty("monitoring.jfr.settings", "default"));
+
+            recording = new Recording(configuration);
+            recording.setName("asistencia-continua");
+            recording.setToDisk(true);
+            recording.setMaxAge(Duration.ofMinutes(
+                Long.parseLong(DatabaseConfig.getProperty("monitoring.jfr.maxAgeMinutes", "30"))));
+            recording.setMaxSize(
+                Long.parseLong(DatabaseConfig.getProperty("monitoring.jfr.maxSizeMB", "64")) * 1024 * 1024);
+
+            recording.enable(SerialCommandEvent.class);
+            recording.enable(SensorOperationEvent.class);
+            recording.enable(AttendanceMarkEvent.class);
+            recording.enable(ReportQueryEvent.class);
+
+            dumpDirectory = Paths.get(DatabaseConfig.getProperty("monitoring.jfr.dumpDir", "logs/jfr"));
+            minDumpIntervalMs = Long.parseLong(DatabaseConfig.getProperty("monitoring.jfr.minDumpIntervalSeconds", "60")) * 1000;
+
+            recording.start();
+            installUncaughtExceptionHandler();
+
+            logger.info("Grabación JFR continua iniciada (máx. {} / {}), volcados en {}",
+                recording.getMaxAge(), recording.getMaxSize(), dumpDirectory.toAbsolutePath());
+
+        } catch (Exception e) {
+            logger.error("No se pudo iniciar la grabación JFR", e);
+            recording = null;
+        }
+    }
+
+    /**
+     * Vuelca el buffer circular a un archivo .jfr para análisis post-mortem.
+     * Limita la frecuencia para no saturar el disco con errores repetidos.
+     *
+     * @return ruta del archivo generado, o null si no se volcó
+     */
+    public static synchronized Path dumpOnError(String reason) {
+        if (recording == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - lastDumpMillis < minDumpIntervalMs) {
+            logger.debug("Volcado JFR omitido ({}): último volcado hace {} ms", reason, now - lastDumpMillis);
+            return null;
+        }
+        lastDumpMillis = now;
+
+        try {
+            Files.createDirectories(dumpDirectory);
+            String safeReason = reason.replaceAll("[^A-Za-z0-9_-]", "_");
+            Path file = dumpDirectory.resolve("asistencia_" + LocalDateTime.now().format(FILE_FORMAT)
+                + "_" + safeReason + ".jfr");
+            recording.dump(file);
+            logger.warn("Grabación JFR volcada por error ({}): {}", reason, file.toAbsolutePath());
+            return file;
+        } catch (Exception e) {
+            logger.error("Error al volcar la grabación JFR", e);
+            return null;
+        }
+    }
+
+    /**
+     * Detiene y descarta la grabación
+     */
+    public static synchronized void stop() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+            logger.info("Grabación JFR detenida");
+        }
+    }
+
+    public static synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    private static void installUncaughtExceptionHandler() {
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, error) -> {
+            logger.error("Excepción no controlada en hilo {}", thread.getName(), error);
+            dumpOnError(error.getClass().getSimpleName());
+            if (previous != null) {
+                previous.uncaughtException(thread, error);
+            }
+        });
+    }
+}
@@ -0,0 +1,208 @@
+package com.attendance.monitoring;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias log-lineal (estilo HdrHistogram)
+ * Resolución en microsegundos con error relativo máximo ~1.6% (64 sub-buckets
+ * por potencia de dos). Registrar es lock-free y no reserva memoria.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+
+    /** Valor máximo registrable: ~1.2 horas en microsegundos (2^32 µs) */
+    private static final int MAX_EXPONENT = 32;
+    private static final long MAX_VALUE_MICROS = (1L << MAX_EXPONENT) - 1;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final String name;
+    private final String help;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public LatencyHistogram(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    /**
+     * Registra una duración en nanosegundos
+     */
+    public void recordNanos(long nanos) {
+        recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Registra la duración transcurrida desde un System.nanoTime() previo
+     */
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Registra una duración en microsegundos
+     */
+    public void recordMicros(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_VALUE_MICROS));
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalMicros.add(value);
+
+        long currentMax = maxMicros.get();
+        while (value > currentMax && !maxMicros.compareAndSet(currentMax, value)) {
+            currentMax = maxMicros.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    /**
+     * Reinicia todos los contadores
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalMicros.reset();
+        maxMicros.set(0);
+    }
+
+    /**
+     * Toma una instantánea consistente de percentiles
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(name, count, totalMicros.sum(), maxMicros.get(),
+            percentile(copy, count, 50.0),
+            percentile(copy, count, 90.0),
+            percentile(copy, count, 99.0),
+            percentile(copy, count, 99.9));
+    }
+
+    /**
+     * Calcula en una sola pasada los conteos acumulados para cada límite (ascendentes).
+     * Devuelve el total de muestras; no reserva memoria.
+     */
+    public long cumulativeCounts(long[] boundsMicros, long[] out) {
+        int bound = 0;
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            while (bound < boundsMicros.length && highestEquivalentValue(i) > boundsMicros[bound]) {
+                out[bound++] = cumulative;
+            }
+            cumulative += counts.get(i);
+        }
+        while (bound < boundsMicros.length) {
+            out[bound++] = cumulative;
+        }
+        return cumulative;
+    }
+
+    public long getSumMicros() {
+        return totalMicros.sum();
+    }
+
+    private static long percentile(long[] buckets, long count, double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += buckets[i];
+            if (cumulative >= target) {
+                return highestEquivalentValue(i);
+            }
+        }
+        return highestEquivalentValue(buckets.length - 1);
+    }
+
+    /**
+     * Índice del bucket: lineal bajo 64 µs, luego 64 sub-buckets por potencia de dos
+     */
+    static int indexOf(long micros) {
+        if (micros < SUB_BUCKET_COUNT) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int mantissa = (int) (micros >>> shift) & SUB_BUCKET_MASK;
+        return ((shift + 1) << SUB_BUCKET_BITS) + mantissa;
+    }
+
+    /**
+     * Mayor valor que cae en el bucket indicado
+     */
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long mantissa = (index & SUB_BUCKET_MASK) + SUB_BUCKET_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Instantánea inmutable de un histograma (valores en microsegundos)
+     */
+    public static class Snapshot {
+        public final String name;
+        public final long count;
+        public final long sumMicros;
+        public final long maxMicros;
+        public final long p50Micros;
+        public final long p90Micros;
+        public final long p99Micros;
+        public final long p999Micros;
+
+        public Snapshot(String name, long count, long sumMicros, long maxMicros,
+                        long p50Micros, long p90Micros, long p99Micros, long p999Micros) {
+            this.name = name;
+            this.count = count;
+            this.sumMicros = sumMicros;
+            this.maxMicros = maxMicros;
+            this.p50Micros = p50Micros;
+            this.p90Micros = p90Micros;
+            this.p99Micros = p99Micros;
+            this.p999Micros = p999Micros;
+        }
+
+        public double getMeanMillis() {
+            return count == 0 ? 0 : sumMicros / 1000.0 / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-28s n=%-7d media=%8.2fms p50=%8.2fms p90=%8.2fms p99=%8.2fms max=%8.2fms",
+                name, count, getMeanMillis(), p50Micros / 1000.0, p90Micros / 1000.0,
+                p99Micros / 1000.0, maxMicros / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.attendance.monitoring;
+
+import com.attendance.config.DatabaseConfig;
+import com.attendance.service.ArduinoCommService;
+import com.attendance.service.ChangeEventBus;
+import com.attendance.util.SerialPortManager;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registro central de métricas en proceso
+ * Histogramas de latencia, contadores y gauges consultables desde la
+ * aplicación y exportables como texto
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class MetricsRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    // Latencias del camino huella → base de datos → pantalla
+    public static final String SERIAL_COMMAND_RTT = "serial_command_rtt";
+    public static final String SENSOR_CAPTURE_TO_MATCH = "sensor_capture_to_match";
+    public static final String DB_CONNECTION_ACQUIRE = "db_connection_acquire";
+    public static final String DB_USER_LOOKUP = "db_user_lookup";
+    public static final String DB_ATTENDANCE_INSERT = "db_attendance_insert";
+    public static final String DB_COMMIT = "db_commit";
+    public static final String EDT_DISPATCH_DELAY = "edt_dispatch_delay";
+    public static final String SCAN_TO_SCREEN = "scan_to_screen";
+
+    // Contadores
+    public static final String MARKS_TOTAL = "marks_total";
+    public static final String MARKS_FAILED_TOTAL = "marks_failed_total";
+    public static final String SERIAL_TIMEOUTS_TOTAL = "serial_timeouts_total";
+
+    private static final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, String> counterHelp = new ConcurrentHashMap<>();
+    private static final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+    private static final Map<String, String> gaugeHelp = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService reporter;
+
+    static {
+        timer(SERIAL_COMMAND_RTT, "Ida y vuelta de un comando serial hasta su respuesta");
+        timer(SENSOR_CAPTURE_TO_MATCH, "Desde imagen capturada (CAPTURED) hasta VERIFY:OK");
+        timer(DB_CONNECTION_ACQUIRE, "Espera para obtener una conexión del pool transaccional");
+        timer(DB_USER_LOOKUP, "Búsqueda del usuario por fingerprint_id");
+        timer(DB_ATTENDANCE_INSERT, "Inserción de la asistencia y su log");
+        timer(DB_COMMIT, "Commit de la transacción de marcación");
+        timer(EDT_DISPATCH_DELAY, "Espera en la cola del EDT antes de ejecutar una tarea");
+        timer(SCAN_TO_SCREEN, "Desde imagen capturada hasta la marcación visible en pantalla");
+
+        counter(MARKS_TOTAL, "Marcaciones registradas");
+        counter(MARKS_FAILED_TOTAL, "Marcaciones fallidas");
+        counter(SERIAL_TIMEOUTS_TOTAL, "Comandos seriales sin respuesta");
+    }
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * Obtiene (o crea) un histograma de latencias
+     */
+    public static LatencyHistogram timer(String name) {
+        return timer(name, name);
+    }
+
+    /**
+     * Obtiene (o crea) un histograma de latencias con descripción
+     */
+    public static LatencyHistogram timer(String name, String help) {
+        return timers.computeIfAbsent(name, k -> new LatencyHistogram(k, help));
+    }
+
+    /**
+     * Registra la duración desde un System.nanoTime() previo
+     */
+    public static void recordSince(String timerName, long startNanos) {
+        timer(timerName).recordSince(startNanos);
+    }
+
+    /**
+     * Obtiene (o crea) un contador
+     */
+    public static LongAdder counter(String name) {
+        return counter(name, name);
+    }
+
+    /**
+     * Obtiene (o crea) un contador con descripción
+     */
+    public static LongAdder counter(String name, String help) {
+        counterHelp.putIfAbsent(name, help);
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    public static void increment(String counterName) {
+        counter(counterName).increment();
+    }
+
+    /**
+     * Registra un gauge evaluado en cada lectura
+     */
+    public static void registerGauge(String name, String help, DoubleSupplier supplier) {
+        gauges.put(name, supplier);
+        gaugeHelp.put(name, help);
+    }
+
+    /**
+     * Registra los gauges de cada pool HikariCP a partir de su MXBean.
+     * Un pool deshabilitado no se registra: sería el transaccional repetido.
+     */
+    public static void registerPoolGauges() {
+        for (DatabaseConfig.Pool pool : DatabaseConfig.Pool.values()) {
+            if (!DatabaseConfig.isPoolEnabled(pool)) {
+                continue;
+            }
+            String prefix = "db_pool_" + pool.name().toLowerCase() + "_";
+            registerGauge(prefix + "active", "Conexiones en uso (" + pool.getPoolName() + ")",
+                () -> poolValue(pool, PoolValue.ACTIVE));
+            registerGauge(prefix + "idle", "Conexiones libres (" + pool.getPoolName() + ")",
+                () -> poolValue(pool, PoolValue.IDLE));
+            registerGauge(prefix + "total", "Conexiones abiertas (" + pool.getPoolName() + ")",
+                () -> poolValue(pool, PoolValue.TOTAL));
+            registerGauge(prefix + "pending", "Hilos esperando conexión (" + pool.getPoolName() + ")",
+                () -> poolValue(pool, PoolValue.PENDING));
+        }
+    }
+
+    /**
+     * Registra los gauges de enlace serial, sensor y bus de cambios
+     */
+    public static void registerApplicationGauges() {
+        registerGauge("serial_link_up", "Enlaces seriales abiertos con el lector",
+            SerialPortManager::getOpenLinkCount);
+        registerGauge("sensor_templates", "Plantillas almacenadas en el sensor (-1 = desconocido)",
+            ArduinoCommService::getCachedTemplateCount);
+        registerGauge("change_bus_listening", "Conexión LISTEN del bus de cambios activa",
+            () -> ChangeEventBus.isListening() ? 1 : 0);
+    }
+
+    private enum PoolValue { ACTIVE, IDLE, TOTAL, PENDING }
+
+    private static double poolValue(DatabaseConfig.Pool pool, PoolValue value) {
+        HikariPoolMXBean mxBean = DatabaseConfig.getPoolMXBean(pool);
+        if (mxBean == null) {
+            return 0;
+        }
+        switch (value) {
+            case ACTIVE:
+                return mxBean.getActiveConnections();
+            case IDLE:
+                return mxBean.getIdleConnections();
+            case TOTAL:
+                return mxBean.getTotalConnections();
+            default:
+                return mxBean.getThreadsAwaitingConnection();
+        }
+    }
+
+    /**
+     * Histogramas registrados (vista de solo lectura)
+     */
+    public static Map<String, LatencyHistogram> getTimers() {
+        return Collections.unmodifiableMap(timers);
+    }
+
+    /**
+     * Instantáneas de todos los histogramas, ordenadas por nombre
+     */
+    public static Map<String, LatencyHistogram.Snapshot> getTimerSnapshots() {
+        Map<String, LatencyHistogram.Snapshot> result = new TreeMap<>();
+        for (LatencyHistogram histogram : timers.values()) {
+            result.put(histogram.getName(), histogram.snapshot());
+        }
+        return result;
+    }
+
+    public static Map<String, Long> getCounterValues() {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((name, adder) -> result.put(name, adder.sum()));
+        return result;
+    }
+
+    public static Map<String, Double> getGaugeValues() {
+        Map<String, Double> result = new TreeMap<>();
+        gauges.forEach((name, supplier) -> {
+            try {
+                result.put(name, supplier.getAsDouble());
+            } catch (Exception e) {
+                logger.debug("Error leyendo gauge {}: {}", name, e.getMessage());
+            }
+        });
+        return result;
+    }
+
+    public static String getCounterHelp(String name) {
+        return counterHelp.getOrDefault(name, name);
+    }
+
+    public static String getGaugeHelp(String name) {
+        return gaugeHelp.getOrDefault(name, name);
+    }
+
+    static Map<String, DoubleSupplier> getGauges() {
+        return gauges;
+    }
+
+    static Map<String, LongAdder> getCounters() {
+        return counters;
+    }
+
+    /**
+     * Resumen legible de todas las métricas
+     */
+    public static String formatReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== Latencias ===\n");
+        for (LatencyHistogram.Snapshot snapshot : getTimerSnapshots().values()) {
+            sb.append(snapshot).append('\n');
+        }
+        sb.append("=== Contadores ===\n");
+        getCounterValues().forEach((name, value) -> sb.append(String.format("%-28s %d%n", name, value)));
+        sb.append("=== Gauges ===\n");
+        getGaugeValues().forEach((name, value) -> sb.append(String.format("%-28s %.0f%n", name, value)));
+        return sb.toString();
+    }
+
+    /**
+     * Exporta el resumen de métricas a un archivo de texto
+     */
+    public static void exportTo(Path file) throws IOException {
+        Files.write(file, formatReport().getBytes(StandardCharsets.UTF_8));
+        logger.info("Métricas exportadas a {}", file);
+    }
+
+    /**
+     * Inicia el volcado periódico al log según metrics.log.intervalSeconds (0 = deshabilitado)
+     */
+    public static synchronized void startPeriodicLog() {
+        long interval = Long.parseLong(DatabaseConfig.getProperty("metrics.log.intervalSeconds", "0"));
+        if (interval <= 0 || reporter != null) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(() -> logger.info("Métricas:\n{}", formatReport()),
+            interval, interval, TimeUnit.SECONDS);
+        logger.info("Reporte periódico de métricas cada {} s", interval);
+    }
+
+    /**
+     * Detiene el volcado periódico y deja un último resumen en el log
+     */
+    public static synchronized void shutdown() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+        logger.info("Métricas finales:\n{}", formatReport());
+    }
+}
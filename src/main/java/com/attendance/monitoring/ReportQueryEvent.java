@@ -0,0 +1,32 @@
+package com.attendance.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR de la generación de un reporte (consulta o exportación)
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+@Name("com.attendance.ReportQuery")
+@Label("Generación de reporte")
+@Category({"Asistencia", "Reportes"})
+@Description("Consulta o exportación de un reporte de asistencias")
+public class ReportQueryEvent extends Event {
+
+    @Label("Tipo de reporte")
+    public String reportType;
+
+    @Label("Formato")
+    public String format;
+
+    @Label("Filas")
+    public long rows;
+
+    @Label("Exitoso")
+    public boolean success;
+}
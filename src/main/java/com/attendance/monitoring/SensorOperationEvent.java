@@ -0,0 +1,59 @@
+package com.attendance.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR de una operación completa del lector de huellas
+ * (conexión, enrolamiento, verificación, borrado, prueba)
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+@Name("com.attendance.SensorOperation")
+@Label("Operación del sensor")
+@Category({"Asistencia", "Serial"})
+@Description("Operación de alto nivel de ArduinoCommService")
+public class SensorOperationEvent extends Event {
+
+    @Label("Operación")
+    public String operation;
+
+    @Label("Dispositivo")
+    public String device;
+
+    @Label("Fingerprint ID")
+    public int fingerprintId = -1;
+
+    @Label("Confianza")
+    public int confidence;
+
+    @Label("Exitosa")
+    public boolean success;
+
+    @Label("Mensaje")
+    public String message;
+
+    /**
+     * Crea el evento y comienza a medir su duración
+     */
+    public static SensorOperationEvent begin(String operation, String device) {
+        SensorOperationEvent event = new SensorOperationEvent();
+        event.operation = operation;
+        event.device = device;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Completa el evento con el resultado y lo registra
+     */
+    public void finish(boolean success, String message) {
+        this.success = success;
+        this.message = message;
+        commit();
+    }
+}
@@ -0,0 +1,35 @@
+package com.attendance.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR de un comando o línea intercambiada por el puerto serial
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+@Name("com.attendance.SerialCommand")
+@Label("Comando serial")
+@Category({"Asistencia", "Serial"})
+@Description("Envío de un comando al lector o lectura de una línea de respuesta")
+public class SerialCommandEvent extends Event {
+
+    @Label("Operación")
+    public String operation;
+
+    @Label("Comando / línea")
+    public String command;
+
+    @Label("Dispositivo")
+    public String device;
+
+    @Label("Bytes")
+    public int bytes;
+
+    @Label("Con respuesta")
+    public boolean success;
+}
@@ -0,0 +1,202 @@
+package com.attendance.monitoring;
+
+import com.attendance.config.DatabaseConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Endpoint HTTP embebido con las métricas en formato OpenMetrics
+ * Pensado para que Prometheus lea el estado de kioscos desatendidos.
+ * Deshabilitado por defecto (metrics.http.enabled).
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class TelemetryServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryServer.class);
+
+    private static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    private static final String METRIC_PREFIX = "asistencia_";
+
+    /** Límites de los buckets exportados, en microsegundos */
+    private static final long[] BUCKET_BOUNDS_MICROS = {
+        1_000, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000,
+        500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+    private static final String[] BUCKET_LABELS = {
+        "0.001", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25",
+        "0.5", "1.0", "2.5", "5.0", "10.0"
+    };
+
+    private static HttpServer server;
+
+    // Buffers reutilizados entre scrapes (el servidor atiende con un único hilo)
+    private static final long[] bucketCounts = new long[BUCKET_BOUNDS_MICROS.length];
+    private static final StringBuilder text = new StringBuilder(8192);
+    private static final ByteArrayOutputStream body = new ByteArrayOutputStream(8192);
+
+    private TelemetryServer() {
+    }
+
+    /**
+     * Inicia el servidor si metrics.http.enabled=true
+     */
+    public static synchronized void start() {
+        if (server != null) {
+            return;
+        }
+        if (!Boolean.parseBoolean(DatabaseConfig.getProperty("metrics.http.enabled", "false"))) {
+            return;
+        }
+
+        String bindAddress = DatabaseConfig.getProperty("metrics.http.bindAddress", "127.0.0.1");
+        int port = Integer.parseInt(DatabaseConfig.getProperty("metrics.http.port", "9464"));
+
+        try {
+            server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+            server.createContext("/metrics", TelemetryServer::handleMetrics);
+            server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "telemetry-http");
+                t.setDaemon(true);
+                return t;
+            }));
+            server.start();
+            logger.info("Endpoint de métricas disponible en http://{}:{}/metrics", bindAddress, port);
+        } catch (IOException e) {
+            logger.error("No se pudo iniciar el endpoint de métricas en {}:{}", bindAddress, port, e);
+            server = null;
+        }
+    }
+
+    /**
+     * Detiene el servidor
+     */
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+            logger.info("Endpoint de métricas detenido");
+        }
+    }
+
+    private static void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            body.reset();
+            try (Writer writer = new OutputStreamWriter(body, StandardCharsets.UTF_8)) {
+                text.setLength(0);
+                writeMetrics(text);
+                writer.append(text);
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.size());
+            try (OutputStream out = exchange.getResponseBody()) {
+                body.writeTo(out);
+            }
+        } catch (Exception e) {
+            logger.warn("Error atendiendo /metrics: {}", e.getMessage());
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Escribe todas las métricas registradas en formato OpenMetrics
+     */
+    static void writeMetrics(StringBuilder sb) {
+        for (Map.Entry<String, LongAdder> entry : MetricsRegistry.getCounters().entrySet()) {
+            String name = entry.getKey();
+            String family = METRIC_PREFIX + (name.endsWith("_total") ? name.substring(0, name.length() - 6) : name);
+            header(sb, family, "counter", MetricsRegistry.getCounterHelp(name));
+            sb.append(family).append("_total ").append(entry.getValue().sum()).append('\n');
+        }
+
+        for (Map.Entry<String, DoubleSupplier> entry : MetricsRegistry.getGauges().entrySet()) {
+            String family = METRIC_PREFIX + entry.getKey();
+            double value;
+            try {
+                value = entry.getValue().getAsDouble();
+            } catch (Exception e) {
+                continue;
+            }
+            header(sb, family, "gauge", MetricsRegistry.getGaugeHelp(entry.getKey()));
+            sb.append(family).append(' ');
+            appendNumber(sb, value);
+            sb.append('\n');
+        }
+
+        for (LatencyHistogram histogram : MetricsRegistry.getTimers().values()) {
+            String family = METRIC_PREFIX + histogram.getName() + "_seconds";
+            long sumMicros = histogram.getSumMicros();
+            long count = histogram.cumulativeCounts(BUCKET_BOUNDS_MICROS, bucketCounts);
+
+            header(sb, family, "histogram", histogram.getHelp());
+            for (int i = 0; i < BUCKET_BOUNDS_MICROS.length; i++) {
+                sb.append(family).append("_bucket{le=\"");
+                appendEscaped(sb, BUCKET_LABELS[i]);
+                sb.append("\"} ").append(bucketCounts[i]).append('\n');
+            }
+            sb.append(family).append("_bucket{le=\"+Inf\"} ").append(count).append('\n');
+            sb.append(family).append("_count ").append(count).append('\n');
+            sb.append(family).append("_sum ");
+            appendNumber(sb, sumMicros / 1_000_000.0);
+            sb.append('\n');
+        }
+
+        sb.append("# EOF\n");
+    }
+
+    private static void header(StringBuilder sb, String family, String type, String help) {
+        sb.append("# TYPE ").append(family).append(' ').append(type).append('\n');
+        sb.append("# HELP ").append(family).append(' ');
+        appendEscaped(sb, help);
+        sb.append('\n');
+    }
+
+    /**
+     * Escapa texto de HELP y valores de etiqueta: barra invertida, comillas y salto de línea
+     */
+    private static void appendEscaped(StringBuilder sb, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                sb.append("\\\\");
+            } else if (c == '"') {
+                sb.append("\\\"");
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    private static void appendNumber(StringBuilder sb, double value) {
+        if (value == (long) value) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+    }
+}
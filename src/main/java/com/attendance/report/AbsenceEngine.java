@@ -0,0 +1,384 @@
+package com.attendance.report;
+
+import com.attendance.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detección de ausencias por usuario
+ * Cada usuario tiene un BitSet con un bit por día del periodo: días
+ * laborables según sus horarios (dias_semana dentro de la vigencia de
+ * usuarios_horarios), días con marcaciones y días con justificación
+ * aprobada. Ausencia = laborable sin marcaciones; injustificada = ausencia
+ * sin justificación. Se hacen cuatro consultas en total, no una por usuario.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class AbsenceEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbsenceEngine.class);
+
+    private static final int FETCH_SIZE = 5000;
+
+    private static final String USER_SCOPE =
+        "JOIN usuarios u ON x.id_usuario = u.id_usuario " +
+        "LEFT JOIN departamentos d ON u.id_departamento = d.id_departamento " +
+        "WHERE u.activo = TRUE ";
+
+    private static final String USERS_QUERY =
+        "SELECT u.id_usuario, u.dni, u.nombres || ' ' || u.apellidos AS nombre, " +
+        "       COALESCE(d.nombre, 'Sin Departamento') AS departamento " +
+        "FROM usuarios u " +
+        "LEFT JOIN departamentos d ON u.id_departamento = d.id_departamento " +
+        "WHERE u.activo = TRUE ";
+
+    private static final String SCHEDULES_QUERY =
+        "SELECT x.id_usuario, x.fecha_inicio, x.fecha_fin, h.id_horario, h.dias_semana " +
+        "FROM usuarios_horarios x " +
+        "JOIN horarios_trabajo h ON x.id_horario = h.id_horario " +
+        USER_SCOPE +
+        "  AND x.activo = TRUE AND h.activo = TRUE " +
+        "  AND x.fecha_inicio <= ? AND (x.fecha_fin IS NULL OR x.fecha_fin >= ?) ";
+
+    private static final String JUSTIFICATIONS_QUERY =
+        "SELECT x.id_usuario, x.fecha_inicio, x.fecha_fin " +
+        "FROM justificaciones x " +
+        USER_SCOPE +
+        "  AND x.estado = 'APROBADO' AND x.fecha_inicio <= ? AND x.fecha_fin >= ? ";
+
+    // Un día con marcaciones por fila; el rango sobre fecha_hora usa el índice
+    private static final String PRESENCE_QUERY =
+        "SELECT x.id_usuario, CAST(x.fecha_hora AS DATE) AS dia " +
+        "FROM asistencias x " +
+        USER_SCOPE +
+        "  AND x.fecha_hora >= ? AND x.fecha_hora < ? ";
+
+    private AbsenceEngine() {
+    }
+
+    public static Result compute(LocalDate fechaInicio, LocalDate fechaFin) throws SQLException {
+        return compute(fechaInicio, fechaFin, null);
+    }
+
+    /**
+     * Ausencias de los usuarios activos en el periodo. El día actual y los
+     * futuros no se evalúan: todavía pueden tener marcaciones.
+     *
+     * @param departamento nombre del departamento, null para todos
+     */
+    public static Result compute(LocalDate fechaInicio, LocalDate fechaFin, String departamento) throws SQLException {
+        long start = System.currentTimeMillis();
+        LocalDate ayer = LocalDate.now().minusDays(1);
+        LocalDate fin = fechaFin.isAfter(ayer) ? ayer : fechaFin;
+        if (fin.isBefore(fechaInicio)) {
+            return new Result(fechaInicio, fechaFin, Collections.<UserAbsences>emptyList());
+        }
+
+        Period period = new Period(fechaInicio, fin);
+        String deptFilter = departamento != null ? "AND d.nombre = ? " : "";
+
+        Map<Integer, UserBits> users = new LinkedHashMap<>();
+        try (Connection conn = DatabaseConfig.getConnection(DatabaseConfig.Pool.REPORTES)) {
+            conn.setAutoCommit(false);
+            try {
+                readUsers(conn, USERS_QUERY + deptFilter + "ORDER BY u.apellidos, u.nombres",
+                    departamento, users);
+                readSchedules(conn, SCHEDULES_QUERY + deptFilter, departamento, period, users);
+                readJustifications(conn, JUSTIFICATIONS_QUERY + deptFilter, departamento, period, users);
+                readPresence(conn, PRESENCE_QUERY + deptFilter + "GROUP BY x.id_usuario, dia",
+                    departamento, period, users);
+            } finally {
+                conn.rollback();
+            }
+        }
+
+        List<UserAbsences> result = new ArrayList<>();
+        for (UserBits bits : users.values()) {
+            if (!bits.esperados.isEmpty()) {
+                result.add(bits.toAbsences(period));
+            }
+        }
+        logger.info("Ausencias calculadas: {} usuarios, {} días en {} ms",
+            result.size(), period.days, System.currentTimeMillis() - start);
+        return new Result(fechaInicio, fechaFin, result);
+    }
+
+    private static void readUsers(Connection conn, String sql, String departamento,
+                                  Map<Integer, UserBits> users) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            if (departamento != null) {
+                pstmt.setString(1, departamento);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    users.put(rs.getInt("id_usuario"), new UserBits(rs.getInt("id_usuario"),
+                        rs.getString("dni"), rs.getString("nombre"), rs.getString("departamento")));
+                }
+            }
+        }
+    }
+
+    private static void readSchedules(Connection conn, String sql, String departamento, Period period,
+                                      Map<Integer, UserBits> users) throws SQLException {
+        // Días del periodo que caen en los dias_semana de cada horario
+        Map<Integer, BitSet> horarioDays = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setObject(1, period.fin);
+            pstmt.setObject(2, period.inicio);
+            if (departamento != null) {
+                pstmt.setString(3, departamento);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    UserBits bits = users.get(rs.getInt("id_usuario"));
+                    if (bits == null) {
+                        continue;
+                    }
+                    int idHorario = rs.getInt("id_horario");
+                    BitSet days = horarioDays.get(idHorario);
+                    if (days == null) {
+                        Array diasSemana = rs.getArray("dias_semana");
+                        days = period.weekdays(diasSemana != null ? (Object[]) diasSemana.getArray() : null);
+                        horarioDays.put(idHorario, days);
+                    }
+
+                    BitSet vigente = (BitSet) days.clone();
+                    vigente.clear(0, period.index(rs.getObject("fecha_inicio", LocalDate.class)));
+                    LocalDate hasta = rs.getObject("fecha_fin", LocalDate.class);
+                    if (hasta != null && hasta.isBefore(period.fin)) {
+                        vigente.clear(period.index(hasta) + 1, period.days);
+                    }
+                    bits.esperados.or(vigente);
+                }
+            }
+        }
+    }
+
+    private static void readJustifications(Connection conn, String sql, String departamento, Period period,
+                                           Map<Integer, UserBits> users) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setObject(1, period.fin);
+            pstmt.setObject(2, period.inicio);
+            if (departamento != null) {
+                pstmt.setString(3, departamento);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    UserBits bits = users.get(rs.getInt("id_usuario"));
+                    if (bits != null) {
+                        bits.justificados.set(period.index(rs.getObject("fecha_inicio", LocalDate.class)),
+                            period.index(rs.getObject("fecha_fin", LocalDate.class)) + 1);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void readPresence(Connection conn, String sql, String departamento, Period period,
+                                     Map<Integer, UserBits> users) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setFetchSize(FETCH_SIZE);
+            pstmt.setTimestamp(1, Timestamp.valueOf(period.inicio.atStartOfDay()));
+            pstmt.setTimestamp(2, Timestamp.valueOf(period.fin.plusDays(1).atStartOfDay()));
+            if (departamento != null) {
+                pstmt.setString(3, departamento);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    UserBits bits = users.get(rs.getInt(1));
+                    if (bits != null) {
+                        bits.presentes.set(period.index(rs.getObject(2, LocalDate.class)));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Periodo evaluado; el bit i corresponde a inicio + i días
+     */
+    static class Period {
+        final LocalDate inicio;
+        final LocalDate fin;
+        final int days;
+
+        Period(LocalDate inicio, LocalDate fin) {
+            this.inicio = inicio;
+            this.fin = fin;
+            this.days = (int) ChronoUnit.DAYS.between(inicio, fin) + 1;
+        }
+
+        /** Índice del día, acotado al periodo */
+        int index(LocalDate fecha) {
+            long index = ChronoUnit.DAYS.between(inicio, fecha);
+            return (int) Math.max(0, Math.min(days, index));
+        }
+
+        LocalDate date(int index) {
+            return inicio.plusDays(index);
+        }
+
+        /**
+         * Días del periodo que caen en alguno de los días de la semana (LUN..DOM)
+         */
+        BitSet weekdays(Object[] diasSemana) {
+            boolean[] laborable = new boolean[7];
+            if (diasSemana != null) {
+                for (Object dia : diasSemana) {
+                    DayOfWeek dayOfWeek = dayOfWeek(String.valueOf(dia));
+                    if (dayOfWeek != null) {
+                        laborable[dayOfWeek.getValue() - 1] = true;
+                    }
+                }
+            }
+            BitSet bits = new BitSet(days);
+            int first = inicio.getDayOfWeek().getValue() - 1;
+            for (int i = 0; i < days; i++) {
+                if (laborable[(first + i) % 7]) {
+                    bits.set(i);
+                }
+            }
+            return bits;
+        }
+
+        private static DayOfWeek dayOfWeek(String dia) {
+            switch (dia.trim().toUpperCase()) {
+                case "LUN":
+                    return DayOfWeek.MONDAY;
+                case "MAR":
+                    return DayOfWeek.TUESDAY;
+                case "MIE":
+                    return DayOfWeek.WEDNESDAY;
+                case "JUE":
+                    return DayOfWeek.THURSDAY;
+                case "VIE":
+                    return DayOfWeek.FRIDAY;
+                case "SAB":
+                    return DayOfWeek.SATURDAY;
+                case "DOM":
+                    return DayOfWeek.SUNDAY;
+                default:
+                    logger.warn("Día de la semana desconocido en horario: {}", dia);
+                    return null;
+            }
+        }
+    }
+
+    static class UserBits {
+        final int idUsuario;
+        final String dni;
+        final String nombre;
+        final String departamento;
+        final BitSet esperados = new BitSet();
+        final BitSet presentes = new BitSet();
+        final BitSet justificados = new BitSet();
+
+        UserBits(int idUsuario, String dni, String nombre, String departamento) {
+            this.idUsuario = idUsuario;
+            this.dni = dni;
+            this.nombre = nombre;
+            this.departamento = departamento;
+        }
+
+        UserAbsences toAbsences(Period period) {
+            BitSet ausentes = (BitSet) esperados.clone();
+            ausentes.andNot(presentes);
+            BitSet injustificados = (BitSet) ausentes.clone();
+            injustificados.andNot(justificados);
+
+            BitSet asistidos = (BitSet) esperados.clone();
+            asistidos.and(presentes);
+
+            return new UserAbsences(idUsuario, dni, nombre, departamento,
+                esperados.cardinality(), asistidos.cardinality(),
+                dates(period, ausentes), dates(period, injustificados));
+        }
+
+        private static List<LocalDate> dates(Period period, BitSet bits) {
+            List<LocalDate> fechas = new ArrayList<>(bits.cardinality());
+            for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+                fechas.add(period.date(i));
+            }
+            return Collections.unmodifiableList(fechas);
+        }
+    }
+
+    /**
+     * Ausencias de un usuario en el periodo
+     */
+    public static class UserAbsences {
+        public final int idUsuario;
+        public final String dni;
+        public final String nombreCompleto;
+        public final String departamento;
+        /** Días laborables según sus horarios */
+        public final int diasLaborables;
+        /** Días laborables con al menos una marcación */
+        public final int diasAsistidos;
+        public final List<LocalDate> ausencias;
+        /** Ausencias sin justificación aprobada */
+        public final List<LocalDate> injustificadas;
+
+        public UserAbsences(int idUsuario, String dni, String nombreCompleto, String departamento,
+                            int diasLaborables, int diasAsistidos,
+                            List<LocalDate> ausencias, List<LocalDate> injustificadas) {
+            this.idUsuario = idUsuario;
+            this.dni = dni;
+            this.nombreCompleto = nombreCompleto;
+            this.departamento = departamento;
+            this.diasLaborables = diasLaborables;
+            this.diasAsistidos = diasAsistidos;
+            this.ausencias = ausencias;
+            this.injustificadas = injustificadas;
+        }
+    }
+
+    /**
+     * Usuarios con horario en el periodo, ordenados por apellido y nombre
+     */
+    public static class Result {
+        public final LocalDate fechaInicio;
+        public final LocalDate fechaFin;
+        public final List<UserAbsences> usuarios;
+
+        public Result(LocalDate fechaInicio, LocalDate fechaFin, List<UserAbsences> usuarios) {
+            this.fechaInicio = fechaInicio;
+            this.fechaFin = fechaFin;
+            this.usuarios = Collections.unmodifiableList(usuarios);
+        }
+
+        public int getTotalAusencias() {
+            int total = 0;
+            for (UserAbsences usuario : usuarios) {
+                total += usuario.ausencias.size();
+            }
+            return total;
+        }
+
+        public int getTotalInjustificadas() {
+            int total = 0;
+            for (UserAbsences usuario : usuarios) {
+                total += usuario.injustificadas.size();
+            }
+            return total;
+        }
+    }
+}
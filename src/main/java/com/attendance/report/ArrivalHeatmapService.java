@@ -0,0 +1,381 @@
+package com.attendance.report;
+
+import com.attendance.config.ConfigService;
+import com.attendance.config.DatabaseConfig;
+import com.attendance.service.ChangeEventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Carga de marcaciones por día de la semana y franja horaria
+ * Contadores en arreglos int por departamento: 7 días × franjas de
+ * BUCKET_MINUTES minutos. Se reconstruyen desde el historial
+ * (reports.heatmap.days) en paralelo sobre el pool de reportes y luego se
+ * actualizan con cada marcación que llega por el ChangeEventBus. Los
+ * contadores no descuentan los días que salen de la ventana: cuando la
+ * ventana avanza (cambio de día o de reports.heatmap.days) se reconstruyen.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class ArrivalHeatmapService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArrivalHeatmapService.class);
+
+    public static final int BUCKET_MINUTES = 5;
+    public static final int BUCKETS_PER_DAY = 24 * 60 / BUCKET_MINUTES;
+    public static final int DAYS = 7;
+    /** Clave de los usuarios sin departamento */
+    public static final int SIN_DEPARTAMENTO = 0;
+
+    private static final int CELLS = DAYS * BUCKETS_PER_DAY;
+    private static final int DAYS_PER_TASK = 7;
+    private static final int EXTRA_ID_USUARIO = 0;
+    private static final int EXTRA_FECHA_HORA = 1;
+    private static final int EXTRA_ID_DEPARTAMENTO = 0;
+
+    private static final ConfigService.Setting<Integer> HISTORY_DAYS =
+        ConfigService.intSetting("reports.heatmap.days", 90);
+
+    // La agregación se hace en la base: por tramo vuelven a lo sumo departamentos × 2016 filas
+    private static final String COUNTS_QUERY =
+        "SELECT COALESCE(u.id_departamento, " + SIN_DEPARTAMENTO + "), " +
+        "       EXTRACT(ISODOW FROM a.fecha_hora)::int - 1 AS dia, " +
+        "       FLOOR(EXTRACT(EPOCH FROM CAST(a.fecha_hora AS TIME)) / " + (BUCKET_MINUTES * 60) + ")::int AS franja, " +
+        "       COUNT(*) " +
+        "FROM asistencias a " +
+        "JOIN usuarios u ON a.id_usuario = u.id_usuario " +
+        "WHERE a.fecha_hora >= ? AND a.fecha_hora < ? " +
+        "GROUP BY 1, 2, 3";
+
+    private static final Object REBUILD_LOCK = new Object();
+
+    // Estado protegido por el monitor de la clase
+    private static Map<Integer, int[]> counts = new HashMap<>();
+    private static Map<Integer, Integer> userDepartments = new HashMap<>();
+    private static Map<Integer, String> departmentNames = new LinkedHashMap<>();
+    private static LocalDateTime desde;
+    private static boolean stale = false;
+    private static List<ChangeEventBus.ChangeEvent> duringRebuild;
+
+    static {
+        ChangeEventBus.subscribe(ArrivalHeatmapService::onAttendanceChange, ChangeEventBus.ASISTENCIAS);
+        ChangeEventBus.subscribe(ArrivalHeatmapService::onUserChange, ChangeEventBus.USUARIOS);
+        // Los nombres se vuelven a leer en la próxima reconstrucción
+        ChangeEventBus.subscribe(event -> markStale(), ChangeEventBus.DEPARTAMENTOS);
+    }
+
+    private ArrivalHeatmapService() {
+    }
+
+    /**
+     * Mapa de calor del departamento, reconstruyéndolo si hace falta (no llamar desde el EDT)
+     *
+     * @param idDepartamento null para todos, SIN_DEPARTAMENTO para los usuarios sin departamento
+     */
+    public static Heatmap load(Integer idDepartamento) throws SQLException {
+        synchronized (REBUILD_LOCK) {
+            if (!isBuilt() || isStale() || isExpired()) {
+                rebuild();
+            }
+        }
+        return getHeatmap(idDepartamento);
+    }
+
+    /**
+     * Mapa de calor con los contadores actuales, sin consultar la base de datos
+     *
+     * @return null si todavía no se construyó
+     */
+    public static synchronized Heatmap getHeatmap(Integer idDepartamento) {
+        if (desde == null) {
+            return null;
+        }
+        int[] cells = new int[CELLS];
+        if (idDepartamento == null) {
+            for (int[] departmentCells : counts.values()) {
+                for (int i = 0; i < CELLS; i++) {
+                    cells[i] += departmentCells[i];
+                }
+            }
+        } else {
+            int[] departmentCells = counts.get(idDepartamento);
+            if (departmentCells != null) {
+                System.arraycopy(departmentCells, 0, cells, 0, CELLS);
+            }
+        }
+        return new Heatmap(cells, desde);
+    }
+
+    /**
+     * Departamentos con nombre (incluye SIN_DEPARTAMENTO), de la última reconstrucción
+     */
+    public static synchronized Map<Integer, String> getDepartamentos() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(departmentNames));
+    }
+
+    public static synchronized boolean isBuilt() {
+        return desde != null;
+    }
+
+    public static synchronized boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Indica si la ventana avanzó desde la última reconstrucción: los
+     * contadores todavía incluyen días que ya quedaron fuera
+     */
+    public static synchronized boolean isExpired() {
+        return desde != null && !desde.equals(windowStart());
+    }
+
+    private static LocalDateTime windowStart() {
+        return LocalDate.now().minusDays(HISTORY_DAYS.get()).atStartOfDay();
+    }
+
+    /**
+     * Vuelve a contar el historial en tramos paralelos y reemplaza los contadores
+     */
+    public static void rebuild() throws SQLException {
+        synchronized (REBUILD_LOCK) {
+            long start = System.currentTimeMillis();
+            LocalDateTime inicio = windowStart();
+            LocalDateTime fin = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+            synchronized (ArrivalHeatmapService.class) {
+                duringRebuild = new ArrayList<>();
+            }
+            try {
+                Map<Integer, Integer> users = new HashMap<>();
+                Map<Integer, String> names = new LinkedHashMap<>();
+                readUsersAndDepartments(users, names);
+
+                List<Callable<Map<Integer, int[]>>> tasks = new ArrayList<>();
+                for (LocalDateTime tramo = inicio; tramo.isBefore(fin); tramo = tramo.plusDays(DAYS_PER_TASK)) {
+                    LocalDateTime tramoFin = tramo.plusDays(DAYS_PER_TASK);
+                    tasks.add(countTask(tramo, tramoFin.isAfter(fin) ? fin : tramoFin));
+                }
+                Map<Integer, int[]> merged = runTasks(tasks);
+
+                synchronized (ArrivalHeatmapService.class) {
+                    counts = merged;
+                    userDepartments = users;
+                    departmentNames = names;
+                    desde = inicio;
+                    stale = false;
+                    // Marcaciones llegadas mientras se contaba que quedaron fuera del rango leído
+                    for (ChangeEventBus.ChangeEvent event : duringRebuild) {
+                        LocalDateTime fechaHora = event.getExtraDateTime(EXTRA_FECHA_HORA);
+                        if (!fechaHora.isBefore(fin)) {
+                            apply(event, fechaHora);
+                        }
+                    }
+                }
+                logger.info("Mapa de calor reconstruido desde {}, {} tramos en {} ms",
+                    inicio.toLocalDate(), tasks.size(), System.currentTimeMillis() - start);
+            } finally {
+                synchronized (ArrivalHeatmapService.class) {
+                    duringRebuild = null;
+                }
+            }
+        }
+    }
+
+    private static void readUsersAndDepartments(Map<Integer, Integer> users, Map<Integer, String> names)
+            throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection(DatabaseConfig.Pool.REPORTES)) {
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT id_departamento, nombre FROM departamentos ORDER BY nombre");
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    names.put(rs.getInt(1), rs.getString(2));
+                }
+            }
+            names.put(SIN_DEPARTAMENTO, "Sin Departamento");
+
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT id_usuario, COALESCE(id_departamento, " + SIN_DEPARTAMENTO + ") FROM usuarios");
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    users.put(rs.getInt(1), rs.getInt(2));
+                }
+            }
+        }
+    }
+
+    private static Callable<Map<Integer, int[]>> countTask(LocalDateTime inicio, LocalDateTime fin) {
+        return () -> {
+            Map<Integer, int[]> partial = new HashMap<>();
+            try (Connection conn = DatabaseConfig.getConnection(DatabaseConfig.Pool.REPORTES);
+                 PreparedStatement pstmt = conn.prepareStatement(COUNTS_QUERY)) {
+                pstmt.setTimestamp(1, Timestamp.valueOf(inicio));
+                pstmt.setTimestamp(2, Timestamp.valueOf(fin));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int[] cells = partial.computeIfAbsent(rs.getInt(1), k -> new int[CELLS]);
+                        cells[rs.getInt(2) * BUCKETS_PER_DAY + rs.getInt(3)] += rs.getInt(4);
+                    }
+                }
+            }
+            return partial;
+        };
+    }
+
+    private static Map<Integer, int[]> runTasks(List<Callable<Map<Integer, int[]>>> tasks) throws SQLException {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(MonthlyReportEngine.DEFAULT_PARALLELISM, r -> {
+            Thread t = new Thread(r, "heatmap-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Map<Integer, int[]> merged = new HashMap<>();
+            for (Future<Map<Integer, int[]>> future : executor.invokeAll(tasks)) {
+                for (Map.Entry<Integer, int[]> entry : future.get().entrySet()) {
+                    int[] total = merged.get(entry.getKey());
+                    if (total == null) {
+                        merged.put(entry.getKey(), entry.getValue());
+                    } else {
+                        int[] cells = entry.getValue();
+                        for (int i = 0; i < CELLS; i++) {
+                            total[i] += cells[i];
+                        }
+                    }
+                }
+            }
+            return merged;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Reconstrucción del mapa de calor interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Error al reconstruir el mapa de calor", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static synchronized void markStale() {
+        stale = true;
+    }
+
+    private static synchronized void onAttendanceChange(ChangeEventBus.ChangeEvent event) {
+        if (desde == null && duringRebuild == null) {
+            return;
+        }
+        if (event.operacion == ChangeEventBus.ChangeEvent.UPDATE || event.isReload()) {
+            // No se conoce el valor anterior: se recuenta en la próxima carga
+            stale = true;
+            return;
+        }
+
+        LocalDateTime fechaHora;
+        try {
+            fechaHora = event.getExtraDateTime(EXTRA_FECHA_HORA);
+        } catch (RuntimeException e) {
+            fechaHora = null;
+        }
+        if (fechaHora == null) {
+            stale = true;
+            return;
+        }
+        if (duringRebuild != null) {
+            duringRebuild.add(event);
+        }
+        if (desde != null && !fechaHora.isBefore(desde)) {
+            apply(event, fechaHora);
+        }
+    }
+
+    private static void apply(ChangeEventBus.ChangeEvent event, LocalDateTime fechaHora) {
+        Integer idUsuario = event.getExtraInt(EXTRA_ID_USUARIO);
+        Integer idDepartamento = idUsuario != null ? userDepartments.get(idUsuario) : null;
+        int[] cells = counts.computeIfAbsent(idDepartamento != null ? idDepartamento : SIN_DEPARTAMENTO,
+            k -> new int[CELLS]);
+        int cell = cellIndex(fechaHora);
+        if (event.operacion == ChangeEventBus.ChangeEvent.DELETE) {
+            cells[cell] = Math.max(0, cells[cell] - 1);
+        } else {
+            cells[cell]++;
+        }
+    }
+
+    private static synchronized void onUserChange(ChangeEventBus.ChangeEvent event) {
+        if (event.isReload()) {
+            stale = true;
+            return;
+        }
+        if (event.operacion == ChangeEventBus.ChangeEvent.DELETE) {
+            userDepartments.remove(event.id);
+            return;
+        }
+        Integer idDepartamento = event.getExtraInt(EXTRA_ID_DEPARTAMENTO);
+        int nuevo = idDepartamento != null ? idDepartamento : SIN_DEPARTAMENTO;
+        Integer anterior = userDepartments.put(event.id, nuevo);
+        if (anterior != null && anterior != nuevo) {
+            // Sus marcaciones anteriores siguen contadas en el departamento viejo
+            stale = true;
+        }
+    }
+
+    static int cellIndex(LocalDateTime fechaHora) {
+        int dia = fechaHora.getDayOfWeek().getValue() - 1;
+        int franja = fechaHora.toLocalTime().toSecondOfDay() / (BUCKET_MINUTES * 60);
+        return dia * BUCKETS_PER_DAY + franja;
+    }
+
+    /**
+     * Copia de los contadores: celda = día (0 = lunes) × franja
+     */
+    public static class Heatmap {
+        private final int[] cells;
+        public final LocalDateTime desde;
+        public final int total;
+        public final int maximo;
+
+        Heatmap(int[] cells, LocalDateTime desde) {
+            this.cells = cells;
+            this.desde = desde;
+            int sum = 0;
+            int max = 0;
+            for (int value : cells) {
+                sum += value;
+                max = Math.max(max, value);
+            }
+            this.total = sum;
+            this.maximo = max;
+        }
+
+        /**
+         * @param dia    0 = lunes ... 6 = domingo
+         * @param franja 0 .. BUCKETS_PER_DAY - 1
+         */
+        public int get(int dia, int franja) {
+            return cells[dia * BUCKETS_PER_DAY + franja];
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.attendance.report;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Exportación a Excel (XLSX) en streaming con SXSSF
+ * Solo ROW_WINDOW filas permanecen en memoria; el resto se vuelca a archivos
+ * temporales comprimidos. Las filas se leen de un cursor del servidor, por
+ * lo que el consumo de heap no depende del tamaño del reporte.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class ExcelReportExporter implements ReportExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExcelReportExporter.class);
+
+    private static final int ROW_WINDOW = 100;
+    private static final int FETCH_SIZE = 2000;
+    /** Límite de filas por hoja (Excel admite 1.048.576) */
+    private static final int MAX_ROWS_PER_SHEET = 1_000_000;
+
+    private static final String[] HEADERS = {
+        "#", "Fecha", "Hora", "Usuario", "C.I.N.", "Departamento", "Tipo", "Confianza", "Método"
+    };
+    private static final int[] COLUMN_WIDTHS = {8, 12, 10, 32, 14, 22, 10, 10, 12};
+
+    @Override
+    public String getFormato() {
+        return "XLSX";
+    }
+
+    @Override
+    public String getExtension() {
+        return "xlsx";
+    }
+
+    @Override
+    public long export(Connection conn, ReportFilter filter, OutputStream out, ExportContext context)
+            throws SQLException, IOException {
+
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+
+        try {
+            CellStyle headerStyle = createHeaderStyle(workbook);
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+            CellStyle timeStyle = workbook.createCellStyle();
+            timeStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("hh:mm:ss"));
+
+            long rows = 0;
+
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    filter.buildDetailQuery(ReportFilter.ORDER_BY_FECHA_DESC),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+                pstmt.setFetchSize(FETCH_SIZE);
+                filter.bind(pstmt, 1);
+                context.attach(pstmt);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    Sheet sheet = null;
+                    int rowIndex = 0;
+                    int sheetNumber = 0;
+
+                    while (rs.next()) {
+                        if (sheet == null || rowIndex > MAX_ROWS_PER_SHEET) {
+                            sheet = createSheet(workbook, ++sheetNumber, headerStyle);
+                            rowIndex = 1;
+                        }
+
+                        Timestamp fechaHora = rs.getTimestamp("fecha_hora");
+                        Row row = sheet.createRow(rowIndex++);
+                        row.createCell(0).setCellValue(++rows);
+
+                        Cell fecha = row.createCell(1);
+                        fecha.setCellValue(fechaHora.toLocalDateTime().toLocalDate());
+                        fecha.setCellStyle(dateStyle);
+
+                        Cell hora = row.createCell(2);
+                        hora.setCellValue(fechaHora.toLocalDateTime());
+                        hora.setCellStyle(timeStyle);
+
+                        row.createCell(3).setCellValue(rs.getString("usuario"));
+                        row.createCell(4).setCellValue(rs.getString("dni"));
+                        row.createCell(5).setCellValue(rs.getString("departamento"));
+                        row.createCell(6).setCellValue(rs.getString("tipo_marcacion"));
+                        row.createCell(7).setCellValue(rs.getInt("confidence_score"));
+                        row.createCell(8).setCellValue(rs.getString("metodo"));
+
+                        context.rowWritten();
+                    }
+
+                    if (sheet == null) {
+                        createSheet(workbook, 1, headerStyle);
+                    }
+                }
+            } finally {
+                context.detach();
+            }
+
+            context.checkCancelled();
+            workbook.write(out);
+            logger.debug("XLSX escrito: {} filas en {} hojas", rows, workbook.getNumberOfSheets());
+            return rows;
+
+        } finally {
+            // Elimina los archivos temporales de SXSSF
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private Sheet createSheet(SXSSFWorkbook workbook, int number, CellStyle headerStyle) {
+        Sheet sheet = workbook.createSheet(number == 1 ? "Asistencias" : "Asistencias " + number);
+        for (int i = 0; i < COLUMN_WIDTHS.length; i++) {
+            sheet.setColumnWidth(i, COLUMN_WIDTHS[i] * 256);
+        }
+
+        Row header = sheet.createRow(0);
+        for (int i = 0; i < HEADERS.length; i++) {
+            Cell cell = header.createCell(i);
+            cell.setCellValue(HEADERS[i]);
+            cell.setCellStyle(headerStyle);
+        }
+        sheet.createFreezePane(0, 1);
+        return sheet;
+    }
+
+    private CellStyle createHeaderStyle(SXSSFWorkbook workbook) {
+        Font font = workbook.createFont();
+        font.setBold(true);
+        font.setColor(IndexedColors.WHITE.getIndex());
+
+        CellStyle style = workbook.createCellStyle();
+        style.setFont(font);
+        style.setFillForegroundColor(IndexedColors.ROYAL_BLUE.getIndex());
+        style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        style.setAlignment(HorizontalAlignment.CENTER);
+        return style;
+    }
+}
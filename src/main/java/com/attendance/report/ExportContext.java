@@ -0,0 +1,128 @@
+package com.attendance.report;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Estado compartido entre un exportador y quien lo ejecuta:
+ * progreso por filas y cancelación (incluida la de la sentencia en curso)
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class ExportContext {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportContext.class);
+    private static final int PROGRESS_STEP = 1000;
+
+    private final ProgressListener listener;
+    private volatile boolean cancelled = false;
+    private volatile Canceller canceller;
+    private volatile long totalRows = -1;
+    private long rows = 0;
+
+    public ExportContext(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Total de filas esperado (-1 si se desconoce)
+     */
+    public void setTotalRows(long totalRows) {
+        this.totalRows = totalRows;
+        notifyProgress();
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Registra la sentencia en ejecución para poder cancelarla en el servidor
+     */
+    public void attach(Statement stmt) throws SQLException {
+        attach(stmt::cancel);
+    }
+
+    /**
+     * Registra cómo cancelar en el servidor una operación sin Statement (COPY)
+     */
+    public void attach(Canceller canceller) throws SQLException {
+        this.canceller = canceller;
+        if (cancelled) {
+            canceller.cancel();
+        }
+    }
+
+    public void detach() {
+        this.canceller = null;
+    }
+
+    /**
+     * Cuenta una fila escrita; notifica el progreso cada PROGRESS_STEP filas
+     */
+    public void rowWritten() {
+        rows++;
+        if (rows % PROGRESS_STEP == 0) {
+            checkCancelled();
+            notifyProgress();
+        }
+    }
+
+    /**
+     * Notifica el progreso final (tras la última fila)
+     */
+    public void finishRows() {
+        notifyProgress();
+    }
+
+    /**
+     * Solicita la cancelación; si hay una sentencia en curso se cancela en PostgreSQL
+     */
+    public void cancel() {
+        cancelled = true;
+        Canceller current = canceller;
+        if (current != null) {
+            try {
+                current.cancel();
+            } catch (SQLException e) {
+                logger.debug("No se pudo cancelar la sentencia: {}", e.getMessage());
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Lanza CancellationException si se solicitó la cancelación
+     */
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Exportación cancelada");
+        }
+    }
+
+    private void notifyProgress() {
+        if (listener != null) {
+            listener.onProgress(rows, totalRows);
+        }
+    }
+
+    public interface ProgressListener {
+        void onProgress(long rows, long totalRows);
+    }
+
+    public interface Canceller {
+        void cancel() throws SQLException;
+    }
+}
@@ -0,0 +1,420 @@
+package com.attendance.report;
+
+import com.attendance.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reporte mensual por usuario (reemplaza a sp_reporte_mensual)
+ * El mes se divide en tareas por departamento y semana que corren en
+ * paralelo sobre el pool de reportes; cada una lee su rango de fecha_hora
+ * (usa el índice, a diferencia de EXTRACT) y arma las jornadas con
+ * WorkSessionEngine. Los agregados parciales por usuario se suman al final.
+ * Las llegadas tarde y salidas temprano se miden contra el horario del
+ * usuario; sin horario se usan los umbrales fijos del procedimiento (9:00 / 17:00).
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class MonthlyReportEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(MonthlyReportEngine.class);
+
+    private static final int FETCH_SIZE = 5000;
+    private static final int DAYS_PER_TASK = 7;
+    private static final Shift DEFAULT_SHIFT = new Shift(null, null, LocalTime.of(9, 0), LocalTime.of(17, 0), 0);
+
+    /** Tareas simultáneas; más allá del tamaño del pool de reportes solo esperan conexión */
+    public static final int DEFAULT_PARALLELISM = Math.max(1, Integer.parseInt(DatabaseConfig.getProperty(
+        "reports.monthly.parallelism",
+        String.valueOf(Math.min(Runtime.getRuntime().availableProcessors(),
+            Integer.parseInt(DatabaseConfig.getProperty("db.report.maxPoolSize", "4")))))));
+
+    private static final String USERS_QUERY =
+        "SELECT u.id_usuario, u.id_departamento, u.dni, u.nombres || ' ' || u.apellidos AS nombre, " +
+        "       COALESCE(d.nombre, 'Sin Departamento') AS departamento " +
+        "FROM usuarios u " +
+        "LEFT JOIN departamentos d ON u.id_departamento = d.id_departamento " +
+        "WHERE u.activo = TRUE " +
+        "ORDER BY u.apellidos, u.nombres";
+
+    private static final String SHIFTS_QUERY =
+        "SELECT uh.id_usuario, uh.fecha_inicio, uh.fecha_fin, h.hora_entrada, h.hora_salida, h.tolerancia_minutos " +
+        "FROM usuarios_horarios uh " +
+        "JOIN horarios_trabajo h ON uh.id_horario = h.id_horario " +
+        "WHERE uh.activo = TRUE AND h.activo = TRUE " +
+        "  AND uh.fecha_inicio <= ? AND (uh.fecha_fin IS NULL OR uh.fecha_fin >= ?) " +
+        "ORDER BY uh.id_usuario, uh.fecha_inicio DESC";
+
+    private static final String MARKS_QUERY =
+        "SELECT a.id_usuario, a.fecha_hora, a.tipo_marcacion " +
+        "FROM asistencias a " +
+        "JOIN usuarios u ON a.id_usuario = u.id_usuario " +
+        "WHERE u.activo = TRUE AND a.fecha_hora >= ? AND a.fecha_hora < ? AND ";
+
+    private MonthlyReportEngine() {
+    }
+
+    public static Result compute(YearMonth mes) throws SQLException {
+        return compute(mes, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Calcula el reporte del mes con la cantidad de hilos indicada
+     */
+    public static Result compute(YearMonth mes, int parallelism) throws SQLException {
+        long start = System.currentTimeMillis();
+        LocalDate inicio = mes.atDay(1);
+        LocalDate fin = mes.atEndOfMonth();
+
+        List<UserRow> users = new ArrayList<>();
+        Set<Integer> departamentos = new LinkedHashSet<>();
+        Map<Integer, List<Shift>> shifts = new HashMap<>();
+        try (Connection conn = DatabaseConfig.getConnection(DatabaseConfig.Pool.REPORTES)) {
+            conn.setAutoCommit(false);
+            try {
+                readUsers(conn, users, departamentos);
+                readShifts(conn, inicio, fin, shifts);
+            } finally {
+                conn.rollback();
+            }
+        }
+
+        List<MonthTask> tasks = new ArrayList<>();
+        for (Integer idDepartamento : departamentos) {
+            for (LocalDate desde = inicio; !desde.isAfter(fin); desde = desde.plusDays(DAYS_PER_TASK)) {
+                LocalDate hasta = desde.plusDays(DAYS_PER_TASK - 1);
+                tasks.add(new MonthTask(idDepartamento, desde, hasta.isAfter(fin) ? fin : hasta, shifts));
+            }
+        }
+
+        Map<Integer, Aggregate> totals = runTasks(tasks, parallelism);
+
+        List<Row> rows = new ArrayList<>(users.size());
+        for (UserRow user : users) {
+            Aggregate aggregate = totals.get(user.idUsuario);
+            rows.add(new Row(user.idUsuario, user.dni, user.nombre, user.departamento,
+                aggregate != null ? aggregate : new Aggregate()));
+        }
+
+        long duracion = System.currentTimeMillis() - start;
+        logger.info("Reporte mensual {}: {} usuarios, {} tareas en {} hilos, {} ms",
+            mes, rows.size(), tasks.size(), parallelism, duracion);
+        return new Result(mes, rows, tasks.size(), duracion);
+    }
+
+    private static Map<Integer, Aggregate> runTasks(List<MonthTask> tasks, int parallelism) throws SQLException {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread t = new Thread(r, "monthly-report-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Map<Integer, Aggregate> totals = new HashMap<>();
+            for (Future<Map<Integer, Aggregate>> future : executor.invokeAll(tasks)) {
+                for (Map.Entry<Integer, Aggregate> entry : future.get().entrySet()) {
+                    Aggregate total = totals.get(entry.getKey());
+                    if (total == null) {
+                        totals.put(entry.getKey(), entry.getValue());
+                    } else {
+                        total.add(entry.getValue());
+                    }
+                }
+            }
+            return totals;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Reporte mensual interrumpido", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Error en el reporte mensual", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void readUsers(Connection conn, List<UserRow> users, Set<Integer> departamentos) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(USERS_QUERY);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                int idDepartamento = rs.getInt("id_departamento");
+                departamentos.add(rs.wasNull() ? null : idDepartamento);
+                users.add(new UserRow(rs.getInt("id_usuario"), rs.getString("dni"),
+                    rs.getString("nombre"), rs.getString("departamento")));
+            }
+        }
+    }
+
+    private static void readShifts(Connection conn, LocalDate inicio, LocalDate fin,
+                                   Map<Integer, List<Shift>> shifts) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SHIFTS_QUERY)) {
+            pstmt.setObject(1, fin);
+            pstmt.setObject(2, inicio);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    shifts.computeIfAbsent(rs.getInt("id_usuario"), k -> new ArrayList<>()).add(new Shift(
+                        rs.getObject("fecha_inicio", LocalDate.class),
+                        rs.getObject("fecha_fin", LocalDate.class),
+                        rs.getTime("hora_entrada").toLocalTime(),
+                        rs.getTime("hora_salida").toLocalTime(),
+                        rs.getInt("tolerancia_minutos")));
+                }
+            }
+        }
+    }
+
+    private static Shift shiftFor(List<Shift> userShifts, LocalDate fecha) {
+        if (userShifts != null) {
+            for (Shift shift : userShifts) {
+                if (!fecha.isBefore(shift.fechaInicio) && (shift.fechaFin == null || !fecha.isAfter(shift.fechaFin))) {
+                    return shift;
+                }
+            }
+        }
+        return DEFAULT_SHIFT;
+    }
+
+    /**
+     * Usuarios de un departamento en un tramo del mes
+     */
+    private static class MonthTask implements Callable<Map<Integer, Aggregate>> {
+        private final Integer idDepartamento;
+        private final LocalDate desde;
+        private final LocalDate hasta;
+        private final Map<Integer, List<Shift>> shifts;
+
+        MonthTask(Integer idDepartamento, LocalDate desde, LocalDate hasta, Map<Integer, List<Shift>> shifts) {
+            this.idDepartamento = idDepartamento;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.shifts = shifts;
+        }
+
+        @Override
+        public Map<Integer, Aggregate> call() throws SQLException {
+            LocalDateTime rangoInicio = desde.atStartOfDay();
+            LocalDateTime rangoFin = hasta.plusDays(1).atStartOfDay();
+            WorkSessionEngine.Range range = new WorkSessionEngine.Range(
+                WorkSessionEngine.toMicros(rangoInicio), WorkSessionEngine.toMicros(rangoFin));
+
+            // Margen para cerrar las jornadas que cruzan el borde del tramo
+            long margenNanos = WorkSessionEngine.MAX_SESSION_MICROS * 1000;
+            String sql = MARKS_QUERY + (idDepartamento != null ? "u.id_departamento = ? " : "u.id_departamento IS NULL ") +
+                         "ORDER BY a.id_usuario, a.fecha_hora, a.id_asistencia";
+
+            Map<Integer, Aggregate> result = new HashMap<>();
+            try (Connection conn = DatabaseConfig.getConnection(DatabaseConfig.Pool.REPORTES)) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setFetchSize(FETCH_SIZE);
+                    pstmt.setTimestamp(1, Timestamp.valueOf(rangoInicio.minusNanos(margenNanos)));
+                    pstmt.setTimestamp(2, Timestamp.valueOf(rangoFin.plusNanos(margenNanos)));
+                    if (idDepartamento != null) {
+                        pstmt.setInt(3, idDepartamento);
+                    }
+
+                    WorkSessionEngine.Pairer pairer = new WorkSessionEngine.Pairer(range);
+                    Aggregate aggregate = null;
+                    int idUsuario = 0;
+                    long ultimoDia = Long.MIN_VALUE;
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            int id = rs.getInt(1);
+                            if (aggregate == null || id != idUsuario) {
+                                if (aggregate != null) {
+                                    finishUser(pairer, aggregate, idUsuario, result);
+                                }
+                                idUsuario = id;
+                                aggregate = new Aggregate();
+                                pairer.reset(id);
+                                ultimoDia = Long.MIN_VALUE;
+                            }
+
+                            LocalDateTime fechaHora = rs.getTimestamp(2).toLocalDateTime();
+                            long micros = WorkSessionEngine.toMicros(fechaHora);
+                            if (range.contains(micros)) {
+                                aggregate.totalAsistencias++;
+                                long dia = fechaHora.toLocalDate().toEpochDay();
+                                if (dia != ultimoDia) {
+                                    aggregate.diasTrabajados++;
+                                    ultimoDia = dia;
+                                }
+                            }
+                            pairer.accept(micros, WorkSessionEngine.tipoCode(rs.getString(3)));
+                        }
+                    }
+                    if (aggregate != null) {
+                        finishUser(pairer, aggregate, idUsuario, result);
+                    }
+                } finally {
+                    conn.rollback();
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Horas, llegadas tarde y salidas temprano a partir de las jornadas del usuario
+         */
+        private void finishUser(WorkSessionEngine.Pairer pairer, Aggregate aggregate, int idUsuario,
+                                Map<Integer, Aggregate> result) {
+            pairer.finish();
+            List<Shift> userShifts = shifts.get(idUsuario);
+            List<WorkSession> sesiones = pairer.getSesiones();
+            for (int i = 0; i < sesiones.size(); i++) {
+                WorkSession sesion = sesiones.get(i);
+                aggregate.minutosTrabajados += sesion.minutosTrabajados;
+                if (!sesion.isCompleta()) {
+                    aggregate.sesionesIncompletas++;
+                }
+
+                Shift shift = shiftFor(userShifts, sesion.fecha);
+                boolean primeraDelDia = i == 0 || !sesiones.get(i - 1).fecha.equals(sesion.fecha);
+                boolean ultimaDelDia = i == sesiones.size() - 1 || !sesiones.get(i + 1).fecha.equals(sesion.fecha);
+                if (primeraDelDia && sesion.inicio.isAfter(shift.limiteEntrada(sesion.fecha))) {
+                    aggregate.entradasTarde++;
+                }
+                if (ultimaDelDia && sesion.isCompleta() && sesion.fin.isBefore(shift.salida(sesion.fecha))) {
+                    aggregate.salidasTemprano++;
+                }
+            }
+            result.put(idUsuario, aggregate);
+        }
+    }
+
+    private static class Shift {
+        final LocalDate fechaInicio;
+        final LocalDate fechaFin;
+        final LocalTime horaEntrada;
+        final LocalTime horaSalida;
+        final int toleranciaMinutos;
+
+        Shift(LocalDate fechaInicio, LocalDate fechaFin, LocalTime horaEntrada, LocalTime horaSalida,
+              int toleranciaMinutos) {
+            this.fechaInicio = fechaInicio;
+            this.fechaFin = fechaFin;
+            this.horaEntrada = horaEntrada;
+            this.horaSalida = horaSalida;
+            this.toleranciaMinutos = toleranciaMinutos;
+        }
+
+        LocalDateTime limiteEntrada(LocalDate fecha) {
+            return fecha.atTime(horaEntrada).plusMinutes(toleranciaMinutos);
+        }
+
+        /** Los turnos nocturnos terminan al día siguiente */
+        LocalDateTime salida(LocalDate fecha) {
+            LocalDateTime salida = fecha.atTime(horaSalida);
+            return horaSalida.isAfter(horaEntrada) ? salida : salida.plusDays(1);
+        }
+    }
+
+    private static class UserRow {
+        final int idUsuario;
+        final String dni;
+        final String nombre;
+        final String departamento;
+
+        UserRow(int idUsuario, String dni, String nombre, String departamento) {
+            this.idUsuario = idUsuario;
+            this.dni = dni;
+            this.nombre = nombre;
+            this.departamento = departamento;
+        }
+    }
+
+    /**
+     * Agregado parcial de un usuario; los tramos no se solapan y se suman
+     */
+    private static class Aggregate {
+        long totalAsistencias;
+        int diasTrabajados;
+        int entradasTarde;
+        int salidasTemprano;
+        int sesionesIncompletas;
+        long minutosTrabajados;
+
+        void add(Aggregate other) {
+            totalAsistencias += other.totalAsistencias;
+            diasTrabajados += other.diasTrabajados;
+            entradasTarde += other.entradasTarde;
+            salidasTemprano += other.salidasTemprano;
+            sesionesIncompletas += other.sesionesIncompletas;
+            minutosTrabajados += other.minutosTrabajados;
+        }
+    }
+
+    /**
+     * Fila del reporte (mismas columnas que sp_reporte_mensual más horas trabajadas)
+     */
+    public static class Row {
+        public final int idUsuario;
+        public final String dni;
+        public final String nombreCompleto;
+        public final String departamento;
+        public final long totalAsistencias;
+        public final int diasTrabajados;
+        public final int entradasTarde;
+        public final int salidasTemprano;
+        public final int sesionesIncompletas;
+        public final long minutosTrabajados;
+
+        private Row(int idUsuario, String dni, String nombreCompleto, String departamento, Aggregate aggregate) {
+            this.idUsuario = idUsuario;
+            this.dni = dni;
+            this.nombreCompleto = nombreCompleto;
+            this.departamento = departamento;
+            this.totalAsistencias = aggregate.totalAsistencias;
+            this.diasTrabajados = aggregate.diasTrabajados;
+            this.entradasTarde = aggregate.entradasTarde;
+            this.salidasTemprano = aggregate.salidasTemprano;
+            this.sesionesIncompletas = aggregate.sesionesIncompletas;
+            this.minutosTrabajados = aggregate.minutosTrabajados;
+        }
+
+        public double getHorasTrabajadas() {
+            return minutosTrabajados / 60.0;
+        }
+    }
+
+    public static class Result {
+        public final YearMonth mes;
+        /** Usuarios activos ordenados por apellido y nombre */
+        public final List<Row> filas;
+        public final int tareas;
+        public final long duracionMs;
+
+        public Result(YearMonth mes, List<Row> filas, int tareas, long duracionMs) {
+            this.mes = mes;
+            this.filas = Collections.unmodifiableList(filas);
+            this.tareas = tareas;
+            this.duracionMs = duracionMs;
+        }
+    }
+}
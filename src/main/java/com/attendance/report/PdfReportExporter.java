@@ -0,0 +1,292 @@
+package com.attendance.report;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.ColumnText;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfPageEventHelper;
+import com.itextpdf.text.pdf.PdfWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+
+/**
+ * Exportación a PDF en streaming con iText
+ * Las filas se agrupan por departamento y usuario con subtotales. La tabla
+ * se marca como incompleta y se entrega al documento cada CHUNK_ROWS filas,
+ * de modo que las páginas se escriben a medida que avanza el cursor.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class PdfReportExporter implements ReportExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfReportExporter.class);
+
+    private static final int FETCH_SIZE = 2000;
+    private static final int CHUNK_ROWS = 500;
+    private static final String SIN_DEPARTAMENTO = "Sin departamento";
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final DateTimeFormatter GENERATED_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    private static final BaseColor HEADER_COLOR = new BaseColor(52, 152, 219);
+    private static final BaseColor DEPARTMENT_COLOR = new BaseColor(44, 62, 80);
+    private static final BaseColor USER_COLOR = new BaseColor(236, 240, 241);
+    private static final BaseColor SUBTOTAL_COLOR = new BaseColor(250, 250, 250);
+
+    // Fuentes compartidas por todas las celdas (iText no las copia por celda)
+    private static final Font TITLE_FONT = new Font(Font.FontFamily.HELVETICA, 16, Font.BOLD, DEPARTMENT_COLOR);
+    private static final Font SUBTITLE_FONT = new Font(Font.FontFamily.HELVETICA, 9, Font.NORMAL, BaseColor.DARK_GRAY);
+    private static final Font HEADER_FONT = new Font(Font.FontFamily.HELVETICA, 9, Font.BOLD, BaseColor.WHITE);
+    private static final Font DEPARTMENT_FONT = new Font(Font.FontFamily.HELVETICA, 10, Font.BOLD, BaseColor.WHITE);
+    private static final Font USER_FONT = new Font(Font.FontFamily.HELVETICA, 9, Font.BOLD);
+    private static final Font CELL_FONT = new Font(Font.FontFamily.HELVETICA, 8);
+    private static final Font SUBTOTAL_FONT = new Font(Font.FontFamily.HELVETICA, 8, Font.ITALIC);
+    private static final Font FOOTER_FONT = new Font(Font.FontFamily.HELVETICA, 7, Font.NORMAL, BaseColor.GRAY);
+
+    private static final String[] HEADERS = {"Fecha", "Hora", "Tipo", "Confianza", "Método"};
+    private static final float[] COLUMN_WIDTHS = {3f, 2f, 2f, 2f, 2f};
+
+    @Override
+    public String getFormato() {
+        return "PDF";
+    }
+
+    @Override
+    public String getExtension() {
+        return "pdf";
+    }
+
+    @Override
+    public long export(Connection conn, ReportFilter filter, OutputStream out, ExportContext context)
+            throws SQLException, IOException {
+
+        Document document = new Document(PageSize.A4, 36, 36, 36, 48);
+        try {
+            PdfWriter writer = PdfWriter.getInstance(document, out);
+            // El flujo lo cierra quien lo abrió
+            writer.setCloseStream(false);
+            writer.setPageEvent(new PageFooter(filter.getDescripcion()));
+            document.open();
+
+            document.add(new Paragraph("Reporte de Asistencias - " + filter.getTipoReporte(), TITLE_FONT));
+            document.add(new Paragraph(describeFilter(filter), SUBTITLE_FONT));
+            document.add(new Paragraph(" ", SUBTITLE_FONT));
+
+            long rows = writeTable(conn, filter, document, context);
+            document.close();
+            return rows;
+
+        } catch (DocumentException e) {
+            throw new IOException("Error al generar el PDF: " + e.getMessage(), e);
+        } finally {
+            if (document.isOpen()) {
+                try {
+                    document.close();
+                } catch (RuntimeException e) {
+                    // El archivo temporal se descarta; conservar el error original
+                    logger.debug("Error al cerrar el PDF incompleto: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private long writeTable(Connection conn, ReportFilter filter, Document document, ExportContext context)
+            throws SQLException, DocumentException {
+
+        PdfPTable table = createTable();
+        GroupTotals departmentTotals = new GroupTotals();
+        GroupTotals userTotals = new GroupTotals();
+        GroupTotals grandTotals = new GroupTotals();
+        String currentDepartment = null;
+        int currentUser = -1;
+        int pendingRows = 0;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                filter.buildDetailQuery(ReportFilter.ORDER_BY_DEPARTAMENTO_USUARIO),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(FETCH_SIZE);
+            filter.bind(pstmt, 1);
+            context.attach(pstmt);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String department = Objects.toString(rs.getString("departamento"), SIN_DEPARTAMENTO);
+                    int userId = rs.getInt("id_usuario");
+
+                    boolean newDepartment = !department.equals(currentDepartment);
+                    if (newDepartment || userId != currentUser) {
+                        if (currentUser != -1) {
+                            addSubtotal(table, "Subtotal usuario", userTotals);
+                            userTotals.reset();
+                        }
+                        if (newDepartment) {
+                            if (currentDepartment != null) {
+                                addSubtotal(table, "Subtotal " + currentDepartment, departmentTotals);
+                                departmentTotals.reset();
+                            }
+                            addGroupRow(table, department, DEPARTMENT_FONT, DEPARTMENT_COLOR);
+                            currentDepartment = department;
+                        }
+                        addGroupRow(table, rs.getString("usuario") + "  (C.I.N.: " + rs.getString("dni") + ")",
+                            USER_FONT, USER_COLOR);
+                        currentUser = userId;
+                    }
+
+                    LocalDateTime fechaHora = rs.getTimestamp("fecha_hora").toLocalDateTime();
+                    String tipo = rs.getString("tipo_marcacion");
+                    table.addCell(new Phrase(fechaHora.format(DATE_FORMAT), CELL_FONT));
+                    table.addCell(new Phrase(fechaHora.format(TIME_FORMAT), CELL_FONT));
+                    table.addCell(new Phrase(tipo, CELL_FONT));
+                    table.addCell(new Phrase(String.valueOf(rs.getInt("confidence_score")), CELL_FONT));
+                    table.addCell(new Phrase(Objects.toString(rs.getString("metodo"), ""), CELL_FONT));
+
+                    userTotals.add(tipo);
+                    departmentTotals.add(tipo);
+                    grandTotals.add(tipo);
+                    context.rowWritten();
+
+                    // Entregar las filas completas al documento y liberarlas
+                    if (++pendingRows >= CHUNK_ROWS) {
+                        document.add(table);
+                        pendingRows = 0;
+                    }
+                }
+            }
+        } finally {
+            context.detach();
+        }
+
+        context.checkCancelled();
+
+        if (currentUser != -1) {
+            addSubtotal(table, "Subtotal usuario", userTotals);
+            addSubtotal(table, "Subtotal " + currentDepartment, departmentTotals);
+        }
+        addSubtotal(table, "Total general", grandTotals);
+
+        table.setComplete(true);
+        document.add(table);
+
+        logger.debug("PDF escrito: {} filas", grandTotals.total);
+        return grandTotals.total;
+    }
+
+    private PdfPTable createTable() throws DocumentException {
+        PdfPTable table = new PdfPTable(COLUMN_WIDTHS.length);
+        table.setWidthPercentage(100);
+        table.setWidths(COLUMN_WIDTHS);
+        table.setHeaderRows(1);
+        table.setComplete(false);
+
+        // Estilo común de las celdas de detalle
+        PdfPCell defaultCell = table.getDefaultCell();
+        defaultCell.setHorizontalAlignment(Element.ALIGN_CENTER);
+        defaultCell.setPadding(3);
+        defaultCell.setBorderColor(BaseColor.LIGHT_GRAY);
+
+        for (String header : HEADERS) {
+            PdfPCell cell = new PdfPCell(new Phrase(header, HEADER_FONT));
+            cell.setBackgroundColor(HEADER_COLOR);
+            cell.setHorizontalAlignment(Element.ALIGN_CENTER);
+            cell.setPadding(4);
+            table.addCell(cell);
+        }
+        return table;
+    }
+
+    private void addGroupRow(PdfPTable table, String text, Font font, BaseColor background) {
+        PdfPCell cell = new PdfPCell(new Phrase(text, font));
+        cell.setColspan(COLUMN_WIDTHS.length);
+        cell.setBackgroundColor(background);
+        cell.setPadding(4);
+        table.addCell(cell);
+    }
+
+    private void addSubtotal(PdfPTable table, String label, GroupTotals totals) {
+        PdfPCell cell = new PdfPCell(new Phrase(String.format("%s: %d marcaciones (%d entradas, %d salidas)",
+            label, totals.total, totals.entradas, totals.salidas), SUBTOTAL_FONT));
+        cell.setColspan(COLUMN_WIDTHS.length);
+        cell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        cell.setBackgroundColor(SUBTOTAL_COLOR);
+        cell.setPadding(3);
+        table.addCell(cell);
+    }
+
+    private static String describeFilter(ReportFilter filter) {
+        StringBuilder sb = new StringBuilder("Periodo: ")
+            .append(filter.getFechaInicio()).append(" a ").append(filter.getFechaFin());
+        if (filter.getDepartamento() != null) {
+            sb.append(" | Departamento: ").append(filter.getDepartamento());
+        }
+        if (filter.getTipoMarcacion() != null) {
+            sb.append(" | Tipo: ").append(filter.getTipoMarcacion());
+        }
+        if (filter.getUsuario() != null) {
+            sb.append(" | Usuario: ").append(filter.getUsuario());
+        }
+        return sb.append(" | Generado: ").append(LocalDateTime.now().format(GENERATED_FORMAT)).toString();
+    }
+
+    /**
+     * Contadores de un grupo (usuario, departamento o total)
+     */
+    private static class GroupTotals {
+        long total;
+        long entradas;
+        long salidas;
+
+        void add(String tipo) {
+            total++;
+            if ("ENTRADA".equals(tipo)) {
+                entradas++;
+            } else if ("SALIDA".equals(tipo)) {
+                salidas++;
+            }
+        }
+
+        void reset() {
+            total = 0;
+            entradas = 0;
+            salidas = 0;
+        }
+    }
+
+    /**
+     * Pie de página con el nombre del reporte y el número de página
+     */
+    private static class PageFooter extends PdfPageEventHelper {
+        private final String descripcion;
+
+        PageFooter(String descripcion) {
+            this.descripcion = descripcion;
+        }
+
+        @Override
+        public void onEndPage(PdfWriter writer, Document document) {
+            ColumnText.showTextAligned(writer.getDirectContent(), Element.ALIGN_LEFT,
+                new Phrase(descripcion, FOOTER_FONT), document.left(), document.bottom() - 20, 0);
+            ColumnText.showTextAligned(writer.getDirectContent(), Element.ALIGN_RIGHT,
+                new Phrase("Página " + writer.getPageNumber(), FOOTER_FONT), document.right(), document.bottom() - 20, 0);
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package com.attendance.report;
+
+import com.attendance.config.DatabaseConfig;
+import com.attendance.monitoring.MetricsRegistry;
+import com.attendance.service.ChangeEventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caché de resultados de reportes por parámetros normalizados
+ * LRU acotada por tamaño. Los periodos cerrados (meses anteriores) quedan
+ * fijados y solo se desalojan si no queda otra entrada; con
+ * reports.cache.spillDir configurado, lo desalojado se guarda en disco.
+ * Las marcaciones nuevas invalidan las entradas cuyo rango las contiene y
+ * los cambios de un usuario, las entradas donde aparece.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class ReportCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportCache.class);
+
+    public static final String CACHE_HITS_TOTAL = "report_cache_hits_total";
+    public static final String CACHE_MISSES_TOTAL = "report_cache_misses_total";
+    public static final String CACHE_INVALIDATIONS_TOTAL = "report_cache_invalidations_total";
+
+    private static final int FETCH_SIZE = 5000;
+    private static final int EXTRA_FECHA_HORA = 1;
+
+    // Orden de acceso: el primero es el menos usado recientemente
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private static final Map<String, SpilledEntry> spilled = new HashMap<>();
+    private static long totalBytes = 0;
+    // Se incrementa con cada invalidación para descartar cargas que quedaron obsoletas
+    private static long generation = 0;
+
+    private static final boolean enabled =
+        Boolean.parseBoolean(DatabaseConfig.getProperty("reports.cache.enabled", "true"));
+    private static final long maxBytes =
+        Long.parseLong(DatabaseConfig.getProperty("reports.cache.maxMB", "64")) * 1024 * 1024;
+    private static final Path spillDirectory = spillDirectory();
+
+    static {
+        MetricsRegistry.counter(CACHE_HITS_TOTAL, "Reportes servidos desde la caché");
+        MetricsRegistry.counter(CACHE_MISSES_TOTAL, "Reportes consultados a la base de datos");
+        MetricsRegistry.counter(CACHE_INVALIDATIONS_TOTAL, "Entradas de la caché de reportes invalidadas");
+
+        ChangeEventBus.subscribe(ReportCache::onAttendanceChange, ChangeEventBus.ASISTENCIAS);
+        // Nombres de usuarios y departamentos van desnormalizados en los datos
+        ChangeEventBus.subscribe(ReportCache::onReferenceChange, ChangeEventBus.USUARIOS, ChangeEventBus.DEPARTAMENTOS);
+    }
+
+    private ReportCache() {
+    }
+
+    /**
+     * Devuelve el detalle del filtro desde la caché o lo consulta en el pool de reportes
+     */
+    public static ReportData getOrLoad(ReportFilter filter) throws SQLException {
+        String key = filter.getCacheKey();
+        if (enabled) {
+            ReportData cached = lookup(key);
+            if (cached != null) {
+                MetricsRegistry.increment(CACHE_HITS_TOTAL);
+                return cached;
+            }
+        }
+        MetricsRegistry.increment(CACHE_MISSES_TOTAL);
+
+        long loadGeneration = currentGeneration();
+        ReportData data = load(filter);
+        if (enabled) {
+            put(key, filter, data, loadGeneration);
+        }
+        return data;
+    }
+
+    /**
+     * Devuelve el detalle si ya está en la caché, sin consultar la base de datos
+     */
+    public static ReportData peek(ReportFilter filter) {
+        if (!enabled) {
+            return null;
+        }
+        ReportData cached = lookup(filter.getCacheKey());
+        if (cached != null) {
+            MetricsRegistry.increment(CACHE_HITS_TOTAL);
+        }
+        return cached;
+    }
+
+    /**
+     * Descarta todas las entradas (memoria y disco)
+     */
+    public static synchronized void clear() {
+        generation++;
+        if (entries.isEmpty() && spilled.isEmpty()) {
+            return;
+        }
+        MetricsRegistry.counter(CACHE_INVALIDATIONS_TOTAL).add(entries.size() + spilled.size());
+        entries.clear();
+        totalBytes = 0;
+        for (SpilledEntry entry : spilled.values()) {
+            deleteQuietly(entry.file);
+        }
+        spilled.clear();
+    }
+
+    public static synchronized int size() {
+        return entries.size();
+    }
+
+    public static synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private static ReportData load(ReportFilter filter) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection(DatabaseConfig.Pool.REPORTES)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    filter.buildDetailQuery(ReportFilter.ORDER_BY_FECHA_DESC))) {
+                pstmt.setFetchSize(FETCH_SIZE);
+                filter.bind(pstmt, 1);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return ReportData.read(rs);
+                }
+            } finally {
+                conn.rollback();
+            }
+        }
+    }
+
+    /**
+     * Busca en memoria y, si no está, lee la entrada volcada a disco fuera del
+     * monitor para no bloquear al resto de los lectores durante la descompresión
+     */
+    private static ReportData lookup(String key) {
+        SpilledEntry spilledEntry;
+        synchronized (ReportCache.class) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                return entry.data;
+            }
+            spilledEntry = spilled.get(key);
+            if (spilledEntry == null) {
+                return null;
+            }
+        }
+
+        ReportData data = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(spilledEntry.file))))) {
+            data = ReportData.readFrom(in);
+        } catch (IOException e) {
+            logger.warn("No se pudo leer la entrada de caché {}: {}", spilledEntry.file, e.getMessage());
+        }
+
+        synchronized (ReportCache.class) {
+            Entry current = entries.get(key);
+            if (current != null) {
+                // Otro hilo la subió a memoria mientras leíamos
+                return current.data;
+            }
+            // Si una invalidación o un nuevo volcado la reemplazó, lo leído ya no vale
+            if (spilled.get(key) != spilledEntry) {
+                return null;
+            }
+            spilled.remove(key);
+            deleteQuietly(spilledEntry.file);
+            if (data != null) {
+                insert(new Entry(key, spilledEntry.fechaInicio, spilledEntry.fechaFin, spilledEntry.pinned, data));
+            }
+            return data;
+        }
+    }
+
+    private static synchronized long currentGeneration() {
+        return generation;
+    }
+
+    private static synchronized void put(String key, ReportFilter filter, ReportData data, long loadGeneration) {
+        if (loadGeneration != generation) {
+            return;
+        }
+        // Un reporte que ocupa más de la mitad de la caché desplazaría a todos los demás
+        if (data.estimatedBytes() > maxBytes / 2) {
+            return;
+        }
+        boolean pinned = filter.getFechaFin().isBefore(LocalDate.now().withDayOfMonth(1));
+        insert(new Entry(key, filter.getFechaInicio(), filter.getFechaFin(), pinned, data));
+    }
+
+    private static void insert(Entry entry) {
+        Entry previous = entries.put(entry.key, entry);
+        if (previous != null) {
+            totalBytes -= previous.bytes;
+        }
+        totalBytes += entry.bytes;
+        evict();
+    }
+
+    /**
+     * Desaloja primero las entradas no fijadas menos usadas
+     */
+    private static void evict() {
+        while (totalBytes > maxBytes && !entries.isEmpty()) {
+            Entry victim = null;
+            for (Entry entry : entries.values()) {
+                if (!entry.pinned) {
+                    victim = entry;
+                    break;
+                }
+            }
+            if (victim == null) {
+                victim = entries.values().iterator().next();
+            }
+            entries.remove(victim.key);
+            totalBytes -= victim.bytes;
+            spill(victim);
+        }
+    }
+
+    private static void spill(Entry entry) {
+        if (spillDirectory == null) {
+            return;
+        }
+        Path file = spillDirectory.resolve(
+            UUID.nameUUIDFromBytes(entry.key.getBytes(StandardCharsets.UTF_8)) + ".bin.gz");
+        try {
+            Files.createDirectories(spillDirectory);
+            Path temp = Files.createTempFile(spillDirectory, ".cache-", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                entry.data.writeTo(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            spilled.put(entry.key, new SpilledEntry(file, entry.fechaInicio, entry.fechaFin, entry.pinned,
+                entry.data.getIdUsuarios()));
+        } catch (IOException e) {
+            logger.warn("No se pudo volcar la entrada de caché a disco: {}", e.getMessage());
+        }
+    }
+
+    private static void onAttendanceChange(ChangeEventBus.ChangeEvent event) {
+        LocalDateTime fechaHora = null;
+        if (event.operacion != ChangeEventBus.ChangeEvent.UPDATE && !event.isReload()) {
+            try {
+                fechaHora = event.getExtraDateTime(EXTRA_FECHA_HORA);
+            } catch (RuntimeException e) {
+                logger.debug("Fecha no interpretable en {}: {}", event, e.getMessage());
+            }
+        }
+
+        if (fechaHora == null) {
+            // Sin fecha (recarga) o actualización que pudo mover la marcación de rango
+            clear();
+        } else {
+            invalidate(fechaHora.toLocalDate());
+        }
+    }
+
+    private static void onReferenceChange(ChangeEventBus.ChangeEvent event) {
+        if (event.operacion == ChangeEventBus.ChangeEvent.INSERT) {
+            // Un usuario o departamento nuevo todavía no tiene marcaciones en ningún reporte
+            return;
+        }
+        if (ChangeEventBus.USUARIOS.equals(event.tabla) && !event.isReload() && event.id > 0) {
+            invalidateUser(event.id);
+        } else {
+            clear();
+        }
+    }
+
+    /**
+     * Invalida las entradas que tienen marcaciones del usuario; las fijadas
+     * de otros usuarios se conservan
+     */
+    private static synchronized void invalidateUser(int idUsuario) {
+        generation++;
+        int removed = 0;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (contains(entry.data.getIdUsuarios(), idUsuario)) {
+                it.remove();
+                totalBytes -= entry.bytes;
+                removed++;
+            }
+        }
+        for (Iterator<SpilledEntry> it = spilled.values().iterator(); it.hasNext(); ) {
+            SpilledEntry entry = it.next();
+            if (contains(entry.idUsuarios, idUsuario)) {
+                it.remove();
+                deleteQuietly(entry.file);
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            MetricsRegistry.counter(CACHE_INVALIDATIONS_TOTAL).add(removed);
+            logger.debug("Caché de reportes: {} entradas invalidadas por cambios del usuario {}", removed, idUsuario);
+        }
+    }
+
+    private static boolean contains(int[] ids, int id) {
+        for (int value : ids) {
+            if (value == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Invalida las entradas cuyo rango contiene la fecha
+     */
+    private static synchronized void invalidate(LocalDate fecha) {
+        generation++;
+        int removed = 0;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (covers(entry.fechaInicio, entry.fechaFin, fecha)) {
+                it.remove();
+                totalBytes -= entry.bytes;
+                removed++;
+            }
+        }
+        for (Iterator<SpilledEntry> it = spilled.values().iterator(); it.hasNext(); ) {
+            SpilledEntry entry = it.next();
+            if (covers(entry.fechaInicio, entry.fechaFin, fecha)) {
+                it.remove();
+                deleteQuietly(entry.file);
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            MetricsRegistry.counter(CACHE_INVALIDATIONS_TOTAL).add(removed);
+            logger.debug("Caché de reportes: {} entradas invalidadas por marcación del {}", removed, fecha);
+        }
+    }
+
+    private static boolean covers(LocalDate inicio, LocalDate fin, LocalDate fecha) {
+        return !fecha.isBefore(inicio) && !fecha.isAfter(fin);
+    }
+
+    private static Path spillDirectory() {
+        String dir = DatabaseConfig.getProperty("reports.cache.spillDir", "");
+        return dir.trim().isEmpty() ? null : Paths.get(dir.trim());
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.debug("No se pudo eliminar {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static class Entry {
+        final String key;
+        final LocalDate fechaInicio;
+        final LocalDate fechaFin;
+        final boolean pinned;
+        final ReportData data;
+        final long bytes;
+
+        Entry(String key, LocalDate fechaInicio, LocalDate fechaFin, boolean pinned, ReportData data) {
+            this.key = key;
+            this.fechaInicio = fechaInicio;
+            this.fechaFin = fechaFin;
+            this.pinned = pinned;
+            this.data = data;
+            this.bytes = data.estimatedBytes();
+        }
+    }
+
+    private static class SpilledEntry {
+        final Path file;
+        final LocalDate fechaInicio;
+        final LocalDate fechaFin;
+        final boolean pinned;
+        final int[] idUsuarios;
+
+        SpilledEntry(Path file, LocalDate fechaInicio, LocalDate fechaFin, boolean pinned, int[] idUsuarios) {
+            this.file = file;
+            this.fechaInicio = fechaInicio;
+            this.fechaFin = fechaFin;
+            this.pinned = pinned;
+            this.idUsuarios = idUsuarios;
+        }
+    }
+}
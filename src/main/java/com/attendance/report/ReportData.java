@@ -0,0 +1,323 @@
+package com.attendance.report;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detalle de asistencias en forma columnar
+ * Cada columna es un arreglo primitivo; usuarios, tipos y métodos se
+ * guardan una sola vez en diccionarios y las filas solo llevan el índice.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class ReportData {
+
+    private static final int FORMAT_VERSION = 3;
+
+    private final int size;
+    private final int[] idAsistencia;
+    /** Microsegundos desde 1970-01-01T00:00 en hora local (precisión de timestamp) */
+    private final long[] fechaHora;
+    private final int[] usuarioIndex;
+    private final byte[] tipoIndex;
+    private final short[] confidence;
+    private final byte[] metodoIndex;
+
+    private final int[] idUsuarios;
+    private final String[] usuarios;
+    private final String[] dnis;
+    private final String[] departamentos;
+    private final String[] tipos;
+    private final String[] metodos;
+
+    private final int totalEntradas;
+    private final int totalSalidas;
+
+    private ReportData(int size, int[] idAsistencia, long[] fechaHora, int[] usuarioIndex, byte[] tipoIndex,
+                       short[] confidence, byte[] metodoIndex, int[] idUsuarios, String[] usuarios,
+                       String[] dnis, String[] departamentos, String[] tipos, String[] metodos) {
+        this.size = size;
+        this.idAsistencia = idAsistencia;
+        this.fechaHora = fechaHora;
+        this.usuarioIndex = usuarioIndex;
+        this.tipoIndex = tipoIndex;
+        this.confidence = confidence;
+        this.metodoIndex = metodoIndex;
+        this.idUsuarios = idUsuarios;
+        this.usuarios = usuarios;
+        this.dnis = dnis;
+        this.departamentos = departamentos;
+        this.tipos = tipos;
+        this.metodos = metodos;
+
+        int entradas = 0;
+        int salidas = 0;
+        for (int i = 0; i < size; i++) {
+            String tipo = tipos[tipoIndex[i]];
+            if ("ENTRADA".equals(tipo)) {
+                entradas++;
+            } else if ("SALIDA".equals(tipo)) {
+                salidas++;
+            }
+        }
+        this.totalEntradas = entradas;
+        this.totalSalidas = salidas;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getIdAsistencia(int row) {
+        return idAsistencia[row];
+    }
+
+    public LocalDateTime getFechaHora(int row) {
+        long micros = fechaHora[row];
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+            (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Fecha y hora como microsegundos (para ordenar sin crear objetos)
+     */
+    public long getFechaHoraMicros(int row) {
+        return fechaHora[row];
+    }
+
+    public Timestamp getTimestamp(int row) {
+        return Timestamp.valueOf(getFechaHora(row));
+    }
+
+    public String getUsuario(int row) {
+        return usuarios[usuarioIndex[row]];
+    }
+
+    public String getDni(int row) {
+        return dnis[usuarioIndex[row]];
+    }
+
+    public String getDepartamento(int row) {
+        return departamentos[usuarioIndex[row]];
+    }
+
+    public String getTipoMarcacion(int row) {
+        return tipos[tipoIndex[row]];
+    }
+
+    public int getConfidence(int row) {
+        return confidence[row];
+    }
+
+    public String getMetodo(int row) {
+        return metodos[metodoIndex[row]];
+    }
+
+    public int getTotalEntradas() {
+        return totalEntradas;
+    }
+
+    public int getTotalSalidas() {
+        return totalSalidas;
+    }
+
+    public int getUsuariosUnicos() {
+        return usuarios.length;
+    }
+
+    /**
+     * Ids de los usuarios con marcaciones en el detalle (sin copiar; lo usa la caché)
+     */
+    int[] getIdUsuarios() {
+        return idUsuarios;
+    }
+
+    /**
+     * Tamaño aproximado en memoria, usado por el límite de la caché
+     */
+    public long estimatedBytes() {
+        long bytes = 128L + size * (4L + 8 + 4 + 1 + 2 + 1);
+        for (int i = 0; i < usuarios.length; i++) {
+            bytes += 4 + stringBytes(usuarios[i]) + stringBytes(dnis[i]) + stringBytes(departamentos[i]);
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 8 : 48 + value.length() * 2L;
+    }
+
+    /**
+     * Lee el detalle completo desde el cursor (columnas de ReportFilter.DETAIL_COLUMNS)
+     */
+    public static ReportData read(ResultSet rs) throws SQLException {
+        Builder builder = new Builder();
+        while (rs.next()) {
+            builder.add(rs);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Serializa los datos para el volcado a disco de la caché
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(size);
+        out.writeInt(idUsuarios.length);
+        for (int id : idUsuarios) {
+            out.writeInt(id);
+        }
+        writeStrings(out, usuarios);
+        writeStrings(out, dnis);
+        writeStrings(out, departamentos);
+        writeStrings(out, tipos);
+        writeStrings(out, metodos);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(idAsistencia[i]);
+            out.writeLong(fechaHora[i]);
+            out.writeInt(usuarioIndex[i]);
+            out.writeByte(tipoIndex[i]);
+            out.writeShort(confidence[i]);
+            out.writeByte(metodoIndex[i]);
+        }
+    }
+
+    public static ReportData readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Versión de formato de caché no soportada");
+        }
+        int size = in.readInt();
+        int[] idUsuarios = new int[in.readInt()];
+        for (int i = 0; i < idUsuarios.length; i++) {
+            idUsuarios[i] = in.readInt();
+        }
+        String[] usuarios = readStrings(in);
+        String[] dnis = readStrings(in);
+        String[] departamentos = readStrings(in);
+        String[] tipos = readStrings(in);
+        String[] metodos = readStrings(in);
+
+        int[] ids = new int[size];
+        long[] fechas = new long[size];
+        int[] usuarioIndex = new int[size];
+        byte[] tipoIndex = new byte[size];
+        short[] confidence = new short[size];
+        byte[] metodoIndex = new byte[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = in.readInt();
+            fechas[i] = in.readLong();
+            usuarioIndex[i] = in.readInt();
+            tipoIndex[i] = in.readByte();
+            confidence[i] = in.readShort();
+            metodoIndex[i] = in.readByte();
+        }
+        return new ReportData(size, ids, fechas, usuarioIndex, tipoIndex, confidence, metodoIndex,
+            idUsuarios, usuarios, dnis, departamentos, tipos, metodos);
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        String[] values = new String[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readBoolean() ? in.readUTF() : null;
+        }
+        return values;
+    }
+
+    /**
+     * Acumula filas en arreglos que crecen al doble
+     */
+    private static class Builder {
+        private int size = 0;
+        private int[] ids = new int[1024];
+        private long[] fechas = new long[1024];
+        private int[] usuarioIndex = new int[1024];
+        private byte[] tipoIndex = new byte[1024];
+        private short[] confidence = new short[1024];
+        private byte[] metodoIndex = new byte[1024];
+
+        private final Map<Integer, Integer> usuarioPorId = new HashMap<>();
+        private final List<Integer> idUsuarios = new ArrayList<>();
+        private final List<String> usuarios = new ArrayList<>();
+        private final List<String> dnis = new ArrayList<>();
+        private final List<String> departamentos = new ArrayList<>();
+        private final List<String> tipos = new ArrayList<>();
+        private final List<String> metodos = new ArrayList<>();
+
+        void add(ResultSet rs) throws SQLException {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                fechas = Arrays.copyOf(fechas, capacity);
+                usuarioIndex = Arrays.copyOf(usuarioIndex, capacity);
+                tipoIndex = Arrays.copyOf(tipoIndex, capacity);
+                confidence = Arrays.copyOf(confidence, capacity);
+                metodoIndex = Arrays.copyOf(metodoIndex, capacity);
+            }
+
+            ids[size] = rs.getInt("id_asistencia");
+            LocalDateTime fecha = rs.getTimestamp("fecha_hora").toLocalDateTime();
+            fechas[size] = fecha.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + fecha.getNano() / 1000;
+
+            int idUsuario = rs.getInt("id_usuario");
+            Integer index = usuarioPorId.get(idUsuario);
+            if (index == null) {
+                index = usuarios.size();
+                usuarioPorId.put(idUsuario, index);
+                idUsuarios.add(idUsuario);
+                usuarios.add(rs.getString("usuario"));
+                dnis.add(rs.getString("dni"));
+                departamentos.add(rs.getString("departamento"));
+            }
+            usuarioIndex[size] = index;
+
+            tipoIndex[size] = dictionaryIndex(tipos, rs.getString("tipo_marcacion"));
+            confidence[size] = (short) rs.getInt("confidence_score");
+            metodoIndex[size] = dictionaryIndex(metodos, rs.getString("metodo"));
+            size++;
+        }
+
+        private static byte dictionaryIndex(List<String> dictionary, String value) {
+            int index = dictionary.indexOf(value);
+            if (index < 0) {
+                index = dictionary.size();
+                if (index > Byte.MAX_VALUE) {
+                    throw new IllegalStateException("Demasiados valores distintos para una columna de diccionario");
+                }
+                dictionary.add(value);
+            }
+            return (byte) index;
+        }
+
+        ReportData build() {
+            return new ReportData(size,
+                Arrays.copyOf(ids, size), Arrays.copyOf(fechas, size), Arrays.copyOf(usuarioIndex, size),
+                Arrays.copyOf(tipoIndex, size), Arrays.copyOf(confidence, size), Arrays.copyOf(metodoIndex, size),
+                idUsuarios.stream().mapToInt(Integer::intValue).toArray(),
+                usuarios.toArray(new String[0]), dnis.toArray(new String[0]), departamentos.toArray(new String[0]),
+                tipos.toArray(new String[0]), metodos.toArray(new String[0]));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.attendance.report;
+
+import com.attendance.config.DatabaseConfig;
+import com.attendance.monitoring.ReportQueryEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ejecuta un exportador sobre el pool de reportes y deja el archivo final
+ * en su destino solo si la exportación termina correctamente
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class ReportExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportExportService.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ReportExportService() {
+    }
+
+    /**
+     * Exporta el reporte a un archivo temporal junto al destino y lo mueve
+     * al terminar. Registra la exportación en reportes_generados.
+     *
+     * @throws CancellationException si se canceló desde el contexto
+     */
+    public static ExportResult export(ReportExporter exporter, ReportFilter filter,
+                                      Path target, ExportContext context) throws SQLException, IOException {
+        long start = System.nanoTime();
+        Path absoluteTarget = target.toAbsolutePath();
+        Path temp = Files.createTempFile(absoluteTarget.getParent(), ".exportando-", "." + exporter.getExtension());
+
+        ReportQueryEvent event = new ReportQueryEvent();
+        event.reportType = filter.getTipoReporte();
+        event.format = exporter.getFormato();
+        event.begin();
+
+        boolean completed = false;
+        try {
+            long rows;
+            try (Connection conn = DatabaseConfig.getConnection(DatabaseConfig.Pool.REPORTES)) {
+                // Sin autocommit el driver usa un cursor y respeta el fetch size
+                conn.setAutoCommit(false);
+                try {
+                    context.setTotalRows(countRows(conn, filter, context));
+                    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE)) {
+                        rows = exporter.export(conn, filter, out, context);
+                    }
+                    context.finishRows();
+                } finally {
+                    conn.rollback();
+                }
+            } catch (SQLException e) {
+                if (context.isCancelled()) {
+                    throw new CancellationException("Exportación cancelada");
+                }
+                throw e;
+            }
+
+            Files.move(temp, absoluteTarget, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            completed = true;
+
+            long bytes = Files.size(absoluteTarget);
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            int idReporte = ReportHistory.record(filter, exporter.getFormato(), absoluteTarget.toString(), bytes, rows, durationMs);
+
+            event.rows = rows;
+            event.success = true;
+            logger.info("Reporte {} exportado: {} filas, {} KB en {} ms ({})",
+                exporter.getFormato(), rows, bytes / 1024, durationMs, absoluteTarget);
+
+            return new ExportResult(absoluteTarget, rows, bytes, durationMs, idReporte);
+
+        } finally {
+            event.commit();
+            if (!completed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private static long countRows(Connection conn, ReportFilter filter, ExportContext context) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(filter.buildCountQuery())) {
+            filter.bind(pstmt, 1);
+            context.attach(pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1;
+            } finally {
+                context.detach();
+            }
+        }
+    }
+
+    /**
+     * Resultado de una exportación terminada
+     */
+    public static class ExportResult {
+        public final Path archivo;
+        public final long filas;
+        public final long bytes;
+        public final long duracionMs;
+        /** id en reportes_generados (0 si no se registró) */
+        public final int idReporte;
+
+        public ExportResult(Path archivo, long filas, long bytes, long duracionMs, int idReporte) {
+            this.archivo = archivo;
+            this.filas = filas;
+            this.bytes = bytes;
+            this.duracionMs = duracionMs;
+            this.idReporte = idReporte;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.attendance.report;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Exportador de reportes que escribe directamente desde un cursor JDBC
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public interface ReportExporter {
+
+    /** Formato registrado en reportes_generados (PDF, XLSX, CSV) */
+    String getFormato();
+
+    /** Extensión del archivo generado, sin punto */
+    String getExtension();
+
+    /**
+     * Ejecuta la consulta del filtro y escribe el resultado en el flujo.
+     * La conexión viene en una transacción de solo lectura (autocommit
+     * deshabilitado) para que el driver pueda usar un cursor.
+     *
+     * @return filas exportadas
+     */
+    long export(Connection conn, ReportFilter filter, OutputStream out, ExportContext context)
+        throws SQLException, IOException;
+}
@@ -0,0 +1,252 @@
+package com.attendance.report;
+
+import com.attendance.service.UserSearchService;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+
+/**
+ * Filtros de un reporte de asistencias y construcción del SQL compartido
+ * por la vista en pantalla y los exportadores
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class ReportFilter {
+
+    /** Columnas del detalle de asistencias, comunes a todos los formatos */
+    static final String DETAIL_COLUMNS =
+        "SELECT a.id_asistencia, a.fecha_hora, u.id_usuario, " +
+        "       u.nombres || ' ' || u.apellidos AS usuario, u.dni, " +
+        "       d.nombre AS departamento, a.tipo_marcacion, a.confidence_score, a.metodo ";
+
+    static final String DETAIL_FROM =
+        "FROM asistencias a " +
+        "INNER JOIN usuarios u ON a.id_usuario = u.id_usuario " +
+        "LEFT JOIN departamentos d ON u.id_departamento = d.id_departamento ";
+
+    public static final String ORDER_BY_FECHA_DESC = "a.fecha_hora DESC, a.id_asistencia DESC";
+    public static final String ORDER_BY_FECHA = "a.fecha_hora, a.id_asistencia";
+    public static final String ORDER_BY_DEPARTAMENTO_USUARIO =
+        "d.nombre NULLS LAST, u.apellidos, u.nombres, u.id_usuario, a.fecha_hora, a.id_asistencia";
+
+    private final String tipoReporte;
+    private final LocalDate fechaInicio;
+    private final LocalDate fechaFin;
+    private final String departamento;
+    private final String tipoMarcacion;
+    private final String usuario;
+
+    /**
+     * @param departamento  null o "Todos" para no filtrar
+     * @param tipoMarcacion null o "Todos" para no filtrar
+     * @param usuario       palabras a buscar en DNI, nombre o email, vacío para no filtrar
+     */
+    public ReportFilter(String tipoReporte, LocalDate fechaInicio, LocalDate fechaFin,
+                        String departamento, String tipoMarcacion, String usuario) {
+        this.tipoReporte = tipoReporte;
+        this.fechaInicio = fechaInicio;
+        this.fechaFin = fechaFin;
+        this.departamento = isTodos(departamento) ? null : departamento;
+        this.tipoMarcacion = isTodos(tipoMarcacion) ? null : tipoMarcacion;
+        this.usuario = usuario == null || usuario.trim().isEmpty() ? null : usuario.trim();
+    }
+
+    private static boolean isTodos(String value) {
+        return value == null || value.isEmpty() || "Todos".equals(value);
+    }
+
+    public String getTipoReporte() {
+        return tipoReporte;
+    }
+
+    public LocalDate getFechaInicio() {
+        return fechaInicio;
+    }
+
+    public LocalDate getFechaFin() {
+        return fechaFin;
+    }
+
+    public String getDepartamento() {
+        return departamento;
+    }
+
+    public String getTipoMarcacion() {
+        return tipoMarcacion;
+    }
+
+    public String getUsuario() {
+        return usuario;
+    }
+
+    /**
+     * Condiciones WHERE con parámetros. El rango de fechas es semiabierto
+     * sobre fecha_hora para poder usar los índices (sin DATE()).
+     */
+    public String getWhereClause() {
+        StringBuilder sql = new StringBuilder("WHERE a.fecha_hora >= ? AND a.fecha_hora < ? ");
+        if (departamento != null) {
+            sql.append("AND d.nombre = ? ");
+        }
+        if (tipoMarcacion != null) {
+            sql.append("AND a.tipo_marcacion = ? ");
+        }
+        if (usuario != null) {
+            UserSearchService.appendCondition(sql, usuario);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Condiciones WHERE con los valores escritos como literales, para
+     * sentencias que no admiten parámetros (COPY). Los literales se escapan
+     * según standard_conforming_strings de la conexión.
+     */
+    public String getInlineWhereClause(boolean standardConformingStrings) throws SQLException {
+        StringBuilder sql = new StringBuilder("WHERE a.fecha_hora >= ");
+        appendLiteral(sql, fechaInicio + " 00:00:00", standardConformingStrings).append("::timestamp ");
+        sql.append("AND a.fecha_hora < ");
+        appendLiteral(sql, fechaFin.plusDays(1) + " 00:00:00", standardConformingStrings).append("::timestamp ");
+        if (departamento != null) {
+            sql.append("AND d.nombre = ");
+            appendLiteral(sql, departamento, standardConformingStrings).append(' ');
+        }
+        if (tipoMarcacion != null) {
+            sql.append("AND a.tipo_marcacion = ");
+            appendLiteral(sql, tipoMarcacion, standardConformingStrings).append(' ');
+        }
+        for (String termino : UserSearchService.splitTerms(usuario)) {
+            sql.append("AND ").append(UserSearchService.SEARCH_EXPRESSION).append(" LIKE ");
+            appendLiteral(sql, "%" + UserSearchService.escapeLike(termino) + "%", standardConformingStrings);
+            sql.append(" ESCAPE ");
+            appendLiteral(sql, "\\", standardConformingStrings).append(' ');
+        }
+        return sql.toString();
+    }
+
+    private static StringBuilder appendLiteral(StringBuilder sql, String value, boolean standardConformingStrings)
+            throws SQLException {
+        if (!standardConformingStrings) {
+            sql.append('E');
+        }
+        sql.append('\'');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\0') {
+                throw new SQLException("Carácter nulo no permitido en un literal SQL");
+            }
+            if (c == '\'') {
+                sql.append('\'');
+            } else if (c == '\\' && !standardConformingStrings) {
+                // En E'...' la barra invertida es de escape
+                sql.append('\\');
+            }
+            sql.append(c);
+        }
+        return sql.append('\'');
+    }
+
+    /**
+     * Asigna los parámetros del WHERE a partir del índice indicado
+     *
+     * @return siguiente índice libre
+     */
+    public int bind(PreparedStatement pstmt, int index) throws SQLException {
+        pstmt.setTimestamp(index++, Timestamp.valueOf(fechaInicio.atStartOfDay()));
+        pstmt.setTimestamp(index++, Timestamp.valueOf(fechaFin.plusDays(1).atStartOfDay()));
+        if (departamento != null) {
+            pstmt.setString(index++, departamento);
+        }
+        if (tipoMarcacion != null) {
+            pstmt.setString(index++, tipoMarcacion);
+        }
+        if (usuario != null) {
+            index = UserSearchService.bindCondition(pstmt, index, usuario);
+        }
+        return index;
+    }
+
+    /**
+     * Consulta de detalle de asistencias con el orden indicado
+     */
+    public String buildDetailQuery(String orderBy) {
+        return DETAIL_COLUMNS + DETAIL_FROM + getWhereClause() + "ORDER BY " + orderBy;
+    }
+
+    /**
+     * Consulta que cuenta las filas del detalle (para el progreso)
+     */
+    public String buildCountQuery() {
+        return "SELECT COUNT(*) " + DETAIL_FROM + getWhereClause();
+    }
+
+    /**
+     * Nombre descriptivo para el historial y los títulos
+     */
+    public String getDescripcion() {
+        return tipoReporte + " " + fechaInicio + " a " + fechaFin;
+    }
+
+    /**
+     * Parámetros en JSON para reportes_generados.parametros
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        appendJson(json, "tipoReporte", tipoReporte).append(',');
+        return appendDataFields(json).append('}').toString();
+    }
+
+    /**
+     * Clave normalizada de los datos del reporte (mismo formato que
+     * parametros, sin el tipo de reporte, que no cambia el detalle)
+     */
+    public String getCacheKey() {
+        return appendDataFields(new StringBuilder("{")).append('}').toString();
+    }
+
+    private StringBuilder appendDataFields(StringBuilder json) {
+        appendJson(json, "fechaInicio", fechaInicio.toString()).append(',');
+        appendJson(json, "fechaFin", fechaFin.toString()).append(',');
+        appendJson(json, "departamento", departamento).append(',');
+        appendJson(json, "tipoMarcacion", tipoMarcacion).append(',');
+        return appendJson(json, "usuario", usuario);
+    }
+
+    private static StringBuilder appendJson(StringBuilder json, String key, String value) {
+        json.append('"').append(key).append("\":");
+        if (value == null) {
+            return json.append("null");
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"');
+    }
+}
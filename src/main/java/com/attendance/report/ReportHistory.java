@@ -0,0 +1,63 @@
+package com.attendance.report;
+
+import com.attendance.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Registro de los reportes exportados en reportes_generados
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class ReportHistory {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportHistory.class);
+
+    private ReportHistory() {
+    }
+
+    /**
+     * Inserta el historial de una exportación. Los errores solo se registran
+     * en el log: el archivo ya fue generado y no debe perderse por esto.
+     *
+     * @return id_reporte insertado, o 0 si no se pudo registrar
+     */
+    public static int record(ReportFilter filter, String formato, String rutaArchivo,
+                              long bytes, long filas, long duracionMs) {
+        String sql = "INSERT INTO reportes_generados " +
+                     "(nombre_reporte, tipo_reporte, formato, parametros, ruta_archivo, " +
+                     " tamanio_kb, filas, duracion_ms) " +
+                     "VALUES (?, ?, ?, ?::jsonb, ?, ?, ?, ?) RETURNING id_reporte";
+
+        // La escritura va al pool transaccional: el de reportes es de solo lectura
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, truncate(filter.getDescripcion(), 200));
+            pstmt.setString(2, truncate(filter.getTipoReporte(), 50));
+            pstmt.setString(3, formato);
+            pstmt.setString(4, filter.toJson());
+            pstmt.setString(5, truncate(rutaArchivo, 500));
+            pstmt.setInt(6, (int) Math.min(Integer.MAX_VALUE, (bytes + 1023) / 1024));
+            pstmt.setInt(7, (int) Math.min(Integer.MAX_VALUE, filas));
+            pstmt.setInt(8, (int) Math.min(Integer.MAX_VALUE, duracionMs));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+
+        } catch (Exception e) {
+            logger.error("Error al registrar el reporte generado en el historial", e);
+            return 0;
+        }
+    }
+
+    private static String truncate(String value, int max) {
+        return value != null && value.length() > max ? value.substring(0, max) : value;
+    }
+}
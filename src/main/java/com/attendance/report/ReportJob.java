@@ -0,0 +1,115 @@
+package com.attendance.report;
+
+import java.nio.file.Path;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Trabajo de exportación encolado en ReportJobEngine
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class ReportJob {
+
+    public enum Estado { EN_COLA, EJECUTANDO, COMPLETADO, CANCELADO, ERROR }
+
+    private final int id;
+    private final ReportFilter filter;
+    private final ReportExporter exporter;
+    private final Path target;
+    private final ExportContext context;
+
+    private volatile Estado estado = Estado.EN_COLA;
+    private volatile long rows;
+    private volatile long totalRows = -1;
+    private volatile String mensaje;
+    private volatile ReportExportService.ExportResult result;
+    private volatile Future<?> future;
+
+    ReportJob(int id, ReportFilter filter, ReportExporter exporter, Path target, Consumer<ReportJob> onProgress) {
+        this.id = id;
+        this.filter = filter;
+        this.exporter = exporter;
+        this.target = target;
+        this.context = new ExportContext((rowCount, total) -> {
+            this.rows = rowCount;
+            this.totalRows = total;
+            onProgress.accept(this);
+        });
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public ReportFilter getFilter() {
+        return filter;
+    }
+
+    public ReportExporter getExporter() {
+        return exporter;
+    }
+
+    public Path getTarget() {
+        return target;
+    }
+
+    public Estado getEstado() {
+        return estado;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    /**
+     * Porcentaje completado (0-100), -1 si el total aún no se conoce
+     */
+    public int getProgress() {
+        if (estado == Estado.COMPLETADO) {
+            return 100;
+        }
+        long total = totalRows;
+        return total > 0 ? (int) Math.min(99, rows * 100 / total) : -1;
+    }
+
+    public String getMensaje() {
+        return mensaje;
+    }
+
+    public ReportExportService.ExportResult getResult() {
+        return result;
+    }
+
+    public boolean isFinished() {
+        return estado == Estado.COMPLETADO || estado == Estado.CANCELADO || estado == Estado.ERROR;
+    }
+
+    ExportContext getContext() {
+        return context;
+    }
+
+    Future<?> getFuture() {
+        return future;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    void setEstado(Estado estado, String mensaje) {
+        this.estado = estado;
+        this.mensaje = mensaje;
+    }
+
+    void complete(ReportExportService.ExportResult result) {
+        this.result = result;
+        this.rows = result.filas;
+        this.estado = Estado.COMPLETADO;
+    }
+}
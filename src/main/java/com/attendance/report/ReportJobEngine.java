@@ -0,0 +1,387 @@
+package com.attendance.report;
+
+import com.attendance.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Motor de trabajos de exportación en segundo plano
+ * Ejecuta los reportes en un pool acotado; cada trabajo se persiste en
+ * reportes_cola para retomarlo si la aplicación se cierra antes de terminar.
+ * La tabla es compartida por todos los equipos: cada trabajo lleva la
+ * estación que lo encoló (reports.jobs.station o el nombre del host) y solo
+ * esa estación lo retoma, porque ruta_archivo es una ruta local.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class ReportJobEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportJobEngine.class);
+    private static final int MAX_RECENT_JOBS = 50;
+    private static final int MAX_MESSAGE_LENGTH = 500;
+
+    private static final List<JobListener> listeners = new CopyOnWriteArrayList<>();
+    private static final Deque<ReportJob> jobs = new ArrayDeque<>();
+
+    private static ThreadPoolExecutor executor;
+    private static volatile boolean stopping = false;
+    private static String station;
+
+    private ReportJobEngine() {
+    }
+
+    /**
+     * Crea el pool de trabajos y retoma los pendientes de la sesión anterior
+     */
+    public static synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+
+        int maxConcurrent = Integer.parseInt(DatabaseConfig.getProperty("reports.jobs.maxConcurrent", "2"));
+        int queueCapacity = Integer.parseInt(DatabaseConfig.getProperty("reports.jobs.queueCapacity", "20"));
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread t = new Thread(r, "report-job-" + threadNumber.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        stopping = false;
+
+        logger.info("Motor de reportes iniciado ({} simultáneos, cola de {})", maxConcurrent, queueCapacity);
+        restorePending();
+    }
+
+    /**
+     * Detiene el motor. Los trabajos interrumpidos quedan EN_COLA para la próxima sesión.
+     */
+    public static void stop() {
+        ThreadPoolExecutor current;
+        synchronized (ReportJobEngine.class) {
+            current = executor;
+            if (current == null) {
+                return;
+            }
+            stopping = true;
+            executor = null;
+        }
+
+        for (ReportJob job : getJobs()) {
+            if (job.getEstado() == ReportJob.Estado.EJECUTANDO) {
+                job.getContext().cancel();
+            }
+        }
+        current.shutdownNow();
+        try {
+            current.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Motor de reportes detenido");
+    }
+
+    /**
+     * Encola una exportación
+     *
+     * @throws IllegalStateException si la cola está llena
+     */
+    public static ReportJob submit(ReportFilter filter, ReportExporter exporter, Path target) throws SQLException {
+        start();
+        Path absoluteTarget = target.toAbsolutePath();
+        int id = insertJob(filter, exporter, absoluteTarget);
+        return enqueue(new ReportJob(id, filter, exporter, absoluteTarget, ReportJobEngine::fireUpdate));
+    }
+
+    /**
+     * Cancela un trabajo en cola o en ejecución (cancela la sentencia en PostgreSQL)
+     */
+    public static void cancel(ReportJob job) {
+        if (job.isFinished()) {
+            return;
+        }
+        job.getContext().cancel();
+
+        if (job.getEstado() == ReportJob.Estado.EN_COLA && job.getFuture() != null && job.getFuture().cancel(false)) {
+            finish(job, ReportJob.Estado.CANCELADO, "Cancelado antes de iniciar", null);
+        }
+    }
+
+    /**
+     * Trabajos de esta sesión, del más reciente al más antiguo
+     */
+    public static List<ReportJob> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs);
+        }
+    }
+
+    public static void addListener(JobListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(JobListener listener) {
+        listeners.remove(listener);
+    }
+
+    private static ReportJob enqueue(ReportJob job) {
+        synchronized (jobs) {
+            jobs.addFirst(job);
+            while (jobs.size() > MAX_RECENT_JOBS && jobs.peekLast().isFinished()) {
+                jobs.removeLast();
+            }
+        }
+
+        ThreadPoolExecutor current;
+        synchronized (ReportJobEngine.class) {
+            current = executor;
+        }
+        try {
+            if (current == null) {
+                throw new RejectedExecutionException("Motor detenido");
+            }
+            job.setFuture(current.submit(() -> runJob(job)));
+        } catch (RejectedExecutionException e) {
+            finish(job, ReportJob.Estado.ERROR, "Cola de reportes llena", null);
+            throw new IllegalStateException("La cola de reportes está llena; intente más tarde", e);
+        }
+
+        logger.info("Trabajo de reporte #{} en cola: {} {}", job.getId(),
+            job.getExporter().getFormato(), job.getFilter().getDescripcion());
+        fireUpdate(job);
+        return job;
+    }
+
+    private static void runJob(ReportJob job) {
+        if (job.getContext().isCancelled()) {
+            finish(job, ReportJob.Estado.CANCELADO, "Cancelado antes de iniciar", null);
+            return;
+        }
+
+        job.setEstado(ReportJob.Estado.EJECUTANDO, null);
+        updateJob(job.getId(), "UPDATE reportes_cola SET estado = 'EJECUTANDO', fecha_inicio = CURRENT_TIMESTAMP " +
+                               "WHERE id_trabajo = ?");
+        fireUpdate(job);
+
+        try {
+            ReportExportService.ExportResult result =
+                ReportExportService.export(job.getExporter(), job.getFilter(), job.getTarget(), job.getContext());
+            job.complete(result);
+            finish(job, ReportJob.Estado.COMPLETADO, null, result);
+
+        } catch (CancellationException e) {
+            if (stopping) {
+                // Cierre de la aplicación: se retoma en la próxima sesión
+                job.setEstado(ReportJob.Estado.EN_COLA, "Interrumpido por cierre");
+                updateJob(job.getId(), "UPDATE reportes_cola SET estado = 'EN_COLA', fecha_inicio = NULL " +
+                                       "WHERE id_trabajo = ?");
+                fireUpdate(job);
+            } else {
+                finish(job, ReportJob.Estado.CANCELADO, "Cancelado por el usuario", null);
+            }
+        } catch (Exception e) {
+            logger.error("Error en el trabajo de reporte #{}", job.getId(), e);
+            finish(job, ReportJob.Estado.ERROR, e.getMessage(), null);
+        }
+    }
+
+    private static void finish(ReportJob job, ReportJob.Estado estado, String mensaje,
+                               ReportExportService.ExportResult result) {
+        if (estado != ReportJob.Estado.COMPLETADO) {
+            job.setEstado(estado, mensaje);
+        }
+
+        String sql = "UPDATE reportes_cola SET estado = ?, filas = ?, mensaje = ?, id_reporte = ?, " +
+                     "fecha_fin = CURRENT_TIMESTAMP WHERE id_trabajo = ?";
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, estado.name());
+            pstmt.setInt(2, (int) Math.min(Integer.MAX_VALUE, result != null ? result.filas : job.getRows()));
+            pstmt.setString(3, truncate(mensaje));
+            if (result != null && result.idReporte > 0) {
+                pstmt.setInt(4, result.idReporte);
+            } else {
+                pstmt.setNull(4, java.sql.Types.INTEGER);
+            }
+            pstmt.setInt(5, job.getId());
+            pstmt.executeUpdate();
+
+        } catch (Exception e) {
+            logger.error("Error al actualizar el trabajo de reporte #{}", job.getId(), e);
+        }
+
+        logger.info("Trabajo de reporte #{} terminado: {}{}", job.getId(), estado,
+            mensaje != null ? " (" + mensaje + ")" : "");
+        fireUpdate(job);
+    }
+
+    private static int insertJob(ReportFilter filter, ReportExporter exporter, Path target) throws SQLException {
+        String sql = "INSERT INTO reportes_cola (tipo_reporte, formato, fecha_desde, fecha_hasta, departamento, " +
+                     "tipo_marcacion, usuario, parametros, ruta_archivo, estacion) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?::jsonb, ?, ?) RETURNING id_trabajo";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, filter.getTipoReporte());
+            pstmt.setString(2, exporter.getFormato());
+            pstmt.setDate(3, Date.valueOf(filter.getFechaInicio()));
+            pstmt.setDate(4, Date.valueOf(filter.getFechaFin()));
+            pstmt.setString(5, filter.getDepartamento());
+            pstmt.setString(6, filter.getTipoMarcacion());
+            pstmt.setString(7, filter.getUsuario());
+            pstmt.setString(8, filter.toJson());
+            pstmt.setString(9, target.toString());
+            pstmt.setString(10, getStation());
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private static void updateJob(int id, String sql) {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, id);
+            pstmt.executeUpdate();
+        } catch (Exception e) {
+            logger.error("Error al actualizar el trabajo de reporte #{}", id, e);
+        }
+    }
+
+    /**
+     * Nombre de esta estación en reportes_cola
+     */
+    private static synchronized String getStation() {
+        if (station == null) {
+            String configured = DatabaseConfig.getProperty("reports.jobs.station", "").trim();
+            if (configured.isEmpty()) {
+                try {
+                    configured = InetAddress.getLocalHost().getHostName();
+                } catch (UnknownHostException e) {
+                    configured = System.getenv().getOrDefault("COMPUTERNAME",
+                        System.getenv().getOrDefault("HOSTNAME", "desconocida"));
+                    logger.warn("No se pudo obtener el nombre del host, se usa '{}'", configured);
+                }
+            }
+            station = configured;
+        }
+        return station;
+    }
+
+    /**
+     * Vuelve a encolar los trabajos de esta estación que quedaron pendientes o
+     * interrumpidos. Los de otras estaciones (y los anteriores a la columna
+     * estacion) no se tocan: sus rutas no existen en este equipo.
+     */
+    private static void restorePending() {
+        String sql = "SELECT id_trabajo, tipo_reporte, formato, fecha_desde, fecha_hasta, departamento, " +
+                     "       tipo_marcacion, usuario, ruta_archivo " +
+                     "FROM reportes_cola WHERE estado IN ('EN_COLA', 'EJECUTANDO') AND estacion = ? " +
+                     "ORDER BY id_trabajo";
+
+        List<ReportJob> pending = new ArrayList<>();
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, getStation());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ReportFilter filter = new ReportFilter(
+                        rs.getString("tipo_reporte"),
+                        rs.getDate("fecha_desde").toLocalDate(),
+                        rs.getDate("fecha_hasta").toLocalDate(),
+                        rs.getString("departamento"),
+                        rs.getString("tipo_marcacion"),
+                        rs.getString("usuario"));
+                    Path target = Paths.get(rs.getString("ruta_archivo"));
+                    ReportExporter exporter = createExporter(rs.getString("formato"), target);
+                    pending.add(new ReportJob(rs.getInt("id_trabajo"), filter, exporter, target,
+                        ReportJobEngine::fireUpdate));
+                }
+            }
+
+        } catch (Exception e) {
+            logger.error("Error al recuperar la cola de reportes", e);
+            return;
+        }
+
+        for (ReportJob job : pending) {
+            if (job.getTarget().getParent() == null || !Files.isDirectory(job.getTarget().getParent())) {
+                finish(job, ReportJob.Estado.ERROR, "El directorio de destino ya no existe", null);
+                continue;
+            }
+            try {
+                enqueue(job);
+            } catch (IllegalStateException e) {
+                logger.warn("No se pudo retomar el trabajo de reporte #{}: {}", job.getId(), e.getMessage());
+            }
+        }
+        if (!pending.isEmpty()) {
+            logger.info("Retomados {} trabajos de reporte pendientes de la estación {}", pending.size(), getStation());
+        }
+    }
+
+    /**
+     * Exportador correspondiente a un formato de reportes_generados
+     */
+    static ReportExporter createExporter(String formato, Path target) {
+        switch (formato) {
+            case "PDF":
+                return new PdfReportExporter();
+            case "XLSX":
+                return new ExcelReportExporter();
+            case "CSV":
+                return new CsvReportExporter(target.getFileName().toString().endsWith(".gz"));
+            default:
+                throw new IllegalArgumentException("Formato de reporte no soportado: " + formato);
+        }
+    }
+
+    private static void fireUpdate(ReportJob job) {
+        for (JobListener listener : listeners) {
+            try {
+                listener.jobUpdated(job);
+            } catch (Exception e) {
+                logger.error("Error en listener de trabajos de reporte", e);
+            }
+        }
+    }
+
+    private static String truncate(String value) {
+        return value != null && value.length() > MAX_MESSAGE_LENGTH ? value.substring(0, MAX_MESSAGE_LENGTH) : value;
+    }
+
+    /**
+     * Recibe los cambios de estado y progreso (desde hilos de fondo)
+     */
+    public interface JobListener {
+        void jobUpdated(ReportJob job);
+    }
+}
@@ -0,0 +1,202 @@
+package com.attendance.report;
+
+import com.attendance.config.DatabaseConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Lectura paginada del detalle de asistencias con paginación por clave
+ * (keyset): cada página continúa después de la última fila de la anterior,
+ * así el costo no crece con la posición como con OFFSET.
+ * El orden se resuelve en SQL y siempre termina en (fecha_hora, id_asistencia).
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class ReportPageLoader {
+
+    /**
+     * Columnas por las que se puede ordenar; las expresiones no admiten NULL
+     * para que la comparación por tuplas sea correcta
+     */
+    public enum SortColumn {
+        FECHA(null),
+        USUARIO("COALESCE(u.nombres || ' ' || u.apellidos, '')"),
+        DNI("COALESCE(u.dni, '')"),
+        DEPARTAMENTO("COALESCE(d.nombre, '')"),
+        TIPO("COALESCE(a.tipo_marcacion, '')"),
+        CONFIANZA("COALESCE(a.confidence_score, 0)"),
+        METODO("COALESCE(a.metodo, '')");
+
+        private final String expression;
+
+        SortColumn(String expression) {
+            this.expression = expression;
+        }
+    }
+
+    private final ReportFilter filter;
+    private final SortColumn sortColumn;
+    private final boolean ascending;
+    private final int pageSize;
+
+    public ReportPageLoader(ReportFilter filter, SortColumn sortColumn, boolean ascending, int pageSize) {
+        this.filter = filter;
+        this.sortColumn = sortColumn;
+        this.ascending = ascending;
+        this.pageSize = pageSize;
+    }
+
+    public ReportFilter getFilter() {
+        return filter;
+    }
+
+    public SortColumn getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Carga una página
+     *
+     * @param after clave de la última fila anterior (null = desde el inicio)
+     * @param skip  filas a saltar después de la clave, para saltos de varias páginas
+     */
+    public ReportData loadPage(Key after, int skip) throws SQLException {
+        String direction = ascending ? " ASC" : " DESC";
+        StringBuilder sql = new StringBuilder(ReportFilter.DETAIL_COLUMNS)
+            .append(ReportFilter.DETAIL_FROM)
+            .append(filter.getWhereClause());
+
+        if (after != null) {
+            sql.append("AND (");
+            if (sortColumn.expression != null) {
+                sql.append(sortColumn.expression).append(", ");
+            }
+            sql.append("a.fecha_hora, a.id_asistencia) ").append(ascending ? '>' : '<')
+               .append(sortColumn.expression != null ? " (?, ?, ?) " : " (?, ?) ");
+        }
+
+        sql.append("ORDER BY ");
+        if (sortColumn.expression != null) {
+            sql.append(sortColumn.expression).append(direction).append(", ");
+        }
+        sql.append("a.fecha_hora").append(direction).append(", a.id_asistencia").append(direction)
+           .append(" LIMIT ").append(pageSize);
+        if (skip > 0) {
+            sql.append(" OFFSET ").append(skip);
+        }
+
+        try (Connection conn = DatabaseConfig.getConnection(DatabaseConfig.Pool.REPORTES);
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+
+            int index = filter.bind(pstmt, 1);
+            if (after != null) {
+                if (sortColumn.expression != null) {
+                    pstmt.setObject(index++, after.sortValue);
+                }
+                pstmt.setTimestamp(index++, after.fechaHora);
+                pstmt.setInt(index, after.idAsistencia);
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return ReportData.read(rs);
+            }
+        }
+    }
+
+    /**
+     * Clave de la última fila de una página (null si está vacía)
+     */
+    public Key lastKey(ReportData page) {
+        if (page.size() == 0) {
+            return null;
+        }
+        int last = page.size() - 1;
+        return new Key(sortValue(page, last), page.getTimestamp(last), page.getIdAsistencia(last));
+    }
+
+    private Object sortValue(ReportData page, int row) {
+        switch (sortColumn) {
+            case USUARIO:
+                return nullToEmpty(page.getUsuario(row));
+            case DNI:
+                return nullToEmpty(page.getDni(row));
+            case DEPARTAMENTO:
+                return nullToEmpty(page.getDepartamento(row));
+            case TIPO:
+                return nullToEmpty(page.getTipoMarcacion(row));
+            case CONFIANZA:
+                return page.getConfidence(row);
+            case METODO:
+                return nullToEmpty(page.getMetodo(row));
+            default:
+                return null;
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    /**
+     * Totales del reporte completo para la barra de desplazamiento y las estadísticas
+     */
+    public Summary loadSummary() throws SQLException {
+        String sql = "SELECT COUNT(*), " +
+                     "       COUNT(*) FILTER (WHERE a.tipo_marcacion = 'ENTRADA'), " +
+                     "       COUNT(*) FILTER (WHERE a.tipo_marcacion = 'SALIDA'), " +
+                     "       COUNT(DISTINCT a.id_usuario) " +
+                     ReportFilter.DETAIL_FROM + filter.getWhereClause();
+
+        try (Connection conn = DatabaseConfig.getConnection(DatabaseConfig.Pool.REPORTES);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            filter.bind(pstmt, 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return new Summary(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4));
+            }
+        }
+    }
+
+    /**
+     * Posición de una fila en el orden actual
+     */
+    public static class Key {
+        public final Object sortValue;
+        public final Timestamp fechaHora;
+        public final int idAsistencia;
+
+        public Key(Object sortValue, Timestamp fechaHora, int idAsistencia) {
+            this.sortValue = sortValue;
+            this.fechaHora = fechaHora;
+            this.idAsistencia = idAsistencia;
+        }
+    }
+
+    public static class Summary {
+        public final long totalRegistros;
+        public final long totalEntradas;
+        public final long totalSalidas;
+        public final long usuariosUnicos;
+
+        public Summary(long totalRegistros, long totalEntradas, long totalSalidas, long usuariosUnicos) {
+            this.totalRegistros = totalRegistros;
+            this.totalEntradas = totalEntradas;
+            this.totalSalidas = totalSalidas;
+            this.usuariosUnicos = usuariosUnicos;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.attendance.report;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Jornada de trabajo armada a partir de las marcaciones de un usuario
+ * La fecha es la de la entrada: un turno que cruza la medianoche pertenece
+ * al día en que empezó.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class WorkSession {
+
+    public final int idUsuario;
+    public final LocalDate fecha;
+    public final LocalDateTime inicio;
+    /** null si falta la marcación de salida */
+    public final LocalDateTime fin;
+    public final int minutosTrabajados;
+    public final int minutosBreak;
+
+    public WorkSession(int idUsuario, LocalDateTime inicio, LocalDateTime fin,
+                       int minutosTrabajados, int minutosBreak) {
+        this.idUsuario = idUsuario;
+        this.fecha = inicio.toLocalDate();
+        this.inicio = inicio;
+        this.fin = fin;
+        this.minutosTrabajados = minutosTrabajados;
+        this.minutosBreak = minutosBreak;
+    }
+
+    public boolean isCompleta() {
+        return fin != null;
+    }
+
+    @Override
+    public String toString() {
+        return "WorkSession{usuario=" + idUsuario + ", inicio=" + inicio + ", fin=" + fin +
+               ", trabajados=" + minutosTrabajados + ", break=" + minutosBreak + "}";
+    }
+}
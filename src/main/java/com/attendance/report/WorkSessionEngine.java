@@ -0,0 +1,590 @@
+package com.attendance.report;
+
+import com.attendance.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Cálculo de horas trabajadas a partir de las marcaciones
+ * Lee las marcaciones ordenadas por (usuario, fecha_hora) con un cursor del
+ * pool de reportes y las empareja en jornadas en una sola pasada: ENTRADA
+ * abre, SALIDA cierra, SALIDA_BREAK / ENTRADA_BREAK delimitan el descanso.
+ * Una entrada sin salida queda como jornada incompleta (sin horas). Con
+ * muchos usuarios el emparejado se reparte entre hilos con fork-join.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class WorkSessionEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkSessionEngine.class);
+
+    static final byte ENTRADA = 0;
+    static final byte SALIDA = 1;
+    static final byte SALIDA_BREAK = 2;
+    static final byte ENTRADA_BREAK = 3;
+
+    static final long MICROS_PER_MINUTE = 60_000_000L;
+    private static final int FETCH_SIZE = 5000;
+
+    /** Duración máxima de una jornada; pasado esto la entrada se da por incompleta */
+    static final long MAX_SESSION_MICROS =
+        Long.parseLong(DatabaseConfig.getProperty("sessions.maxHours", "16")) * 60 * MICROS_PER_MINUTE;
+    /** Marcaciones iguales más cercanas que esto se toman como duplicadas */
+    private static final long DUPLICATE_MICROS =
+        Long.parseLong(DatabaseConfig.getProperty("sessions.duplicateMinutes", "2")) * MICROS_PER_MINUTE;
+    private static final int DEFAULT_WORKDAY_MINUTES =
+        Integer.parseInt(DatabaseConfig.getProperty("sessions.defaultWorkdayMinutes", "480"));
+    /** Usuarios por tarea de fork-join */
+    private static final int USERS_PER_TASK =
+        Integer.parseInt(DatabaseConfig.getProperty("sessions.usersPerTask", "64"));
+
+    private static final String MARKS_QUERY =
+        "SELECT a.id_usuario, a.fecha_hora, a.tipo_marcacion " +
+        "FROM asistencias a " +
+        "JOIN usuarios u ON a.id_usuario = u.id_usuario " +
+        "LEFT JOIN departamentos d ON u.id_departamento = d.id_departamento " +
+        "WHERE a.fecha_hora >= ? AND a.fecha_hora < ? ";
+
+    private static final String SCHEDULE_QUERY =
+        "SELECT uh.id_usuario, uh.fecha_inicio, uh.fecha_fin, h.hora_entrada, h.hora_salida, " +
+        "       h.hora_entrada_break, h.hora_salida_break " +
+        "FROM usuarios_horarios uh " +
+        "JOIN horarios_trabajo h ON uh.id_horario = h.id_horario " +
+        "WHERE uh.activo = TRUE AND h.activo = TRUE " +
+        "  AND uh.fecha_inicio <= ? AND (uh.fecha_fin IS NULL OR uh.fecha_fin >= ?) " +
+        "ORDER BY uh.id_usuario, uh.fecha_inicio DESC";
+
+    /** Incluye inactivos: pueden tener marcaciones en el rango */
+    private static final String USERS_QUERY =
+        "SELECT id_usuario, dni, nombres || ' ' || apellidos AS nombre " +
+        "FROM usuarios WHERE id_usuario = ANY(?)";
+
+    private WorkSessionEngine() {
+    }
+
+    /**
+     * Jornadas y totales de todos los usuarios en el rango
+     */
+    public static Result compute(LocalDate fechaInicio, LocalDate fechaFin) throws SQLException {
+        return compute(fechaInicio, fechaFin, null);
+    }
+
+    /**
+     * Jornadas y totales de los usuarios del departamento en el rango
+     *
+     * @param departamento nombre del departamento, null para todos
+     */
+    public static Result compute(LocalDate fechaInicio, LocalDate fechaFin, String departamento) throws SQLException {
+        long start = System.currentTimeMillis();
+
+        // Se lee un margen a cada lado para cerrar turnos que cruzan los bordes del rango
+        LocalDateTime desde = fechaInicio.atStartOfDay().minusNanos(MAX_SESSION_MICROS * 1000);
+        LocalDateTime hasta = fechaFin.plusDays(1).atStartOfDay().plusNanos(MAX_SESSION_MICROS * 1000);
+
+        Marks marks;
+        Map<Integer, List<Workday>> schedules;
+        Map<Integer, String[]> nombres;
+        try (Connection conn = DatabaseConfig.getConnection(DatabaseConfig.Pool.REPORTES)) {
+            conn.setAutoCommit(false);
+            try {
+                marks = readMarks(conn, desde, hasta, departamento);
+                schedules = readSchedules(conn, fechaInicio, fechaFin);
+                nombres = readUsers(conn, marks);
+            } finally {
+                conn.rollback();
+            }
+        }
+
+        Range range = new Range(toMicros(fechaInicio.atStartOfDay()), toMicros(fechaFin.plusDays(1).atStartOfDay()));
+        Partial partial = marks.users() > USERS_PER_TASK
+            ? ForkJoinPool.commonPool().invoke(new PairTask(marks, schedules, range, 0, marks.users()))
+            : pair(marks, schedules, range, 0, marks.users());
+
+        List<UserTotals> usuarios = new ArrayList<>(partial.usuarios.size());
+        for (UserTotals totals : partial.usuarios) {
+            String[] nombre = nombres.get(totals.idUsuario);
+            usuarios.add(nombre != null ? totals.withUsuario(nombre[0], nombre[1])
+                                        : totals.withUsuario("", "Usuario #" + totals.idUsuario));
+        }
+        Result result = new Result(fechaInicio, fechaFin, partial.sesiones, usuarios);
+        logger.info("Jornadas calculadas: {} usuarios, {} jornadas a partir de {} marcaciones en {} ms",
+            result.usuarios.size(), result.sesiones.size(), marks.size, System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private static Marks readMarks(Connection conn, LocalDateTime desde, LocalDateTime hasta,
+                                   String departamento) throws SQLException {
+        String sql = MARKS_QUERY + (departamento != null ? "AND d.nombre = ? " : "") +
+                     "ORDER BY a.id_usuario, a.fecha_hora, a.id_asistencia";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setFetchSize(FETCH_SIZE);
+            pstmt.setTimestamp(1, Timestamp.valueOf(desde));
+            pstmt.setTimestamp(2, Timestamp.valueOf(hasta));
+            if (departamento != null) {
+                pstmt.setString(3, departamento);
+            }
+            Marks marks = new Marks();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    marks.add(rs.getInt(1), toMicros(rs.getTimestamp(2).toLocalDateTime()), tipoCode(rs.getString(3)));
+                }
+            }
+            return marks.finish();
+        }
+    }
+
+    /**
+     * DNI y nombre de los usuarios con marcaciones: id_usuario → {dni, nombre}
+     */
+    private static Map<Integer, String[]> readUsers(Connection conn, Marks marks) throws SQLException {
+        Map<Integer, String[]> nombres = new HashMap<>();
+        if (marks.users() == 0) {
+            return nombres;
+        }
+        Integer[] ids = new Integer[marks.users()];
+        for (int u = 0; u < ids.length; u++) {
+            ids[u] = marks.userIds[u];
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(USERS_QUERY)) {
+            pstmt.setArray(1, conn.createArrayOf("integer", ids));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    nombres.put(rs.getInt("id_usuario"), new String[]{rs.getString("dni"), rs.getString("nombre")});
+                }
+            }
+        }
+        return nombres;
+    }
+
+    private static Map<Integer, List<Workday>> readSchedules(Connection conn, LocalDate fechaInicio,
+                                                             LocalDate fechaFin) throws SQLException {
+        Map<Integer, List<Workday>> schedules = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(SCHEDULE_QUERY)) {
+            pstmt.setObject(1, fechaFin);
+            pstmt.setObject(2, fechaInicio);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int minutos = minutesBetween(rs.getTime("hora_entrada"), rs.getTime("hora_salida"));
+                    Time breakInicio = rs.getTime("hora_entrada_break");
+                    Time breakFin = rs.getTime("hora_salida_break");
+                    if (breakInicio != null && breakFin != null) {
+                        minutos -= Math.abs(breakFin.toLocalTime().toSecondOfDay()
+                                            - breakInicio.toLocalTime().toSecondOfDay()) / 60;
+                    }
+                    schedules.computeIfAbsent(rs.getInt("id_usuario"), k -> new ArrayList<>()).add(new Workday(
+                        rs.getObject("fecha_inicio", LocalDate.class),
+                        rs.getObject("fecha_fin", LocalDate.class),
+                        Math.max(0, minutos)));
+                }
+            }
+        }
+        return schedules;
+    }
+
+    /**
+     * Minutos de la jornada; si la salida es anterior a la entrada el turno es nocturno
+     */
+    private static int minutesBetween(Time entrada, Time salida) {
+        int minutos = (salida.toLocalTime().toSecondOfDay() - entrada.toLocalTime().toSecondOfDay()) / 60;
+        return minutos <= 0 ? minutos + 24 * 60 : minutos;
+    }
+
+    /**
+     * Empareja los usuarios [from, to) de las marcaciones
+     */
+    static Partial pair(Marks marks, Map<Integer, List<Workday>> schedules, Range range, int from, int to) {
+        Partial partial = new Partial();
+        Pairer pairer = new Pairer(range);
+        for (int u = from; u < to; u++) {
+            int idUsuario = marks.userIds[u];
+            pairer.reset(idUsuario);
+            for (int i = marks.userStart[u]; i < marks.userStart[u + 1]; i++) {
+                pairer.accept(marks.micros[i], marks.tipos[i]);
+            }
+            pairer.finish();
+
+            List<Workday> userSchedule = schedules.get(idUsuario);
+            partial.usuarios.add(totals(idUsuario, pairer.sesiones, pairer.huerfanas,
+                userSchedule != null ? userSchedule : Collections.<Workday>emptyList()));
+            partial.sesiones.addAll(pairer.sesiones);
+        }
+        return partial;
+    }
+
+    /**
+     * Totales del usuario; las horas extra se calculan por día contra la jornada de su horario
+     */
+    private static UserTotals totals(int idUsuario, List<WorkSession> sesiones, int huerfanas, List<Workday> schedule) {
+        int incompletas = 0;
+        int dias = 0;
+        long trabajados = 0;
+        long breaks = 0;
+        long extra = 0;
+
+        LocalDate dia = null;
+        long trabajadosDia = 0;
+        for (WorkSession sesion : sesiones) {
+            if (!sesion.isCompleta()) {
+                incompletas++;
+            }
+            if (!sesion.fecha.equals(dia)) {
+                if (dia != null) {
+                    extra += Math.max(0, trabajadosDia - workdayMinutes(schedule, dia));
+                }
+                dia = sesion.fecha;
+                trabajadosDia = 0;
+                dias++;
+            }
+            trabajadosDia += sesion.minutosTrabajados;
+            trabajados += sesion.minutosTrabajados;
+            breaks += sesion.minutosBreak;
+        }
+        if (dia != null) {
+            extra += Math.max(0, trabajadosDia - workdayMinutes(schedule, dia));
+        }
+        return new UserTotals(idUsuario, null, null, sesiones.size(), incompletas, huerfanas, dias,
+            trabajados, breaks, extra);
+    }
+
+    private static int workdayMinutes(List<Workday> schedule, LocalDate fecha) {
+        // Ordenadas por fecha_inicio descendente: la primera vigente es la más reciente
+        for (Workday workday : schedule) {
+            if (!fecha.isBefore(workday.fechaInicio) && (workday.fechaFin == null || !fecha.isAfter(workday.fechaFin))) {
+                return workday.minutos;
+            }
+        }
+        return DEFAULT_WORKDAY_MINUTES;
+    }
+
+    static byte tipoCode(String tipoMarcacion) {
+        switch (tipoMarcacion) {
+            case "SALIDA":
+                return SALIDA;
+            case "SALIDA_BREAK":
+                return SALIDA_BREAK;
+            case "ENTRADA_BREAK":
+                return ENTRADA_BREAK;
+            default:
+                return ENTRADA;
+        }
+    }
+
+    static long toMicros(LocalDateTime fechaHora) {
+        return fechaHora.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + fechaHora.getNano() / 1000;
+    }
+
+    static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+            (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Máquina de estados que arma las jornadas de un usuario marcación por marcación
+     */
+    static class Pairer {
+        private final Range range;
+        private int idUsuario;
+        private final List<WorkSession> sesiones = new ArrayList<>();
+        private int huerfanas;
+
+        private boolean abierta;
+        private long inicio;
+        private long breakInicio;
+        private long breakAcumulado;
+        private long ultimaMarca;
+        private byte ultimoTipo;
+
+        Pairer(Range range) {
+            this.range = range;
+        }
+
+        void reset(int idUsuario) {
+            this.idUsuario = idUsuario;
+            sesiones.clear();
+            huerfanas = 0;
+            abierta = false;
+            ultimaMarca = Long.MIN_VALUE;
+        }
+
+        void accept(long micros, byte tipo) {
+            // Doble marcación del mismo tipo (el usuario apoyó el dedo dos veces)
+            if (tipo == ultimoTipo && ultimaMarca != Long.MIN_VALUE && micros - ultimaMarca < DUPLICATE_MICROS) {
+                return;
+            }
+            ultimaMarca = micros;
+            ultimoTipo = tipo;
+
+            if (abierta && micros - inicio > MAX_SESSION_MICROS) {
+                closeIncomplete();
+            }
+
+            switch (tipo) {
+                case ENTRADA:
+                    if (abierta) {
+                        closeIncomplete();
+                    }
+                    open(micros);
+                    break;
+                case SALIDA:
+                    if (abierta) {
+                        close(micros);
+                    } else {
+                        orphan(micros);
+                    }
+                    break;
+                case SALIDA_BREAK:
+                    if (!abierta) {
+                        orphan(micros);
+                    } else if (breakInicio < 0) {
+                        breakInicio = micros;
+                    }
+                    break;
+                case ENTRADA_BREAK:
+                    if (!abierta) {
+                        // Vuelta del descanso sin entrada registrada: se toma como inicio
+                        open(micros);
+                    } else if (breakInicio >= 0) {
+                        breakAcumulado += micros - breakInicio;
+                        breakInicio = -1;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        void finish() {
+            if (abierta) {
+                closeIncomplete();
+            }
+        }
+
+        List<WorkSession> getSesiones() {
+            return sesiones;
+        }
+
+        int getHuerfanas() {
+            return huerfanas;
+        }
+
+        private void open(long micros) {
+            abierta = true;
+            inicio = micros;
+            breakInicio = -1;
+            breakAcumulado = 0;
+        }
+
+        private void close(long fin) {
+            abierta = false;
+            if (!range.contains(inicio)) {
+                return;
+            }
+            // Un descanso sin vuelta se cuenta hasta la salida
+            long breakTotal = breakAcumulado + (breakInicio >= 0 ? fin - breakInicio : 0);
+            long trabajado = Math.max(0, fin - inicio - breakTotal);
+            sesiones.add(new WorkSession(idUsuario, fromMicros(inicio), fromMicros(fin),
+                (int) (trabajado / MICROS_PER_MINUTE), (int) (breakTotal / MICROS_PER_MINUTE)));
+        }
+
+        private void closeIncomplete() {
+            abierta = false;
+            if (range.contains(inicio)) {
+                sesiones.add(new WorkSession(idUsuario, fromMicros(inicio), null, 0,
+                    (int) (breakAcumulado / MICROS_PER_MINUTE)));
+            }
+        }
+
+        private void orphan(long micros) {
+            if (range.contains(micros)) {
+                huerfanas++;
+            }
+        }
+    }
+
+    /**
+     * Marcaciones en arreglos primitivos, contiguas por usuario
+     */
+    static class Marks {
+        private int size = 0;
+        private long[] micros = new long[1024];
+        private byte[] tipos = new byte[1024];
+        private int users = 0;
+        private int[] userIds = new int[64];
+        private int[] userStart = new int[65];
+
+        void add(int idUsuario, long fechaHora, byte tipo) {
+            if (users == 0 || userIds[users - 1] != idUsuario) {
+                if (users == userIds.length) {
+                    userIds = Arrays.copyOf(userIds, users * 2);
+                    userStart = Arrays.copyOf(userStart, users * 2 + 1);
+                }
+                userIds[users] = idUsuario;
+                userStart[users] = size;
+                users++;
+            }
+            if (size == micros.length) {
+                micros = Arrays.copyOf(micros, size * 2);
+                tipos = Arrays.copyOf(tipos, size * 2);
+            }
+            micros[size] = fechaHora;
+            tipos[size] = tipo;
+            size++;
+        }
+
+        Marks finish() {
+            userStart[users] = size;
+            return this;
+        }
+
+        int users() {
+            return users;
+        }
+    }
+
+    /**
+     * Rango [desde, hasta) en microsegundos de las jornadas a informar
+     */
+    static class Range {
+        final long desde;
+        final long hasta;
+
+        Range(long desde, long hasta) {
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        boolean contains(long micros) {
+            return micros >= desde && micros < hasta;
+        }
+    }
+
+    private static class Workday {
+        final LocalDate fechaInicio;
+        final LocalDate fechaFin;
+        final int minutos;
+
+        Workday(LocalDate fechaInicio, LocalDate fechaFin, int minutos) {
+            this.fechaInicio = fechaInicio;
+            this.fechaFin = fechaFin;
+            this.minutos = minutos;
+        }
+    }
+
+    static class Partial {
+        final List<WorkSession> sesiones = new ArrayList<>();
+        final List<UserTotals> usuarios = new ArrayList<>();
+
+        Partial merge(Partial other) {
+            sesiones.addAll(other.sesiones);
+            usuarios.addAll(other.usuarios);
+            return this;
+        }
+    }
+
+    /**
+     * Divide el rango de usuarios a la mitad hasta USERS_PER_TASK
+     */
+    private static class PairTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final Marks marks;
+        private final Map<Integer, List<Workday>> schedules;
+        private final Range range;
+        private final int from;
+        private final int to;
+
+        PairTask(Marks marks, Map<Integer, List<Workday>> schedules, Range range, int from, int to) {
+            this.marks = marks;
+            this.schedules = schedules;
+            this.range = range;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= USERS_PER_TASK) {
+                return pair(marks, schedules, range, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            PairTask left = new PairTask(marks, schedules, range, from, mid);
+            left.fork();
+            Partial right = new PairTask(marks, schedules, range, mid, to).compute();
+            // Se conserva el orden por usuario
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Totales de un usuario en el rango (minutos)
+     */
+    public static class UserTotals {
+        public final int idUsuario;
+        public final String dni;
+        public final String nombreCompleto;
+        public final int sesiones;
+        public final int sesionesIncompletas;
+        /** Salidas o descansos sin una entrada que los abra */
+        public final int marcasHuerfanas;
+        public final int diasTrabajados;
+        public final long minutosTrabajados;
+        public final long minutosBreak;
+        public final long minutosExtra;
+
+        public UserTotals(int idUsuario, String dni, String nombreCompleto, int sesiones, int sesionesIncompletas,
+                          int marcasHuerfanas, int diasTrabajados, long minutosTrabajados, long minutosBreak,
+                          long minutosExtra) {
+            this.idUsuario = idUsuario;
+            this.dni = dni;
+            this.nombreCompleto = nombreCompleto;
+            this.sesiones = sesiones;
+            this.sesionesIncompletas = sesionesIncompletas;
+            this.marcasHuerfanas = marcasHuerfanas;
+            this.diasTrabajados = diasTrabajados;
+            this.minutosTrabajados = minutosTrabajados;
+            this.minutosBreak = minutosBreak;
+            this.minutosExtra = minutosExtra;
+        }
+
+        UserTotals withUsuario(String dni, String nombreCompleto) {
+            return new UserTotals(idUsuario, dni, nombreCompleto, sesiones, sesionesIncompletas, marcasHuerfanas,
+                diasTrabajados, minutosTrabajados, minutosBreak, minutosExtra);
+        }
+    }
+
+    /**
+     * Resultado del cálculo: jornadas ordenadas por (usuario, inicio) y totales por usuario
+     */
+    public static class Result {
+        public final LocalDate fechaInicio;
+        public final LocalDate fechaFin;
+        public final List<WorkSession> sesiones;
+        public final List<UserTotals> usuarios;
+
+        public Result(LocalDate fechaInicio, LocalDate fechaFin, List<WorkSession> sesiones, List<UserTotals> usuarios) {
+            this.fechaInicio = fechaInicio;
+            this.fechaFin = fechaFin;
+            this.sesiones = Collections.unmodifiableList(sesiones);
+            this.usuarios = Collections.unmodifiableList(usuarios);
+        }
+    }
+}
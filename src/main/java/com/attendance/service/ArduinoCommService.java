@@ -1,11 +1,15 @@
 package com.attendance.service;
 
+import com.attendance.config.ConfigService;
+import com.attendance.monitoring.MetricsRegistry;
+import com.attendance.monitoring.SensorOperationEvent;
+import com.attendance.util.EdtDispatcher;
 import com.attendance.util.SerialPortManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.swing.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
 
 public class ArduinoCommService {
     private static final Logger logger = LoggerFactory.getLogger(ArduinoCommService.class);
@@ -13,8 +17,16 @@ public class ArduinoCommService {
     private static final int CONNECTION_TIMEOUT = 5000;
     private static final int COMMAND_TIMEOUT = 3000;
     
+    /** Coincidencias por debajo de este puntaje se tratan como huella no reconocida */
+    private static final ConfigService.Setting<Integer> CONFIDENCE_THRESHOLD =
+        ConfigService.intSetting("sensor.confidenceThreshold", 50);
+    
+    /** Última cantidad de plantillas leída del sensor (-1 si nunca se leyó) */
+    private static volatile int lastTemplateCount = -1;
+    
     private SerialPortManager serialPortManager;
     private boolean isConnected = false;
+    private volatile long lastCaptureNanos = 0;
     
     public ArduinoCommService() {
         this.serialPortManager = new SerialPortManager();
@@ -22,6 +34,13 @@ public class ArduinoCommService {
     }
     
     public boolean connect(String portName) {
+        SensorOperationEvent event = SensorOperationEvent.begin("CONNECT", portName);
+        boolean connected = doConnect(portName);
+        event.finish(connected, connected ? "Conectado" : "Sin conexión");
+        return connected;
+    }
+    
+    private boolean doConnect(String portName) {
         try {
             logger.info("═══════════════════════════════════════");
             logger.info("  Conectando con Arduino");
@@ -45,6 +64,7 @@ public class ArduinoCommService {
             if (verifyConnection()) {
                 isConnected = true;
                 logger.info("✓ Arduino conectado y verificado");
+                getTemplateCount();
                 return true;
             } else {
                 logger.warn("⚠ Arduino no responde correctamente");
@@ -90,9 +110,19 @@ public class ArduinoCommService {
     }
     
     public int getTemplateCount() {
+        SensorOperationEvent event = SensorOperationEvent.begin("COUNT", serialPortManager.getPortName());
+        int count = doGetTemplateCount();
+        event.finish(count >= 0, "Plantillas: " + count);
+        return Math.max(count, 0);
+    }
+    
+    /**
+     * Consulta la cantidad de plantillas al sensor (-1 si falla)
+     */
+    private int doGetTemplateCount() {
         if (!isConnected()) {
             logger.error("No hay conexión con Arduino");
-            return 0;
+            return -1;
         }
         
         try {
@@ -106,18 +136,26 @@ public class ArduinoCommService {
                 for (String line : lines) {
                     if (line.contains("COUNT:")) {
                         String countStr = line.substring(line.indexOf("COUNT:") + 6).trim();
-                        return Integer.parseInt(countStr.split("\\s+")[0]);
+                        lastTemplateCount = Integer.parseInt(countStr.split("\\s+")[0]);
+                        return lastTemplateCount;
                     }
                 }
             }
-            return 0;
+            return -1;
             
         } catch (Exception e) {
             logger.error("Error obteniendo template count: {}", e.getMessage());
-            return 0;
+            return -1;
         }
     }
     
+    /**
+     * Última cantidad de plantillas conocida, sin enviar comandos al sensor
+     */
+    public static int getCachedTemplateCount() {
+        return lastTemplateCount;
+    }
+    
     public void disconnect() {
         if (serialPortManager != null) {
             serialPortManager.disconnect();
@@ -133,39 +171,47 @@ public class ArduinoCommService {
     public void startEnroll(int id, EnrollCallback callback) {
         enrollFingerprint(id, callback).thenAccept(result -> {
             if (!result.success) {
-                SwingUtilities.invokeLater(() -> callback.onError(result.message));
+                EdtDispatcher.invokeLater(() -> callback.onError(result.message));
             }
         });
     }
     
     public CompletableFuture<EnrollResult> enrollFingerprint(int id, EnrollCallback callback) {
         return CompletableFuture.supplyAsync(() -> {
-            if (!isConnected()) {
-                logger.error("No hay conexión con Arduino");
-                return new EnrollResult(false, "No hay conexión con Arduino");
-            }
+            SensorOperationEvent event = SensorOperationEvent.begin("ENROLL", serialPortManager.getPortName());
+            event.fingerprintId = id;
+            EnrollResult result = doEnroll(id, callback);
+            event.finish(result.success, result.message);
+            return result;
+        });
+    }
+    
+    private EnrollResult doEnroll(int id, EnrollCallback callback) {
+        if (!isConnected()) {
+            logger.error("No hay conexión con Arduino");
+            return new EnrollResult(false, "No hay conexión con Arduino");
+        }
+        
+        try {
+            logger.info("Iniciando enrollamiento para ID: {}", id);
             
-            try {
-                logger.info("Iniciando enrollamiento para ID: {}", id);
-                
-                serialPortManager.clearBuffer();
-                Thread.sleep(100);
-                
-                boolean sent = serialPortManager.sendCommandNoResponse("ENROLL:" + id);
-                
-                if (!sent) {
-                    return new EnrollResult(false, "Error al enviar comando");
-                }
-                
-                Thread.sleep(200);
-                
-                return listenEnrollProcess(callback);
-                
-            } catch (Exception e) {
-                logger.error("Error en enrollamiento: {}", e.getMessage(), e);
-                return new EnrollResult(false, "Error: " + e.getMessage());
+            serialPortManager.clearBuffer();
+            Thread.sleep(100);
+            
+            boolean sent = serialPortManager.sendCommandNoResponse("ENROLL:" + id);
+            
+            if (!sent) {
+                return new EnrollResult(false, "Error al enviar comando");
             }
-        });
+            
+            Thread.sleep(200);
+            
+            return listenEnrollProcess(callback);
+            
+        } catch (Exception e) {
+            logger.error("Error en enrollamiento: {}", e.getMessage(), e);
+            return new EnrollResult(false, "Error: " + e.getMessage());
+        }
     }
     
     private EnrollResult listenEnrollProcess(EnrollCallback callback) {
@@ -183,34 +229,34 @@ public class ArduinoCommService {
                 logger.debug("Enroll msg: {}", message);
                 
                 if (message.contains("ENROLL:START:")) {
-                    SwingUtilities.invokeLater(() -> callback.onProgress("Proceso iniciado"));
+                    EdtDispatcher.invokeLater(() -> callback.onProgress("Proceso iniciado"));
                     
                 } else if (message.contains("PLACE_FINGER")) {
-                    SwingUtilities.invokeLater(() -> callback.onProgress("Coloque el dedo en el sensor"));
+                    EdtDispatcher.invokeLater(() -> callback.onProgress("Coloque el dedo en el sensor"));
                     
                 } else if (message.contains("CAPTURED")) {
-                    SwingUtilities.invokeLater(() -> callback.onProgress("Imagen capturada"));
+                    EdtDispatcher.invokeLater(() -> callback.onProgress("Imagen capturada"));
                     
                 } else if (message.contains("REMOVE_FINGER")) {
-                    SwingUtilities.invokeLater(() -> callback.onProgress("Retire el dedo"));
+                    EdtDispatcher.invokeLater(() -> callback.onProgress("Retire el dedo"));
                     
                 } else if (message.contains("PLACE_AGAIN")) {
-                    SwingUtilities.invokeLater(() -> callback.onProgress("Coloque el mismo dedo nuevamente"));
+                    EdtDispatcher.invokeLater(() -> callback.onProgress("Coloque el mismo dedo nuevamente"));
                     
                 } else if (message.contains("CREATING_MODEL")) {
-                    SwingUtilities.invokeLater(() -> callback.onProgress("Creando modelo de huella"));
+                    EdtDispatcher.invokeLater(() -> callback.onProgress("Creando modelo de huella"));
                     
                 } else if (message.contains("SAVING")) {
-                    SwingUtilities.invokeLater(() -> callback.onProgress("Guardando huella"));
+                    EdtDispatcher.invokeLater(() -> callback.onProgress("Guardando huella"));
                     
                 } else if (message.contains("SUCCESS")) {
-                    SwingUtilities.invokeLater(() -> callback.onProgress("Huella guardada exitosamente"));
+                    EdtDispatcher.invokeLater(() -> callback.onProgress("Huella guardada exitosamente"));
                     
                 } else if (message.contains("ENROLL:OK:")) {
                     String[] parts = message.split(":");
                     if (parts.length >= 3) {
                         int enrolledId = Integer.parseInt(parts[2].trim());
-                        SwingUtilities.invokeLater(() -> callback.onSuccess(enrolledId));
+                        EdtDispatcher.invokeLater(() -> callback.onSuccess(enrolledId));
                         logger.info("✓ Enrollamiento exitoso - ID: {}", enrolledId);
                         return new EnrollResult(true, "Enrollamiento exitoso", enrolledId);
                     }
@@ -218,26 +264,26 @@ public class ArduinoCommService {
                 } else if (message.contains("ENROLL:FAIL:")) {
                     String[] parts = message.split(":", 3);
                     String error = parts.length >= 3 ? parts[2] : "Error desconocido";
-                    SwingUtilities.invokeLater(() -> callback.onError(error));
+                    EdtDispatcher.invokeLater(() -> callback.onError(error));
                     logger.error("✗ Error en enrollamiento: {}", error);
                     return new EnrollResult(false, error);
                     
                 } else if (message.contains("TIMEOUT")) {
-                    SwingUtilities.invokeLater(() -> callback.onError("Tiempo de espera agotado"));
+                    EdtDispatcher.invokeLater(() -> callback.onError("Tiempo de espera agotado"));
                     return new EnrollResult(false, "Timeout");
                     
                 } else if (message.contains("NOT_MATCH")) {
-                    SwingUtilities.invokeLater(() -> callback.onError("Las huellas no coinciden"));
+                    EdtDispatcher.invokeLater(() -> callback.onError("Las huellas no coinciden"));
                     return new EnrollResult(false, "No coinciden");
                 }
             }
             
-            SwingUtilities.invokeLater(() -> callback.onError("Timeout general del proceso"));
+            EdtDispatcher.invokeLater(() -> callback.onError("Timeout general del proceso"));
             return new EnrollResult(false, "Timeout");
             
         } catch (Exception e) {
             logger.error("Error escuchando enrollamiento: {}", e.getMessage());
-            SwingUtilities.invokeLater(() -> callback.onError("Error: " + e.getMessage()));
+            EdtDispatcher.invokeLater(() -> callback.onError("Error: " + e.getMessage()));
             return new EnrollResult(false, "Error: " + e.getMessage());
         }
     }
@@ -245,12 +291,14 @@ public class ArduinoCommService {
     public void startVerify(VerifyCallback callback) {
         CompletableFuture.runAsync(() -> {
             if (!isConnected()) {
-                SwingUtilities.invokeLater(() -> callback.onError("No hay conexión con Arduino"));
+                EdtDispatcher.invokeLater(() -> callback.onError("No hay conexión con Arduino"));
                 return;
             }
             
+            SensorOperationEvent event = SensorOperationEvent.begin("VERIFY", serialPortManager.getPortName());
             try {
                 logger.info("Iniciando verificación de huella");
+                lastCaptureNanos = 0;
                 
                 serialPortManager.clearBuffer();
                 Thread.sleep(100);
@@ -258,24 +306,27 @@ public class ArduinoCommService {
                 boolean sent = serialPortManager.sendCommandNoResponse("VERIFY");
                 
                 if (!sent) {
-                    SwingUtilities.invokeLater(() -> callback.onError("Error al enviar comando"));
+                    EdtDispatcher.invokeLater(() -> callback.onError("Error al enviar comando"));
                     return;
                 }
                 
                 Thread.sleep(200);
                 
-                SwingUtilities.invokeLater(() -> callback.onWaiting("Esperando huella..."));
+                EdtDispatcher.invokeLater(() -> callback.onWaiting("Esperando huella..."));
                 
-                listenVerifyProcess(callback);
+                listenVerifyProcess(callback, event);
                 
             } catch (Exception e) {
                 logger.error("Error en verificación: {}", e.getMessage(), e);
-                SwingUtilities.invokeLater(() -> callback.onError("Error: " + e.getMessage()));
+                event.message = e.getMessage();
+                EdtDispatcher.invokeLater(() -> callback.onError("Error: " + e.getMessage()));
+            } finally {
+                event.commit();
             }
         });
     }
     
-    private void listenVerifyProcess(VerifyCallback callback) {
+    private void listenVerifyProcess(VerifyCallback callback, SensorOperationEvent event) {
         try {
             long startTime = System.currentTimeMillis();
             long timeout = 30000;
@@ -290,77 +341,132 @@ public class ArduinoCommService {
                 logger.debug("Verify msg: {}", message);
                 
                 if (message.contains("PLACE_FINGER")) {
-                    SwingUtilities.invokeLater(() -> callback.onWaiting("Coloque el dedo en el sensor"));
+                    EdtDispatcher.invokeLater(() -> callback.onWaiting("Coloque el dedo en el sensor"));
                     
                 } else if (message.contains("CAPTURED")) {
-                    SwingUtilities.invokeLater(() -> callback.onWaiting("Imagen capturada, verificando..."));
+                    lastCaptureNanos = System.nanoTime();
+                    EdtDispatcher.invokeLater(() -> callback.onWaiting("Imagen capturada, verificando..."));
                     
                 } else if (message.contains("FOUND:")) {
-                    SwingUtilities.invokeLater(() -> callback.onWaiting("Huella encontrada, validando..."));
+                    EdtDispatcher.invokeLater(() -> callback.onWaiting("Huella encontrada, validando..."));
                     
                 } else if (message.contains("VERIFY:OK:")) {
                     String[] parts = message.split(":");
                     if (parts.length >= 4) {
                         int id = Integer.parseInt(parts[2].trim());
                         int confidence = Integer.parseInt(parts[3].trim());
-                        SwingUtilities.invokeLater(() -> callback.onSuccess(id, confidence));
+                        recordCaptureToMatch();
+                        event.fingerprintId = id;
+                        event.confidence = confidence;
+                        if (confidence < CONFIDENCE_THRESHOLD.get()) {
+                            event.message = "LOW_CONFIDENCE";
+                            EdtDispatcher.invokeLater(() -> callback.onError("Confianza insuficiente, intente de nuevo"));
+                            logger.warn("✗ Coincidencia descartada - ID: {}, Confianza: {} < {}",
+                                id, confidence, CONFIDENCE_THRESHOLD.get());
+                            return;
+                        }
+                        event.success = true;
+                        EdtDispatcher.invokeLater(() -> callback.onSuccess(id, confidence));
                         logger.info("✓ Verificación exitosa - ID: {}, Confianza: {}", id, confidence);
                         return;
                     }
                     
                 } else if (message.contains("VERIFY:FAIL:NOT_FOUND")) {
-                    SwingUtilities.invokeLater(() -> callback.onNotFound());
+                    event.message = "NOT_FOUND";
+                    EdtDispatcher.invokeLater(() -> callback.onNotFound());
                     logger.warn("✗ Huella no registrada");
                     return;
                     
                 } else if (message.contains("VERIFY:FAIL:") || message.contains("ERROR")) {
                     String[] parts = message.split(":", 3);
                     String error = parts.length >= 3 ? parts[2] : "Error desconocido";
-                    SwingUtilities.invokeLater(() -> callback.onError(error));
+                    event.message = error;
+                    EdtDispatcher.invokeLater(() -> callback.onError(error));
                     return;
                     
                 } else if (message.contains("TIMEOUT")) {
-                    SwingUtilities.invokeLater(() -> callback.onError("Tiempo de espera agotado"));
+                    event.message = "TIMEOUT";
+                    EdtDispatcher.invokeLater(() -> callback.onError("Tiempo de espera agotado"));
                     return;
                 }
             }
             
-            SwingUtilities.invokeLater(() -> callback.onError("Timeout: No se colocó el dedo"));
+            event.message = "TIMEOUT";
+            EdtDispatcher.invokeLater(() -> callback.onError("Timeout: No se colocó el dedo"));
             
         } catch (Exception e) {
             logger.error("Error escuchando verificación: {}", e.getMessage());
-            SwingUtilities.invokeLater(() -> callback.onError("Error: " + e.getMessage()));
+            EdtDispatcher.invokeLater(() -> callback.onError("Error: " + e.getMessage()));
         }
     }
     
+    /**
+     * Ejecuta una operación del sensor registrando su evento JFR
+     */
+    private boolean traced(String operation, int fingerprintId, BooleanSupplier action) {
+        SensorOperationEvent event = SensorOperationEvent.begin(operation, serialPortManager.getPortName());
+        event.fingerprintId = fingerprintId;
+        boolean success = false;
+        try {
+            success = action.getAsBoolean();
+            return success;
+        } finally {
+            event.finish(success, null);
+        }
+    }
+    
+    private void recordCaptureToMatch() {
+        long captured = lastCaptureNanos;
+        if (captured > 0) {
+            MetricsRegistry.recordSince(MetricsRegistry.SENSOR_CAPTURE_TO_MATCH, captured);
+        }
+    }
+    
+    /**
+     * Instante (System.nanoTime) en que el sensor capturó la última imagen, 0 si no hubo
+     */
+    public long getLastCaptureNanos() {
+        return lastCaptureNanos;
+    }
+    
     public CompletableFuture<VerifyResult> verifyFingerprint() {
         return CompletableFuture.supplyAsync(() -> {
-            if (!isConnected()) {
-                logger.error("No hay conexión con Arduino");
-                return new VerifyResult(false, -1, 0, "No hay conexión");
-            }
+            SensorOperationEvent event = SensorOperationEvent.begin("VERIFY", serialPortManager.getPortName());
+            VerifyResult result = doVerifyFingerprint();
+            event.fingerprintId = result.id;
+            event.confidence = result.confidence;
+            event.finish(result.success, result.message);
+            return result;
+        });
+    }
+    
+    private VerifyResult doVerifyFingerprint() {
+        if (!isConnected()) {
+            logger.error("No hay conexión con Arduino");
+            return new VerifyResult(false, -1, 0, "No hay conexión");
+        }
+        
+        try {
+            logger.info("Iniciando verificación de huella");
+            lastCaptureNanos = 0;
             
-            try {
-                logger.info("Iniciando verificación de huella");
-                
-                serialPortManager.clearBuffer();
-                Thread.sleep(100);
-                
-                boolean sent = serialPortManager.sendCommandNoResponse("VERIFY");
-                
-                if (!sent) {
-                    return new VerifyResult(false, -1, 0, "Error al enviar comando");
-                }
-                
-                Thread.sleep(200);
-                
-                return listenVerifyProcessSync();
-                
-            } catch (Exception e) {
-                logger.error("Error en verificación: {}", e.getMessage(), e);
-                return new VerifyResult(false, -1, 0, "Error: " + e.getMessage());
+            serialPortManager.clearBuffer();
+            Thread.sleep(100);
+            
+            boolean sent = serialPortManager.sendCommandNoResponse("VERIFY");
+            
+            if (!sent) {
+                return new VerifyResult(false, -1, 0, "Error al enviar comando");
             }
-        });
+            
+            Thread.sleep(200);
+            
+            return listenVerifyProcessSync();
+            
+        } catch (Exception e) {
+            logger.error("Error en verificación: {}", e.getMessage(), e);
+            return new VerifyResult(false, -1, 0, "Error: " + e.getMessage());
+        }
     }
     
     private VerifyResult listenVerifyProcessSync() {
@@ -377,11 +483,19 @@ public class ArduinoCommService {
                 
                 logger.debug("Verify msg: {}", message);
                 
-                if (message.contains("VERIFY:OK:")) {
+                if (message.contains("CAPTURED")) {
+                    lastCaptureNanos = System.nanoTime();
+                } else if (message.contains("VERIFY:OK:")) {
                     String[] parts = message.split(":");
                     if (parts.length >= 4) {
                         int id = Integer.parseInt(parts[2].trim());
                         int confidence = Integer.parseInt(parts[3].trim());
+                        recordCaptureToMatch();
+                        if (confidence < CONFIDENCE_THRESHOLD.get()) {
+                            logger.warn("✗ Coincidencia descartada - ID: {}, Confianza: {} < {}",
+                                id, confidence, CONFIDENCE_THRESHOLD.get());
+                            return new VerifyResult(false, id, confidence, "Confianza insuficiente");
+                        }
                         logger.info("✓ Verificación exitosa - ID: {}, Confianza: {}", id, confidence);
                         return new VerifyResult(true, id, confidence, "Huella reconocida");
                     }
@@ -406,7 +520,7 @@ public class ArduinoCommService {
     }
     
     public CompletableFuture<Boolean> deleteFingerprint(int id) {
-        return CompletableFuture.supplyAsync(() -> {
+        return CompletableFuture.supplyAsync(() -> traced("DELETE", id, () -> {
             if (!isConnected()) {
                 logger.error("No hay conexión con Arduino");
                 return false;
@@ -432,11 +546,11 @@ public class ArduinoCommService {
                 logger.error("Error eliminando huella: {}", e.getMessage(), e);
                 return false;
             }
-        });
+        }));
     }
     
     public CompletableFuture<Boolean> clearDatabase() {
-        return CompletableFuture.supplyAsync(() -> {
+        return CompletableFuture.supplyAsync(() -> traced("CLEAR", -1, () -> {
             if (!isConnected()) {
                 logger.error("No hay conexión con Arduino");
                 return false;
@@ -462,11 +576,11 @@ public class ArduinoCommService {
                 logger.error("Error borrando base de datos: {}", e.getMessage(), e);
                 return false;
             }
-        });
+        }));
     }
     
     public CompletableFuture<Boolean> testSensor() {
-        return CompletableFuture.supplyAsync(() -> {
+        return CompletableFuture.supplyAsync(() -> traced("TEST", -1, () -> {
             if (!isConnected()) {
                 logger.error("No hay conexión con Arduino");
                 return false;
@@ -492,7 +606,7 @@ public class ArduinoCommService {
                 logger.error("Error probando sensor: {}", e.getMessage(), e);
                 return false;
             }
-        });
+        }));
     }
     
     public static class EnrollResult {
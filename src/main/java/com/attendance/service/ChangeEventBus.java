@@ -0,0 +1,341 @@
+package com.attendance.service;
+
+import com.attendance.config.DatabaseConfig;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Bus de eventos de cambios en la base de datos
+ * Una conexión dedicada escucha (LISTEN) los canales alimentados por los
+ * triggers notificar_cambio() y reparte los eventos a los suscriptores
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class ChangeEventBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeEventBus.class);
+
+    public static final String ASISTENCIAS = "asistencias";
+    public static final String USUARIOS = "usuarios";
+    public static final String DEPARTAMENTOS = "departamentos";
+    public static final String CONFIGURACION = "configuracion";
+    public static final String ROLES = "roles";
+
+    private static final String[] TABLAS = {ASISTENCIAS, USUARIOS, DEPARTAMENTOS, CONFIGURACION, ROLES};
+    private static final String CHANNEL_PREFIX = "cambios_";
+    private static final int POLL_TIMEOUT_MS = 1000;
+    private static final int EDT_COALESCE_MS = 300;
+
+    private static final Map<String, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    private static volatile boolean running = false;
+    private static volatile boolean listening = false;
+    private static Thread listenerThread;
+    private static Connection listenConnection;
+
+    private ChangeEventBus() {
+    }
+
+    /**
+     * Inicia el hilo de escucha (idempotente)
+     */
+    public static synchronized void start() {
+        if (running) {
+            return;
+        }
+        if (!Boolean.parseBoolean(DatabaseConfig.getProperty("db.notify.enabled", "true"))) {
+            logger.info("Notificaciones de cambios deshabilitadas (db.notify.enabled=false)");
+            return;
+        }
+
+        running = true;
+        listenerThread = new Thread(ChangeEventBus::listenLoop, "change-event-bus");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+        logger.info("Bus de cambios iniciado");
+    }
+
+    /**
+     * Detiene la escucha y cierra la conexión dedicada
+     */
+    public static synchronized void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+            listenerThread = null;
+        }
+        closeConnection();
+    }
+
+    /**
+     * Indica si la conexión LISTEN está activa
+     */
+    public static boolean isListening() {
+        return listening;
+    }
+
+    /**
+     * Suscribe un listener a una o varias tablas.
+     * El listener se invoca en el hilo del bus, no en el EDT.
+     */
+    public static Subscriber subscribe(Subscriber subscriber, String... tablas) {
+        for (String tabla : tablas) {
+            subscribers.computeIfAbsent(tabla, k -> new CopyOnWriteArrayList<>()).add(subscriber);
+        }
+        return subscriber;
+    }
+
+    /**
+     * Suscribe una acción que se ejecuta en el EDT.
+     * Las ráfagas de eventos se agrupan en una sola ejecución.
+     */
+    public static Subscriber subscribeOnEdt(Runnable action, String... tablas) {
+        return subscribe(new EdtSubscriber(action), tablas);
+    }
+
+    /**
+     * Elimina un suscriptor de todas las tablas.
+     * Si es de subscribeOnEdt también descarta la ejecución pendiente.
+     */
+    public static void unsubscribe(Subscriber subscriber) {
+        if (subscriber == null) {
+            return;
+        }
+        for (List<Subscriber> list : subscribers.values()) {
+            list.remove(subscriber);
+        }
+        if (subscriber instanceof EdtSubscriber) {
+            ((EdtSubscriber) subscriber).cancel();
+        }
+    }
+
+    /**
+     * Publica un evento en el proceso (sin pasar por la base de datos)
+     */
+    public static void publish(ChangeEvent event) {
+        List<Subscriber> list = subscribers.get(event.tabla);
+        if (list == null) {
+            return;
+        }
+        for (Subscriber subscriber : list) {
+            try {
+                subscriber.onChange(event);
+            } catch (Exception e) {
+                logger.error("Error en suscriptor de cambios ({})", event.tabla, e);
+            }
+        }
+    }
+
+    private static void listenLoop() {
+        long reconnectDelay = Long.parseLong(DatabaseConfig.getProperty("db.notify.reconnectDelay", "5000"));
+        boolean firstConnection = true;
+
+        while (running) {
+            try {
+                PGConnection pgConnection = openListenConnection();
+                listening = true;
+
+                if (!firstConnection) {
+                    // Los avisos emitidos mientras no escuchábamos se perdieron
+                    logger.info("Bus de cambios reconectado, solicitando recarga completa");
+                    publishReloadAll();
+                }
+                firstConnection = false;
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        ChangeEvent event = decode(notification.getName(), notification.getParameter());
+                        if (event != null) {
+                            publish(event);
+                        }
+                    }
+                }
+
+            } catch (SQLException e) {
+                if (running) {
+                    logger.warn("Conexión LISTEN perdida: {}. Reintentando en {} ms", e.getMessage(), reconnectDelay);
+                }
+            } finally {
+                listening = false;
+                closeConnection();
+            }
+
+            if (running) {
+                try {
+                    Thread.sleep(reconnectDelay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        logger.info("Bus de cambios detenido");
+    }
+
+    private static PGConnection openListenConnection() throws SQLException {
+        Connection conn = DatabaseConfig.createDedicatedConnection();
+        synchronized (ChangeEventBus.class) {
+            listenConnection = conn;
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            for (String tabla : TABLAS) {
+                stmt.execute("LISTEN " + CHANNEL_PREFIX + tabla);
+            }
+        }
+        logger.info("Escuchando cambios en: {}", String.join(", ", TABLAS));
+        return conn.unwrap(PGConnection.class);
+    }
+
+    private static synchronized void closeConnection() {
+        if (listenConnection != null) {
+            try {
+                listenConnection.close();
+            } catch (SQLException e) {
+                logger.debug("Error cerrando conexión LISTEN: {}", e.getMessage());
+            }
+            listenConnection = null;
+        }
+    }
+
+    private static void publishReloadAll() {
+        for (String tabla : TABLAS) {
+            publish(new ChangeEvent(tabla, ChangeEvent.RELOAD, 0, new String[0]));
+        }
+    }
+
+    /**
+     * Decodifica el payload compacto OP|ID[|extra...]
+     */
+    static ChangeEvent decode(String channel, String payload) {
+        if (channel == null || !channel.startsWith(CHANNEL_PREFIX) || payload == null || payload.isEmpty()) {
+            return null;
+        }
+
+        String tabla = channel.substring(CHANNEL_PREFIX.length());
+        String[] parts = payload.split("\\|", -1);
+        char operacion = parts[0].isEmpty() ? ChangeEvent.RELOAD : parts[0].charAt(0);
+
+        int id = 0;
+        if (parts.length > 1 && !parts[1].isEmpty()) {
+            try {
+                id = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                logger.warn("Payload de cambio inválido en {}: {}", channel, payload);
+                return null;
+            }
+        }
+
+        String[] extras = new String[Math.max(0, parts.length - 2)];
+        System.arraycopy(parts, Math.min(2, parts.length), extras, 0, extras.length);
+
+        return new ChangeEvent(tabla, operacion, id, extras);
+    }
+
+    /**
+     * Evento de cambio decodificado
+     */
+    public static class ChangeEvent {
+        public static final char INSERT = 'I';
+        public static final char UPDATE = 'U';
+        public static final char DELETE = 'D';
+        public static final char RELOAD = 'R';
+
+        public final String tabla;
+        public final char operacion;
+        public final int id;
+        public final String[] extras;
+
+        public ChangeEvent(String tabla, char operacion, int id, String[] extras) {
+            this.tabla = tabla;
+            this.operacion = operacion;
+            this.id = id;
+            this.extras = extras;
+        }
+
+        public boolean isReload() {
+            return operacion == RELOAD;
+        }
+
+        /**
+         * Columna adicional del payload (null si no viene o está vacía)
+         */
+        public String getExtra(int index) {
+            if (index < 0 || index >= extras.length || extras[index].isEmpty()) {
+                return null;
+            }
+            return extras[index];
+        }
+
+        public Integer getExtraInt(int index) {
+            String value = getExtra(index);
+            return value != null ? Integer.valueOf(value) : null;
+        }
+
+        public LocalDateTime getExtraDateTime(int index) {
+            String value = getExtra(index);
+            return value != null ? LocalDateTime.parse(value) : null;
+        }
+
+        @Override
+        public String toString() {
+            return tabla + ":" + operacion + ":" + id;
+        }
+    }
+
+    public interface Subscriber {
+        void onChange(ChangeEvent event);
+    }
+
+    /**
+     * Suscriptor que agrupa los eventos en un Timer del EDT
+     */
+    private static class EdtSubscriber implements Subscriber {
+        private final Timer coalesceTimer;
+        private volatile boolean cancelled;
+
+        EdtSubscriber(Runnable action) {
+            coalesceTimer = new Timer(EDT_COALESCE_MS, e -> {
+                if (!cancelled) {
+                    action.run();
+                }
+            });
+            coalesceTimer.setRepeats(false);
+        }
+
+        @Override
+        public void onChange(ChangeEvent event) {
+            SwingUtilities.invokeLater(() -> {
+                if (!cancelled) {
+                    coalesceTimer.restart();
+                }
+            });
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (SwingUtilities.isEventDispatchThread()) {
+                coalesceTimer.stop();
+            } else {
+                SwingUtilities.invokeLater(coalesceTimer::stop);
+            }
+        }
+    }
+}
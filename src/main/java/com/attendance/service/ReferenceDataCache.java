@@ -0,0 +1,356 @@
+package com.attendance.service;
+
+import com.attendance.config.ConfigService;
+import com.attendance.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cache de tablas de referencia: departamentos, roles y configuracion
+ * Cada tabla se guarda como una lista inmutable que se reemplaza completa al
+ * recargar, así los paneles y diálogos leen sin consultar la base. La recarga
+ * se dispara con los avisos de ChangeEventBus, con invalidate() después de
+ * escribir, o al vencer cache.reference.ttlSeconds (se sigue sirviendo la
+ * copia anterior mientras se recarga en segundo plano). Ninguna lectura
+ * espera a la base: antes de la primera carga se devuelve una lista vacía y
+ * los suscriptores reciben el aviso cuando llegan los datos.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class ReferenceDataCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReferenceDataCache.class);
+
+    private static final ConfigService.Setting<Integer> TTL_SECONDS =
+        ConfigService.intSetting("cache.reference.ttlSeconds", 300);
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "reference-data");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final Table<Departamento> departamentos = new Table<>(ChangeEventBus.DEPARTAMENTOS,
+        "SELECT id_departamento, nombre FROM departamentos WHERE activo = TRUE ORDER BY nombre",
+        rs -> new Departamento(rs.getInt("id_departamento"), rs.getString("nombre")));
+
+    private static final Table<Rol> roles = new Table<>(ChangeEventBus.ROLES,
+        "SELECT id_rol, nombre FROM roles WHERE activo = TRUE ORDER BY nombre",
+        rs -> new Rol(rs.getInt("id_rol"), rs.getString("nombre")));
+
+    private static final Table<ConfigEntry> configuracion = new Table<>(ChangeEventBus.CONFIGURACION,
+        "SELECT id_config, clave, valor, descripcion, tipo_dato, categoria, modificable, " +
+        "       fecha_modificacion, modificado_por " +
+        "FROM configuracion ORDER BY categoria, clave",
+        ReferenceDataCache::readConfig);
+
+    private static final Map<String, Table<?>> tables = new ConcurrentHashMap<>();
+    private static final Map<String, List<Runnable>> listeners = new ConcurrentHashMap<>();
+
+    static {
+        tables.put(departamentos.nombre, departamentos);
+        tables.put(roles.nombre, roles);
+        tables.put(configuracion.nombre, configuracion);
+        ChangeEventBus.subscribe(event -> invalidate(event.tabla),
+            ChangeEventBus.DEPARTAMENTOS, ChangeEventBus.ROLES, ChangeEventBus.CONFIGURACION);
+    }
+
+    private ReferenceDataCache() {
+    }
+
+    /**
+     * Precarga todas las tablas en segundo plano
+     */
+    public static void start() {
+        for (Table<?> table : tables.values()) {
+            table.refreshAsync();
+        }
+    }
+
+    /**
+     * Departamentos activos ordenados por nombre
+     */
+    public static List<Departamento> getDepartamentos() {
+        return departamentos.get();
+    }
+
+    /**
+     * Roles activos ordenados por nombre
+     */
+    public static List<Rol> getRoles() {
+        return roles.get();
+    }
+
+    /**
+     * Todos los parámetros ordenados por categoría y clave
+     */
+    public static List<ConfigEntry> getConfiguracion() {
+        return configuracion.get();
+    }
+
+    /**
+     * Parámetro por id (null si no existe)
+     */
+    public static ConfigEntry getConfig(int idConfig) {
+        for (ConfigEntry entry : configuracion.get()) {
+            if (entry.idConfig == idConfig) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Recarga la tabla en segundo plano; usar después de escribir en ella
+     */
+    public static void invalidate(String tabla) {
+        Table<?> table = tables.get(tabla);
+        if (table != null) {
+            table.refreshAsync();
+        }
+    }
+
+    /**
+     * Ejecuta la acción cada vez que cambia el contenido de las tablas (también
+     * cuando termina la primera carga), en el hilo del cache (ya con la lista nueva publicada)
+     */
+    public static Runnable subscribe(Runnable action, String... tablas) {
+        for (String tabla : tablas) {
+            listeners.computeIfAbsent(tabla, k -> new CopyOnWriteArrayList<>()).add(action);
+        }
+        return action;
+    }
+
+    /**
+     * Igual que subscribe() pero en el EDT. Devuelve el Runnable a usar en unsubscribe().
+     */
+    public static Runnable subscribeOnEdt(Runnable action, String... tablas) {
+        return subscribe(() -> SwingUtilities.invokeLater(action), tablas);
+    }
+
+    public static void unsubscribe(Runnable action) {
+        if (action == null) {
+            return;
+        }
+        for (List<Runnable> list : listeners.values()) {
+            list.remove(action);
+        }
+    }
+
+    private static long ttlNanos() {
+        return TimeUnit.SECONDS.toNanos(TTL_SECONDS.get());
+    }
+
+    private static void fireChanged(String tabla) {
+        List<Runnable> list = listeners.get(tabla);
+        if (list == null) {
+            return;
+        }
+        for (Runnable action : list) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                logger.error("Error en suscriptor del cache de {}", tabla, e);
+            }
+        }
+    }
+
+    private static ConfigEntry readConfig(ResultSet rs) throws SQLException {
+        Timestamp fecha = rs.getTimestamp("fecha_modificacion");
+        return new ConfigEntry(rs.getInt("id_config"), rs.getString("clave"), rs.getString("valor"),
+            rs.getString("descripcion"), rs.getString("tipo_dato"), rs.getString("categoria"),
+            rs.getBoolean("modificable"), fecha != null ? fecha.toLocalDateTime() : null,
+            rs.getString("modificado_por"));
+    }
+
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Lista inmutable y el instante en que se leyó
+     */
+    private static class Snapshot<T> {
+        final List<T> items;
+        final long loadedAt;
+
+        Snapshot(List<T> items) {
+            this.items = Collections.unmodifiableList(items);
+            this.loadedAt = System.nanoTime();
+        }
+    }
+
+    private static class Table<T> {
+        final String nombre;
+        private final String sql;
+        private final RowMapper<T> mapper;
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+        private volatile Snapshot<T> current;
+
+        Table(String nombre, String sql, RowMapper<T> mapper) {
+            this.nombre = nombre;
+            this.sql = sql;
+            this.mapper = mapper;
+        }
+
+        List<T> get() {
+            Snapshot<T> snapshot = current;
+            if (snapshot == null) {
+                // Sin esperar a la base (puede ser el EDT); el aviso de la carga llega a los suscriptores
+                refreshAsync();
+                return Collections.emptyList();
+            }
+            if (System.nanoTime() - snapshot.loadedAt > ttlNanos()) {
+                refreshAsync();
+            }
+            return snapshot.items;
+        }
+
+        void refreshAsync() {
+            // Las ráfagas de avisos se resuelven con una sola lectura
+            if (refreshing.compareAndSet(false, true)) {
+                executor.execute(() -> {
+                    refreshing.set(false);
+                    synchronized (this) {
+                        load();
+                    }
+                });
+            }
+        }
+
+        private void load() {
+            List<T> items = new ArrayList<>();
+            try (Connection conn = DatabaseConfig.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    items.add(mapper.map(rs));
+                }
+            } catch (SQLException e) {
+                logger.error("Error al cargar {} en cache", nombre, e);
+                return;
+            }
+
+            Snapshot<T> previous = current;
+            current = new Snapshot<>(items);
+            logger.debug("Cache de {}: {} filas", nombre, items.size());
+            // La primera carga también avisa: quien leyó antes recibió una lista vacía
+            if (previous == null ? !items.isEmpty() : !previous.items.equals(items)) {
+                fireChanged(nombre);
+            }
+        }
+    }
+
+    public static class Departamento {
+        public final int idDepartamento;
+        public final String nombre;
+
+        public Departamento(int idDepartamento, String nombre) {
+            this.idDepartamento = idDepartamento;
+            this.nombre = nombre;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Departamento)) {
+                return false;
+            }
+            Departamento other = (Departamento) o;
+            return idDepartamento == other.idDepartamento && Objects.equals(nombre, other.nombre);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(idDepartamento, nombre);
+        }
+    }
+
+    public static class Rol {
+        public final int idRol;
+        public final String nombre;
+
+        public Rol(int idRol, String nombre) {
+            this.idRol = idRol;
+            this.nombre = nombre;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Rol)) {
+                return false;
+            }
+            Rol other = (Rol) o;
+            return idRol == other.idRol && Objects.equals(nombre, other.nombre);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(idRol, nombre);
+        }
+    }
+
+    public static class ConfigEntry {
+        public final int idConfig;
+        public final String clave;
+        public final String valor;
+        public final String descripcion;
+        public final String tipoDato;
+        public final String categoria;
+        public final boolean modificable;
+        public final LocalDateTime fechaModificacion;
+        public final String modificadoPor;
+
+        public ConfigEntry(int idConfig, String clave, String valor, String descripcion, String tipoDato,
+                           String categoria, boolean modificable, LocalDateTime fechaModificacion,
+                           String modificadoPor) {
+            this.idConfig = idConfig;
+            this.clave = clave;
+            this.valor = valor;
+            this.descripcion = descripcion;
+            this.tipoDato = tipoDato;
+            this.categoria = categoria;
+            this.modificable = modificable;
+            this.fechaModificacion = fechaModificacion;
+            this.modificadoPor = modificadoPor;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ConfigEntry)) {
+                return false;
+            }
+            ConfigEntry other = (ConfigEntry) o;
+            return idConfig == other.idConfig && modificable == other.modificable
+                && Objects.equals(clave, other.clave) && Objects.equals(valor, other.valor)
+                && Objects.equals(descripcion, other.descripcion) && Objects.equals(tipoDato, other.tipoDato)
+                && Objects.equals(categoria, other.categoria)
+                && Objects.equals(fechaModificacion, other.fechaModificacion)
+                && Objects.equals(modificadoPor, other.modificadoPor);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(idConfig, clave, valor);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.attendance.service;
+
+import com.attendance.config.DatabaseConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lectura paginada de usuarios con búsqueda en el servidor
+ * Páginas por clave (apellidos, nombres, id_usuario) sobre idx_usuarios_orden;
+ * el texto buscado se compara con la condición de UserSearchService, que usa
+ * el índice pg_trgm idx_usuarios_busqueda_sin_tildes, así ni la búsqueda ni el
+ * desplazamiento recorren la tabla completa.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class UserPageLoader {
+
+    private final String texto;
+    private final Boolean activo;
+    private final String departamento;
+    private final int pageSize;
+
+    /**
+     * @param texto        palabras a buscar (todas deben aparecer); null o vacío = sin búsqueda
+     * @param activo       null = todos
+     * @param departamento nombre del departamento; null = todos
+     */
+    public UserPageLoader(String texto, Boolean activo, String departamento, int pageSize) {
+        this.texto = texto;
+        this.activo = activo;
+        this.departamento = departamento;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Carga la página que sigue a la clave (null = primera página)
+     */
+    public List<UserRow> loadPage(Key after) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(pageSql(after != null))) {
+            int index = bind(pstmt, 1);
+            if (after != null) {
+                pstmt.setString(index++, after.apellidos);
+                pstmt.setString(index++, after.nombres);
+                pstmt.setInt(index, after.idUsuario);
+            }
+
+            List<UserRow> rows = new ArrayList<>(pageSize);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new UserRow(rs.getInt("id_usuario"), rs.getString("dni"), rs.getString("apellidos"),
+                        rs.getString("nombres"), rs.getString("email"), rs.getString("departamento"),
+                        rs.getString("telefono"), (Integer) rs.getObject("fingerprint_id"), rs.getBoolean("activo")));
+                }
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Consulta de una página; con continuar, la clave de la página anterior va después de los filtros
+     */
+    String pageSql(boolean continuar) {
+        StringBuilder sql = new StringBuilder(
+            "SELECT u.id_usuario, u.dni, u.apellidos, u.nombres, u.email, d.nombre AS departamento, " +
+            "       u.telefono, u.fingerprint_id, u.activo " +
+            "FROM usuarios u " +
+            "LEFT JOIN departamentos d ON u.id_departamento = d.id_departamento ");
+        appendWhere(sql);
+        if (continuar) {
+            sql.append("AND (u.apellidos, u.nombres, u.id_usuario) > (?, ?, ?) ");
+        }
+        sql.append("ORDER BY u.apellidos, u.nombres, u.id_usuario LIMIT ").append(pageSize);
+        return sql.toString();
+    }
+
+    /**
+     * Total de usuarios que cumplen el filtro
+     */
+    public int count() throws SQLException {
+        StringBuilder sql = new StringBuilder(
+            "SELECT COUNT(*) FROM usuarios u " +
+            "LEFT JOIN departamentos d ON u.id_departamento = d.id_departamento ");
+        appendWhere(sql);
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            bind(pstmt, 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * Clave de la última fila de una página (null si está vacía)
+     */
+    public static Key lastKey(List<UserRow> page) {
+        if (page.isEmpty()) {
+            return null;
+        }
+        UserRow last = page.get(page.size() - 1);
+        return new Key(last.apellidos, last.nombres, last.idUsuario);
+    }
+
+    private void appendWhere(StringBuilder sql) {
+        sql.append("WHERE 1=1 ");
+        UserSearchService.appendCondition(sql, texto);
+        if (activo != null) {
+            sql.append("AND u.activo = ? ");
+        }
+        if (departamento != null) {
+            sql.append("AND d.nombre = ? ");
+        }
+    }
+
+    private int bind(PreparedStatement pstmt, int index) throws SQLException {
+        index = UserSearchService.bindCondition(pstmt, index, texto);
+        if (activo != null) {
+            pstmt.setBoolean(index++, activo);
+        }
+        if (departamento != null) {
+            pstmt.setString(index++, departamento);
+        }
+        return index;
+    }
+
+    /**
+     * Posición de una fila en el orden (apellidos, nombres, id_usuario)
+     */
+    public static class Key {
+        public final String apellidos;
+        public final String nombres;
+        public final int idUsuario;
+
+        public Key(String apellidos, String nombres, int idUsuario) {
+            this.apellidos = apellidos;
+            this.nombres = nombres;
+            this.idUsuario = idUsuario;
+        }
+    }
+
+    public static class UserRow {
+        public final int idUsuario;
+        public final String dni;
+        public final String apellidos;
+        public final String nombres;
+        public final String email;
+        public final String departamento;
+        public final String telefono;
+        public final Integer fingerprintId;
+        public final boolean activo;
+
+        public UserRow(int idUsuario, String dni, String apellidos, String nombres, String email,
+                       String departamento, String telefono, Integer fingerprintId, boolean activo) {
+            this.idUsuario = idUsuario;
+            this.dni = dni;
+            this.apellidos = apellidos;
+            this.nombres = nombres;
+            this.email = email;
+            this.departamento = departamento;
+            this.telefono = telefono;
+            this.fingerprintId = fingerprintId;
+            this.activo = activo;
+        }
+    }
+}
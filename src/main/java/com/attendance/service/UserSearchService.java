@@ -0,0 +1,393 @@
+package com.attendance.service;
+
+import com.attendance.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Búsqueda de personas por nombre, DNI o email
+ * Los usuarios activos se indexan en memoria por trigramas (como pg_trgm):
+ * una búsqueda suma las listas de los trigramas de la consulta y ordena por
+ * la proporción de trigramas encontrados, así tolera errores de tipeo y
+ * responde en milisegundos. El índice se mantiene con los eventos de
+ * ChangeEventBus; cada cambio reemplaza la instantánea completa, las
+ * búsquedas nunca esperan.
+ *
+ * Para usuarios inactivos o filtros SQL se usa la misma expresión en la base,
+ * sin tildes como en memoria, respaldada por el índice GIN
+ * idx_usuarios_busqueda_sin_tildes.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class UserSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchService.class);
+
+    /** Debe coincidir con la expresión de idx_usuarios_busqueda_sin_tildes */
+    public static final String SEARCH_EXPRESSION =
+        "f_unaccent(lower(u.dni || ' ' || u.nombres || ' ' || u.apellidos || ' ' || COALESCE(u.email, '')))";
+
+    /** Proporción mínima de trigramas de la consulta que debe tener un resultado */
+    private static final double MIN_SIMILARITY = 0.5;
+    private static final long REBUILD_DELAY_MS = 100;
+    private static final long INITIAL_LOAD_WAIT_MS = 3000;
+
+    private static final String USER_COLUMNS =
+        "SELECT id_usuario, dni, nombres, apellidos, email, id_departamento, fingerprint_id FROM usuarios ";
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "user-search");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Solo se modifica en el hilo del executor
+    private static final Map<Integer, Match> users = new HashMap<>();
+    private static ScheduledFuture<?> pendingRebuild;
+
+    private static volatile Snapshot snapshot;
+    private static volatile CompletableFuture<Void> initialLoad;
+
+    static {
+        ChangeEventBus.subscribe(event -> executor.execute(() -> onUserChange(event)), ChangeEventBus.USUARIOS);
+    }
+
+    private UserSearchService() {
+    }
+
+    /**
+     * Carga el índice en segundo plano (idempotente)
+     */
+    public static synchronized void start() {
+        if (initialLoad == null || initialLoad.isCompletedExceptionally()) {
+            initialLoad = CompletableFuture.runAsync(UserSearchService::reloadAll, executor);
+        }
+    }
+
+    /**
+     * Los K usuarios activos que mejor coinciden; con texto vacío, los primeros por apellido
+     */
+    public static List<Match> search(String texto, int limite) {
+        Snapshot current = awaitSnapshot();
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        long start = System.nanoTime();
+        List<Match> result = current.search(texto, limite);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Búsqueda '{}': {} resultados en {} µs", texto, result.size(),
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+        return result;
+    }
+
+    /**
+     * Usuario activo por id desde el índice (null si no está)
+     */
+    public static Match get(int idUsuario) {
+        Snapshot current = awaitSnapshot();
+        return current != null ? current.byId.get(idUsuario) : null;
+    }
+
+    /**
+     * Agrega al WHERE una condición por palabra contra SEARCH_EXPRESSION (usa el índice GIN)
+     */
+    public static void appendCondition(StringBuilder sql, String texto) {
+        for (int i = 0; i < splitTerms(texto).size(); i++) {
+            sql.append("AND ").append(SEARCH_EXPRESSION).append(" LIKE ? ESCAPE '\\' ");
+        }
+    }
+
+    /**
+     * Asigna los parámetros de appendCondition; devuelve el siguiente índice
+     */
+    public static int bindCondition(PreparedStatement pstmt, int index, String texto) throws SQLException {
+        for (String termino : splitTerms(texto)) {
+            pstmt.setString(index++, "%" + escapeLike(termino) + "%");
+        }
+        return index;
+    }
+
+    /**
+     * Palabras en minúsculas y sin tildes (igual que SEARCH_EXPRESSION); el texto
+     * se trata siempre como literal
+     */
+    public static List<String> splitTerms(String texto) {
+        if (texto == null || texto.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(normalize(texto.trim()).split("\\s+"));
+    }
+
+    public static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static Snapshot awaitSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        start();
+        try {
+            initialLoad.get(INITIAL_LOAD_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            logger.warn("Índice de búsqueda de usuarios no disponible: {}", e.toString());
+        }
+        return snapshot;
+    }
+
+    private static void reloadAll() {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(USER_COLUMNS + "WHERE activo = TRUE");
+             ResultSet rs = pstmt.executeQuery()) {
+            users.clear();
+            while (rs.next()) {
+                Match user = readUser(rs);
+                users.put(user.idUsuario, user);
+            }
+        } catch (SQLException e) {
+            logger.error("Error al cargar usuarios para la búsqueda", e);
+            throw new IllegalStateException(e);
+        }
+        rebuild();
+    }
+
+    /**
+     * Un alta o cambio relee solo ese usuario; la recarga completa llega como 'R'
+     */
+    private static void onUserChange(ChangeEventBus.ChangeEvent event) {
+        if (event.isReload()) {
+            reloadAll();
+            return;
+        }
+        if (event.operacion == ChangeEventBus.ChangeEvent.DELETE) {
+            users.remove(event.id);
+        } else {
+            try (Connection conn = DatabaseConfig.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(USER_COLUMNS + "WHERE id_usuario = ? AND activo = TRUE")) {
+                pstmt.setInt(1, event.id);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    // Un usuario desactivado sale del índice
+                    users.remove(event.id);
+                    if (rs.next()) {
+                        users.put(event.id, readUser(rs));
+                    }
+                }
+            } catch (SQLException e) {
+                logger.error("Error al actualizar el índice de búsqueda (usuario {})", event.id, e);
+                return;
+            }
+        }
+        // Las ráfagas (p. ej. una importación) se agrupan en una sola reconstrucción
+        if (pendingRebuild == null || pendingRebuild.isDone()) {
+            pendingRebuild = executor.schedule(UserSearchService::rebuild, REBUILD_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static Match readUser(ResultSet rs) throws SQLException {
+        return new Match(rs.getInt("id_usuario"), rs.getString("dni"), rs.getString("nombres"),
+            rs.getString("apellidos"), rs.getString("email"), (Integer) rs.getObject("id_departamento"),
+            (Integer) rs.getObject("fingerprint_id"));
+    }
+
+    private static void rebuild() {
+        long start = System.nanoTime();
+        snapshot = new Snapshot(new ArrayList<>(users.values()));
+        logger.info("Índice de búsqueda de usuarios: {} usuarios en {} ms", users.size(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Minúsculas y sin tildes
+     */
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return Normalizer.normalize(value, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Trigramas de cada palabra con dos espacios delante y uno detrás, como pg_trgm.
+     * Con prefijo se omite el trigrama final de la última palabra (el usuario sigue escribiendo).
+     */
+    static Set<Long> trigrams(String normalized, boolean prefijo) {
+        Set<Long> result = new LinkedHashSet<>();
+        String[] palabras = normalized.split("[^\\p{Alnum}]+");
+        int ultima = palabras.length - 1;
+        while (ultima >= 0 && palabras[ultima].isEmpty()) {
+            ultima--;
+        }
+        for (int p = 0; p <= ultima; p++) {
+            if (palabras[p].isEmpty()) {
+                continue;
+            }
+            String padded = "  " + palabras[p] + (prefijo && p == ultima ? "" : " ");
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                result.add(((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Índice inmutable; se reemplaza completo en cada cambio
+     */
+    private static class Snapshot {
+        private final Match[] entries;
+        private final String[] texts;
+        private final Map<Long, int[]> postings;
+        private final Map<Integer, Match> byId;
+
+        Snapshot(List<Match> list) {
+            list.sort(Match.ORDER);
+            entries = list.toArray(new Match[0]);
+            texts = new String[entries.length];
+            byId = new HashMap<>(entries.length * 2);
+
+            Map<Long, List<Integer>> building = new HashMap<>();
+            for (int doc = 0; doc < entries.length; doc++) {
+                Match entry = entries[doc];
+                texts[doc] = normalize(entry.dni + " " + entry.nombres + " " + entry.apellidos + " "
+                    + (entry.email != null ? entry.email : ""));
+                byId.put(entry.idUsuario, entry);
+                for (Long trigram : trigrams(texts[doc], false)) {
+                    building.computeIfAbsent(trigram, k -> new ArrayList<>()).add(doc);
+                }
+            }
+            postings = new HashMap<>(building.size() * 2);
+            for (Map.Entry<Long, List<Integer>> e : building.entrySet()) {
+                List<Integer> docs = e.getValue();
+                int[] array = new int[docs.size()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = docs.get(i);
+                }
+                postings.put(e.getKey(), array);
+            }
+        }
+
+        List<Match> search(String texto, int limite) {
+            String query = normalize(texto).trim();
+            if (query.isEmpty()) {
+                return Arrays.asList(Arrays.copyOf(entries, Math.min(limite, entries.length)));
+            }
+            Set<Long> queryTrigrams = trigrams(query, true);
+            if (queryTrigrams.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            int[] counts = new int[entries.length];
+            int[] touched = new int[entries.length];
+            int touchedCount = 0;
+            for (Long trigram : queryTrigrams) {
+                int[] docs = postings.get(trigram);
+                if (docs == null) {
+                    continue;
+                }
+                for (int doc : docs) {
+                    if (counts[doc]++ == 0) {
+                        touched[touchedCount++] = doc;
+                    }
+                }
+            }
+
+            int minimo = (int) Math.ceil(queryTrigrams.size() * MIN_SIMILARITY);
+            PriorityQueue<Match> top = new PriorityQueue<>(limite + 1, Match.BY_SCORE);
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                if (counts[doc] < minimo) {
+                    continue;
+                }
+                double score = counts[doc] / (double) queryTrigrams.size();
+                // A igual similitud, primero quien contiene el texto tal cual
+                if (texts[doc].contains(query)) {
+                    score += 0.5;
+                }
+                top.add(entries[doc].withScore(score));
+                if (top.size() > limite) {
+                    top.poll();
+                }
+            }
+            List<Match> result = new ArrayList<>(top);
+            result.sort(Match.BY_SCORE.reversed());
+            return result;
+        }
+    }
+
+    /**
+     * Usuario encontrado; score solo tiene sentido dentro de una búsqueda
+     */
+    public static class Match {
+        static final Comparator<Match> ORDER = Comparator
+            .comparing((Match m) -> m.sortKey)
+            .thenComparingInt(m -> m.idUsuario);
+        static final Comparator<Match> BY_SCORE = Comparator
+            .comparingDouble((Match m) -> m.score)
+            .thenComparing(ORDER.reversed());
+
+        public final int idUsuario;
+        public final String dni;
+        public final String nombres;
+        public final String apellidos;
+        public final String email;
+        public final Integer idDepartamento;
+        public final Integer fingerprintId;
+        public final double score;
+        private final String sortKey;
+
+        Match(int idUsuario, String dni, String nombres, String apellidos, String email,
+              Integer idDepartamento, Integer fingerprintId) {
+            this(idUsuario, dni, nombres, apellidos, email, idDepartamento, fingerprintId, 0,
+                normalize(apellidos + " " + nombres));
+        }
+
+        private Match(int idUsuario, String dni, String nombres, String apellidos, String email,
+                      Integer idDepartamento, Integer fingerprintId, double score, String sortKey) {
+            this.idUsuario = idUsuario;
+            this.dni = dni;
+            this.nombres = nombres;
+            this.apellidos = apellidos;
+            this.email = email;
+            this.idDepartamento = idDepartamento;
+            this.fingerprintId = fingerprintId;
+            this.score = score;
+            this.sortKey = sortKey;
+        }
+
+        Match withScore(double score) {
+            return new Match(idUsuario, dni, nombres, apellidos, email, idDepartamento, fingerprintId, score, sortKey);
+        }
+
+        public String getNombreCompleto() {
+            return nombres + " " + apellidos;
+        }
+    }
+}
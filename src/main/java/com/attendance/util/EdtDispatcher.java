@@ -0,0 +1,32 @@
+package com.attendance.util;
+
+import com.attendance.monitoring.LatencyHistogram;
+import com.attendance.monitoring.MetricsRegistry;
+
+import javax.swing.*;
+
+/**
+ * Envío de tareas al Event Dispatch Thread midiendo la espera en cola
+ * Reemplazo directo de SwingUtilities.invokeLater para los hilos de fondo
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class EdtDispatcher {
+
+    private static final LatencyHistogram dispatchDelay = MetricsRegistry.timer(MetricsRegistry.EDT_DISPATCH_DELAY);
+
+    private EdtDispatcher() {
+    }
+
+    /**
+     * Encola la tarea en el EDT y registra cuánto esperó antes de ejecutarse
+     */
+    public static void invokeLater(Runnable task) {
+        long enqueued = System.nanoTime();
+        SwingUtilities.invokeLater(() -> {
+            dispatchDelay.recordSince(enqueued);
+            task.run();
+        });
+    }
+}
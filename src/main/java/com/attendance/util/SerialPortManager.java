@@ -1,5 +1,7 @@
 package com.attendance.util;
 
+import com.attendance.monitoring.MetricsRegistry;
+import com.attendance.monitoring.SerialCommandEvent;
 import com.fazecast.jSerialComm.SerialPort;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -7,10 +9,15 @@ import org.slf4j.LoggerFactory;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SerialPortManager {
     private static final Logger logger = LoggerFactory.getLogger(SerialPortManager.class);
     
+    /** Puertos abiertos por la aplicación (estado del enlace para telemetría) */
+    private static final AtomicInteger openLinks = new AtomicInteger();
+    private static volatile String lastPortName;
+    
     private SerialPort serialPort;
     private boolean isConnected = false;
     
@@ -71,6 +78,8 @@ public class SerialPortManager {
             Thread.sleep(100);
             
             isConnected = true;
+            openLinks.incrementAndGet();
+            lastPortName = portName;
             logger.info("Conectado exitosamente al puerto: {} @ {} baud", portName, baudRate);
             return true;
             
@@ -88,10 +97,35 @@ public class SerialPortManager {
             serialPort.closePort();
             logger.info("Desconectado del puerto serial");
         }
+        if (isConnected) {
+            openLinks.decrementAndGet();
+        }
         isConnected = false;
         serialPort = null;
     }
     
+    /**
+     * Cantidad de enlaces seriales abiertos en la aplicación
+     */
+    public static int getOpenLinkCount() {
+        return openLinks.get();
+    }
+    
+    /**
+     * Último puerto al que se conectó la aplicación (null si nunca)
+     */
+    public static String getLastPortName() {
+        return lastPortName;
+    }
+    
+    /**
+     * Nombre del puerto abierto (null si no hay conexión)
+     */
+    public String getPortName() {
+        SerialPort port = serialPort;
+        return port != null ? port.getSystemPortName() : null;
+    }
+    
     /**
      * Verifica si está conectado
      */
@@ -128,6 +162,12 @@ public class SerialPortManager {
             return null;
         }
         
+        SerialCommandEvent event = new SerialCommandEvent();
+        event.begin();
+        event.operation = "COMMAND";
+        event.command = command;
+        event.device = getPortName();
+        
         try {
             // Limpiar buffer antes de enviar
             clearBuffer();
@@ -137,6 +177,7 @@ public class SerialPortManager {
             String commandWithNewline = command + "\n";
             byte[] commandBytes = commandWithNewline.getBytes(StandardCharsets.UTF_8);
             
+            long sentAt = System.nanoTime();
             int bytesWritten = serialPort.writeBytes(commandBytes, commandBytes.length);
             
             if (bytesWritten != commandBytes.length) {
@@ -149,11 +190,21 @@ public class SerialPortManager {
             
             // Esperar y leer respuesta
             Thread.sleep(100);
-            return readResponse(timeoutMs);
+            String response = readResponse(timeoutMs);
+            if (response != null) {
+                MetricsRegistry.recordSince(MetricsRegistry.SERIAL_COMMAND_RTT, sentAt);
+                event.bytes = response.length();
+                event.success = true;
+            } else {
+                MetricsRegistry.increment(MetricsRegistry.SERIAL_TIMEOUTS_TOTAL);
+            }
+            return response;
             
         } catch (Exception e) {
             logger.error("Error enviando comando: {}", e.getMessage(), e);
             return null;
+        } finally {
+            event.commit();
         }
     }
     
@@ -208,6 +259,9 @@ public class SerialPortManager {
             return null;
         }
         
+        SerialCommandEvent event = new SerialCommandEvent();
+        event.begin();
+        
         try {
             StringBuilder line = new StringBuilder();
             long startTime = System.currentTimeMillis();
@@ -223,6 +277,7 @@ public class SerialPortManager {
                         if (c == '\n') {
                             String result = line.toString().trim();
                             if (!result.isEmpty()) {
+                                commitLineEvent(event, result);
                                 return result;
                             }
                             line.setLength(0);
@@ -237,7 +292,11 @@ public class SerialPortManager {
             
             // Si hay algo en el buffer al final del timeout, devolverlo
             String result = line.toString().trim();
-            return result.isEmpty() ? null : result;
+            if (result.isEmpty()) {
+                return null;
+            }
+            commitLineEvent(event, result);
+            return result;
             
         } catch (Exception e) {
             logger.error("Error leyendo línea: {}", e.getMessage());
@@ -245,6 +304,21 @@ public class SerialPortManager {
         }
     }
     
+    /**
+     * Registra el evento JFR de una línea recibida (las esperas vacías no se registran)
+     */
+    private void commitLineEvent(SerialCommandEvent event, String line) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = "READ_LINE";
+            event.command = line;
+            event.device = getPortName();
+            event.bytes = line.length();
+            event.success = true;
+            event.commit();
+        }
+    }
+    
     /**
      * Envía un comando sin esperar respuesta
      */
@@ -1,7 +1,11 @@
 package com.attendance.view;
 
 import com.attendance.config.DatabaseConfig;
+import com.attendance.monitoring.AttendanceMarkEvent;
+import com.attendance.monitoring.FlightRecorderManager;
+import com.attendance.monitoring.MetricsRegistry;
 import com.attendance.service.ArduinoCommService;
+import com.attendance.service.ChangeEventBus;
 import com.attendance.util.SerialPortManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,8 +20,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Panel de registro de asistencias
@@ -26,11 +30,11 @@ import java.util.TimerTask;
  * @author Sistema Biométrico
  * @version 2.1 - Mejorado
  */
-public class AttendancePanel extends JPanel {
+public class AttendancePanel extends JPanel implements ManagedPanel {
     
     private static final Logger logger = LoggerFactory.getLogger(AttendancePanel.class);
     
-    private ArduinoCommService arduinoService;
+    private final ArduinoCommService arduinoService;
     
     private JComboBox<String> cmbPorts;
     private JButton btnConnect;
@@ -56,14 +60,22 @@ public class AttendancePanel extends JPanel {
     private boolean waiting = false;
     private Timer clockTimer;
     private String currentMarkType = "ENTRADA";
+    private ChangeEventBus.Subscriber changeSubscriber;
+    private DeferredRefresh attendancesRefresh;
+    private int attendancesGeneration;
     
-    public AttendancePanel() {
+    /**
+     * @param arduinoService conexión serial compartida con el panel de enrolamiento
+     */
+    public AttendancePanel(ArduinoCommService arduinoService) {
         logger.info("Inicializando AttendancePanel...");
-        this.arduinoService = new ArduinoCommService();
+        this.arduinoService = arduinoService;
         initComponents();
         refreshPorts();
         startClock();
         loadTodayAttendances();
+        attendancesRefresh = new DeferredRefresh(this, this::loadTodayAttendances);
+        changeSubscriber = ChangeEventBus.subscribeOnEdt(attendancesRefresh::request, ChangeEventBus.ASISTENCIAS);
         logger.info("AttendancePanel inicializado correctamente");
     }
     
@@ -460,17 +472,7 @@ public class AttendancePanel extends JPanel {
         if (arduinoService.isConnected()) {
             logger.info("Desconectando Arduino...");
             arduinoService.disconnect();
-            
-            btnConnect.setText("CONECTAR");
-            btnConnect.setBackground(new Color(46, 204, 113));
-            lblConnectionStatus.setText("DESCONECTADO");
-            lblConnectionStatus.setForeground(new Color(231, 76, 60));
-            
-            btnMarkEntry.setEnabled(false);
-            btnMarkExit.setEnabled(false);
-            cmbPorts.setEnabled(true);
-            btnRefreshPorts.setEnabled(true);
-            
+            updateConnectionStatus(false);
             logger.info("✅ Desconectado del Arduino");
             
         } else {
@@ -500,15 +502,7 @@ public class AttendancePanel extends JPanel {
                         boolean success = get();
                         
                         if (success) {
-                            btnConnect.setText("DESCONECTAR");
-                            btnConnect.setBackground(new Color(231, 76, 60));
-                            lblConnectionStatus.setText("CONECTADO");
-                            lblConnectionStatus.setForeground(new Color(46, 204, 113));
-                            
-                            btnMarkEntry.setEnabled(true);
-                            btnMarkExit.setEnabled(true);
-                            cmbPorts.setEnabled(false);
-                            btnRefreshPorts.setEnabled(false);
+                            updateConnectionStatus(true);
                             
                             logger.info("✅ Conexión exitosa con Arduino en {}", selectedPort);
                             
@@ -548,6 +542,25 @@ public class AttendancePanel extends JPanel {
         }
     }
     
+    private void updateConnectionStatus(boolean connected) {
+        if (connected) {
+            btnConnect.setEnabled(true);
+            btnConnect.setText("DESCONECTAR");
+            btnConnect.setBackground(new Color(231, 76, 60));
+            lblConnectionStatus.setText("CONECTADO");
+            lblConnectionStatus.setForeground(new Color(46, 204, 113));
+        } else {
+            btnConnect.setText("CONECTAR");
+            btnConnect.setBackground(new Color(46, 204, 113));
+            lblConnectionStatus.setText("DESCONECTADO");
+            lblConnectionStatus.setForeground(new Color(231, 76, 60));
+        }
+        btnMarkEntry.setEnabled(connected && !waiting);
+        btnMarkExit.setEnabled(connected && !waiting);
+        cmbPorts.setEnabled(!connected);
+        btnRefreshPorts.setEnabled(!connected);
+    }
+    
     private void startMarking(String tipo) {
         if (!arduinoService.isConnected()) {
             logger.warn("⚠️  Intento de marcación sin Arduino conectado");
@@ -642,12 +655,19 @@ public class AttendancePanel extends JPanel {
         logger.info("───────────────────────────────────────────────────────────");
         
         Connection conn = null;
+        AttendanceMarkEvent markEvent = new AttendanceMarkEvent();
+        markEvent.fingerprintId = fingerprintId;
+        markEvent.markType = tipo;
+        markEvent.begin();
+        String dumpReason = null;
         
         try {
             // ============================================
             // PASO 1: Obtener conexión e iniciar transacción
             // ============================================
+            long stepStart = System.nanoTime();
             conn = DatabaseConfig.getConnection();
+            MetricsRegistry.recordSince(MetricsRegistry.DB_CONNECTION_ACQUIRE, stepStart);
             
             if (conn == null || conn.isClosed()) {
                 logger.error("❌ ERROR CRÍTICO: Conexión a BD cerrada o nula");
@@ -671,6 +691,7 @@ public class AttendancePanel extends JPanel {
             
             logger.debug("🔍 Buscando usuario con fingerprint_id: {}", fingerprintId);
             
+            stepStart = System.nanoTime();
             try (PreparedStatement pstmt = conn.prepareStatement(sqlBuscarUsuario)) {
                 pstmt.setInt(1, fingerprintId);
                 
@@ -684,10 +705,13 @@ public class AttendancePanel extends JPanel {
                     }
                 }
             }
+            MetricsRegistry.recordSince(MetricsRegistry.DB_USER_LOOKUP, stepStart);
             
             // Verificar si se encontró el usuario
             if (idUsuario == null) {
                 conn.rollback();
+                MetricsRegistry.increment(MetricsRegistry.MARKS_FAILED_TOTAL);
+                markEvent.error = "Usuario no encontrado";
                 logger.warn("⚠️  Transacción revertida - Usuario no encontrado");
                 
                 lblStatusMessage.setText("Usuario no encontrado");
@@ -718,6 +742,7 @@ public class AttendancePanel extends JPanel {
             
             logger.debug("💾 Insertando asistencia...");
             
+            stepStart = System.nanoTime();
             try (PreparedStatement pstmt = conn.prepareStatement(sqlInsertarAsistencia)) {
                 pstmt.setInt(1, idUsuario);
                 pstmt.setString(2, tipo);
@@ -749,11 +774,18 @@ public class AttendancePanel extends JPanel {
                 
                 logger.debug("✅ Log del sistema registrado");
             }
+            MetricsRegistry.recordSince(MetricsRegistry.DB_ATTENDANCE_INSERT, stepStart);
             
             // ============================================
             // PASO 5: Commit de la transacción
             // ============================================
+            stepStart = System.nanoTime();
             conn.commit();
+            MetricsRegistry.recordSince(MetricsRegistry.DB_COMMIT, stepStart);
+            MetricsRegistry.increment(MetricsRegistry.MARKS_TOTAL);
+            markEvent.userId = idUsuario;
+            markEvent.attendanceId = idAsistencia != null ? idAsistencia : 0;
+            markEvent.success = true;
             logger.info("✅ Transacción completada exitosamente");
             logger.info("───────────────────────────────────────────────────────────");
             logger.info("🎉 ASISTENCIA PROCESADA CORRECTAMENTE");
@@ -770,6 +802,11 @@ public class AttendancePanel extends JPanel {
                 "<html><center>" + nombreUsuario + 
                 "<br>Asistencia registrada correctamente</center></html>");
             
+            long capturedAt = arduinoService.getLastCaptureNanos();
+            if (capturedAt > 0) {
+                MetricsRegistry.recordSince(MetricsRegistry.SCAN_TO_SCREEN, capturedAt);
+            }
+            
             // Sonido de confirmación
             Toolkit.getDefaultToolkit().beep();
             
@@ -784,6 +821,9 @@ public class AttendancePanel extends JPanel {
                 }
             }
             
+            MetricsRegistry.increment(MetricsRegistry.MARKS_FAILED_TOTAL);
+            markEvent.error = e.getSQLState() + ": " + e.getMessage();
+            dumpReason = "marcacion_sql";
             logger.error("❌ ERROR SQL al procesar asistencia", e);
             logger.error("   Mensaje: {}", e.getMessage());
             logger.error("   Estado SQL: {}", e.getSQLState());
@@ -812,6 +852,9 @@ public class AttendancePanel extends JPanel {
                 }
             }
             
+            MetricsRegistry.increment(MetricsRegistry.MARKS_FAILED_TOTAL);
+            markEvent.error = e.toString();
+            dumpReason = "marcacion";
             logger.error("❌ ERROR GENERAL al procesar asistencia", e);
             logger.error("╚════════════════════════════════════════════════════════╝");
             
@@ -824,6 +867,11 @@ public class AttendancePanel extends JPanel {
                 JOptionPane.ERROR_MESSAGE);
             
         } finally {
+            markEvent.commit();
+            if (dumpReason != null) {
+                FlightRecorderManager.dumpOnError(dumpReason);
+            }
+            
             // Restaurar auto-commit y cerrar conexión
             if (conn != null) {
                 try {
@@ -946,7 +994,7 @@ public class AttendancePanel extends JPanel {
      */
     private void loadTodayAttendances() {
         logger.debug("📊 Cargando asistencias del día...");
-        tableModel.setRowCount(0);
+        int generation = ++attendancesGeneration;
         
         String sql = "SELECT a.id_asistencia, " +
                      "       TO_CHAR(a.fecha_hora, 'HH24:MI:SS') AS hora, " +
@@ -965,29 +1013,48 @@ public class AttendancePanel extends JPanel {
                      "ORDER BY a.fecha_hora DESC " +
                      "LIMIT 50";
         
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-            
-            int row = 1;
-            while (rs.next()) {
-                Object[] rowData = {
-                    row++,
-                    rs.getString("hora"),
-                    rs.getString("nombre_completo"),
-                    rs.getString("dni"),
-                    rs.getString("tipo_marcacion"),
-                    rs.getInt("confidence_score"),
-                    rs.getString("estado")
-                };
-                tableModel.addRow(rowData);
+        // La consulta va fuera del EDT; la tabla se reemplaza de una vez
+        new SwingWorker<java.util.List<Object[]>, Void>() {
+            @Override
+            protected java.util.List<Object[]> doInBackground() throws SQLException {
+                java.util.List<Object[]> rows = new ArrayList<>();
+                try (Connection conn = DatabaseConfig.getConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql);
+                     ResultSet rs = pstmt.executeQuery()) {
+                    
+                    int row = 1;
+                    while (rs.next()) {
+                        rows.add(new Object[]{
+                            row++,
+                            rs.getString("hora"),
+                            rs.getString("nombre_completo"),
+                            rs.getString("dni"),
+                            rs.getString("tipo_marcacion"),
+                            rs.getInt("confidence_score"),
+                            rs.getString("estado")
+                        });
+                    }
+                }
+                return rows;
             }
             
-            logger.info("✅ Cargadas {} asistencias de hoy", tableModel.getRowCount());
-            
-        } catch (Exception e) {
-            logger.error("❌ Error al cargar asistencias de hoy", e);
-        }
+            @Override
+            protected void done() {
+                if (generation != attendancesGeneration) {
+                    return;
+                }
+                try {
+                    java.util.List<Object[]> rows = get();
+                    tableModel.setRowCount(0);
+                    for (Object[] rowData : rows) {
+                        tableModel.addRow(rowData);
+                    }
+                    logger.info("✅ Cargadas {} asistencias de hoy", rows.size());
+                } catch (InterruptedException | ExecutionException e) {
+                    logger.error("❌ Error al cargar asistencias de hoy", e);
+                }
+            }
+        }.execute();
     }
     
     /**
@@ -995,32 +1062,44 @@ public class AttendancePanel extends JPanel {
      */
     private void startClock() {
         logger.debug("⏰ Iniciando reloj en tiempo real");
-        clockTimer = new Timer();
-        clockTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                SwingUtilities.invokeLater(() -> {
-                    LocalDateTime now = LocalDateTime.now();
-                    lblCurrentTime.setText(now.format(DateTimeFormatter.ofPattern("HH:mm:ss")));
-                });
-            }
-        }, 0, 1000);
+        clockTimer = new Timer(1000, e -> updateClock());
+        clockTimer.setInitialDelay(0);
+        clockTimer.start();
+    }
+    
+    private void updateClock() {
+        lblCurrentTime.setText(LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss")));
     }
     
     /**
-     * Limpieza de recursos al cerrar el panel
+     * Al volver: reloj en marcha, estado de la conexión (pudo cambiar desde
+     * Enrolar Huella) y las marcaciones llegadas mientras estaba oculto
      */
+    @Override
+    public void activate() {
+        updateClock();
+        clockTimer.start();
+        updateConnectionStatus(arduinoService.isConnected());
+        attendancesRefresh.flush();
+    }
+    
+    @Override
+    public void deactivate() {
+        clockTimer.stop();
+    }
+    
+    /**
+     * Limpieza de recursos al cerrar la aplicación; la conexión serial la cierra MainFrame
+     */
+    @Override
     public void cleanup() {
         logger.info("🧹 Limpiando recursos del AttendancePanel...");
         
-        if (clockTimer != null) {
-            clockTimer.cancel();
-            logger.debug("✅ Timer del reloj cancelado");
-        }
+        ChangeEventBus.unsubscribe(changeSubscriber);
         
-        if (arduinoService != null && arduinoService.isConnected()) {
-            arduinoService.disconnect();
-            logger.debug("✅ Arduino desconectado");
+        if (clockTimer != null) {
+            clockTimer.stop();
+            logger.debug("✅ Timer del reloj detenido");
         }
         
         logger.info("✅ Limpieza de recursos completada");
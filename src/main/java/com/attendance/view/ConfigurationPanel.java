@@ -1,6 +1,8 @@
 package com.attendance.view;
 
 import com.attendance.config.DatabaseConfig;
+import com.attendance.service.ChangeEventBus;
+import com.attendance.service.ReferenceDataCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -9,6 +11,8 @@ import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.*;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Panel de Configuración del Sistema
@@ -17,7 +21,7 @@ import java.sql.*;
  * @author Sistema Biométrico
  * @version 1.0
  */
-public class ConfigurationPanel extends JPanel {
+public class ConfigurationPanel extends JPanel implements ManagedPanel {
     
     private static final Logger logger = LoggerFactory.getLogger(ConfigurationPanel.class);
     
@@ -41,10 +45,13 @@ public class ConfigurationPanel extends JPanel {
     // Panel de información
     private JTextArea txtInfo;
     
+    private Runnable changeSubscriber;
+    
     public ConfigurationPanel() {
         initComponents();
         loadCategories();
         loadConfigurations();
+        changeSubscriber = ReferenceDataCache.subscribeOnEdt(this::reloadFromCache, ChangeEventBus.CONFIGURACION);
     }
     
     private void initComponents() {
@@ -337,71 +344,37 @@ public class ConfigurationPanel extends JPanel {
         return button;
     }
     
+    /**
+     * Los parámetros se leen de ReferenceDataCache; filtrar y buscar no consulta la base
+     */
     private void loadCategories() {
         cmbCategory.removeAllItems();
         cmbCategory.addItem("Todas");
         
-        String sql = "SELECT DISTINCT categoria FROM configuracion ORDER BY categoria";
-        
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-            
-            while (rs.next()) {
-                String categoria = rs.getString("categoria");
-                if (categoria != null && !categoria.isEmpty()) {
-                    cmbCategory.addItem(categoria);
-                }
+        Set<String> categorias = new TreeSet<>();
+        for (ReferenceDataCache.ConfigEntry entry : ReferenceDataCache.getConfiguracion()) {
+            if (entry.categoria != null && !entry.categoria.isEmpty()) {
+                categorias.add(entry.categoria);
             }
-            
-        } catch (Exception e) {
-            logger.error("Error al cargar categorías", e);
+        }
+        for (String categoria : categorias) {
+            cmbCategory.addItem(categoria);
         }
     }
     
     private void loadConfigurations() {
         tableModel.setRowCount(0);
         
-        StringBuilder sql = new StringBuilder();
-        sql.append("SELECT id_config, clave, valor, categoria, modificable ");
-        sql.append("FROM configuracion WHERE 1=1 ");
-        
         String category = (String) cmbCategory.getSelectedItem();
-        if (category != null && !"Todas".equals(category)) {
-            sql.append("AND categoria = ? ");
-        }
-        
-        sql.append("ORDER BY categoria, clave");
+        boolean filtrar = category != null && !"Todas".equals(category);
         
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
-            
-            if (category != null && !"Todas".equals(category)) {
-                pstmt.setString(1, category);
-            }
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Object[] row = {
-                        rs.getInt("id_config"),
-                        rs.getString("clave"),
-                        rs.getString("valor"),
-                        rs.getString("categoria"),
-                        rs.getBoolean("modificable") ? "Sí" : "No"
-                    };
-                    tableModel.addRow(row);
-                }
+        for (ReferenceDataCache.ConfigEntry entry : ReferenceDataCache.getConfiguracion()) {
+            if (!filtrar || category.equals(entry.categoria)) {
+                addRow(entry);
             }
-            
-            logger.info("Cargados {} parámetros de configuración", tableModel.getRowCount());
-            
-        } catch (Exception e) {
-            logger.error("Error al cargar configuraciones", e);
-            JOptionPane.showMessageDialog(this,
-                "Error al cargar configuraciones: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
         }
+        
+        logger.info("Cargados {} parámetros de configuración", tableModel.getRowCount());
     }
     
     private void searchConfigurations() {
@@ -414,37 +387,39 @@ public class ConfigurationPanel extends JPanel {
         
         tableModel.setRowCount(0);
         
-        String sql = "SELECT id_config, clave, valor, categoria, modificable " +
-                     "FROM configuracion " +
-                     "WHERE LOWER(clave) LIKE ? OR LOWER(valor) LIKE ? OR LOWER(descripcion) LIKE ? " +
-                     "ORDER BY categoria, clave";
-        
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            String searchPattern = "%" + search + "%";
-            pstmt.setString(1, searchPattern);
-            pstmt.setString(2, searchPattern);
-            pstmt.setString(3, searchPattern);
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Object[] row = {
-                        rs.getInt("id_config"),
-                        rs.getString("clave"),
-                        rs.getString("valor"),
-                        rs.getString("categoria"),
-                        rs.getBoolean("modificable") ? "Sí" : "No"
-                    };
-                    tableModel.addRow(row);
-                }
+        for (ReferenceDataCache.ConfigEntry entry : ReferenceDataCache.getConfiguracion()) {
+            if (contains(entry.clave, search) || contains(entry.valor, search) || contains(entry.descripcion, search)) {
+                addRow(entry);
             }
-            
-        } catch (Exception e) {
-            logger.error("Error en búsqueda", e);
         }
     }
     
+    private static boolean contains(String value, String search) {
+        return value != null && value.toLowerCase().contains(search);
+    }
+    
+    private void addRow(ReferenceDataCache.ConfigEntry entry) {
+        tableModel.addRow(new Object[]{
+            entry.idConfig,
+            entry.clave,
+            entry.valor,
+            entry.categoria,
+            entry.modificable ? "Sí" : "No"
+        });
+    }
+    
+    /**
+     * Vuelve a mostrar la tabla tras un cambio, conservando categoría y búsqueda
+     */
+    private void reloadFromCache() {
+        Object selected = cmbCategory.getSelectedItem();
+        loadCategories();
+        if (selected != null) {
+            cmbCategory.setSelectedItem(selected);
+        }
+        searchConfigurations();
+    }
+    
     private void clearSearch() {
         txtSearch.setText("");
         cmbCategory.setSelectedIndex(0);
@@ -460,50 +435,34 @@ public class ConfigurationPanel extends JPanel {
         }
         
         int configId = (int) tableModel.getValueAt(selectedRow, 0);
+        ReferenceDataCache.ConfigEntry entry = ReferenceDataCache.getConfig(configId);
+        if (entry == null) {
+            return;
+        }
         
-        String sql = "SELECT clave, valor, descripcion, tipo_dato, categoria, " +
-                     "modificable, fecha_modificacion, modificado_por " +
-                     "FROM configuracion WHERE id_config = ?";
+        StringBuilder info = new StringBuilder();
+        info.append("══════════════════════════════════════\n");
+        info.append("  INFORMACIÓN DEL PARÁMETRO\n");
+        info.append("══════════════════════════════════════\n\n");
+        
+        info.append("Clave: ").append(entry.clave).append("\n\n");
+        info.append("Valor Actual: ").append(entry.valor).append("\n\n");
+        info.append("Descripción:\n");
+        info.append(entry.descripcion != null ? entry.descripcion : "Sin descripción").append("\n\n");
+        info.append("Tipo de Dato: ").append(entry.tipoDato).append("\n");
+        info.append("Categoría: ").append(entry.categoria).append("\n");
+        info.append("Modificable: ").append(entry.modificable ? "Sí" : "No").append("\n\n");
+        
+        if (entry.fechaModificacion != null) {
+            info.append("Última Modificación: ").append(Timestamp.valueOf(entry.fechaModificacion)).append("\n");
+        }
         
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, configId);
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    StringBuilder info = new StringBuilder();
-                    info.append("══════════════════════════════════════\n");
-                    info.append("  INFORMACIÓN DEL PARÁMETRO\n");
-                    info.append("══════════════════════════════════════\n\n");
-                    
-                    info.append("Clave: ").append(rs.getString("clave")).append("\n\n");
-                    info.append("Valor Actual: ").append(rs.getString("valor")).append("\n\n");
-                    info.append("Descripción:\n");
-                    info.append(rs.getString("descripcion") != null ? 
-                        rs.getString("descripcion") : "Sin descripción").append("\n\n");
-                    info.append("Tipo de Dato: ").append(rs.getString("tipo_dato")).append("\n");
-                    info.append("Categoría: ").append(rs.getString("categoria")).append("\n");
-                    info.append("Modificable: ").append(rs.getBoolean("modificable") ? "Sí" : "No").append("\n\n");
-                    
-                    Timestamp fechaMod = rs.getTimestamp("fecha_modificacion");
-                    if (fechaMod != null) {
-                        info.append("Última Modificación: ").append(fechaMod).append("\n");
-                    }
-                    
-                    String modificadoPor = rs.getString("modificado_por");
-                    if (modificadoPor != null) {
-                        info.append("Modificado Por: ").append(modificadoPor).append("\n");
-                    }
-                    
-                    txtInfo.setText(info.toString());
-                    txtInfo.setCaretPosition(0);
-                }
-            }
-            
-        } catch (Exception e) {
-            logger.error("Error al cargar información", e);
+        if (entry.modificadoPor != null) {
+            info.append("Modificado Por: ").append(entry.modificadoPor).append("\n");
         }
+        
+        txtInfo.setText(info.toString());
+        txtInfo.setCaretPosition(0);
     }
     
     private void addConfiguration() {
@@ -515,7 +474,7 @@ public class ConfigurationPanel extends JPanel {
         dialog.setVisible(true);
         
         if (dialog.isSaved()) {
-            loadConfigurations();
+            ReferenceDataCache.invalidate(ChangeEventBus.CONFIGURACION);
         }
     }
     
@@ -545,7 +504,7 @@ public class ConfigurationPanel extends JPanel {
         dialog.setVisible(true);
         
         if (dialog.isSaved()) {
-            loadConfigurations();
+            ReferenceDataCache.invalidate(ChangeEventBus.CONFIGURACION);
         }
     }
     
@@ -583,7 +542,7 @@ public class ConfigurationPanel extends JPanel {
                         JOptionPane.INFORMATION_MESSAGE);
                     
                     logger.info("Parámetro eliminado: {}", clave);
-                    loadConfigurations();
+                    ReferenceDataCache.invalidate(ChangeEventBus.CONFIGURACION);
                 }
                 
             } catch (SQLException e) {
@@ -613,4 +572,9 @@ public class ConfigurationPanel extends JPanel {
                 JOptionPane.INFORMATION_MESSAGE);
         }
     }
+    
+    @Override
+    public void cleanup() {
+        ReferenceDataCache.unsubscribe(changeSubscriber);
+    }
 }
@@ -1,6 +1,7 @@
 package com.attendance.view;
 
 import com.attendance.config.DatabaseConfig;
+import com.attendance.service.ChangeEventBus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,7 +18,7 @@ import java.sql.ResultSet;
  * @author Sistema Biométrico
  * @version 2.0
  */
-public class DashboardPanel extends JPanel {
+public class DashboardPanel extends JPanel implements ManagedPanel {
     
     private static final Logger logger = LoggerFactory.getLogger(DashboardPanel.class);
     
@@ -26,9 +27,18 @@ public class DashboardPanel extends JPanel {
     private JLabel lblUsuariosConHuella;
     private JLabel lblUltimaAsistencia;
     
+    private HeatmapPanel heatmapPanel;
+    
+    private ChangeEventBus.Subscriber changeSubscriber;
+    private DeferredRefresh statisticsRefresh;
+    
     public DashboardPanel() {
         initComponents();
         loadStatistics();
+        // Oculto no consulta; al volver recalcula una vez si hubo cambios
+        statisticsRefresh = new DeferredRefresh(this, this::loadStatistics);
+        changeSubscriber = ChangeEventBus.subscribeOnEdt(statisticsRefresh::request,
+            ChangeEventBus.ASISTENCIAS, ChangeEventBus.USUARIOS);
     }
     
     private void initComponents() {
@@ -122,6 +132,15 @@ public class DashboardPanel extends JPanel {
         scrollPane.setBorder(null);
         infoPanel.add(scrollPane, BorderLayout.CENTER);
         
+        // Carga de marcaciones por día y hora
+        heatmapPanel = new HeatmapPanel();
+        heatmapPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        
+        JTabbedPane centerTabs = new JTabbedPane();
+        centerTabs.setFont(new Font("Segoe UI", Font.BOLD, 13));
+        centerTabs.addTab("Carga por Horario", heatmapPanel);
+        centerTabs.addTab("Informacion del Sistema", infoPanel);
+        
         // Botón de refrescar
         JButton btnRefresh = new JButton("ACTUALIZAR ESTADISTICAS");
         btnRefresh.setFont(new Font("Segoe UI", Font.BOLD, 13));
@@ -141,7 +160,7 @@ public class DashboardPanel extends JPanel {
         JPanel contentPanel = new JPanel(new BorderLayout(0, 20));
         contentPanel.setOpaque(false);
         contentPanel.add(statsPanel, BorderLayout.NORTH);
-        contentPanel.add(infoPanel, BorderLayout.CENTER);
+        contentPanel.add(centerTabs, BorderLayout.CENTER);
         
         add(headerPanel, BorderLayout.NORTH);
         add(contentPanel, BorderLayout.CENTER);
@@ -274,4 +293,15 @@ public class DashboardPanel extends JPanel {
         
         worker.execute();
     }
+    
+    @Override
+    public void activate() {
+        statisticsRefresh.flush();
+    }
+    
+    @Override
+    public void cleanup() {
+        ChangeEventBus.unsubscribe(changeSubscriber);
+        heatmapPanel.cleanup();
+    }
 }
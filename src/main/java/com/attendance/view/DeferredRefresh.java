@@ -0,0 +1,40 @@
+package com.attendance.view;
+
+import javax.swing.*;
+
+/**
+ * Recarga que solo se ejecuta si el panel está a la vista
+ * Un aviso de cambio mientras el panel está oculto queda pendiente y se
+ * aplica una sola vez al volver (flush() desde ManagedPanel.activate()).
+ * Se usa en el EDT.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+class DeferredRefresh {
+
+    private final JComponent owner;
+    private final Runnable action;
+    private boolean pending;
+
+    DeferredRefresh(JComponent owner, Runnable action) {
+        this.owner = owner;
+        this.action = action;
+    }
+
+    void request() {
+        if (owner.isShowing()) {
+            pending = false;
+            action.run();
+        } else {
+            pending = true;
+        }
+    }
+
+    void flush() {
+        if (pending) {
+            pending = false;
+            action.run();
+        }
+    }
+}
@@ -2,22 +2,27 @@ package com.attendance.view;
 
 import com.attendance.config.DatabaseConfig;
 import com.attendance.service.ArduinoCommService;
+import com.attendance.service.ChangeEventBus;
+import com.attendance.service.UserSearchService;
 import com.attendance.util.SerialPortManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
-public class EnrollPanel extends JPanel {
+public class EnrollPanel extends JPanel implements ManagedPanel {
     
     private static final Logger logger = LoggerFactory.getLogger(EnrollPanel.class);
     
-    private ArduinoCommService arduinoService;
+    private final ArduinoCommService arduinoService;
     
     private JComboBox<String> cmbPorts;
     private JButton btnConnect;
@@ -25,6 +30,12 @@ public class EnrollPanel extends JPanel {
     private JLabel lblConnectionStatus;
     private JLabel lblSensorInfo;
     
+    private static final int USER_RESULTS = 50;
+    
+    private JTextField txtUserSearch;
+    private Timer userSearchTimer;
+    private int userSearchGeneration;
+    private boolean loadingUsers = false;
     private JComboBox<UserItem> cmbUsers;
     private JTextField txtFingerprintId;
     private JButton btnAutoAssignId;
@@ -39,12 +50,27 @@ public class EnrollPanel extends JPanel {
     private boolean enrolling = false;
     private int nextAvailableId = 1;
     
-    public EnrollPanel() {
-        this.arduinoService = new ArduinoCommService();
+    // El panel vive toda la sesión: usuarios e IDs pueden cambiar en otro panel o equipo
+    private DeferredRefresh usersRefresh;
+    private ChangeEventBus.Subscriber usersSubscriber;
+    
+    /**
+     * @param arduinoService conexión serial compartida con el panel de asistencia
+     */
+    public EnrollPanel(ArduinoCommService arduinoService) {
+        this.arduinoService = arduinoService;
         initComponents();
         refreshPorts();
         loadUsers();
         calculateNextAvailableId();
+        
+        usersRefresh = new DeferredRefresh(this, () -> {
+            if (!enrolling) {
+                loadUsers();
+            }
+            calculateNextAvailableId();
+        });
+        usersSubscriber = ChangeEventBus.subscribeOnEdt(usersRefresh::request, ChangeEventBus.USUARIOS);
     }
     
     private void initComponents() {
@@ -175,6 +201,30 @@ public class EnrollPanel extends JPanel {
         lblUser.setFont(new Font("Segoe UI", Font.PLAIN, 13));
         lblUser.setAlignmentX(LEFT_ALIGNMENT);
         
+        txtUserSearch = new JTextField();
+        txtUserSearch.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        txtUserSearch.setMaximumSize(new Dimension(350, 30));
+        txtUserSearch.setAlignmentX(LEFT_ALIGNMENT);
+        txtUserSearch.setToolTipText("Buscar por DNI, nombre o email");
+        userSearchTimer = new Timer(200, e -> loadUsers());
+        userSearchTimer.setRepeats(false);
+        txtUserSearch.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                userSearchTimer.restart();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                userSearchTimer.restart();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                userSearchTimer.restart();
+            }
+        });
+        
         cmbUsers = new JComboBox<>();
         cmbUsers.setFont(new Font("Segoe UI", Font.PLAIN, 13));
         cmbUsers.setMaximumSize(new Dimension(350, 30));
@@ -228,6 +278,8 @@ public class EnrollPanel extends JPanel {
         
         enrollPanel.add(lblUser);
         enrollPanel.add(Box.createVerticalStrut(5));
+        enrollPanel.add(txtUserSearch);
+        enrollPanel.add(Box.createVerticalStrut(5));
         enrollPanel.add(cmbUsers);
         enrollPanel.add(Box.createVerticalStrut(12));
         enrollPanel.add(lblFingerprintId);
@@ -404,7 +456,8 @@ public class EnrollPanel extends JPanel {
             lblConnectionStatus.setForeground(new Color(46, 204, 113));
             btnConnect.setText("DESCONECTAR");
             btnConnect.setBackground(new Color(231, 76, 60));
-            btnStartEnroll.setEnabled(true);
+            btnConnect.setEnabled(true);
+            btnStartEnroll.setEnabled(!enrolling);
             cmbPorts.setEnabled(false);
             btnRefreshPorts.setEnabled(false);
         } else {
@@ -419,38 +472,55 @@ public class EnrollPanel extends JPanel {
         }
     }
     
+    /**
+     * Llena el combo con los mejores resultados de la búsqueda (el índice
+     * de usuarios está en memoria; no se cargan todos los usuarios)
+     */
     private void loadUsers() {
-        cmbUsers.removeAllItems();
+        String texto = txtUserSearch.getText();
+        int generation = ++userSearchGeneration;
         
-        String sql = "SELECT id_usuario, dni, nombres, apellidos, fingerprint_id " +
-                     "FROM usuarios WHERE activo = TRUE ORDER BY apellidos, nombres";
-        
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-            
-            int count = 0;
-            while (rs.next()) {
-                UserItem item = new UserItem(
-                    rs.getInt("id_usuario"),
-                    rs.getString("dni"),
-                    rs.getString("nombres"),
-                    rs.getString("apellidos"),
-                    (Integer) rs.getObject("fingerprint_id")
-                );
-                cmbUsers.addItem(item);
-                count++;
+        new SwingWorker<List<UserSearchService.Match>, Void>() {
+            @Override
+            protected List<UserSearchService.Match> doInBackground() {
+                return UserSearchService.search(texto, USER_RESULTS);
             }
             
-            addLog("✓ Cargados " + count + " usuarios activos");
-            
-        } catch (Exception e) {
-            logger.error("Error al cargar usuarios", e);
-            addLog("✗ Error al cargar usuarios: " + e.getMessage());
-        }
+            @Override
+            protected void done() {
+                if (generation != userSearchGeneration) {
+                    return;
+                }
+                try {
+                    List<UserSearchService.Match> matches = get();
+                    loadingUsers = true;
+                    cmbUsers.removeAllItems();
+                    for (UserSearchService.Match match : matches) {
+                        cmbUsers.addItem(new UserItem(match.idUsuario, match.dni, match.nombres,
+                            match.apellidos, match.fingerprintId));
+                    }
+                    loadingUsers = false;
+                    
+                    if (texto.trim().isEmpty()) {
+                        addLog("✓ Mostrando " + matches.size() + " usuarios activos; escriba para buscar");
+                    } else {
+                        addLog("✓ " + matches.size() + " usuarios para \"" + texto.trim() + "\"");
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    logger.error("Error al cargar usuarios", e);
+                    addLog("✗ Error al cargar usuarios: " + e.getMessage());
+                } finally {
+                    loadingUsers = false;
+                }
+            }
+        }.execute();
     }
     
     private void onUserSelected() {
+        // Rellenar el combo selecciona el primero; no es una elección del usuario
+        if (loadingUsers) {
+            return;
+        }
         UserItem selected = (UserItem) cmbUsers.getSelectedItem();
         if (selected != null && selected.getFingerprintId() != null) {
             addLog("ℹ Usuario seleccionado ya tiene huella ID: " + selected.getFingerprintId());
@@ -470,19 +540,27 @@ public class EnrollPanel extends JPanel {
     private void calculateNextAvailableId() {
         String sql = "SELECT COALESCE(MAX(fingerprint_id), 0) + 1 AS next_id FROM usuarios";
         
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-            
-            if (rs.next()) {
-                nextAvailableId = rs.getInt("next_id");
-                logger.info("Proximo ID disponible: {}", nextAvailableId);
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                try (Connection conn = DatabaseConfig.getConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql);
+                     ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getInt("next_id") : 1;
+                }
             }
             
-        } catch (Exception e) {
-            logger.error("Error al calcular proximo ID", e);
-            nextAvailableId = 1;
-        }
+            @Override
+            protected void done() {
+                try {
+                    nextAvailableId = get();
+                    logger.info("Proximo ID disponible: {}", nextAvailableId);
+                } catch (InterruptedException | ExecutionException e) {
+                    logger.error("Error al calcular proximo ID", e);
+                    nextAvailableId = 1;
+                }
+            }
+        }.execute();
     }
     
     private void autoAssignId() {
@@ -533,6 +611,52 @@ public class EnrollPanel extends JPanel {
             return;
         }
         
+        // El ID pudo asignarse en otro panel o equipo: se verifica antes de escribir en el sensor
+        btnStartEnroll.setEnabled(false);
+        int userId = selectedUser.getId();
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                String sql = "SELECT id_usuario FROM usuarios WHERE fingerprint_id = ? AND id_usuario <> ?";
+                try (Connection conn = DatabaseConfig.getConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, fingerprintId);
+                    pstmt.setInt(2, userId);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        return rs.next() ? rs.getInt(1) : null;
+                    }
+                }
+            }
+            
+            @Override
+            protected void done() {
+                Integer owner;
+                try {
+                    owner = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    logger.error("Error al verificar el ID de huella", e);
+                    addLog("✗ No se pudo verificar el ID de huella: " + e.getMessage());
+                    btnStartEnroll.setEnabled(true);
+                    return;
+                }
+                if (owner != null) {
+                    btnStartEnroll.setEnabled(true);
+                    addLog("✗ El ID de huella " + fingerprintId + " ya está asignado (usuario #" + owner + ")");
+                    JOptionPane.showMessageDialog(EnrollPanel.this,
+                        "El ID de huella " + fingerprintId + " ya está asignado a otro usuario.\n" +
+                        "Use \"Auto-asignar\" para obtener un ID libre.",
+                        "ID en Uso",
+                        JOptionPane.WARNING_MESSAGE);
+                    calculateNextAvailableId();
+                    txtFingerprintId.requestFocus();
+                    return;
+                }
+                beginEnrollment(selectedUser, fingerprintId);
+            }
+        }.execute();
+    }
+    
+    private void beginEnrollment(UserItem selectedUser, int fingerprintId) {
         enrolling = true;
         btnStartEnroll.setEnabled(false);
         btnCancelEnroll.setVisible(true);
@@ -679,10 +803,28 @@ public class EnrollPanel extends JPanel {
         });
     }
     
+    /**
+     * Al volver: la conexión pudo abrirse o cerrarse desde Marcar Asistencia,
+     * y se aplican los cambios de usuarios avisados mientras estaba oculto
+     */
+    @Override
+    public void activate() {
+        updateConnectionStatus(arduinoService.isConnected());
+        usersRefresh.flush();
+    }
+    
+    @Override
+    public void deactivate() {
+        userSearchTimer.stop();
+    }
+    
+    /**
+     * La conexión serial es compartida; la cierra MainFrame al salir
+     */
+    @Override
     public void cleanup() {
-        if (arduinoService != null && arduinoService.isConnected()) {
-            arduinoService.disconnect();
-        }
+        userSearchTimer.stop();
+        ChangeEventBus.unsubscribe(usersSubscriber);
     }
     
     private static class UserItem {
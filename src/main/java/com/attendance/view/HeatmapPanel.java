@@ -0,0 +1,268 @@
+package com.attendance.view;
+
+import com.attendance.report.ArrivalHeatmapService;
+import com.attendance.service.ChangeEventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Mapa de calor de marcaciones por día de la semana y hora
+ * Muestra los contadores de ArrivalHeatmapService; las marcaciones nuevas
+ * se reflejan sin volver a consultar la base de datos. Si la ventana de
+ * días avanza (p. ej. pasada la medianoche) se recalcula sola.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class HeatmapPanel extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger logger = LoggerFactory.getLogger(HeatmapPanel.class);
+
+    private static final String[] DIAS = {"Lun", "Mar", "Mie", "Jue", "Vie", "Sab", "Dom"};
+    private static final String TODOS = "Todos";
+    private static final int EXPIRY_CHECK_MS = 60_000;
+
+    private final JComboBox<String> cmbDepartamento = new JComboBox<>();
+    private final JLabel lblResumen = new JLabel(" ");
+    private final HeatmapGrid grid = new HeatmapGrid();
+    private final List<Integer> departmentIds = new ArrayList<>();
+    private final Timer expiryTimer;
+    private boolean updatingCombo = false;
+    private boolean loading = false;
+    private String requestedDepartment;
+
+    private ChangeEventBus.Subscriber changeSubscriber;
+
+    public HeatmapPanel() {
+        setLayout(new BorderLayout(0, 10));
+        setOpaque(false);
+
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
+        toolbar.setOpaque(false);
+        toolbar.add(new JLabel("Departamento:"));
+        cmbDepartamento.addItem(TODOS);
+        departmentIds.add(null);
+        cmbDepartamento.addActionListener(e -> {
+            if (!updatingCombo) {
+                showCurrent();
+            }
+        });
+        toolbar.add(cmbDepartamento);
+
+        JButton btnRecalcular = new JButton("Recalcular");
+        btnRecalcular.addActionListener(e -> load(true));
+        toolbar.add(btnRecalcular);
+
+        lblResumen.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        lblResumen.setForeground(new Color(127, 140, 141));
+        toolbar.add(lblResumen);
+
+        add(toolbar, BorderLayout.NORTH);
+        add(grid, BorderLayout.CENTER);
+
+        changeSubscriber = ChangeEventBus.subscribeOnEdt(this::showCurrent, ChangeEventBus.ASISTENCIAS);
+        expiryTimer = new Timer(EXPIRY_CHECK_MS, e -> reloadIfExpired());
+        expiryTimer.start();
+        load(false);
+    }
+
+    /**
+     * Selecciona el departamento por nombre (o "Todos")
+     */
+    public void selectDepartment(String nombre) {
+        // Si los departamentos todavía no se cargaron se aplica al terminar la carga
+        requestedDepartment = nombre != null ? nombre : TODOS;
+        cmbDepartamento.setSelectedItem(requestedDepartment);
+    }
+
+    /**
+     * Carga los contadores en segundo plano; con recalcular se rehacen desde el historial
+     */
+    private void load(boolean recalcular) {
+        loading = true;
+        lblResumen.setText("Calculando...");
+        Integer idDepartamento = selectedDepartment();
+        new SwingWorker<ArrivalHeatmapService.Heatmap, Void>() {
+            @Override
+            protected ArrivalHeatmapService.Heatmap doInBackground() throws Exception {
+                if (recalcular) {
+                    ArrivalHeatmapService.rebuild();
+                }
+                return ArrivalHeatmapService.load(idDepartamento);
+            }
+
+            @Override
+            protected void done() {
+                loading = false;
+                try {
+                    get();
+                    refreshDepartments();
+                    showCurrent();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    logger.error("Error al calcular el mapa de calor", e.getCause());
+                    lblResumen.setText("Error: " + e.getCause().getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private void refreshDepartments() {
+        Object selected = requestedDepartment != null ? requestedDepartment : cmbDepartamento.getSelectedItem();
+        requestedDepartment = null;
+        updatingCombo = true;
+        try {
+            cmbDepartamento.removeAllItems();
+            departmentIds.clear();
+            cmbDepartamento.addItem(TODOS);
+            departmentIds.add(null);
+            for (Map.Entry<Integer, String> entry : ArrivalHeatmapService.getDepartamentos().entrySet()) {
+                cmbDepartamento.addItem(entry.getValue());
+                departmentIds.add(entry.getKey());
+            }
+            cmbDepartamento.setSelectedItem(selected);
+        } finally {
+            updatingCombo = false;
+        }
+    }
+
+    private Integer selectedDepartment() {
+        int index = cmbDepartamento.getSelectedIndex();
+        return index >= 0 && index < departmentIds.size() ? departmentIds.get(index) : null;
+    }
+
+    /**
+     * Muestra los contadores en memoria para el departamento elegido
+     */
+    private void showCurrent() {
+        if (reloadIfExpired()) {
+            return;
+        }
+        ArrivalHeatmapService.Heatmap heatmap = ArrivalHeatmapService.getHeatmap(selectedDepartment());
+        grid.setHeatmap(heatmap);
+        if (heatmap == null) {
+            return;
+        }
+        String stale = ArrivalHeatmapService.isStale() ? " (hay cambios, use Recalcular)" : "";
+        lblResumen.setText(String.format("%,d marcaciones desde %s%s", heatmap.total,
+            heatmap.desde.format(DateTimeFormatter.ISO_LOCAL_DATE), stale));
+    }
+
+    /**
+     * Recalcula si la ventana avanzó; los contadores en memoria ya no sirven
+     */
+    private boolean reloadIfExpired() {
+        if (!ArrivalHeatmapService.isExpired()) {
+            return false;
+        }
+        if (!loading) {
+            load(false);
+        }
+        return true;
+    }
+
+    public void cleanup() {
+        expiryTimer.stop();
+        ChangeEventBus.unsubscribe(changeSubscriber);
+    }
+
+    /**
+     * Cuadrícula de 7 filas × franjas del día, el color crece con la cantidad
+     */
+    private static class HeatmapGrid extends JComponent {
+        private static final long serialVersionUID = 1L;
+        private static final int LABEL_WIDTH = 40;
+        private static final int HEADER_HEIGHT = 20;
+        private static final Color EMPTY = new Color(245, 247, 250);
+        private static final Color LOW = new Color(253, 235, 200);
+        private static final Color HIGH = new Color(192, 57, 43);
+
+        private ArrivalHeatmapService.Heatmap heatmap;
+
+        HeatmapGrid() {
+            setPreferredSize(new Dimension(LABEL_WIDTH + ArrivalHeatmapService.BUCKETS_PER_DAY * 3, 220));
+            setToolTipText("");
+        }
+
+        void setHeatmap(ArrivalHeatmapService.Heatmap heatmap) {
+            this.heatmap = heatmap;
+            repaint();
+        }
+
+        private double cellWidth() {
+            return (getWidth() - LABEL_WIDTH) / (double) ArrivalHeatmapService.BUCKETS_PER_DAY;
+        }
+
+        private double cellHeight() {
+            return (getHeight() - HEADER_HEIGHT) / (double) ArrivalHeatmapService.DAYS;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g.create();
+            try {
+                g2.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+                g2.setColor(new Color(44, 62, 80));
+                double cw = cellWidth();
+                double ch = cellHeight();
+                int bucketsPerHour = 60 / ArrivalHeatmapService.BUCKET_MINUTES;
+
+                for (int hora = 0; hora < 24; hora += 2) {
+                    g2.drawString(String.format("%02d", hora),
+                        (int) (LABEL_WIDTH + hora * bucketsPerHour * cw), HEADER_HEIGHT - 6);
+                }
+                for (int dia = 0; dia < ArrivalHeatmapService.DAYS; dia++) {
+                    int y = (int) (HEADER_HEIGHT + dia * ch);
+                    g2.setColor(new Color(44, 62, 80));
+                    g2.drawString(DIAS[dia], 4, (int) (y + ch / 2 + 4));
+                    for (int franja = 0; franja < ArrivalHeatmapService.BUCKETS_PER_DAY; franja++) {
+                        int x = (int) (LABEL_WIDTH + franja * cw);
+                        int w = (int) (LABEL_WIDTH + (franja + 1) * cw) - x;
+                        g2.setColor(color(heatmap != null ? heatmap.get(dia, franja) : 0));
+                        g2.fillRect(x, y, Math.max(1, w), (int) Math.ceil(ch) - 1);
+                    }
+                }
+            } finally {
+                g2.dispose();
+            }
+        }
+
+        private Color color(int value) {
+            if (value == 0 || heatmap == null || heatmap.maximo == 0) {
+                return EMPTY;
+            }
+            double t = Math.sqrt(value / (double) heatmap.maximo);
+            return new Color(
+                (int) (LOW.getRed() + t * (HIGH.getRed() - LOW.getRed())),
+                (int) (LOW.getGreen() + t * (HIGH.getGreen() - LOW.getGreen())),
+                (int) (LOW.getBlue() + t * (HIGH.getBlue() - LOW.getBlue())));
+        }
+
+        @Override
+        public String getToolTipText(MouseEvent e) {
+            if (heatmap == null || e.getX() < LABEL_WIDTH || e.getY() < HEADER_HEIGHT) {
+                return null;
+            }
+            int franja = (int) ((e.getX() - LABEL_WIDTH) / cellWidth());
+            int dia = (int) ((e.getY() - HEADER_HEIGHT) / cellHeight());
+            if (franja >= ArrivalHeatmapService.BUCKETS_PER_DAY || dia >= ArrivalHeatmapService.DAYS) {
+                return null;
+            }
+            int minutos = franja * ArrivalHeatmapService.BUCKET_MINUTES;
+            int hasta = minutos + ArrivalHeatmapService.BUCKET_MINUTES;
+            return String.format("%s %02d:%02d-%02d:%02d: %d marcaciones", DIAS[dia],
+                minutos / 60, minutos % 60, hasta / 60 % 24, hasta % 60, heatmap.get(dia, franja));
+        }
+    }
+}
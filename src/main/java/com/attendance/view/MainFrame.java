@@ -1,5 +1,6 @@
 package com.attendance.view;
 
+import com.attendance.service.ArduinoCommService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,7 +24,10 @@ public class MainFrame extends JFrame {
     private JPanel topBarPanel;
     private JLabel lblDateTime;
     private JLabel lblStatus;
-    private JPanel currentPanel;
+    private PanelManager panelManager;
+    
+    /** Una sola conexión serial compartida por Marcar Asistencia y Enrolar Huella */
+    private final ArduinoCommService arduinoService = new ArduinoCommService();
     
     private static final Color SIDEBAR_COLOR = new Color(44, 62, 80);
     private static final Color SIDEBAR_HOVER = new Color(52, 73, 94);
@@ -42,8 +46,17 @@ public class MainFrame extends JFrame {
         setLayout(new BorderLayout());
         createTopBar();
         createSidebar();
-        contentPanel = new JPanel(new BorderLayout());
+        contentPanel = new JPanel();
         contentPanel.setBackground(CONTENT_BG);
+        
+        // Cada sección se construye al abrirla por primera vez y luego se reutiliza
+        panelManager = new PanelManager(contentPanel);
+        panelManager.register("Dashboard", DashboardPanel::new);
+        panelManager.register("Asistencia", () -> new AttendancePanel(arduinoService));
+        panelManager.register("Enrolamiento", () -> new EnrollPanel(arduinoService));
+        panelManager.register("Usuarios", UsersPanel::new);
+        panelManager.register("Reportes", ReportsPanel::new);
+        panelManager.register("Configuracion", ConfigurationPanel::new);
         add(topBarPanel, BorderLayout.NORTH);
         add(sidebarPanel, BorderLayout.WEST);
         add(contentPanel, BorderLayout.CENTER);
@@ -226,76 +239,32 @@ public class MainFrame extends JFrame {
     
     private void showDashboard() {
         logger.info("Mostrando Dashboard");
-        switchPanel(new DashboardPanel());
+        panelManager.show("Dashboard");
     }
     
     private void showAttendance() {
         logger.info("Mostrando Panel de Asistencia");
-        switchPanel(new AttendancePanel());
+        panelManager.show("Asistencia");
     }
     
     private void showEnroll() {
         logger.info("Mostrando Panel de Enrolamiento");
-        switchPanel(new EnrollPanel());
+        panelManager.show("Enrolamiento");
     }
     
     private void showUsers() {
         logger.info("Mostrando Panel de Usuarios");
-        try {
-            switchPanel(new UsersPanel());
-        } catch (Exception e) {
-            logger.error("Error al cargar UsersPanel", e);
-            showErrorPanel("Usuarios", "Error al cargar el modulo.");
-        }
+        panelManager.show("Usuarios");
     }
     
     private void showReports() {
         logger.info("Mostrando Panel de Reportes");
-        try {
-            switchPanel(new ReportsPanel());
-        } catch (Exception e) {
-            logger.error("Error al cargar ReportsPanel", e);
-            showErrorPanel("Reportes", "Error al cargar el modulo.");
-        }
+        panelManager.show("Reportes");
     }
     
     private void showSettings() {
         logger.info("Mostrando Panel de Configuracion");
-        try {
-            switchPanel(new ConfigurationPanel());
-        } catch (Exception e) {
-            logger.error("Error al cargar ConfigurationPanel", e);
-            showErrorPanel("Configuracion", "Error al cargar el modulo.");
-        }
-    }
-    
-    private void showErrorPanel(String title, String message) {
-        JPanel panel = new JPanel(new BorderLayout());
-        panel.setBackground(Color.WHITE);
-        JLabel label = new JLabel("<html><div style='text-align: center;'><h1>" + title + 
-            "</h1><p style='color: gray;'>" + message + "</p></div></html>", SwingConstants.CENTER);
-        label.setFont(new Font("Segoe UI", Font.PLAIN, 16));
-        panel.add(label, BorderLayout.CENTER);
-        switchPanel(panel);
-    }
-    
-    private void switchPanel(JPanel newPanel) {
-        if (currentPanel != null) {
-            try {
-                java.lang.reflect.Method cleanupMethod = currentPanel.getClass().getMethod("cleanup");
-                cleanupMethod.invoke(currentPanel);
-                logger.debug("Recursos liberados");
-            } catch (NoSuchMethodException e) {
-                // Sin cleanup
-            } catch (Exception e) {
-                logger.error("Error limpiando recursos", e);
-            }
-        }
-        contentPanel.removeAll();
-        contentPanel.add(newPanel, BorderLayout.CENTER);
-        contentPanel.revalidate();
-        contentPanel.repaint();
-        currentPanel = newPanel;
+        panelManager.show("Configuracion");
     }
     
     private void startClock() {
@@ -319,13 +288,9 @@ public class MainFrame extends JFrame {
         
         if (option == JOptionPane.YES_OPTION) {
             logger.info("Cerrando aplicacion");
-            if (currentPanel != null) {
-                try {
-                    java.lang.reflect.Method cleanupMethod = currentPanel.getClass().getMethod("cleanup");
-                    cleanupMethod.invoke(currentPanel);
-                } catch (Exception e) {
-                    // Ignorar
-                }
+            panelManager.cleanupAll();
+            if (arduinoService.isConnected()) {
+                arduinoService.disconnect();
             }
             dispose();
             System.exit(0);
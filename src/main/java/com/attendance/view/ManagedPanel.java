@@ -0,0 +1,29 @@
+package com.attendance.view;
+
+/**
+ * Panel administrado por PanelManager
+ * Se construye una sola vez; al cambiar de sección se desactiva en lugar de
+ * destruirse, y cleanup() solo se llama al cerrar la aplicación.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public interface ManagedPanel {
+
+    /**
+     * El panel vuelve a estar visible: reanudar timers y aplicar los cambios pendientes
+     */
+    default void activate() {
+    }
+
+    /**
+     * El panel deja de verse: pausar timers y trabajo periódico
+     */
+    default void deactivate() {
+    }
+
+    /**
+     * Libera suscripciones y recursos al cerrar la aplicación
+     */
+    void cleanup();
+}
@@ -0,0 +1,137 @@
+package com.attendance.view;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Ciclo de vida de las secciones de la ventana principal
+ * Cada panel se construye la primera vez que se muestra (tras pintar un aviso
+ * de carga) y después se conserva en un CardLayout: cambiar de sección solo
+ * cambia la carta visible y llama a deactivate()/activate() en los paneles
+ * que implementan ManagedPanel.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class PanelManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(PanelManager.class);
+
+    private static final String LOADING_CARD = "__cargando";
+
+    private final JPanel container;
+    private final CardLayout cards = new CardLayout();
+    private final Map<String, Supplier<JPanel>> factories = new LinkedHashMap<>();
+    private final Map<String, JPanel> panels = new HashMap<>();
+    private String current;
+
+    public PanelManager(JPanel container) {
+        this.container = container;
+        container.setLayout(cards);
+        container.add(createMessagePanel("Cargando...", ""), LOADING_CARD);
+    }
+
+    /**
+     * Registra una sección; la fábrica se invoca en el EDT una sola vez
+     */
+    public void register(String nombre, Supplier<JPanel> factory) {
+        factories.put(nombre, factory);
+    }
+
+    /**
+     * Muestra la sección, construyéndola si es la primera vez
+     */
+    public void show(String nombre) {
+        if (nombre.equals(current)) {
+            return;
+        }
+        deactivateCurrent();
+        current = nombre;
+
+        if (panels.containsKey(nombre)) {
+            display(nombre);
+            return;
+        }
+        // Primero se pinta el aviso; la construcción va en el siguiente ciclo del EDT
+        cards.show(container, LOADING_CARD);
+        SwingUtilities.invokeLater(() -> {
+            build(nombre);
+            if (nombre.equals(current)) {
+                display(nombre);
+            }
+        });
+    }
+
+    /**
+     * Cierre de la aplicación: libera todos los paneles construidos
+     */
+    public void cleanupAll() {
+        deactivateCurrent();
+        for (Map.Entry<String, JPanel> entry : panels.entrySet()) {
+            if (entry.getValue() instanceof ManagedPanel) {
+                try {
+                    ((ManagedPanel) entry.getValue()).cleanup();
+                } catch (RuntimeException e) {
+                    logger.error("Error liberando recursos de {}", entry.getKey(), e);
+                }
+            }
+        }
+    }
+
+    private void build(String nombre) {
+        if (panels.containsKey(nombre)) {
+            return;
+        }
+        long start = System.nanoTime();
+        JPanel panel;
+        try {
+            panel = factories.get(nombre).get();
+        } catch (RuntimeException e) {
+            logger.error("Error al cargar el panel {}", nombre, e);
+            panel = createMessagePanel(nombre, "Error al cargar el modulo.");
+        }
+        panels.put(nombre, panel);
+        container.add(panel, nombre);
+        logger.info("Panel {} construido en {} ms", nombre, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void display(String nombre) {
+        cards.show(container, nombre);
+        JPanel panel = panels.get(nombre);
+        if (panel instanceof ManagedPanel) {
+            try {
+                ((ManagedPanel) panel).activate();
+            } catch (RuntimeException e) {
+                logger.error("Error activando {}", nombre, e);
+            }
+        }
+    }
+
+    private void deactivateCurrent() {
+        JPanel panel = current != null ? panels.get(current) : null;
+        if (panel instanceof ManagedPanel) {
+            try {
+                ((ManagedPanel) panel).deactivate();
+            } catch (RuntimeException e) {
+                logger.error("Error desactivando {}", current, e);
+            }
+        }
+    }
+
+    private static JPanel createMessagePanel(String title, String message) {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBackground(Color.WHITE);
+        JLabel label = new JLabel("<html><div style='text-align: center;'><h1>" + title +
+            "</h1><p style='color: gray;'>" + message + "</p></div></html>", SwingConstants.CENTER);
+        label.setFont(new Font("Segoe UI", Font.PLAIN, 16));
+        panel.add(label, BorderLayout.CENTER);
+        return panel;
+    }
+}
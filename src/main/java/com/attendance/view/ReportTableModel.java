@@ -0,0 +1,358 @@
+package com.attendance.view;
+
+import com.attendance.report.ReportData;
+import com.attendance.report.ReportFilter;
+import com.attendance.report.ReportPageLoader;
+import com.attendance.util.EdtDispatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.table.AbstractTableModel;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Modelo de la tabla de resultados de reportes
+ * Con pocos registros trabaja sobre el detalle completo en memoria; con
+ * muchos, pide páginas al pool de reportes a medida que se desplaza la
+ * tabla y conserva solo las páginas cercanas a la zona visible.
+ * Todo el estado se usa desde el EDT; las páginas se leen en un hilo aparte.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class ReportTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger logger = LoggerFactory.getLogger(ReportTableModel.class);
+
+    public static final int PAGE_SIZE = 500;
+    private static final int MAX_CACHED_PAGES = 40;
+    private static final int PREFETCH_DISTANCE = 2;
+
+    private static final String[] COLUMNS = {"#", "Fecha", "Hora", "Usuario", "C.I.N.:", "Departamento",
+                                             "Tipo", "Confianza", "Metodo"};
+    private static final ReportPageLoader.SortColumn[] SORT_COLUMNS = {
+        null,
+        ReportPageLoader.SortColumn.FECHA,
+        ReportPageLoader.SortColumn.FECHA,
+        ReportPageLoader.SortColumn.USUARIO,
+        ReportPageLoader.SortColumn.DNI,
+        ReportPageLoader.SortColumn.DEPARTAMENTO,
+        ReportPageLoader.SortColumn.TIPO,
+        ReportPageLoader.SortColumn.CONFIANZA,
+        ReportPageLoader.SortColumn.METODO
+    };
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final ExecutorService pageExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "report-pages");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private ReportPageLoader.SortColumn sortColumn = ReportPageLoader.SortColumn.FECHA;
+    private boolean ascending = false;
+
+    // Modo en memoria
+    private ReportData allData;
+    private int[] order;
+
+    // Modo paginado
+    private ReportPageLoader loader;
+    private int rowCount;
+    private final Map<Integer, ReportData> pages = new LinkedHashMap<Integer, ReportData>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ReportData> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    private final Map<Integer, ReportPageLoader.Key> lastKeys = new HashMap<>();
+    private final Set<Integer> pending = new HashSet<>();
+    private int generation = 0;
+    private volatile int focusPage = 0;
+
+    /**
+     * Muestra un detalle ya cargado por completo
+     */
+    public void showData(ReportData data) {
+        reset();
+        allData = data;
+        rowCount = data.size();
+        order = sortInMemory(data);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Muestra un reporte grande leyendo páginas bajo demanda
+     */
+    public void showPaged(ReportPageLoader pageLoader, long totalRows, ReportData firstPage) {
+        reset();
+        loader = pageLoader;
+        rowCount = (int) Math.min(Integer.MAX_VALUE, totalRows);
+        pageLoaded(generation, 0, firstPage);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Cargador con el orden actual, para la primera página de un reporte nuevo
+     */
+    public ReportPageLoader createLoader(ReportFilter filter) {
+        return new ReportPageLoader(filter, sortColumn, ascending, PAGE_SIZE);
+    }
+
+    public void clear() {
+        reset();
+        fireTableDataChanged();
+    }
+
+    /**
+     * Ordena por la columna indicada; si ya estaba ordenada invierte el sentido
+     *
+     * @return false si la columna no admite orden
+     */
+    public boolean sortBy(int column) {
+        ReportPageLoader.SortColumn requested = column >= 0 && column < SORT_COLUMNS.length ? SORT_COLUMNS[column] : null;
+        if (requested == null) {
+            return false;
+        }
+        if (requested == sortColumn) {
+            ascending = !ascending;
+        } else {
+            sortColumn = requested;
+            ascending = requested != ReportPageLoader.SortColumn.FECHA;
+        }
+
+        if (allData != null) {
+            order = sortInMemory(allData);
+            fireTableRowsUpdated(0, Math.max(0, rowCount - 1));
+        } else if (loader != null) {
+            // El orden se resuelve en SQL: se descartan las páginas y se empieza de nuevo
+            ReportPageLoader sorted = new ReportPageLoader(loader.getFilter(), sortColumn, ascending, PAGE_SIZE);
+            int rows = rowCount;
+            reset();
+            loader = sorted;
+            rowCount = rows;
+            requestPage(0);
+            fireTableDataChanged();
+        }
+        return true;
+    }
+
+    /**
+     * Columna ordenada actualmente (la primera de las que comparten criterio)
+     */
+    public int getSortedColumn() {
+        return Arrays.asList(SORT_COLUMNS).indexOf(sortColumn);
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * Libera el hilo de lectura de páginas
+     */
+    public void dispose() {
+        pageExecutor.shutdownNow();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 0 || column == 7 ? Integer.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (column == 0) {
+            return row + 1;
+        }
+        if (allData != null) {
+            return valueAt(allData, order[row], column);
+        }
+
+        int pageIndex = row / PAGE_SIZE;
+        focusPage = pageIndex;
+        ReportData page = pages.get(pageIndex);
+        if (page == null) {
+            requestPage(pageIndex);
+            return null;
+        }
+
+        int offset = row % PAGE_SIZE;
+        // Anticipar la página hacia la que se está desplazando
+        requestPage(offset >= PAGE_SIZE / 2 ? pageIndex + 1 : pageIndex - 1);
+        return offset < page.size() ? valueAt(page, offset, column) : null;
+    }
+
+    private static Object valueAt(ReportData data, int row, int column) {
+        switch (column) {
+            case 1:
+                return data.getFechaHora(row).format(DateTimeFormatter.ISO_LOCAL_DATE);
+            case 2:
+                return data.getFechaHora(row).format(TIME_FORMAT);
+            case 3:
+                return data.getUsuario(row);
+            case 4:
+                return data.getDni(row);
+            case 5:
+                return data.getDepartamento(row);
+            case 6:
+                return data.getTipoMarcacion(row);
+            case 7:
+                return data.getConfidence(row);
+            case 8:
+                return data.getMetodo(row);
+            default:
+                return null;
+        }
+    }
+
+    private void reset() {
+        generation++;
+        allData = null;
+        order = null;
+        loader = null;
+        rowCount = 0;
+        pages.clear();
+        lastKeys.clear();
+        pending.clear();
+        focusPage = 0;
+    }
+
+    private void requestPage(int pageIndex) {
+        if (loader == null || pageIndex < 0 || (long) pageIndex * PAGE_SIZE >= rowCount
+                || pages.containsKey(pageIndex) || pending.contains(pageIndex)) {
+            return;
+        }
+
+        // Continuar desde la página conocida más cercana hacia atrás
+        ReportPageLoader.Key anchor = null;
+        int anchorPage = -1;
+        for (int p = pageIndex - 1; p >= 0; p--) {
+            anchor = lastKeys.get(p);
+            if (anchor != null) {
+                anchorPage = p;
+                break;
+            }
+        }
+        int skip = (pageIndex - anchorPage - 1) * PAGE_SIZE;
+
+        pending.add(pageIndex);
+        int requestGeneration = generation;
+        ReportPageLoader pageLoader = loader;
+        ReportPageLoader.Key after = anchor;
+
+        pageExecutor.execute(() -> {
+            // Páginas que quedaron lejos de la zona visible ya no interesan
+            if (Math.abs(pageIndex - focusPage) > PREFETCH_DISTANCE + 1) {
+                EdtDispatcher.invokeLater(() -> {
+                    if (requestGeneration == generation) {
+                        pending.remove(pageIndex);
+                    }
+                });
+                return;
+            }
+            try {
+                ReportData page = pageLoader.loadPage(after, skip);
+                EdtDispatcher.invokeLater(() -> pageLoaded(requestGeneration, pageIndex, page));
+            } catch (Exception e) {
+                logger.error("Error al cargar la página {} del reporte", pageIndex, e);
+                EdtDispatcher.invokeLater(() -> {
+                    if (requestGeneration == generation) {
+                        pending.remove(pageIndex);
+                    }
+                });
+            }
+        });
+    }
+
+    private void pageLoaded(int requestGeneration, int pageIndex, ReportData page) {
+        if (requestGeneration != generation) {
+            return;
+        }
+        pending.remove(pageIndex);
+        pages.put(pageIndex, page);
+        ReportPageLoader.Key key = loader.lastKey(page);
+        if (key != null) {
+            lastKeys.put(pageIndex, key);
+        }
+
+        int first = pageIndex * PAGE_SIZE;
+        int last = Math.min(rowCount, first + PAGE_SIZE) - 1;
+        if (first <= last) {
+            fireTableRowsUpdated(first, last);
+        }
+    }
+
+    /**
+     * Permutación de filas para el orden actual (modo en memoria)
+     */
+    private int[] sortInMemory(ReportData data) {
+        Integer[] indexes = new Integer[data.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+        }
+
+        Comparator<Integer> byFecha = Comparator.<Integer>comparingLong(data::getFechaHoraMicros)
+            .thenComparingInt(data::getIdAsistencia);
+        Comparator<Integer> comparator;
+        switch (sortColumn) {
+            case USUARIO:
+                comparator = Comparator.comparing(i -> nullToEmpty(data.getUsuario(i)));
+                break;
+            case DNI:
+                comparator = Comparator.comparing(i -> nullToEmpty(data.getDni(i)));
+                break;
+            case DEPARTAMENTO:
+                comparator = Comparator.comparing(i -> nullToEmpty(data.getDepartamento(i)));
+                break;
+            case TIPO:
+                comparator = Comparator.comparing(i -> nullToEmpty(data.getTipoMarcacion(i)));
+                break;
+            case CONFIANZA:
+                comparator = Comparator.comparingInt(data::getConfidence);
+                break;
+            case METODO:
+                comparator = Comparator.comparing(i -> nullToEmpty(data.getMetodo(i)));
+                break;
+            default:
+                comparator = null;
+        }
+        comparator = comparator == null ? byFecha : comparator.thenComparing(byFecha);
+        Arrays.sort(indexes, ascending ? comparator : comparator.reversed());
+
+        int[] result = new int[indexes.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = indexes[i];
+        }
+        return result;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
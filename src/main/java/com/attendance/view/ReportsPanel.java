@@ -1,16 +1,47 @@
 package com.attendance.view;
 
 import com.attendance.config.DatabaseConfig;
+import com.attendance.monitoring.ReportQueryEvent;
+import com.attendance.report.AbsenceEngine;
+import com.attendance.report.CsvReportExporter;
+import com.attendance.report.ExcelReportExporter;
+import com.attendance.report.MonthlyReportEngine;
+import com.attendance.report.PdfReportExporter;
+import com.attendance.report.ReportCache;
+import com.attendance.report.ReportData;
+import com.attendance.report.ReportExporter;
+import com.attendance.report.ReportFilter;
+import com.attendance.report.ReportJob;
+import com.attendance.report.ReportJobEngine;
+import com.attendance.report.ReportPageLoader;
+import com.attendance.report.WorkSessionEngine;
+import com.attendance.service.ChangeEventBus;
+import com.attendance.service.ReferenceDataCache;
+import com.attendance.util.EdtDispatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * Panel de Reportes de Asistencias
@@ -19,10 +50,18 @@ import java.time.format.DateTimeFormatter;
  * @author Sistema Biometrico
  * @version 1.0
  */
-public class ReportsPanel extends JPanel {
+public class ReportsPanel extends JPanel implements ManagedPanel {
     
     private static final Logger logger = LoggerFactory.getLogger(ReportsPanel.class);
     
+    /** Hasta esta cantidad de registros el reporte se carga entero (y se guarda en cache) */
+    private static final int IN_MEMORY_ROWS =
+        Integer.parseInt(DatabaseConfig.getProperty("reports.table.inMemoryRows", "20000"));
+    
+    private static final String REPORTE_AUSENCIAS = "Ausencias";
+    private static final String REPORTE_HORAS = "Horas Trabajadas";
+    private static final String REPORTE_MENSUAL = "Reporte Mensual";
+    
     // Componentes de filtros
     private JComboBox<String> cmbReportType;
     private JTextField txtFechaInicio;
@@ -30,16 +69,19 @@ public class ReportsPanel extends JPanel {
     private JComboBox<String> cmbDepartamento;
     private JComboBox<String> cmbTipoMarcacion;
     private JTextField txtUsuario;
+    private UserSuggestionPopup userSuggestions;
     
     // Tabla de resultados
     private JTable tableResults;
-    private DefaultTableModel tableModel;
+    private ReportTableModel tableModel;
     
     // Botones
     private JButton btnGenerar;
     private JButton btnExportPDF;
     private JButton btnExportExcel;
+    private JButton btnExportCSV;
     private JButton btnLimpiar;
+    private JButton btnHeatmap;
     
     // Estadisticas
     private JLabel lblTotalRegistros;
@@ -47,10 +89,23 @@ public class ReportsPanel extends JPanel {
     private JLabel lblTotalSalidas;
     private JLabel lblUsuariosUnicos;
     
+    // Trabajos de exportacion
+    private JTable tableJobs;
+    private ReportJobsTableModel jobsTableModel;
+    private ReportJobEngine.JobListener jobListener;
+    private final AtomicBoolean jobsRefreshPending = new AtomicBoolean(false);
+    
+    private Runnable changeSubscriber;
+    
     public ReportsPanel() {
         initComponents();
         loadDepartments();
         setDefaultDates();
+        changeSubscriber = ReferenceDataCache.subscribeOnEdt(() -> {
+            Object selected = cmbDepartamento.getSelectedItem();
+            loadDepartments();
+            cmbDepartamento.setSelectedItem(selected);
+        }, ChangeEventBus.DEPARTAMENTOS);
     }
     
     private void initComponents() {
@@ -67,8 +122,11 @@ public class ReportsPanel extends JPanel {
         // Panel de resultados
         JPanel resultsPanel = createResultsPanel();
         
-        // Panel de botones
-        JPanel buttonPanel = createButtonPanel();
+        // Panel de botones y trabajos de exportacion
+        JPanel bottomSection = new JPanel(new BorderLayout(10, 10));
+        bottomSection.setOpaque(false);
+        bottomSection.add(createButtonPanel(), BorderLayout.NORTH);
+        bottomSection.add(createJobsPanel(), BorderLayout.CENTER);
         
         // Layout principal
         JPanel topSection = new JPanel(new BorderLayout(10, 10));
@@ -78,7 +136,7 @@ public class ReportsPanel extends JPanel {
         
         add(topSection, BorderLayout.NORTH);
         add(resultsPanel, BorderLayout.CENTER);
-        add(buttonPanel, BorderLayout.SOUTH);
+        add(bottomSection, BorderLayout.SOUTH);
     }
     
     private JPanel createHeaderPanel() {
@@ -196,8 +254,9 @@ public class ReportsPanel extends JPanel {
             "Asistencias por Usuario",
             "Asistencias por Departamento",
             "Tardanzas",
-            "Ausencias",
-            "Reporte Mensual"
+            REPORTE_AUSENCIAS,
+            REPORTE_HORAS,
+            REPORTE_MENSUAL
         });
         cmbReportType.setFont(new Font("Segoe UI", Font.PLAIN, 12));
         cmbReportType.setPreferredSize(new Dimension(200, 30));
@@ -250,7 +309,9 @@ public class ReportsPanel extends JPanel {
         gbc.gridx = 5;
         txtUsuario = new JTextField(15);
         txtUsuario.setFont(new Font("Segoe UI", Font.PLAIN, 12));
-        txtUsuario.setToolTipText("Buscar por DNI o nombre");
+        txtUsuario.setToolTipText("Buscar por DNI, nombre o email");
+        // Elegir una sugerencia deja el DNI, que identifica al usuario sin ambigüedad
+        userSuggestions = new UserSuggestionPopup(txtUsuario, 8, match -> txtUsuario.setText(match.dni));
         panel.add(txtUsuario, gbc);
         
         return panel;
@@ -270,14 +331,7 @@ public class ReportsPanel extends JPanel {
         lblTitle.setForeground(new Color(44, 62, 80));
         
         // Tabla
-        String[] columns = {"#", "Fecha", "Hora", "Usuario", "C.I.N.:", "Departamento", 
-                           "Tipo", "Confianza", "Metodo"};
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        tableModel = new ReportTableModel();
         
         tableResults = new JTable(tableModel);
         tableResults.setFont(new Font("Segoe UI", Font.PLAIN, 12));
@@ -286,6 +340,18 @@ public class ReportsPanel extends JPanel {
         tableResults.getTableHeader().setBackground(new Color(52, 152, 219));
         tableResults.getTableHeader().setForeground(Color.WHITE);
         
+        // Orden por columna resuelto en el modelo (en SQL para reportes grandes)
+        tableResults.getTableHeader().setReorderingAllowed(false);
+        tableResults.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = tableResults.columnAtPoint(e.getPoint());
+                if (tableModel.sortBy(column)) {
+                    updateSortIndicator();
+                }
+            }
+        });
+        
         // Centrar contenido
         DefaultTableCellRenderer centerRenderer = new DefaultTableCellRenderer();
         centerRenderer.setHorizontalAlignment(SwingConstants.CENTER);
@@ -313,6 +379,18 @@ public class ReportsPanel extends JPanel {
         return panel;
     }
     
+    private void updateSortIndicator() {
+        int sorted = tableModel.getSortedColumn();
+        for (int i = 0; i < tableResults.getColumnCount(); i++) {
+            String name = tableModel.getColumnName(i);
+            if (i == sorted) {
+                name += tableModel.isAscending() ? " \u25B2" : " \u25BC";
+            }
+            tableResults.getColumnModel().getColumn(i).setHeaderValue(name);
+        }
+        tableResults.getTableHeader().repaint();
+    }
+    
     private JPanel createButtonPanel() {
         JPanel panel = new JPanel(new BorderLayout(10, 0));
         panel.setOpaque(false);
@@ -326,25 +404,88 @@ public class ReportsPanel extends JPanel {
         
         btnExportPDF = createButton("Exportar PDF", new Color(231, 76, 60));
         btnExportPDF.addActionListener(e -> exportToPDF());
-        btnExportPDF.setEnabled(false);
         
         btnExportExcel = createButton("Exportar Excel", new Color(46, 204, 113));
         btnExportExcel.addActionListener(e -> exportToExcel());
-        btnExportExcel.setEnabled(false);
+        
+        btnExportCSV = createButton("Exportar CSV", new Color(22, 160, 133));
+        btnExportCSV.addActionListener(e -> exportToCSV());
         
         btnLimpiar = createButton("Limpiar", new Color(149, 165, 166));
         btnLimpiar.addActionListener(e -> clearReport());
         
+        btnHeatmap = createButton("Mapa de Calor", new Color(211, 84, 0));
+        btnHeatmap.addActionListener(e -> showHeatmap());
+        
         leftPanel.add(btnGenerar);
         leftPanel.add(btnExportPDF);
         leftPanel.add(btnExportExcel);
+        leftPanel.add(btnExportCSV);
         leftPanel.add(btnLimpiar);
+        leftPanel.add(btnHeatmap);
         
         panel.add(leftPanel, BorderLayout.WEST);
         
         return panel;
     }
     
+    private JPanel createJobsPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 0));
+        panel.setBackground(Color.WHITE);
+        panel.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createTitledBorder(
+                BorderFactory.createLineBorder(new Color(200, 200, 200)),
+                "Exportaciones",
+                0, 0,
+                new Font("Segoe UI", Font.BOLD, 13),
+                new Color(44, 62, 80)
+            ),
+            BorderFactory.createEmptyBorder(5, 5, 5, 5)
+        ));
+        
+        jobsTableModel = new ReportJobsTableModel();
+        tableJobs = new JTable(jobsTableModel);
+        tableJobs.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        tableJobs.setRowHeight(22);
+        tableJobs.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        tableJobs.getColumnModel().getColumn(0).setPreferredWidth(40);
+        tableJobs.getColumnModel().getColumn(1).setPreferredWidth(260);
+        tableJobs.getColumnModel().getColumn(5).setPreferredWidth(320);
+        
+        JScrollPane scrollPane = new JScrollPane(tableJobs);
+        scrollPane.setPreferredSize(new Dimension(0, 110));
+        
+        JPanel actions = new JPanel(new GridLayout(2, 1, 0, 5));
+        actions.setOpaque(false);
+        JButton btnCancelJob = new JButton("Cancelar");
+        btnCancelJob.addActionListener(e -> cancelSelectedJob());
+        JButton btnOpenJob = new JButton("Abrir");
+        btnOpenJob.addActionListener(e -> openSelectedJob());
+        actions.add(btnCancelJob);
+        actions.add(btnOpenJob);
+        
+        JPanel actionsWrapper = new JPanel(new BorderLayout());
+        actionsWrapper.setOpaque(false);
+        actionsWrapper.add(actions, BorderLayout.NORTH);
+        
+        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(actionsWrapper, BorderLayout.EAST);
+        
+        // Cambios de estado y progreso llegan desde los hilos del motor
+        jobListener = job -> {
+            if (jobsRefreshPending.compareAndSet(false, true)) {
+                EdtDispatcher.invokeLater(() -> {
+                    jobsRefreshPending.set(false);
+                    jobsTableModel.refresh();
+                });
+            }
+        };
+        ReportJobEngine.addListener(jobListener);
+        jobsTableModel.refresh();
+        
+        return panel;
+    }
+    
     private JButton createButton(String text, Color bgColor) {
         JButton button = new JButton(text);
         button.setFont(new Font("Segoe UI", Font.BOLD, 13));
@@ -361,18 +502,8 @@ public class ReportsPanel extends JPanel {
         cmbDepartamento.removeAllItems();
         cmbDepartamento.addItem("Todos");
         
-        String sql = "SELECT nombre FROM departamentos WHERE activo = TRUE ORDER BY nombre";
-        
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-            
-            while (rs.next()) {
-                cmbDepartamento.addItem(rs.getString("nombre"));
-            }
-            
-        } catch (Exception e) {
-            logger.error("Error al cargar departamentos", e);
+        for (ReferenceDataCache.Departamento departamento : ReferenceDataCache.getDepartamentos()) {
+            cmbDepartamento.addItem(departamento.nombre);
         }
     }
     
@@ -384,8 +515,10 @@ public class ReportsPanel extends JPanel {
         txtFechaFin.setText(today.format(DateTimeFormatter.ISO_LOCAL_DATE));
     }
     
-    private void generateReport() {
-        // Validar fechas
+    /**
+     * Construye el filtro a partir de los controles; null si las fechas no son validas
+     */
+    private ReportFilter buildFilter() {
         String fechaInicio = txtFechaInicio.getText().trim();
         String fechaFin = txtFechaFin.getText().trim();
         
@@ -394,147 +527,447 @@ public class ReportsPanel extends JPanel {
                 "Por favor ingrese las fechas de inicio y fin",
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
-            return;
+            return null;
         }
         
-        // Limpiar tabla
-        tableModel.setRowCount(0);
-        
-        // Construir consulta SQL
-        StringBuilder sql = new StringBuilder();
-        sql.append("SELECT a.id_asistencia, ");
-        sql.append("       TO_CHAR(a.fecha_hora, 'YYYY-MM-DD') AS fecha, ");
-        sql.append("       TO_CHAR(a.fecha_hora, 'HH24:MI:SS') AS hora, ");
-        sql.append("       u.nombres || ' ' || u.apellidos AS usuario, ");
-        sql.append("       u.dni, ");
-        sql.append("       d.nombre AS departamento, ");
-        sql.append("       a.tipo_marcacion, ");
-        sql.append("       a.confidence_score, ");
-        sql.append("       a.metodo ");
-        sql.append("FROM asistencias a ");
-        sql.append("INNER JOIN usuarios u ON a.id_usuario = u.id_usuario ");
-        sql.append("LEFT JOIN departamentos d ON u.id_departamento = d.id_departamento ");
-        sql.append("WHERE DATE(a.fecha_hora) BETWEEN ?::date AND ?::date ");
-        
-        // Agregar filtros
-        String departamento = (String) cmbDepartamento.getSelectedItem();
-        if (departamento != null && !"Todos".equals(departamento)) {
-            sql.append("AND d.nombre = ? ");
+        LocalDate inicio;
+        LocalDate fin;
+        try {
+            inicio = LocalDate.parse(fechaInicio);
+            fin = LocalDate.parse(fechaFin);
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(this,
+                "Formato de fecha invalido. Use YYYY-MM-DD",
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+            return null;
         }
         
-        String tipoMarcacion = (String) cmbTipoMarcacion.getSelectedItem();
-        if (tipoMarcacion != null && !"Todos".equals(tipoMarcacion)) {
-            sql.append("AND a.tipo_marcacion = ? ");
+        if (fin.isBefore(inicio)) {
+            JOptionPane.showMessageDialog(this,
+                "La fecha fin no puede ser anterior a la fecha inicio",
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+            return null;
         }
         
-        String usuario = txtUsuario.getText().trim();
-        if (!usuario.isEmpty()) {
-            sql.append("AND (u.dni LIKE ? OR LOWER(u.nombres || ' ' || u.apellidos) LIKE LOWER(?)) ");
+        return new ReportFilter(
+            (String) cmbReportType.getSelectedItem(),
+            inicio,
+            fin,
+            (String) cmbDepartamento.getSelectedItem(),
+            (String) cmbTipoMarcacion.getSelectedItem(),
+            txtUsuario.getText());
+    }
+    
+    private void generateReport() {
+        ReportFilter filter = buildFilter();
+        if (filter == null) {
+            return;
+        }
+        if (REPORTE_AUSENCIAS.equals(filter.getTipoReporte())) {
+            generateAbsences(filter);
+            return;
+        }
+        if (REPORTE_HORAS.equals(filter.getTipoReporte())) {
+            generateWorkedHours(filter);
+            return;
+        }
+        if (REPORTE_MENSUAL.equals(filter.getTipoReporte())) {
+            generateMonthly(filter);
+            return;
         }
         
-        sql.append("ORDER BY a.fecha_hora DESC");
+        // Limpiar tabla
+        tableModel.clear();
+        btnGenerar.setEnabled(false);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
         
-        // Ejecutar consulta
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
-            
-            int paramIndex = 1;
-            pstmt.setString(paramIndex++, fechaInicio);
-            pstmt.setString(paramIndex++, fechaFin);
-            
-            if (departamento != null && !"Todos".equals(departamento)) {
-                pstmt.setString(paramIndex++, departamento);
+        ReportPageLoader loader = tableModel.createLoader(filter);
+        
+        // Ejecutar consulta fuera del EDT
+        new SwingWorker<TableResult, Void>() {
+            @Override
+            protected TableResult doInBackground() throws Exception {
+                return queryReport(filter, loader);
             }
             
-            if (tipoMarcacion != null && !"Todos".equals(tipoMarcacion)) {
-                pstmt.setString(paramIndex++, tipoMarcacion);
+            @Override
+            protected void done() {
+                btnGenerar.setEnabled(true);
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    TableResult result = get();
+                    if (result.data != null) {
+                        tableModel.showData(result.data);
+                    } else {
+                        tableModel.showPaged(loader, result.summary.totalRegistros, result.firstPage);
+                    }
+                    
+                    // Actualizar estadisticas
+                    lblTotalRegistros.setText(String.valueOf(result.totalRegistros));
+                    lblTotalEntradas.setText(String.valueOf(result.totalEntradas));
+                    lblTotalSalidas.setText(String.valueOf(result.totalSalidas));
+                    lblUsuariosUnicos.setText(String.valueOf(result.usuariosUnicos));
+                    
+                    logger.info("Reporte generado: {} registros", result.totalRegistros);
+                    
+                    if (result.totalRegistros == 0) {
+                        JOptionPane.showMessageDialog(ReportsPanel.this,
+                            "No se encontraron registros con los filtros especificados",
+                            "Sin resultados",
+                            JOptionPane.INFORMATION_MESSAGE);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    logger.error("Error al generar reporte", e.getCause());
+                    JOptionPane.showMessageDialog(ReportsPanel.this,
+                        "Error al generar reporte: " + e.getCause().getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                }
             }
-            
-            if (!usuario.isEmpty()) {
-                pstmt.setString(paramIndex++, "%" + usuario + "%");
-                pstmt.setString(paramIndex++, "%" + usuario + "%");
+        }.execute();
+    }
+    
+    /**
+     * Horas trabajadas por usuario a partir de las jornadas armadas con las marcaciones
+     */
+    private void generateWorkedHours(ReportFilter filter) {
+        runSummaryReport(REPORTE_HORAS,
+            () -> WorkSessionEngine.compute(filter.getFechaInicio(), filter.getFechaFin(), filter.getDepartamento()),
+            result -> {
+                List<Object[]> rows = new ArrayList<>();
+                long minutos = 0;
+                for (WorkSessionEngine.UserTotals totals : result.usuarios) {
+                    rows.add(new Object[]{
+                        totals.dni,
+                        totals.nombreCompleto,
+                        totals.diasTrabajados,
+                        totals.sesiones,
+                        totals.sesionesIncompletas,
+                        totals.marcasHuerfanas,
+                        formatMinutes(totals.minutosTrabajados),
+                        formatMinutes(totals.minutosBreak),
+                        formatMinutes(totals.minutosExtra)
+                    });
+                    minutos += totals.minutosTrabajados;
+                }
+                showSummaryDialog(REPORTE_HORAS + " " + filter.getFechaInicio() + " a " + filter.getFechaFin(),
+                    new String[]{"C.I.N.:", "Usuario", "Dias", "Jornadas", "Incompletas",
+                        "Sin entrada", "Horas", "Break", "Extra"},
+                    rows,
+                    result.usuarios.size() + " usuarios, " + result.sesiones.size() + " jornadas, "
+                        + formatMinutes(minutos) + " horas trabajadas");
+            });
+    }
+    
+    /**
+     * Dias laborables sin marcaciones por usuario, segun sus horarios y justificaciones
+     */
+    private void generateAbsences(ReportFilter filter) {
+        runSummaryReport(REPORTE_AUSENCIAS,
+            () -> AbsenceEngine.compute(filter.getFechaInicio(), filter.getFechaFin(), filter.getDepartamento()),
+            result -> {
+                List<Object[]> rows = new ArrayList<>();
+                for (AbsenceEngine.UserAbsences usuario : result.usuarios) {
+                    StringBuilder fechas = new StringBuilder();
+                    for (LocalDate fecha : usuario.injustificadas) {
+                        if (fechas.length() > 0) {
+                            fechas.append(", ");
+                        }
+                        fechas.append(fecha);
+                    }
+                    rows.add(new Object[]{
+                        usuario.dni,
+                        usuario.nombreCompleto,
+                        usuario.departamento,
+                        usuario.diasLaborables,
+                        usuario.diasAsistidos,
+                        usuario.ausencias.size(),
+                        usuario.injustificadas.size(),
+                        fechas.toString()
+                    });
+                }
+                showSummaryDialog(REPORTE_AUSENCIAS + " " + filter.getFechaInicio() + " a " + filter.getFechaFin(),
+                    new String[]{"C.I.N.:", "Usuario", "Departamento", "Laborables", "Asistidos",
+                        "Ausencias", "Injustificadas", "Fechas sin justificar"},
+                    rows,
+                    result.usuarios.size() + " usuarios con horario, " + result.getTotalAusencias()
+                        + " ausencias, " + result.getTotalInjustificadas() + " sin justificar (hasta ayer)");
+            });
+    }
+    
+    /**
+     * Resumen mensual por usuario de cada mes del rango, uno tras otro
+     */
+    private void generateMonthly(ReportFilter filter) {
+        YearMonth desde = YearMonth.from(filter.getFechaInicio());
+        YearMonth hasta = YearMonth.from(filter.getFechaFin());
+        runSummaryReport(REPORTE_MENSUAL,
+            () -> {
+                List<MonthlyReportEngine.Result> meses = new ArrayList<>();
+                for (YearMonth mes = desde; !mes.isAfter(hasta); mes = mes.plusMonths(1)) {
+                    meses.add(MonthlyReportEngine.compute(mes));
+                }
+                return meses;
+            },
+            meses -> {
+                List<Object[]> rows = new ArrayList<>();
+                long duracionMs = 0;
+                for (MonthlyReportEngine.Result result : meses) {
+                    duracionMs += result.duracionMs;
+                    for (MonthlyReportEngine.Row row : result.filas) {
+                        if (filter.getDepartamento() != null && !filter.getDepartamento().equals(row.departamento)) {
+                            continue;
+                        }
+                        rows.add(new Object[]{
+                            result.mes.toString(),
+                            row.dni,
+                            row.nombreCompleto,
+                            row.departamento,
+                            row.totalAsistencias,
+                            row.diasTrabajados,
+                            row.entradasTarde,
+                            row.salidasTemprano,
+                            row.sesionesIncompletas,
+                            formatMinutes(row.minutosTrabajados)
+                        });
+                    }
+                }
+                showSummaryDialog(REPORTE_MENSUAL + " " + (desde.equals(hasta) ? desde : desde + " a " + hasta),
+                    new String[]{"Mes", "C.I.N.:", "Usuario", "Departamento", "Marcaciones", "Dias",
+                        "Tardanzas", "Salidas Temprano", "Incompletas", "Horas"},
+                    rows,
+                    (meses.size() == 1 ? rows.size() + " usuarios" : rows.size() + " filas de " + meses.size() + " meses")
+                        + ", calculado en " + duracionMs + " ms");
+            });
+    }
+    
+    /**
+     * Calcula un reporte de resumen fuera del EDT y lo muestra al terminar
+     */
+    private <T> void runSummaryReport(String nombre, Callable<T> query, Consumer<T> show) {
+        btnGenerar.setEnabled(false);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return query.call();
             }
             
-            try (ResultSet rs = pstmt.executeQuery()) {
-                int rowNum = 1;
-                int totalEntradas = 0;
-                int totalSalidas = 0;
-                java.util.Set<String> usuariosUnicos = new java.util.HashSet<>();
-                
-                while (rs.next()) {
-                    Object[] row = {
-                        rowNum++,
-                        rs.getString("fecha"),
-                        rs.getString("hora"),
-                        rs.getString("usuario"),
-                        rs.getString("dni"),
-                        rs.getString("departamento"),
-                        rs.getString("tipo_marcacion"),
-                        rs.getInt("confidence_score"),
-                        rs.getString("metodo")
-                    };
-                    tableModel.addRow(row);
-                    
-                    // Contadores
-                    String tipo = rs.getString("tipo_marcacion");
-                    if ("ENTRADA".equals(tipo)) totalEntradas++;
-                    if ("SALIDA".equals(tipo)) totalSalidas++;
-                    usuariosUnicos.add(rs.getString("dni"));
+            @Override
+            protected void done() {
+                btnGenerar.setEnabled(true);
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    show.accept(get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    logger.error("Error al generar {}", nombre, e.getCause());
+                    JOptionPane.showMessageDialog(ReportsPanel.this,
+                        "Error al generar " + nombre + ": " + e.getCause().getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
                 }
-                
-                // Actualizar estadisticas
-                lblTotalRegistros.setText(String.valueOf(tableModel.getRowCount()));
-                lblTotalEntradas.setText(String.valueOf(totalEntradas));
-                lblTotalSalidas.setText(String.valueOf(totalSalidas));
-                lblUsuariosUnicos.setText(String.valueOf(usuariosUnicos.size()));
-                
-                // Habilitar botones de exportacion
-                btnExportPDF.setEnabled(tableModel.getRowCount() > 0);
-                btnExportExcel.setEnabled(tableModel.getRowCount() > 0);
-                
-                logger.info("Reporte generado: {} registros", tableModel.getRowCount());
-                
-                if (tableModel.getRowCount() == 0) {
-                    JOptionPane.showMessageDialog(this,
-                        "No se encontraron registros con los filtros especificados",
-                        "Sin resultados",
-                        JOptionPane.INFORMATION_MESSAGE);
+            }
+        }.execute();
+    }
+    
+    /**
+     * Muestra filas de resumen en una ventana aparte (no cambian la tabla de detalle)
+     */
+    private void showSummaryDialog(String title, String[] columns, List<Object[]> rows, String resumen) {
+        DefaultTableModel model = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        for (Object[] row : rows) {
+            model.addRow(row);
+        }
+        
+        JTable table = new JTable(model);
+        table.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        table.setRowHeight(25);
+        table.setAutoCreateRowSorter(true);
+        table.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 12));
+        
+        JLabel lblResumen = new JLabel(resumen);
+        lblResumen.setFont(new Font("Segoe UI", Font.BOLD, 13));
+        lblResumen.setBorder(BorderFactory.createEmptyBorder(8, 5, 0, 5));
+        
+        JPanel content = new JPanel(new BorderLayout());
+        content.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        content.add(new JScrollPane(table), BorderLayout.CENTER);
+        content.add(lblResumen, BorderLayout.SOUTH);
+        
+        JDialog dialog = new JDialog(SwingUtilities.getWindowAncestor(this), title, Dialog.ModalityType.MODELESS);
+        dialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        dialog.setContentPane(content);
+        dialog.setSize(900, 500);
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+        
+        logger.info("{}: {} filas", title, rows.size());
+    }
+    
+    private static String formatMinutes(long minutos) {
+        return String.format("%d:%02d", minutos / 60, minutos % 60);
+    }
+    
+    /**
+     * Consulta el reporte en pantalla (hilo de fondo). Los reportes chicos
+     * se cargan enteros via ReportCache; los grandes solo traen los totales
+     * y la primera pagina, el resto se lee al desplazarse.
+     */
+    private TableResult queryReport(ReportFilter filter, ReportPageLoader loader) throws SQLException {
+        ReportQueryEvent event = new ReportQueryEvent();
+        event.reportType = filter.getTipoReporte();
+        event.format = "TABLA";
+        event.begin();
+        
+        try {
+            TableResult result;
+            ReportData cached = ReportCache.peek(filter);
+            if (cached != null) {
+                result = new TableResult(cached);
+            } else {
+                ReportPageLoader.Summary summary = loader.loadSummary();
+                if (summary.totalRegistros <= IN_MEMORY_ROWS) {
+                    result = new TableResult(ReportCache.getOrLoad(filter));
+                } else {
+                    result = new TableResult(summary, loader.loadPage(null, 0));
                 }
             }
-            
-        } catch (Exception e) {
-            logger.error("Error al generar reporte", e);
-            JOptionPane.showMessageDialog(this,
-                "Error al generar reporte: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
+            event.rows = result.totalRegistros;
+            event.success = true;
+            return result;
+        } finally {
+            event.commit();
         }
     }
     
     private void exportToPDF() {
-        JOptionPane.showMessageDialog(this,
-            "Funcionalidad de exportacion a PDF en desarrollo.\n" +
-            "Datos: " + tableModel.getRowCount() + " registros listos para exportar.",
-            "Exportar PDF",
-            JOptionPane.INFORMATION_MESSAGE);
-        
-        // TODO: Implementar exportacion a PDF usando iText
-        logger.info("Exportacion a PDF solicitada");
+        exportReport(new PdfReportExporter());
     }
     
     private void exportToExcel() {
-        JOptionPane.showMessageDialog(this,
-            "Funcionalidad de exportacion a Excel en desarrollo.\n" +
-            "Datos: " + tableModel.getRowCount() + " registros listos para exportar.",
-            "Exportar Excel",
-            JOptionPane.INFORMATION_MESSAGE);
+        exportReport(new ExcelReportExporter());
+    }
+    
+    private void exportToCSV() {
+        boolean gzip = Boolean.parseBoolean(DatabaseConfig.getProperty("reports.csv.gzip", "false"));
+        exportReport(new CsvReportExporter(gzip));
+    }
+    
+    /**
+     * Encola la exportacion con los filtros actuales; se ejecuta en segundo
+     * plano y su avance se ve en la lista de trabajos
+     */
+    private void exportReport(ReportExporter exporter) {
+        ReportFilter filter = buildFilter();
+        if (filter == null) {
+            return;
+        }
+        
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Exportar " + exporter.getFormato());
+        chooser.setSelectedFile(new File("reporte_asistencias_" + filter.getFechaInicio() + "_"
+            + filter.getFechaFin() + "." + exporter.getExtension()));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        
+        File selected = chooser.getSelectedFile();
+        if (!selected.getName().toLowerCase().endsWith("." + exporter.getExtension())) {
+            selected = new File(selected.getParentFile(), selected.getName() + "." + exporter.getExtension());
+        }
         
-        // TODO: Implementar exportacion a Excel usando Apache POI
-        logger.info("Exportacion a Excel solicitada");
+        // El alta en reportes_cola tambien va fuera del EDT
+        File target = selected;
+        new SwingWorker<ReportJob, Void>() {
+            @Override
+            protected ReportJob doInBackground() throws Exception {
+                return ReportJobEngine.submit(filter, exporter, target.toPath());
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IllegalStateException) {
+                        JOptionPane.showMessageDialog(ReportsPanel.this,
+                            cause.getMessage(),
+                            "Exportar " + exporter.getFormato(),
+                            JOptionPane.WARNING_MESSAGE);
+                    } else {
+                        logger.error("Error al encolar la exportacion", cause);
+                        JOptionPane.showMessageDialog(ReportsPanel.this,
+                            "Error al encolar la exportacion: " + cause.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }
+        }.execute();
+    }
+    
+    /**
+     * Carga de marcaciones por dia y hora del departamento seleccionado
+     */
+    private void showHeatmap() {
+        HeatmapPanel heatmapPanel = new HeatmapPanel();
+        heatmapPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        heatmapPanel.selectDepartment((String) cmbDepartamento.getSelectedItem());
+        
+        JDialog dialog = new JDialog(SwingUtilities.getWindowAncestor(this), "Mapa de Calor de Marcaciones",
+            Dialog.ModalityType.MODELESS);
+        dialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        dialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                heatmapPanel.cleanup();
+            }
+        });
+        dialog.setContentPane(heatmapPanel);
+        dialog.setSize(1000, 320);
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+    
+    private void cancelSelectedJob() {
+        ReportJob job = jobsTableModel.getJob(tableJobs.getSelectedRow());
+        if (job != null && !job.isFinished()) {
+            ReportJobEngine.cancel(job);
+        }
+    }
+    
+    private void openSelectedJob() {
+        ReportJob job = jobsTableModel.getJob(tableJobs.getSelectedRow());
+        if (job == null || job.getEstado() != ReportJob.Estado.COMPLETADO) {
+            return;
+        }
+        try {
+            Desktop.getDesktop().open(job.getTarget().toFile());
+        } catch (Exception e) {
+            logger.error("No se pudo abrir {}", job.getTarget(), e);
+            JOptionPane.showMessageDialog(this,
+                "No se pudo abrir el archivo:\n" + job.getTarget(),
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+        }
     }
     
     private void clearReport() {
-        tableModel.setRowCount(0);
+        tableModel.clear();
         setDefaultDates();
         cmbReportType.setSelectedIndex(0);
         cmbDepartamento.setSelectedIndex(0);
@@ -546,9 +979,130 @@ public class ReportsPanel extends JPanel {
         lblTotalSalidas.setText("0");
         lblUsuariosUnicos.setText("0");
         
-        btnExportPDF.setEnabled(false);
-        btnExportExcel.setEnabled(false);
-        
         logger.info("Reporte limpiado");
     }
-}
\ No newline at end of file
+    
+    /**
+     * Las sugerencias son un popup: no deben quedar flotando sobre otra sección
+     */
+    @Override
+    public void deactivate() {
+        userSuggestions.cancel();
+    }
+    
+    @Override
+    public void cleanup() {
+        ReferenceDataCache.unsubscribe(changeSubscriber);
+        ReportJobEngine.removeListener(jobListener);
+        userSuggestions.cancel();
+        tableModel.dispose();
+    }
+    
+    /**
+     * Resultado de la consulta en pantalla: detalle completo o totales y primera pagina
+     */
+    private static class TableResult {
+        final ReportData data;
+        final ReportPageLoader.Summary summary;
+        final ReportData firstPage;
+        final long totalRegistros;
+        final long totalEntradas;
+        final long totalSalidas;
+        final long usuariosUnicos;
+        
+        TableResult(ReportData data) {
+            this.data = data;
+            this.summary = null;
+            this.firstPage = null;
+            this.totalRegistros = data.size();
+            this.totalEntradas = data.getTotalEntradas();
+            this.totalSalidas = data.getTotalSalidas();
+            this.usuariosUnicos = data.getUsuariosUnicos();
+        }
+        
+        TableResult(ReportPageLoader.Summary summary, ReportData firstPage) {
+            this.data = null;
+            this.summary = summary;
+            this.firstPage = firstPage;
+            this.totalRegistros = summary.totalRegistros;
+            this.totalEntradas = summary.totalEntradas;
+            this.totalSalidas = summary.totalSalidas;
+            this.usuariosUnicos = summary.usuariosUnicos;
+        }
+    }
+    
+    /**
+     * Modelo de la lista de trabajos de exportacion
+     */
+    private static class ReportJobsTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+        
+        private final String[] columns = {"#", "Reporte", "Formato", "Estado", "Progreso", "Archivo"};
+        private List<ReportJob> jobs = new ArrayList<>();
+        
+        void refresh() {
+            List<ReportJob> updated = ReportJobEngine.getJobs();
+            boolean sameJobs = updated.size() == jobs.size();
+            for (int i = 0; sameJobs && i < updated.size(); i++) {
+                sameJobs = updated.get(i) == jobs.get(i);
+            }
+            jobs = updated;
+            if (sameJobs && !jobs.isEmpty()) {
+                // Conserva la seleccion mientras solo cambia el progreso
+                fireTableRowsUpdated(0, jobs.size() - 1);
+            } else {
+                fireTableDataChanged();
+            }
+        }
+        
+        ReportJob getJob(int row) {
+            return row >= 0 && row < jobs.size() ? jobs.get(row) : null;
+        }
+        
+        @Override
+        public int getRowCount() {
+            return jobs.size();
+        }
+        
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+        
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+        
+        @Override
+        public Object getValueAt(int row, int column) {
+            ReportJob job = jobs.get(row);
+            switch (column) {
+                case 0:
+                    return job.getId();
+                case 1:
+                    return job.getFilter().getDescripcion();
+                case 2:
+                    return job.getExporter().getFormato();
+                case 3:
+                    return job.getMensaje() != null ? job.getEstado() + ": " + job.getMensaje() : job.getEstado();
+                case 4:
+                    return formatProgress(job);
+                default:
+                    return job.getTarget().toString();
+            }
+        }
+        
+        private String formatProgress(ReportJob job) {
+            if (job.getEstado() == ReportJob.Estado.COMPLETADO) {
+                return String.format("%,d filas, %.1f s", job.getResult().filas,
+                    job.getResult().duracionMs / 1000.0);
+            }
+            int progress = job.getProgress();
+            if (progress >= 0) {
+                return String.format("%d%% (%,d de %,d)", progress, job.getRows(), job.getTotalRows());
+            }
+            return job.getRows() > 0 ? String.format("%,d filas", job.getRows()) : "";
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.attendance.view;
 
 import com.attendance.config.DatabaseConfig;
 import com.attendance.model.Usuario;
+import com.attendance.service.ChangeEventBus;
+import com.attendance.service.ReferenceDataCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,6 +12,7 @@ import java.awt.*;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.function.Function;
 
 /**
  * Diálogo de formulario para crear/editar usuarios
@@ -43,6 +46,7 @@ public class UserFormDialog extends JDialog {
     private Usuario usuario;
     private boolean saved = false;
     private boolean isEditing = false;
+    private Runnable cacheSubscriber;
     
     public UserFormDialog(Frame parent, String title, Usuario usuario) {
         super(parent, title, true);
@@ -55,6 +59,9 @@ public class UserFormDialog extends JDialog {
         if (isEditing) {
             fillFormData();
         }
+        // Si el cache aún no cargó (o falló), las listas llegan con el aviso
+        cacheSubscriber = ReferenceDataCache.subscribeOnEdt(this::reloadComboData,
+            ChangeEventBus.ROLES, ChangeEventBus.DEPARTAMENTOS);
         
         pack();
         setLocationRelativeTo(parent);
@@ -235,41 +242,71 @@ public class UserFormDialog extends JDialog {
         panel.add(component, gbc);
     }
     
+    @Override
+    public void dispose() {
+        ReferenceDataCache.unsubscribe(cacheSubscriber);
+        cacheSubscriber = null;
+        super.dispose();
+    }
+    
     private void loadComboData() {
-        // Cargar roles
+        // Roles y departamentos salen del cache: abrir el diálogo no consulta la base
         cmbRol.addItem(new RolItem(null, "-- Seleccione Rol --"));
-        String sqlRoles = "SELECT id_rol, nombre FROM roles WHERE activo = TRUE ORDER BY nombre";
-        
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sqlRoles);
-             ResultSet rs = pstmt.executeQuery()) {
-            
-            while (rs.next()) {
-                cmbRol.addItem(new RolItem(rs.getInt("id_rol"), rs.getString("nombre")));
-            }
-            
-        } catch (Exception e) {
-            logger.error("Error al cargar roles", e);
+        for (ReferenceDataCache.Rol rol : ReferenceDataCache.getRoles()) {
+            cmbRol.addItem(new RolItem(rol.idRol, rol.nombre));
         }
         
         // Cargar departamentos
         cmbDepartamento.addItem(new DepartmentItem(null, "-- Seleccione Departamento --"));
-        String sqlDepts = "SELECT id_departamento, nombre FROM departamentos WHERE activo = TRUE ORDER BY nombre";
+        for (ReferenceDataCache.Departamento departamento : ReferenceDataCache.getDepartamentos()) {
+            cmbDepartamento.addItem(new DepartmentItem(departamento.idDepartamento, departamento.nombre));
+        }
+    }
+    
+    /**
+     * Vuelve a llenar los combos desde el cache conservando la selección
+     */
+    private void reloadComboData() {
+        Integer idRol = selectedOrOriginal(cmbRol, RolItem::getId, isEditing ? usuario.getIdRol() : null);
+        Integer idDepartamento = selectedOrOriginal(cmbDepartamento, DepartmentItem::getId,
+            isEditing ? usuario.getIdDepartamento() : null);
+        
+        cmbRol.removeAllItems();
+        cmbDepartamento.removeAllItems();
+        loadComboData();
         
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sqlDepts);
-             ResultSet rs = pstmt.executeQuery()) {
-            
-            while (rs.next()) {
-                cmbDepartamento.addItem(new DepartmentItem(
-                    rs.getInt("id_departamento"), 
-                    rs.getString("nombre")
-                ));
+        selectById(cmbRol, RolItem::getId, idRol);
+        selectById(cmbDepartamento, DepartmentItem::getId, idDepartamento);
+    }
+    
+    /**
+     * Id elegido en el combo. Si quedó el placeholder porque el valor original
+     * no está en la lista (cache sin cargar o registro inactivo), se conserva
+     * el original: nunca se guarda NULL sobre un valor que no se pudo mostrar.
+     */
+    private static <T> Integer selectedOrOriginal(JComboBox<T> combo, Function<T, Integer> idOf, Integer original) {
+        int index = combo.getSelectedIndex();
+        Integer id = index >= 0 ? idOf.apply(combo.getItemAt(index)) : null;
+        if (id != null || original == null) {
+            return id;
+        }
+        return indexOf(combo, idOf, original) >= 0 ? null : original;
+    }
+    
+    private static <T> void selectById(JComboBox<T> combo, Function<T, Integer> idOf, Integer id) {
+        int index = id != null ? indexOf(combo, idOf, id) : -1;
+        if (index >= 0) {
+            combo.setSelectedIndex(index);
+        }
+    }
+    
+    private static <T> int indexOf(JComboBox<T> combo, Function<T, Integer> idOf, Integer id) {
+        for (int i = 0; i < combo.getItemCount(); i++) {
+            if (id.equals(idOf.apply(combo.getItemAt(i)))) {
+                return i;
             }
-            
-        } catch (Exception e) {
-            logger.error("Error al cargar departamentos", e);
         }
+        return -1;
     }
     
     private void fillFormData() {
@@ -291,27 +328,9 @@ public class UserFormDialog extends JDialog {
             cmbGenero.setSelectedItem(usuario.getGenero());
         }
         
-        // Seleccionar rol
-        if (usuario.getIdRol() != null) {
-            for (int i = 0; i < cmbRol.getItemCount(); i++) {
-                RolItem item = cmbRol.getItemAt(i);
-                if (item.getId() != null && item.getId().equals(usuario.getIdRol())) {
-                    cmbRol.setSelectedIndex(i);
-                    break;
-                }
-            }
-        }
-        
-        // Seleccionar departamento
-        if (usuario.getIdDepartamento() != null) {
-            for (int i = 0; i < cmbDepartamento.getItemCount(); i++) {
-                DepartmentItem item = cmbDepartamento.getItemAt(i);
-                if (item.getId() != null && item.getId().equals(usuario.getIdDepartamento())) {
-                    cmbDepartamento.setSelectedIndex(i);
-                    break;
-                }
-            }
-        }
+        // Seleccionar rol y departamento
+        selectById(cmbRol, RolItem::getId, usuario.getIdRol());
+        selectById(cmbDepartamento, DepartmentItem::getId, usuario.getIdDepartamento());
         
         if (usuario.getFingerprintId() != null) {
             txtFingerprintId.setText(String.valueOf(usuario.getFingerprintId()));
@@ -395,11 +414,9 @@ public class UserFormDialog extends JDialog {
         String genero = (String) cmbGenero.getSelectedItem();
         if ("".equals(genero)) genero = null;
         
-        RolItem rolItem = (RolItem) cmbRol.getSelectedItem();
-        Integer idRol = rolItem != null ? rolItem.getId() : null;
-        
-        DepartmentItem deptItem = (DepartmentItem) cmbDepartamento.getSelectedItem();
-        Integer idDepartamento = deptItem != null ? deptItem.getId() : null;
+        Integer idRol = selectedOrOriginal(cmbRol, RolItem::getId, isEditing ? usuario.getIdRol() : null);
+        Integer idDepartamento = selectedOrOriginal(cmbDepartamento, DepartmentItem::getId,
+            isEditing ? usuario.getIdDepartamento() : null);
         
         boolean activo = chkActivo.isSelected();
         String observaciones = txtObservaciones.getText().trim();
@@ -0,0 +1,146 @@
+package com.attendance.view;
+
+import com.attendance.service.UserSearchService;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Sugerencias de usuarios bajo un campo de texto
+ * Consulta UserSearchService mientras se escribe (con espera de 150 ms) y
+ * muestra los mejores resultados; al elegir uno se invoca el callback.
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class UserSuggestionPopup {
+
+    private static final int DEBOUNCE_MS = 150;
+
+    private final JTextField field;
+    private final int limite;
+    private final Consumer<UserSearchService.Match> onSelect;
+    private final JPopupMenu popup = new JPopupMenu();
+    private final Timer debounce;
+    private int generation;
+    private boolean selecting;
+
+    public UserSuggestionPopup(JTextField field, int limite, Consumer<UserSearchService.Match> onSelect) {
+        this.field = field;
+        this.limite = limite;
+        this.onSelect = onSelect;
+        popup.setFocusable(false);
+
+        debounce = new Timer(DEBOUNCE_MS, e -> search());
+        debounce.setRepeats(false);
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                changed();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                changed();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                changed();
+            }
+        });
+        field.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+                    popup.setVisible(false);
+                } else if (e.getKeyCode() == KeyEvent.VK_DOWN && popup.isVisible()
+                        && popup.getComponentCount() > 0) {
+                    MenuSelectionManager.defaultManager().setSelectedPath(
+                        new MenuElement[]{popup, (MenuElement) popup.getComponent(0)});
+                }
+            }
+        });
+    }
+
+    private void changed() {
+        if (selecting) {
+            return;
+        }
+        generation++;
+        debounce.restart();
+    }
+
+    private void search() {
+        String texto = field.getText().trim();
+        if (texto.isEmpty() || !field.isShowing()) {
+            popup.setVisible(false);
+            return;
+        }
+        int current = generation;
+        new SwingWorker<List<UserSearchService.Match>, Void>() {
+            @Override
+            protected List<UserSearchService.Match> doInBackground() {
+                return UserSearchService.search(texto, limite);
+            }
+
+            @Override
+            protected void done() {
+                // Una respuesta vieja no reemplaza a la del último texto
+                if (current != generation) {
+                    return;
+                }
+                try {
+                    show(get());
+                } catch (InterruptedException | ExecutionException e) {
+                    popup.setVisible(false);
+                }
+            }
+        }.execute();
+    }
+
+    private void show(List<UserSearchService.Match> matches) {
+        popup.setVisible(false);
+        popup.removeAll();
+        if (matches.isEmpty() || !field.isShowing()) {
+            return;
+        }
+        for (UserSearchService.Match match : matches) {
+            JMenuItem item = new JMenuItem(match.dni + " - " + match.getNombreCompleto());
+            item.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+            item.addActionListener(e -> select(match));
+            popup.add(item);
+        }
+        popup.pack();
+        popup.show(field, 0, field.getHeight());
+        field.requestFocusInWindow();
+    }
+
+    private void select(UserSearchService.Match match) {
+        popup.setVisible(false);
+        debounce.stop();
+        selecting = true;
+        try {
+            onSelect.accept(match);
+        } finally {
+            selecting = false;
+        }
+    }
+
+    /**
+     * Detiene la espera pendiente y oculta las sugerencias
+     */
+    public void cancel() {
+        debounce.stop();
+        generation++;
+        popup.setVisible(false);
+    }
+}
@@ -1,30 +1,46 @@
 package com.attendance.view;
 
 import com.attendance.config.DatabaseConfig;
+import com.attendance.importer.UserImportService;
 import com.attendance.model.Usuario;
+import com.attendance.service.ChangeEventBus;
+import com.attendance.service.ReferenceDataCache;
+import com.attendance.service.UserPageLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.*;
+import java.io.File;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Panel de Gestión de Usuarios
- * CRUD completo para administrar empleados del sistema
+ * CRUD completo para administrar empleados del sistema.
+ * La lista se pide por páginas en segundo plano a medida que se desplaza la
+ * tabla, y la búsqueda se resuelve en el servidor (UserPageLoader).
  * 
  * @author Sistema Biométrico
  * @version 1.0
  */
-public class UsersPanel extends JPanel {
+public class UsersPanel extends JPanel implements ManagedPanel {
     
     private static final Logger logger = LoggerFactory.getLogger(UsersPanel.class);
     
+    private static final int PAGE_SIZE = 200;
+    private static final int SEARCH_DELAY_MS = 300;
+    /** Filas restantes bajo la zona visible a partir de las cuales se pide la siguiente página */
+    private static final int PREFETCH_ROWS = 40;
+    
     // Componentes de búsqueda
     private JTextField txtSearch;
     private JButton btnSearch;
@@ -35,7 +51,16 @@ public class UsersPanel extends JPanel {
     // Tabla de usuarios
     private JTable tableUsers;
     private DefaultTableModel tableModel;
-    private TableRowSorter<DefaultTableModel> sorter;
+    private JScrollPane scrollPane;
+    private JLabel lblResultCount;
+    
+    // Paginación: todo el estado se usa desde el EDT
+    private UserPageLoader pageLoader;
+    private UserPageLoader.Key lastKey;
+    private boolean hasMore = false;
+    private boolean loadingPage = false;
+    private int generation = 0;
+    private Timer searchTimer;
     
     // Botones de acción
     private JButton btnAdd;
@@ -43,17 +68,29 @@ public class UsersPanel extends JPanel {
     private JButton btnDelete;
     private JButton btnRefresh;
     private JButton btnViewDetails;
+    private JButton btnImport;
     
     // Panel de estadísticas
     private JLabel lblTotalUsers;
     private JLabel lblActiveUsers;
     private JLabel lblUsersWithFingerprint;
     
+    private ChangeEventBus.Subscriber usersSubscriber;
+    private Runnable departmentsSubscriber;
+    private DeferredRefresh usersRefresh;
+    
     public UsersPanel() {
         initComponents();
         loadDepartments();
         loadUsers();
         loadStatistics();
+        
+        usersRefresh = new DeferredRefresh(this, () -> {
+            loadUsers();
+            loadStatistics();
+        });
+        usersSubscriber = ChangeEventBus.subscribeOnEdt(usersRefresh::request, ChangeEventBus.USUARIOS);
+        departmentsSubscriber = ReferenceDataCache.subscribeOnEdt(this::reloadDepartments, ChangeEventBus.DEPARTAMENTOS);
     }
     
     private void initComponents() {
@@ -187,6 +224,26 @@ public class UsersPanel extends JPanel {
         txtSearch.setPreferredSize(new Dimension(250, 32));
         txtSearch.addActionListener(e -> searchUsers());
         
+        // Búsqueda mientras se escribe, una consulta por pausa al teclear
+        searchTimer = new Timer(SEARCH_DELAY_MS, e -> loadUsers());
+        searchTimer.setRepeats(false);
+        txtSearch.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+        });
+        
         btnSearch = new JButton("Buscar");
         btnSearch.setFont(new Font("Segoe UI", Font.BOLD, 12));
         btnSearch.setBackground(new Color(52, 152, 219));
@@ -280,10 +337,6 @@ public class UsersPanel extends JPanel {
         tableUsers.getTableHeader().setForeground(Color.WHITE);
         tableUsers.getTableHeader().setReorderingAllowed(false);
         
-        // Sorter para ordenar columnas
-        sorter = new TableRowSorter<>(tableModel);
-        tableUsers.setRowSorter(sorter);
-        
         // Centrar contenido de celdas
         DefaultTableCellRenderer centerRenderer = new DefaultTableCellRenderer();
         centerRenderer.setHorizontalAlignment(SwingConstants.CENTER);
@@ -333,10 +386,20 @@ public class UsersPanel extends JPanel {
             }
         });
         
-        JScrollPane scrollPane = new JScrollPane(tableUsers);
+        scrollPane = new JScrollPane(tableUsers);
         scrollPane.setBorder(BorderFactory.createLineBorder(new Color(200, 200, 200)));
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(e -> loadMoreIfNeeded());
+        
+        lblResultCount = new JLabel(" ");
+        lblResultCount.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        lblResultCount.setForeground(new Color(127, 140, 141));
         
-        panel.add(lblTableTitle, BorderLayout.NORTH);
+        JPanel titlePanel = new JPanel(new BorderLayout());
+        titlePanel.setOpaque(false);
+        titlePanel.add(lblTableTitle, BorderLayout.WEST);
+        titlePanel.add(lblResultCount, BorderLayout.EAST);
+        
+        panel.add(titlePanel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
         
         return panel;
@@ -370,6 +433,11 @@ public class UsersPanel extends JPanel {
         leftPanel.add(btnDelete);
         leftPanel.add(btnViewDetails);
         
+        btnImport = createButton("Importar", new Color(155, 89, 182));
+        btnImport.setToolTipText("Alta masiva desde un archivo CSV o Excel (.xlsx)");
+        btnImport.addActionListener(e -> importUsers());
+        leftPanel.add(btnImport);
+        
         // Panel derecho - Botón refrescar
         JPanel rightPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
         rightPanel.setOpaque(false);
@@ -412,100 +480,151 @@ public class UsersPanel extends JPanel {
         cmbFilterDepartment.removeAllItems();
         cmbFilterDepartment.addItem("Todos");
         
-        String sql = "SELECT nombre FROM departamentos WHERE activo = TRUE ORDER BY nombre";
-        
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-            
-            while (rs.next()) {
-                cmbFilterDepartment.addItem(rs.getString("nombre"));
-            }
-            
-        } catch (Exception e) {
-            logger.error("Error al cargar departamentos", e);
+        for (ReferenceDataCache.Departamento departamento : ReferenceDataCache.getDepartamentos()) {
+            cmbFilterDepartment.addItem(departamento.nombre);
         }
     }
     
+    /**
+     * Recarga el combo de departamentos conservando la selección actual
+     */
+    private void reloadDepartments() {
+        Object selected = cmbFilterDepartment.getSelectedItem();
+        loadDepartments();
+        if (selected != null) {
+            cmbFilterDepartment.setSelectedItem(selected);
+        }
+        loadUsers();
+    }
+    
+    /**
+     * Reinicia la lista con los filtros y el texto de búsqueda actuales
+     */
     private void loadUsers() {
-        tableModel.setRowCount(0);
-        
-        StringBuilder sql = new StringBuilder();
-        sql.append("SELECT u.id_usuario, u.dni, u.apellidos, u.nombres, u.email, ");
-        sql.append("       d.nombre AS departamento, u.telefono, u.fingerprint_id, u.activo ");
-        sql.append("FROM usuarios u ");
-        sql.append("LEFT JOIN departamentos d ON u.id_departamento = d.id_departamento ");
-        sql.append("WHERE 1=1 ");
-        
-        // Filtro de estado
-        String filterActive = (String) cmbFilterActive.getSelectedItem();
-        if ("Activos".equals(filterActive)) {
-            sql.append("AND u.activo = TRUE ");
-        } else if ("Inactivos".equals(filterActive)) {
-            sql.append("AND u.activo = FALSE ");
+        if (searchTimer != null) {
+            searchTimer.stop();
         }
         
-        // Filtro de departamento
+        String filterActive = (String) cmbFilterActive.getSelectedItem();
+        Boolean activo = "Activos".equals(filterActive) ? Boolean.TRUE
+            : "Inactivos".equals(filterActive) ? Boolean.FALSE : null;
         String filterDept = (String) cmbFilterDepartment.getSelectedItem();
-        if (filterDept != null && !"Todos".equals(filterDept)) {
-            sql.append("AND d.nombre = ? ");
-        }
+        String departamento = filterDept != null && !"Todos".equals(filterDept) ? filterDept : null;
         
-        sql.append("ORDER BY u.apellidos, u.nombres");
+        pageLoader = new UserPageLoader(txtSearch.getText(), activo, departamento, PAGE_SIZE);
+        generation++;
+        lastKey = null;
+        hasMore = true;
+        loadingPage = false;
+        tableModel.setRowCount(0);
+        lblResultCount.setText("Cargando...");
         
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
-            
-            int paramIndex = 1;
-            if (filterDept != null && !"Todos".equals(filterDept)) {
-                pstmt.setString(paramIndex++, filterDept);
+        loadNextPage();
+        loadCount();
+    }
+    
+    /**
+     * Pide la página siguiente en segundo plano; las respuestas de una búsqueda anterior se descartan
+     */
+    private void loadNextPage() {
+        if (loadingPage || !hasMore) {
+            return;
+        }
+        loadingPage = true;
+        int requestGeneration = generation;
+        UserPageLoader loader = pageLoader;
+        UserPageLoader.Key after = lastKey;
+        
+        new SwingWorker<List<UserPageLoader.UserRow>, Void>() {
+            @Override
+            protected List<UserPageLoader.UserRow> doInBackground() throws Exception {
+                return loader.loadPage(after);
             }
             
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Object[] row = {
-                        rs.getInt("id_usuario"),
-                        rs.getString("dni"),
-                        rs.getString("apellidos"),
-                        rs.getString("nombres"),
-                        rs.getString("email"),
-                        rs.getString("departamento"),
-                        rs.getString("telefono"),
-                        rs.getObject("fingerprint_id") != null ? rs.getInt("fingerprint_id") : "-",
-                        rs.getBoolean("activo") ? "Activo" : "Inactivo"
-                    };
-                    tableModel.addRow(row);
+            @Override
+            protected void done() {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                loadingPage = false;
+                try {
+                    List<UserPageLoader.UserRow> page = get();
+                    for (UserPageLoader.UserRow user : page) {
+                        tableModel.addRow(new Object[] {
+                            user.idUsuario,
+                            user.dni,
+                            user.apellidos,
+                            user.nombres,
+                            user.email,
+                            user.departamento,
+                            user.telefono,
+                            user.fingerprintId != null ? user.fingerprintId : "-",
+                            user.activo ? "Activo" : "Inactivo"
+                        });
+                    }
+                    lastKey = page.isEmpty() ? lastKey : UserPageLoader.lastKey(page);
+                    hasMore = page.size() == PAGE_SIZE;
+                    // Si la página no llena la vista no habrá desplazamiento que pida la siguiente
+                    SwingUtilities.invokeLater(UsersPanel.this::loadMoreIfNeeded);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    hasMore = false;
+                    logger.error("Error al cargar usuarios", e.getCause());
+                    JOptionPane.showMessageDialog(UsersPanel.this,
+                        "Error al cargar usuarios: " + e.getCause().getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
                 }
             }
-            
-            logger.info("Cargados {} usuarios", tableModel.getRowCount());
-            
-        } catch (Exception e) {
-            logger.error("Error al cargar usuarios", e);
-            JOptionPane.showMessageDialog(this,
-                "Error al cargar usuarios: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
-        }
+        }.execute();
     }
     
-    private void searchUsers() {
-        String searchText = txtSearch.getText().trim();
-        
-        if (searchText.isEmpty()) {
-            sorter.setRowFilter(null);
+    private void loadMoreIfNeeded() {
+        if (!hasMore || loadingPage) {
             return;
         }
+        BoundedRangeModel model = scrollPane.getVerticalScrollBar().getModel();
+        int remaining = model.getMaximum() - (model.getValue() + model.getExtent());
+        if (remaining <= tableUsers.getRowHeight() * PREFETCH_ROWS) {
+            loadNextPage();
+        }
+    }
+    
+    private void loadCount() {
+        int requestGeneration = generation;
+        UserPageLoader loader = pageLoader;
         
-        RowFilter<DefaultTableModel, Object> filter = RowFilter.regexFilter("(?i)" + searchText);
-        sorter.setRowFilter(filter);
-        
-        logger.info("Busqueda aplicada: {}", searchText);
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                return loader.count();
+            }
+            
+            @Override
+            protected void done() {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                try {
+                    lblResultCount.setText(String.format("%,d usuarios", get()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    logger.error("Error al contar usuarios", e.getCause());
+                    lblResultCount.setText(" ");
+                }
+            }
+        }.execute();
+    }
+    
+    private void searchUsers() {
+        loadUsers();
+        logger.debug("Busqueda aplicada: {}", txtSearch.getText().trim());
     }
     
     private void clearSearch() {
         txtSearch.setText("");
-        sorter.setRowFilter(null);
         cmbFilterActive.setSelectedIndex(0);
         cmbFilterDepartment.setSelectedIndex(0);
         loadUsers();
@@ -571,6 +690,70 @@ public class UsersPanel extends JPanel {
         }
     }
     
+    /**
+     * Importa usuarios desde CSV/XLSX en segundo plano y muestra las filas rechazadas
+     */
+    private void importUsers() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Importar usuarios");
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV o Excel (*.csv, *.xlsx)", "csv", "xlsx"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        
+        btnImport.setEnabled(false);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        
+        new SwingWorker<UserImportService.Result, Void>() {
+            @Override
+            protected UserImportService.Result doInBackground() throws Exception {
+                return UserImportService.importFile(file.toPath(), System.getProperty("user.name"));
+            }
+            
+            @Override
+            protected void done() {
+                btnImport.setEnabled(true);
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    showImportResult(get());
+                    loadUsers();
+                    loadStatistics();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    logger.error("Error al importar usuarios", e.getCause());
+                    JOptionPane.showMessageDialog(UsersPanel.this,
+                        "Error al importar usuarios: " + e.getCause().getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+    
+    private void showImportResult(UserImportService.Result result) {
+        String resumen = String.format("Filas leídas: %,d%nNuevos: %,d%nActualizados: %,d%nCon errores: %,d%nTiempo: %,d ms",
+            result.filasLeidas, result.insertados, result.actualizados, result.errores.size(), result.millis);
+        if (result.errores.isEmpty()) {
+            JOptionPane.showMessageDialog(this, resumen, "Importación completada", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        
+        StringBuilder detalle = new StringBuilder();
+        for (UserImportService.RowError error : result.errores) {
+            detalle.append(error).append('\n');
+        }
+        JTextArea txtErrores = new JTextArea(detalle.toString(), 12, 60);
+        txtErrores.setEditable(false);
+        txtErrores.setCaretPosition(0);
+        
+        JPanel panel = new JPanel(new BorderLayout(0, 10));
+        panel.add(new JLabel("<html>" + resumen.replace(System.lineSeparator(), "<br>") + "</html>"), BorderLayout.NORTH);
+        panel.add(new JScrollPane(txtErrores), BorderLayout.CENTER);
+        JOptionPane.showMessageDialog(this, panel, "Importación con errores", JOptionPane.WARNING_MESSAGE);
+    }
+    
     private void editUser() {
         int selectedRow = tableUsers.getSelectedRow();
         if (selectedRow == -1) {
@@ -737,4 +920,16 @@ public class UsersPanel extends JPanel {
         
         return null;
     }
-}
\ No newline at end of file
+    
+    @Override
+    public void activate() {
+        usersRefresh.flush();
+    }
+    
+    @Override
+    public void cleanup() {
+        searchTimer.stop();
+        ChangeEventBus.unsubscribe(usersSubscriber);
+        ReferenceDataCache.unsubscribe(departmentsSubscriber);
+    }
+}
@@ -0,0 +1,84 @@
+package com.attendance.config;
+
+import com.attendance.service.ReferenceDataCache;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfigServiceTest {
+
+    private static ReferenceDataCache.ConfigEntry entry(String clave, String valor, String tipoDato) {
+        return new ReferenceDataCache.ConfigEntry(1, clave, valor, null, tipoDato, "GENERAL", true, null, null);
+    }
+
+    @Test
+    void parseTypedFollowsTipoDato() {
+        assertEquals(85, ConfigService.parseTyped(entry("UMBRAL_CONFIDENCE", " 85 ", "INTEGER")));
+        assertEquals(Boolean.TRUE, ConfigService.parseTyped(entry("HABILITAR_BUZZER", "Sí", "BOOLEAN")));
+        assertEquals(new BigDecimal("0.75"), ConfigService.parseTyped(entry("TOLERANCIA", "0.75", "DECIMAL")));
+        assertEquals(" texto ", ConfigService.parseTyped(entry("EMPRESA", " texto ", "STRING")));
+        assertEquals("{\"a\":1}", ConfigService.parseTyped(entry("EXTRA", "{\"a\":1}", null)));
+    }
+
+    @Test
+    void parseTypedIgnoresInvalidOrMissingValues() {
+        assertNull(ConfigService.parseTyped(entry("UMBRAL_CONFIDENCE", "alto", "INTEGER")));
+        assertNull(ConfigService.parseTyped(entry("TOLERANCIA", "x", "DECIMAL")));
+        assertNull(ConfigService.parseTyped(entry("EMPRESA", null, "STRING")));
+    }
+
+    @Test
+    void parseBooleanAcceptsSpanishAndNumericForms() {
+        assertTrue(ConfigService.parseBoolean("si"));
+        assertTrue(ConfigService.parseBoolean(" TRUE "));
+        assertTrue(ConfigService.parseBoolean("1"));
+        assertFalse(ConfigService.parseBoolean("no"));
+        assertFalse(ConfigService.parseBoolean("0"));
+    }
+
+    @Test
+    void tableOverridesFileThroughAliases() {
+        Properties file = new Properties();
+        file.setProperty("system.enableAutoBackup", "true");
+        file.setProperty("sensor.confidenceThreshold", "70");
+        file.setProperty("backup.dir", "backups");
+
+        Map<String, Object> merged = ConfigService.merge(file, Arrays.asList(
+            entry("BACKUP_AUTOMATICO", "false", "BOOLEAN"),
+            entry("UMBRAL_CONFIDENCE", "90", "INTEGER")));
+
+        assertEquals(Boolean.FALSE, merged.get("system.enableAutoBackup"));
+        assertEquals(Boolean.FALSE, merged.get("BACKUP_AUTOMATICO"));
+        assertEquals(90, merged.get("sensor.confidenceThreshold"));
+        assertEquals("backups", merged.get("backup.dir"));
+    }
+
+    @Test
+    void invalidTableValueKeepsFileValue() {
+        Properties file = new Properties();
+        file.setProperty("sensor.confidenceThreshold", "70");
+
+        Map<String, Object> merged = ConfigService.merge(file,
+            Collections.singletonList(entry("UMBRAL_CONFIDENCE", "alto", "INTEGER")));
+
+        assertEquals("70", merged.get("sensor.confidenceThreshold"));
+        assertFalse(merged.containsKey("UMBRAL_CONFIDENCE"));
+    }
+
+    @Test
+    void mergedMapIsImmutable() {
+        Map<String, Object> merged = ConfigService.merge(new Properties(), Collections.emptyList());
+
+        assertThrows(UnsupportedOperationException.class, () -> merged.put("x", "y"));
+    }
+}
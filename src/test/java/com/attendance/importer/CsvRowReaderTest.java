@@ -0,0 +1,107 @@
+package com.attendance.importer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvRowReaderTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<Integer> numeros = new ArrayList<>();
+    private final List<List<String>> filas = new ArrayList<>();
+
+    private void read(String contenido) throws IOException {
+        Path file = directory.resolve("datos.csv");
+        Files.write(file, contenido.getBytes(StandardCharsets.UTF_8));
+        new CsvRowReader().read(file, (numero, valores) -> {
+            numeros.add(numero);
+            filas.add(new ArrayList<>(valores));
+        });
+    }
+
+    @Test
+    void commaSeparatedWithQuotedSeparator() throws IOException {
+        read("dni,nombres\n123,\"Pérez, Ana\"\n");
+
+        assertEquals(Arrays.asList(Arrays.asList("dni", "nombres"), Arrays.asList("123", "Pérez, Ana")), filas);
+    }
+
+    @Test
+    void doubledQuotesAreUnescaped() throws IOException {
+        read("dni,observaciones\n123,\"dijo \"\"hola\"\"\"\n");
+
+        assertEquals(Arrays.asList("123", "dijo \"hola\""), filas.get(1));
+    }
+
+    @Test
+    void quotedLineBreakStaysInField() throws IOException {
+        read("dni,direccion\n123,\"Calle 1\nPiso 2\"\n456,Centro\n");
+
+        assertEquals(Arrays.asList("123", "Calle 1\nPiso 2"), filas.get(1));
+        assertEquals(Arrays.asList("456", "Centro"), filas.get(2));
+    }
+
+    @Test
+    void crlfEndsRowsWithoutTrailingCarriageReturn() throws IOException {
+        read("dni,nombres\r\n123,Ana\r\n456,Luis\r\n");
+
+        assertEquals(Arrays.asList(1, 2, 3), numeros);
+        assertEquals(Arrays.asList("123", "Ana"), filas.get(1));
+        assertEquals(Arrays.asList("456", "Luis"), filas.get(2));
+    }
+
+    @Test
+    void bomIsStripped() throws IOException {
+        read("\uFEFFdni,nombres\n123,Ana\n");
+
+        assertEquals("dni", filas.get(0).get(0));
+    }
+
+    @Test
+    void semicolonDetectedFromHeader() throws IOException {
+        read("dni;nombres;observaciones\n123;Ana;llega 8,30\n");
+
+        assertEquals(Arrays.asList("dni", "nombres", "observaciones"), filas.get(0));
+        assertEquals(Arrays.asList("123", "Ana", "llega 8,30"), filas.get(1));
+    }
+
+    @Test
+    void separatorInsideQuotedHeaderIsNotCounted() throws IOException {
+        read("\"a;b;c\",dni\nx,123\n");
+
+        assertEquals(Arrays.asList("a;b;c", "dni"), filas.get(0));
+        assertEquals(Arrays.asList("x", "123"), filas.get(1));
+    }
+
+    @Test
+    void blankLinesSkippedButNumbered() throws IOException {
+        read("dni,nombres\n\n123,Ana");
+
+        assertEquals(Arrays.asList(1, 3), numeros);
+        assertEquals(Arrays.asList("123", "Ana"), filas.get(1));
+    }
+
+    @Test
+    void emptyCellsArriveAsEmptyStrings() throws IOException {
+        read("dni,email,nombres\n123,,Ana\n");
+
+        assertEquals(Arrays.asList("123", "", "Ana"), filas.get(1));
+    }
+
+    @Test
+    void unclosedQuoteFails() {
+        assertThrows(IOException.class, () -> read("dni,nombres\n123,\"Ana\n"));
+    }
+}
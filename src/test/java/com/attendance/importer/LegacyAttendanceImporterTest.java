@@ -0,0 +1,118 @@
+package com.attendance.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LegacyAttendanceImporterTest {
+
+    private final Map<String, Integer> dnis = new HashMap<>();
+    private final List<LegacyAttendanceImporter.Batch> lotes = new ArrayList<>();
+    private final StringWriter rechazos = new StringWriter();
+
+    LegacyAttendanceImporterTest() {
+        dnis.put("12345678", 1);
+        dnis.put("87654321", 2);
+    }
+
+    private LegacyAttendanceImporter.Parser parser(int batchRows) {
+        return new LegacyAttendanceImporter.Parser(dnis, batchRows, rechazos, batch -> {
+            lotes.add(batch);
+            return true;
+        });
+    }
+
+    @Test
+    void batchCutWaitsForDayChange() throws IOException {
+        LegacyAttendanceImporter.Parser parser = parser(2);
+        int numero = 1;
+        parser.accept(numero++, Arrays.asList("12345678", "2024-03-01 08:00"));
+        parser.accept(numero++, Arrays.asList("87654321", "2024-03-01 08:05"));
+        parser.accept(numero++, Arrays.asList("12345678", "2024-03-01 17:00"));
+        parser.accept(numero++, Arrays.asList("12345678", "2024-03-02 08:00"));
+        parser.flush();
+
+        assertEquals(2, lotes.size());
+        assertEquals(3, lotes.get(0).aceptadas);
+        assertEquals(1, lotes.get(1).aceptadas);
+        assertEquals(1, lotes.get(1).numero);
+    }
+
+    @Test
+    void headerSelectsColumnsAndTipo() throws IOException {
+        LegacyAttendanceImporter.Parser parser = parser(100);
+        parser.accept(1, Arrays.asList("Tipo", "Fecha", "Hora", "DNI"));
+        parser.accept(2, Arrays.asList("S", "01/03/2024", "17:30", "12.345.678"));
+        parser.flush();
+
+        assertEquals(1, lotes.size());
+        assertEquals("1,2024-03-01T17:30,SALIDA\n", lotes.get(0).csv.toString());
+    }
+
+    @Test
+    void rowsWithoutTipoLeaveItForTheDatabase() throws IOException {
+        LegacyAttendanceImporter.Parser parser = parser(100);
+        parser.accept(1, Arrays.asList("12345678", "2024-03-01T08:00:15"));
+        parser.flush();
+
+        assertEquals("1,2024-03-01T08:00:15,\n", lotes.get(0).csv.toString());
+    }
+
+    @Test
+    void unknownDniIsRejectedButCountsTowardsTheCut() throws IOException {
+        LegacyAttendanceImporter.Parser parser = parser(100);
+        parser.accept(1, Arrays.asList("12345678", "2024-03-01 08:00"));
+        parser.accept(2, Arrays.asList("99999999", "2024-03-01 08:00"));
+        parser.flush();
+
+        assertEquals(2, lotes.get(0).filas);
+        assertEquals(1, lotes.get(0).aceptadas);
+        assertTrue(rechazos.toString().startsWith("2;DNI sin usuario: 99999999;"));
+    }
+
+    @Test
+    void skippedBatchesAreNotResent() throws IOException {
+        LegacyAttendanceImporter.Parser parser = new LegacyAttendanceImporter.Parser(dnis, 1, rechazos, batch -> {
+            lotes.add(batch);
+            return batch.numero != 0;
+        });
+        parser.accept(1, Arrays.asList("12345678", "2024-03-01 08:00"));
+        parser.accept(2, Arrays.asList("12345678", "2024-03-02 08:00"));
+        parser.flush();
+
+        assertEquals(2, lotes.size());
+        assertEquals(0, lotes.get(0).numero);
+        assertEquals(1, lotes.get(1).numero);
+    }
+
+    @Test
+    void parsesBothDateFormats() {
+        assertEquals(LocalDateTime.of(2024, 3, 1, 8, 5),
+            LegacyAttendanceImporter.parseFechaHora("2024-03-01 08:05"));
+        assertEquals(LocalDateTime.of(2024, 3, 1, 8, 5, 30),
+            LegacyAttendanceImporter.parseFechaHora(" 1/3/2024 8:05:30 "));
+    }
+
+    @Test
+    void parsesTipoAliases() {
+        assertEquals("ENTRADA", LegacyAttendanceImporter.parseTipo("in"));
+        assertEquals("SALIDA", LegacyAttendanceImporter.parseTipo("1"));
+        assertThrows(IllegalArgumentException.class, () -> LegacyAttendanceImporter.parseTipo("X"));
+    }
+
+    @Test
+    void normalizesDni() {
+        assertEquals("12345678K", LegacyAttendanceImporter.normalizeDni("12.345.678-k"));
+    }
+}
@@ -0,0 +1,150 @@
+package com.attendance.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserImportValidatorTest {
+
+    private final Map<String, Integer> departamentos = new HashMap<>();
+    private final Map<String, Integer> roles = new HashMap<>();
+    private final Map<String, String> emails = new HashMap<>();
+    private final StringWriter copy = new StringWriter();
+    private final UserImportService.Validator validator;
+    private int numero = 1;
+
+    UserImportValidatorTest() throws IOException {
+        departamentos.put("administracion", 3);
+        roles.put("empleado", 2);
+        emails.put("ana@empresa.com", "111");
+        validator = new UserImportService.Validator(departamentos, roles, emails);
+        row("C.I.", "Nombres", "Apellidos", "Correo", "Departamento", "Rol",
+            "Fecha de Nacimiento", "Sexo", "Activo");
+    }
+
+    private void row(String... valores) throws IOException {
+        validator.accept(numero++, Arrays.asList(valores), copy);
+    }
+
+    private String lastError() {
+        return validator.errores.get(validator.errores.size() - 1).mensaje;
+    }
+
+    @Test
+    void validRowIsWrittenWithResolvedIds() throws IOException {
+        row("222", "Luis", "Gómez", "luis@empresa.com", "Administración", "EMPLEADO", "5/3/1990", "masculino", "Sí");
+
+        assertTrue(validator.errores.isEmpty());
+        assertEquals(1, validator.filas);
+        assertEquals("\"222\",\"Luis\",\"Gómez\",\"luis@empresa.com\",,2,3,,1990-03-05,\"M\",true,\n", copy.toString());
+    }
+
+    @Test
+    void optionalColumnsMayBeEmpty() throws IOException {
+        row("222", "Luis", "Gómez", "", "", "", "", "", "");
+
+        assertTrue(validator.errores.isEmpty());
+        assertEquals("\"222\",\"Luis\",\"Gómez\",,,,,,,,,\n", copy.toString());
+    }
+
+    @Test
+    void missingRequiredHeaderFails() {
+        UserImportService.Validator sinApellidos = new UserImportService.Validator(departamentos, roles, emails);
+
+        IOException e = assertThrows(IOException.class,
+            () -> sinApellidos.accept(1, Arrays.asList("dni", "nombres"), copy));
+        assertTrue(e.getMessage().contains("apellidos"));
+    }
+
+    @Test
+    void blankRowsAreIgnored() throws IOException {
+        row("", " ", "", "", "", "", "", "", "");
+
+        assertEquals(0, validator.filas);
+        assertTrue(validator.errores.isEmpty());
+    }
+
+    @Test
+    void rejectsMissingRequiredValue() throws IOException {
+        row("222", "", "Gómez");
+
+        assertEquals("nombres es obligatorio", lastError());
+        assertEquals(2, validator.errores.get(0).fila);
+    }
+
+    @Test
+    void rejectsInvalidDniAndTooLongValues() throws IOException {
+        row("12 34", "Luis", "Gómez");
+        assertEquals("DNI inválido: 12 34", lastError());
+
+        row("123456789012345678901", "Luis", "Gómez");
+        assertEquals("dni supera 20 caracteres", lastError());
+    }
+
+    @Test
+    void rejectsInvalidOrForeignEmail() throws IOException {
+        row("222", "Luis", "Gómez", "luis.empresa.com");
+        assertTrue(lastError().startsWith("Email inválido"));
+
+        row("222", "Luis", "Gómez", "ANA@empresa.com");
+        assertTrue(lastError().contains("ya pertenece al DNI 111"));
+
+        row("111", "Ana", "Ruiz", "ana@empresa.com");
+        assertEquals(2, validator.errores.size());
+    }
+
+    @Test
+    void rejectsUnknownDepartmentAndRole() throws IOException {
+        row("222", "Luis", "Gómez", "", "Ventas");
+        assertEquals("Departamento no encontrado: Ventas", lastError());
+
+        row("333", "Eva", "Paz", "", "", "Gerente");
+        assertEquals("Rol no encontrado: Gerente", lastError());
+    }
+
+    @Test
+    void rejectsBadOrFutureBirthDate() throws IOException {
+        row("222", "Luis", "Gómez", "", "", "", "1990-13-01");
+        assertTrue(lastError().startsWith("Fecha de nacimiento inválida"));
+
+        row("333", "Eva", "Paz", "", "", "", LocalDate.now().plusDays(1).toString());
+        assertEquals("La fecha de nacimiento no puede ser futura", lastError());
+    }
+
+    @Test
+    void rejectsUnknownGenderAndActiveFlag() throws IOException {
+        row("222", "Luis", "Gómez", "", "", "", "", "X");
+        assertTrue(lastError().startsWith("Género inválido"));
+
+        row("333", "Eva", "Paz", "", "", "", "", "F", "quizás");
+        assertTrue(lastError().startsWith("Valor de activo inválido"));
+    }
+
+    @Test
+    void duplicateDniOnlyCountsValidRows() throws IOException {
+        row("222", "Luis", "Gómez", "", "Ventas");
+        row("222", "Luis", "Gómez");
+        row("222", "Luis", "Gómez");
+
+        assertEquals(3, validator.filas);
+        assertEquals(2, validator.errores.size());
+        assertEquals("DNI repetido en el archivo: 222", lastError());
+    }
+
+    @Test
+    void emailClaimedByEarlierRowIsRejected() throws IOException {
+        row("222", "Luis", "Gómez", "compartido@empresa.com");
+        row("333", "Eva", "Paz", "Compartido@empresa.com");
+
+        assertEquals("El email Compartido@empresa.com ya pertenece al DNI 222", lastError());
+    }
+}
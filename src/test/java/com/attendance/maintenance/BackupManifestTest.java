@@ -0,0 +1,51 @@
+package com.attendance.maintenance;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BackupManifestTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void storeAndLoadKeepWatermarksAndChunks() throws IOException {
+        LocalDateTime fecha = LocalDateTime.of(2024, 3, 1, 2, 0, 5);
+        BackupManifest manifest = new BackupManifest(fecha);
+        manifest.setWatermark("usuarios", new BackupManifest.Watermark(120, LocalDateTime.of(2024, 2, 29, 18, 15)));
+        manifest.setWatermark("asistencias", new BackupManifest.Watermark(98765, null));
+        manifest.addChunk(new BackupManifest.Chunk("usuarios", "usuarios-0001.csv.gz", 120, 4096, "aa"));
+        manifest.addChunk(new BackupManifest.Chunk("asistencias", "asistencias-0001.csv.gz", 1000, 8192, "bb"));
+        manifest.addChunk(new BackupManifest.Chunk("asistencias", "asistencias-0002.csv.gz", 500, 2048, "cc"));
+        manifest.store(directory);
+
+        BackupManifest loaded = BackupManifest.load(directory);
+
+        assertEquals(fecha, loaded.getFecha());
+        assertEquals(120, loaded.getWatermark("usuarios").ultimoId);
+        assertEquals(LocalDateTime.of(2024, 2, 29, 18, 15), loaded.getWatermark("usuarios").ultimaModificacion);
+        assertEquals(98765, loaded.getWatermark("asistencias").ultimoId);
+        assertNull(loaded.getWatermark("asistencias").ultimaModificacion);
+        assertEquals(3, loaded.getChunks().size());
+        assertEquals(2, loaded.getChunks("asistencias").size());
+        assertEquals("asistencias-0002.csv.gz", loaded.getChunks("asistencias").get(1).archivo);
+        assertEquals(1620, loaded.getTotalFilas());
+        assertEquals(14336, loaded.getTotalBytes());
+    }
+
+    @Test
+    void loadRejectsUnknownVersion() throws IOException {
+        Files.write(directory.resolve(BackupManifest.FILE_NAME), "version=99\nfecha=2024-03-01T02:00\n".getBytes());
+
+        assertThrows(IOException.class, () -> BackupManifest.load(directory));
+    }
+}
@@ -0,0 +1,45 @@
+package com.attendance.maintenance;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BackupServiceTest {
+
+    @Test
+    void overlapRereadsIdsBelowPreviousWatermark() {
+        BackupService.Overlap overlap = new BackupService.Overlap(1000, Duration.ofMinutes(60));
+
+        assertEquals(49000, overlap.fromId(50000));
+    }
+
+    @Test
+    void overlapNeverStartsBelowZero() {
+        BackupService.Overlap overlap = new BackupService.Overlap(1000, Duration.ofMinutes(60));
+
+        assertEquals(0, overlap.fromId(0));
+        assertEquals(0, overlap.fromId(400));
+    }
+
+    @Test
+    void overlapRereadsModificationsInsideWindow() {
+        BackupService.Overlap overlap = new BackupService.Overlap(1000, Duration.ofMinutes(60));
+
+        assertEquals(LocalDateTime.of(2024, 3, 1, 1, 30),
+            overlap.since(LocalDateTime.of(2024, 3, 1, 2, 30)));
+        assertNull(overlap.since(null));
+    }
+
+    @Test
+    void negativeOverlapMeansNoOverlap() {
+        BackupService.Overlap overlap = new BackupService.Overlap(-5, Duration.ofMinutes(-10));
+        LocalDateTime marca = LocalDateTime.of(2024, 3, 1, 2, 30);
+
+        assertEquals(50000, overlap.fromId(50000));
+        assertEquals(marca, overlap.since(marca));
+    }
+}
@@ -0,0 +1,55 @@
+package com.attendance.maintenance;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogRetentionServiceTest {
+
+    @Test
+    void parsesLevelsAndModules() {
+        List<LogRetentionService.Policy> policies =
+            LogRetentionService.parsePolicies("debug:30, INFO / ASISTENCIA : 15 ,WARNING:365");
+
+        assertEquals(3, policies.size());
+        assertEquals("DEBUG", policies.get(0).nivel);
+        assertNull(policies.get(0).modulo);
+        assertEquals(30, policies.get(0).dias);
+        assertEquals("INFO", policies.get(1).nivel);
+        assertEquals("ASISTENCIA", policies.get(1).modulo);
+        assertEquals(15, policies.get(1).dias);
+        assertEquals("WARNING:365", policies.get(2).toString());
+    }
+
+    @Test
+    void blankEntriesAndEmptyModuleAreIgnored() {
+        List<LogRetentionService.Policy> policies = LogRetentionService.parsePolicies(" ,DEBUG/:7,, ");
+
+        assertEquals(1, policies.size());
+        assertEquals("DEBUG", policies.get(0).nivel);
+        assertNull(policies.get(0).modulo);
+        assertTrue(LogRetentionService.parsePolicies("").isEmpty());
+    }
+
+    @Test
+    void invalidEntriesAreSkipped() {
+        List<LogRetentionService.Policy> policies =
+            LogRetentionService.parsePolicies("DEBUG,INFO:x,ERROR:,WARNING:1.5,CRITICAL:730");
+
+        assertEquals(1, policies.size());
+        assertEquals("CRITICAL:730", policies.get(0).toString());
+    }
+
+    @Test
+    void unknownLevelsAreSkipped() {
+        List<LogRetentionService.Policy> policies =
+            LogRetentionService.parsePolicies("TRACE:7,WARN:30,:10,/ASISTENCIA:5,ERROR/REPORTES:90");
+
+        assertEquals(1, policies.size());
+        assertEquals("ERROR/REPORTES:90", policies.get(0).toString());
+    }
+}
@@ -0,0 +1,82 @@
+package com.attendance.report;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AbsenceEngineTest {
+
+    // Miércoles 6 a martes 19 de marzo de 2024: 14 días
+    private static final LocalDate INICIO = LocalDate.of(2024, 3, 6);
+    private static final LocalDate FIN = LocalDate.of(2024, 3, 19);
+
+    private final AbsenceEngine.Period period = new AbsenceEngine.Period(INICIO, FIN);
+
+    @Test
+    void periodCountsBothEnds() {
+        assertEquals(14, period.days);
+        assertEquals(INICIO, period.date(0));
+        assertEquals(FIN, period.date(13));
+    }
+
+    @Test
+    void indexIsClampedToPeriod() {
+        assertEquals(0, period.index(INICIO.minusDays(10)));
+        assertEquals(0, period.index(INICIO));
+        assertEquals(5, period.index(INICIO.plusDays(5)));
+        assertEquals(13, period.index(FIN));
+        assertEquals(14, period.index(FIN.plusDays(3)));
+    }
+
+    @Test
+    void weekdaysMarksScheduleDays() {
+        BitSet bits = period.weekdays(new Object[]{"LUN", "MAR", "MIE", "JUE", "VIE"});
+
+        assertEquals(10, bits.cardinality());
+        // Sábado 9 y domingo 10 no son laborables
+        assertFalse(bits.get(3));
+        assertFalse(bits.get(4));
+        assertTrue(bits.get(0));
+        assertTrue(bits.get(13));
+    }
+
+    @Test
+    void weekdaysIgnoresCaseAndUnknownDays() {
+        BitSet bits = period.weekdays(new Object[]{" sab ", "XYZ"});
+
+        assertEquals(2, bits.cardinality());
+        assertTrue(bits.get(period.index(LocalDate.of(2024, 3, 9))));
+        assertTrue(bits.get(period.index(LocalDate.of(2024, 3, 16))));
+    }
+
+    @Test
+    void weekdaysWithoutDaysIsEmpty() {
+        assertTrue(period.weekdays(null).isEmpty());
+    }
+
+    @Test
+    void absencesAreExpectedDaysWithoutMarks() {
+        AbsenceEngine.UserBits bits = new AbsenceEngine.UserBits(1, "123", "Ana Pérez", "Ventas");
+        bits.esperados.or(period.weekdays(new Object[]{"LUN", "MAR", "MIE", "JUE", "VIE"}));
+        bits.presentes.set(0, period.days);
+        // Falta el lunes 11 y el martes 12; el 12 está justificado
+        bits.presentes.clear(period.index(LocalDate.of(2024, 3, 11)));
+        bits.presentes.clear(period.index(LocalDate.of(2024, 3, 12)));
+        bits.justificados.set(period.index(LocalDate.of(2024, 3, 12)));
+        // Marcó el sábado, que no es laborable
+        bits.presentes.set(period.index(LocalDate.of(2024, 3, 9)));
+
+        AbsenceEngine.UserAbsences absences = bits.toAbsences(period);
+
+        assertEquals(10, absences.diasLaborables);
+        assertEquals(8, absences.diasAsistidos);
+        assertEquals(Arrays.asList(LocalDate.of(2024, 3, 11), LocalDate.of(2024, 3, 12)), absences.ausencias);
+        assertEquals(Arrays.asList(LocalDate.of(2024, 3, 11)), absences.injustificadas);
+    }
+}
@@ -0,0 +1,82 @@
+package com.attendance.report;
+
+import com.attendance.config.DatabaseConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.YearMonth;
+
+/**
+ * Mide el reporte mensual contra sp_reporte_mensual con distinta cantidad de hilos
+ * Uso: MonthlyReportBenchmark [anio mes [repeticiones]]
+ * El máximo de hilos útil es db.report.maxPoolSize. Vive con las fuentes de
+ * prueba para no empaquetarse con la aplicación; se ejecuta con el classpath
+ * de test (por ejemplo mvn exec:java -Dexec.classpathScope=test).
+ *
+ * @author Sistema Biométrico
+ * @version 1.0
+ */
+public class MonthlyReportBenchmark {
+
+    private MonthlyReportBenchmark() {
+    }
+
+    public static void main(String[] args) throws SQLException {
+        YearMonth mes = args.length >= 2
+            ? YearMonth.of(Integer.parseInt(args[0]), Integer.parseInt(args[1]))
+            : YearMonth.now().minusMonths(1);
+        int repeticiones = args.length >= 3 ? Integer.parseInt(args[2]) : 5;
+        int maxHilos = Math.max(MonthlyReportEngine.DEFAULT_PARALLELISM,
+            Integer.parseInt(DatabaseConfig.getProperty("db.report.maxPoolSize", "4")));
+
+        DatabaseConfig.initialize();
+        try {
+            System.out.printf("Reporte mensual %s, %d repeticiones, %d núcleos%n",
+                mes, repeticiones, Runtime.getRuntime().availableProcessors());
+
+            // Calentamiento: JIT, conexiones del pool y caché de la base
+            MonthlyReportEngine.compute(mes, maxHilos);
+            long procedimiento = measureProcedure(mes, repeticiones);
+            System.out.printf("%-24s %8d ms%n", "sp_reporte_mensual", procedimiento);
+
+            long base = 0;
+            for (int hilos = 1; hilos <= maxHilos; hilos = hilos < maxHilos && hilos * 2 > maxHilos ? maxHilos : hilos * 2) {
+                long mejor = Long.MAX_VALUE;
+                int filas = 0;
+                for (int i = 0; i < repeticiones; i++) {
+                    long start = System.nanoTime();
+                    filas = MonthlyReportEngine.compute(mes, hilos).filas.size();
+                    mejor = Math.min(mejor, (System.nanoTime() - start) / 1_000_000);
+                }
+                if (hilos == 1) {
+                    base = mejor;
+                }
+                System.out.printf("%-24s %8d ms  x%.2f  (%d filas)%n",
+                    "motor, " + hilos + " hilo(s)", mejor, base / (double) Math.max(1, mejor), filas);
+            }
+        } finally {
+            DatabaseConfig.close();
+        }
+    }
+
+    private static long measureProcedure(YearMonth mes, int repeticiones) throws SQLException {
+        long mejor = Long.MAX_VALUE;
+        try (Connection conn = DatabaseConfig.getConnection(DatabaseConfig.Pool.REPORTES);
+             PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM sp_reporte_mensual(?, ?)")) {
+            pstmt.setInt(1, mes.getMonthValue());
+            pstmt.setInt(2, mes.getYear());
+            for (int i = 0; i < repeticiones; i++) {
+                long start = System.nanoTime();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        // Se recorre el resultado completo, igual que el motor
+                    }
+                }
+                mejor = Math.min(mejor, (System.nanoTime() - start) / 1_000_000);
+            }
+        }
+        return mejor;
+    }
+}
@@ -0,0 +1,62 @@
+package com.attendance.report;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReportFilterTest {
+
+    private static final LocalDate INICIO = LocalDate.of(2024, 3, 1);
+    private static final LocalDate FIN = LocalDate.of(2024, 3, 31);
+
+    @Test
+    void inlineWhereUsesHalfOpenDateRange() throws SQLException {
+        ReportFilter filter = new ReportFilter("Diario", INICIO, FIN, "Todos", "Todos", "");
+
+        assertEquals("WHERE a.fecha_hora >= '2024-03-01 00:00:00'::timestamp "
+                + "AND a.fecha_hora < '2024-04-01 00:00:00'::timestamp ",
+            filter.getInlineWhereClause(true));
+    }
+
+    @Test
+    void inlineWhereDoublesSingleQuotes() throws SQLException {
+        ReportFilter filter = new ReportFilter("Diario", INICIO, FIN, "O'Higgins", "Todos", "");
+
+        assertTrue(filter.getInlineWhereClause(true).contains("AND d.nombre = 'O''Higgins' "));
+    }
+
+    @Test
+    void inlineWhereKeepsBackslashWithStandardStrings() throws SQLException {
+        ReportFilter filter = new ReportFilter("Diario", INICIO, FIN, "A\\B", "Todos", "");
+
+        assertTrue(filter.getInlineWhereClause(true).contains("AND d.nombre = 'A\\B' "));
+    }
+
+    @Test
+    void inlineWhereEscapesBackslashWithoutStandardStrings() throws SQLException {
+        ReportFilter filter = new ReportFilter("Diario", INICIO, FIN, "A\\B'", "Todos", "");
+
+        String where = filter.getInlineWhereClause(false);
+        assertTrue(where.startsWith("WHERE a.fecha_hora >= E'2024-03-01 00:00:00'::timestamp "));
+        assertTrue(where.contains("AND d.nombre = E'A\\\\B''' "));
+    }
+
+    @Test
+    void inlineWhereEscapesLikeWildcardsInUserTerms() throws SQLException {
+        ReportFilter filter = new ReportFilter("Diario", INICIO, FIN, null, null, "50%_x");
+
+        assertTrue(filter.getInlineWhereClause(true).contains(" LIKE '%50\\%\\_x%' ESCAPE '\\' "));
+    }
+
+    @Test
+    void inlineWhereRejectsNulCharacter() {
+        ReportFilter filter = new ReportFilter("Diario", INICIO, FIN, "a\0b", "Todos", "");
+
+        assertThrows(SQLException.class, () -> filter.getInlineWhereClause(true));
+    }
+}
@@ -0,0 +1,168 @@
+package com.attendance.report;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkSessionPairerTest {
+
+    private static final LocalDate DIA = LocalDate.of(2024, 3, 4);
+
+    private WorkSessionEngine.Pairer pairer;
+
+    @BeforeEach
+    void setUp() {
+        pairer = new WorkSessionEngine.Pairer(new WorkSessionEngine.Range(
+            WorkSessionEngine.toMicros(DIA.atStartOfDay()),
+            WorkSessionEngine.toMicros(DIA.plusDays(7).atStartOfDay())));
+        pairer.reset(7);
+    }
+
+    @Test
+    void pairsEntryAndExitDiscountingBreak() {
+        mark(DIA, 8, 0, WorkSessionEngine.ENTRADA);
+        mark(DIA, 12, 0, WorkSessionEngine.SALIDA_BREAK);
+        mark(DIA, 13, 0, WorkSessionEngine.ENTRADA_BREAK);
+        mark(DIA, 17, 0, WorkSessionEngine.SALIDA);
+        pairer.finish();
+
+        List<WorkSession> sesiones = pairer.getSesiones();
+        assertEquals(1, sesiones.size());
+        WorkSession sesion = sesiones.get(0);
+        assertEquals(7, sesion.idUsuario);
+        assertEquals(DIA, sesion.fecha);
+        assertTrue(sesion.isCompleta());
+        assertEquals(480, sesion.minutosTrabajados);
+        assertEquals(60, sesion.minutosBreak);
+    }
+
+    @Test
+    void breakWithoutReturnCountsUntilExit() {
+        mark(DIA, 8, 0, WorkSessionEngine.ENTRADA);
+        mark(DIA, 16, 0, WorkSessionEngine.SALIDA_BREAK);
+        mark(DIA, 17, 0, WorkSessionEngine.SALIDA);
+        pairer.finish();
+
+        WorkSession sesion = pairer.getSesiones().get(0);
+        assertEquals(480, sesion.minutosTrabajados);
+        assertEquals(60, sesion.minutosBreak);
+    }
+
+    @Test
+    void ignoresDuplicateMarkOfSameType() {
+        mark(DIA, 8, 0, WorkSessionEngine.ENTRADA);
+        mark(DIA, 8, 1, WorkSessionEngine.ENTRADA);
+        mark(DIA, 16, 0, WorkSessionEngine.SALIDA);
+        pairer.finish();
+
+        assertEquals(1, pairer.getSesiones().size());
+        assertEquals(480, pairer.getSesiones().get(0).minutosTrabajados);
+    }
+
+    @Test
+    void entryWithoutExitIsIncomplete() {
+        mark(DIA, 8, 0, WorkSessionEngine.ENTRADA);
+        pairer.finish();
+
+        WorkSession sesion = pairer.getSesiones().get(0);
+        assertFalse(sesion.isCompleta());
+        assertNull(sesion.fin);
+        assertEquals(0, sesion.minutosTrabajados);
+    }
+
+    @Test
+    void secondEntryClosesPreviousAsIncomplete() {
+        mark(DIA, 8, 0, WorkSessionEngine.ENTRADA);
+        mark(DIA, 9, 0, WorkSessionEngine.ENTRADA);
+        mark(DIA, 17, 0, WorkSessionEngine.SALIDA);
+        pairer.finish();
+
+        List<WorkSession> sesiones = pairer.getSesiones();
+        assertEquals(2, sesiones.size());
+        assertFalse(sesiones.get(0).isCompleta());
+        assertEquals(480, sesiones.get(1).minutosTrabajados);
+    }
+
+    @Test
+    void exitWithoutEntryIsOrphan() {
+        mark(DIA, 17, 0, WorkSessionEngine.SALIDA);
+        mark(DIA, 12, 0, WorkSessionEngine.SALIDA_BREAK);
+        pairer.finish();
+
+        assertTrue(pairer.getSesiones().isEmpty());
+        assertEquals(2, pairer.getHuerfanas());
+    }
+
+    @Test
+    void breakReturnWithoutEntryOpensSession() {
+        mark(DIA, 13, 0, WorkSessionEngine.ENTRADA_BREAK);
+        mark(DIA, 17, 0, WorkSessionEngine.SALIDA);
+        pairer.finish();
+
+        assertEquals(240, pairer.getSesiones().get(0).minutosTrabajados);
+        assertEquals(0, pairer.getHuerfanas());
+    }
+
+    @Test
+    void overnightShiftBelongsToStartDay() {
+        mark(DIA, 22, 0, WorkSessionEngine.ENTRADA);
+        mark(DIA.plusDays(1), 6, 0, WorkSessionEngine.SALIDA);
+        pairer.finish();
+
+        WorkSession sesion = pairer.getSesiones().get(0);
+        assertEquals(DIA, sesion.fecha);
+        assertEquals(480, sesion.minutosTrabajados);
+    }
+
+    @Test
+    void sessionStartedBeforeRangeIsNotReported() {
+        mark(DIA.minusDays(1), 22, 0, WorkSessionEngine.ENTRADA);
+        mark(DIA, 6, 0, WorkSessionEngine.SALIDA);
+        pairer.finish();
+
+        assertTrue(pairer.getSesiones().isEmpty());
+        assertEquals(0, pairer.getHuerfanas());
+    }
+
+    @Test
+    void sessionLongerThanMaximumIsClosedIncomplete() {
+        mark(DIA, 8, 0, WorkSessionEngine.ENTRADA);
+        LocalDateTime salida = DIA.atTime(8, 0).plusNanos(WorkSessionEngine.MAX_SESSION_MICROS * 1000).plusHours(1);
+        pairer.accept(WorkSessionEngine.toMicros(salida), WorkSessionEngine.SALIDA);
+        pairer.finish();
+
+        assertEquals(1, pairer.getSesiones().size());
+        assertFalse(pairer.getSesiones().get(0).isCompleta());
+        assertEquals(1, pairer.getHuerfanas());
+    }
+
+    @Test
+    void resetStartsNextUserClean() {
+        mark(DIA, 8, 0, WorkSessionEngine.ENTRADA);
+        pairer.reset(8);
+        mark(DIA, 8, 0, WorkSessionEngine.ENTRADA);
+        mark(DIA, 12, 0, WorkSessionEngine.SALIDA);
+        pairer.finish();
+
+        assertEquals(1, pairer.getSesiones().size());
+        assertEquals(8, pairer.getSesiones().get(0).idUsuario);
+    }
+
+    @Test
+    void microsRoundTrip() {
+        LocalDateTime fechaHora = LocalDateTime.of(1969, 12, 31, 23, 59, 59, 123_456_000);
+        assertEquals(fechaHora, WorkSessionEngine.fromMicros(WorkSessionEngine.toMicros(fechaHora)));
+    }
+
+    private void mark(LocalDate fecha, int hora, int minuto, byte tipo) {
+        pairer.accept(WorkSessionEngine.toMicros(fecha.atTime(hora, minuto)), tipo);
+    }
+}
@@ -0,0 +1,69 @@
+package com.attendance.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserPageLoaderTest {
+
+    private static final String KEYSET = "AND (u.apellidos, u.nombres, u.id_usuario) > (?, ?, ?) ";
+
+    @Test
+    void firstPageHasNoKeyCondition() {
+        String sql = new UserPageLoader(null, null, null, 50).pageSql(false);
+
+        assertFalse(sql.contains(KEYSET));
+        assertTrue(sql.endsWith("ORDER BY u.apellidos, u.nombres, u.id_usuario LIMIT 50"));
+    }
+
+    @Test
+    void nextPageSeeksPastTheKeyInIndexOrder() {
+        String sql = new UserPageLoader(null, null, null, 50).pageSql(true);
+
+        assertTrue(sql.contains("WHERE 1=1 " + KEYSET + "ORDER BY u.apellidos, u.nombres, u.id_usuario LIMIT 50"));
+    }
+
+    @Test
+    void keyParametersFollowTheFilterParameters() {
+        String sql = new UserPageLoader("ana perez", true, "Ventas", 25).pageSql(true);
+
+        // Dos palabras buscadas, activo y departamento antes de los tres de la clave
+        assertEquals(7, sql.chars().filter(c -> c == '?').count());
+        int filtros = sql.indexOf("AND d.nombre = ? ");
+        assertTrue(sql.indexOf("AND u.activo = ? ") < filtros);
+        assertTrue(filtros < sql.indexOf(KEYSET));
+    }
+
+    @Test
+    void lastKeyIsTheLastRow() {
+        UserPageLoader.UserRow primera = new UserPageLoader.UserRow(7, "1", "Alvarez", "Ana", null, null, null, null, true);
+        UserPageLoader.UserRow ultima = new UserPageLoader.UserRow(3, "2", "Benitez", "Luis", null, null, null, 12, false);
+
+        UserPageLoader.Key key = UserPageLoader.lastKey(Arrays.asList(primera, ultima));
+
+        assertEquals("Benitez", key.apellidos);
+        assertEquals("Luis", key.nombres);
+        assertEquals(3, key.idUsuario);
+        assertNull(UserPageLoader.lastKey(Collections.emptyList()));
+    }
+
+    @Test
+    void searchTermsAreLiteral() {
+        assertEquals(Arrays.asList("50%", "o_brien"), UserSearchService.splitTerms("  50%   O_Brien "));
+        assertEquals("50\\%", UserSearchService.escapeLike("50%"));
+        assertEquals("o\\_brien", UserSearchService.escapeLike("o_brien"));
+        assertTrue(UserSearchService.splitTerms("   ").isEmpty());
+    }
+
+    @Test
+    void searchTermsDropAccentsLikeTheIndex() {
+        assertEquals(Arrays.asList("jose", "nunez"), UserSearchService.splitTerms("José  NÚÑEZ"));
+        assertTrue(UserSearchService.SEARCH_EXPRESSION.startsWith("f_unaccent(lower("));
+    }
+}